@@ -149,12 +149,14 @@ public class ProgramScheduleStoreDataset {
     scheduleFields.add(Fields.stringField(StoreDefinition.ProgramScheduleStore.STATUS, status.toString()));
     scheduleStore.upsert(scheduleFields);
 
+    List<Collection<Field<?>>> triggers = new ArrayList<>();
     int count = 0;
     for (String triggerKey : extractTriggerKeys(schedule)) {
       Collection<Field<?>> triggerFields = getTriggerKeys(scheduleKeys, count++);
       triggerFields.add(Fields.stringField(StoreDefinition.ProgramScheduleStore.TRIGGER_KEY, triggerKey));
-      triggerStore.upsert(triggerFields);
+      triggers.add(triggerFields);
     }
+    triggerStore.multiUpsert(triggers);
   }
 
   /**
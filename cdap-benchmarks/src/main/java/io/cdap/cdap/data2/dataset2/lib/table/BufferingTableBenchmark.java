@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table;
+
+import com.google.common.io.Files;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.DatasetContext;
+import io.cdap.cdap.api.dataset.DatasetSpecification;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.utils.DirUtils;
+import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryTable;
+import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import io.cdap.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
+import io.cdap.cdap.data2.dataset2.lib.table.leveldb.LevelDBTable;
+import io.cdap.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableService;
+import org.apache.tephra.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for transactional {@link BufferingTable#get(byte[])} and {@link BufferingTable#put(byte[], byte[][],
+ * byte[][])} against the in-memory and LevelDB implementations. Each benchmark invocation is one transaction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BufferingTableBenchmark {
+
+  private static final int ROW_COUNT = 100000;
+  private static final String TABLE_NAME = "benchmark";
+  private static final byte[][] COLUMNS = { Bytes.toBytes("c1"), Bytes.toBytes("c2"), Bytes.toBytes("c3") };
+
+  @Param({"inmemory", "leveldb"})
+  private String backend;
+
+  @Param({"10"})
+  private int opsPerTx;
+
+  @Param({"128"})
+  private int valueSize;
+
+  private File dataDir;
+  private LevelDBTableService levelDBTableService;
+  private BufferingTable table;
+  private byte[][] values;
+  private long txPointer;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    if ("leveldb".equals(backend)) {
+      dataDir = Files.createTempDir();
+      CConfiguration cConf = CConfiguration.create();
+      cConf.set(Constants.CFG_LOCAL_DATA_DIR, dataDir.getAbsolutePath());
+      levelDBTableService = new LevelDBTableService();
+      levelDBTableService.setConfiguration(cConf);
+
+      DatasetContext datasetContext = DatasetContext.from("default");
+      String tableName = PrefixedNamespaces.namespace(cConf, datasetContext.getNamespaceId(), TABLE_NAME);
+      levelDBTableService.ensureTableExists(tableName);
+      table = new LevelDBTable(datasetContext, TABLE_NAME, levelDBTableService, cConf,
+                               DatasetSpecification.builder(TABLE_NAME, "table").build());
+    } else {
+      InMemoryTableService.create(TABLE_NAME);
+      table = new InMemoryTable(TABLE_NAME);
+    }
+
+    Random random = new Random(0);
+    values = new byte[COLUMNS.length][];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = new byte[valueSize];
+      random.nextBytes(values[i]);
+    }
+
+    // Pre-populate the table for reading
+    for (int i = 0; i < ROW_COUNT; i += 1000) {
+      table.startTx(nextTransaction());
+      for (int j = i; j < i + 1000; j++) {
+        table.put(getRowKey(j), COLUMNS, values);
+      }
+      table.commitTx();
+      table.postTxCommit();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    table.close();
+    if (levelDBTableService != null) {
+      levelDBTableService.close();
+      DirUtils.deleteDirectoryContents(dataDir);
+    } else {
+      InMemoryTableService.drop(TABLE_NAME);
+    }
+  }
+
+  @Benchmark
+  public void get(Blackhole blackhole) throws Exception {
+    table.startTx(nextTransaction());
+    for (int i = 0; i < opsPerTx; i++) {
+      blackhole.consume(table.get(getRowKey(ThreadLocalRandom.current().nextInt(ROW_COUNT))));
+    }
+    table.commitTx();
+    table.postTxCommit();
+  }
+
+  @Benchmark
+  public void put() throws Exception {
+    table.startTx(nextTransaction());
+    for (int i = 0; i < opsPerTx; i++) {
+      table.put(getRowKey(ThreadLocalRandom.current().nextInt(ROW_COUNT)), COLUMNS, values);
+    }
+    table.commitTx();
+    table.postTxCommit();
+  }
+
+  /**
+   * Creates a new {@link Transaction} with no in progress or invalid transactions.
+   */
+  private Transaction nextTransaction() {
+    long readPointer = txPointer++;
+    return new Transaction(readPointer, txPointer, new long[0], new long[0], Transaction.NO_TX_IN_PROGRESS);
+  }
+
+  private static byte[] getRowKey(int row) {
+    return Bytes.toBytes(String.format("row%08d", row));
+  }
+}
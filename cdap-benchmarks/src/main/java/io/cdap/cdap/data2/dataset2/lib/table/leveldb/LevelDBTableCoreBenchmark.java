@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table.leveldb;
+
+import com.google.common.io.Files;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scanner;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.utils.DirUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark for the {@link LevelDBTableCore#persist(Map, long)} and
+ * {@link LevelDBTableCore#scan(byte[], byte[], io.cdap.cdap.data2.dataset2.lib.table.FuzzyRowFilter,
+ * byte[][], org.apache.tephra.Transaction)} methods.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LevelDBTableCoreBenchmark {
+
+  private static final int ROW_COUNT = 100000;
+  private static final byte[][] COLUMNS = { Bytes.toBytes("c1"), Bytes.toBytes("c2"), Bytes.toBytes("c3") };
+
+  @Param({"1", "100"})
+  private int rowsPerBatch;
+
+  @Param({"100"})
+  private int rowsPerScan;
+
+  @Param({"128"})
+  private int valueSize;
+
+  private final AtomicLong version = new AtomicLong();
+  private File dataDir;
+  private LevelDBTableService service;
+  private LevelDBTableCore scanTable;
+  private LevelDBTableCore writeTable;
+  private byte[] value;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    dataDir = Files.createTempDir();
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, dataDir.getAbsolutePath());
+
+    service = new LevelDBTableService();
+    service.setConfiguration(cConf);
+    service.ensureTableExists("scan");
+    service.ensureTableExists("write");
+    scanTable = new LevelDBTableCore("scan", service);
+    writeTable = new LevelDBTableCore("write", service);
+
+    value = new byte[valueSize];
+    new Random(0).nextBytes(value);
+
+    // Pre-populate the table for scanning
+    for (int i = 0; i < ROW_COUNT; i += 1000) {
+      scanTable.persist(createChanges(i, 1000), version.incrementAndGet());
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    service.close();
+    DirUtils.deleteDirectoryContents(dataDir);
+  }
+
+  @Benchmark
+  public void persist() throws IOException {
+    int startRow = ThreadLocalRandom.current().nextInt(ROW_COUNT);
+    writeTable.persist(createChanges(startRow, rowsPerBatch), version.incrementAndGet());
+  }
+
+  @Benchmark
+  public void scan(Blackhole blackhole) throws IOException {
+    int startRow = ThreadLocalRandom.current().nextInt(ROW_COUNT - rowsPerScan);
+    Scanner scanner = scanTable.scan(getRowKey(startRow), getRowKey(startRow + rowsPerScan), null, null, null);
+    try {
+      Row row = scanner.next();
+      while (row != null) {
+        blackhole.consume(row);
+        row = scanner.next();
+      }
+    } finally {
+      scanner.close();
+    }
+  }
+
+  private NavigableMap<byte[], NavigableMap<byte[], byte[]>> createChanges(int startRow, int rows) {
+    NavigableMap<byte[], NavigableMap<byte[], byte[]>> changes = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (int i = startRow; i < startRow + rows; i++) {
+      NavigableMap<byte[], byte[]> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      for (byte[] column : COLUMNS) {
+        columns.put(column, value);
+      }
+      changes.put(getRowKey(i), columns);
+    }
+    return changes;
+  }
+
+  private static byte[] getRowKey(int row) {
+    return Bytes.toBytes(String.format("row%08d", row));
+  }
+}
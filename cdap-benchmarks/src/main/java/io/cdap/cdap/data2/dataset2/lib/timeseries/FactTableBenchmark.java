@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.timeseries;
+
+import com.google.common.io.Files;
+import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
+import io.cdap.cdap.api.dataset.lib.cube.MeasureType;
+import io.cdap.cdap.api.dataset.lib.cube.Measurement;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.utils.DirUtils;
+import io.cdap.cdap.data2.dataset2.lib.table.MetricsTable;
+import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
+import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import io.cdap.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
+import io.cdap.cdap.data2.dataset2.lib.table.leveldb.LevelDBMetricsTable;
+import io.cdap.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for {@link FactTable#add(List)} against the in-memory and LevelDB metrics tables.
+ * Each invocation adds one batch of facts, as done by the metrics processor for each batch of metrics.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FactTableBenchmark {
+
+  private static final String NAMESPACE = "system";
+  private static final String DATA_TABLE = "metrics.data";
+  private static final String ENTITY_TABLE = "metrics.entity";
+
+  @Param({"inmemory", "leveldb"})
+  private String backend;
+
+  @Param({"1", "60"})
+  private int resolution;
+
+  @Param({"1000"})
+  private int factsPerBatch;
+
+  @Param({"100"})
+  private int dimensionCardinality;
+
+  private File dataDir;
+  private LevelDBTableService levelDBTableService;
+  private FactTable factTable;
+  private long timestamp;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    MetricsTable dataTable;
+    MetricsTable entityTable;
+
+    if ("leveldb".equals(backend)) {
+      dataDir = Files.createTempDir();
+      CConfiguration cConf = CConfiguration.create();
+      cConf.set(Constants.CFG_LOCAL_DATA_DIR, dataDir.getAbsolutePath());
+      levelDBTableService = new LevelDBTableService();
+      levelDBTableService.setConfiguration(cConf);
+      levelDBTableService.ensureTableExists(PrefixedNamespaces.namespace(cConf, NAMESPACE, DATA_TABLE));
+      levelDBTableService.ensureTableExists(PrefixedNamespaces.namespace(cConf, NAMESPACE, ENTITY_TABLE));
+      dataTable = new LevelDBMetricsTable(NAMESPACE, DATA_TABLE, levelDBTableService, cConf);
+      entityTable = new LevelDBMetricsTable(NAMESPACE, ENTITY_TABLE, levelDBTableService, cConf);
+    } else {
+      InMemoryTableService.create(DATA_TABLE);
+      InMemoryTableService.create(ENTITY_TABLE);
+      dataTable = new InMemoryMetricsTable(DATA_TABLE);
+      entityTable = new InMemoryMetricsTable(ENTITY_TABLE);
+    }
+
+    factTable = new FactTable(dataTable, new EntityTable(entityTable), resolution, 3600);
+    timestamp = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    factTable.close();
+    if (levelDBTableService != null) {
+      levelDBTableService.close();
+      DirUtils.deleteDirectoryContents(dataDir);
+    } else {
+      InMemoryTableService.drop(DATA_TABLE);
+      InMemoryTableService.drop(ENTITY_TABLE);
+    }
+  }
+
+  @Benchmark
+  public void add() {
+    // Each batch covers one second of metrics, emitted by dimensionCardinality different programs
+    long ts = timestamp++;
+    List<Fact> facts = new ArrayList<>(factsPerBatch);
+    for (int i = 0; i < factsPerBatch; i++) {
+      List<DimensionValue> dimensions = Arrays.asList(new DimensionValue("ns", "default"),
+                                                      new DimensionValue("app", "app" + (i % dimensionCardinality)),
+                                                      new DimensionValue("run", "run" + (i % dimensionCardinality)));
+      Measurement measurement = i % 2 == 0
+        ? new Measurement("records.in", MeasureType.COUNTER, 1L)
+        : new Measurement("memory.used", MeasureType.GAUGE, i);
+      facts.add(new Fact(ts, dimensions, measurement));
+    }
+    factTable.add(facts);
+  }
+}
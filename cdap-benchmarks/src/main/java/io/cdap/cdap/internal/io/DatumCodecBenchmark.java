@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.io;
+
+import com.google.common.reflect.TypeToken;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.common.io.BinaryDecoder;
+import io.cdap.cdap.common.io.BinaryEncoder;
+import io.cdap.cdap.common.io.DatumWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for encoding with the {@link DatumWriterGenerator} generated writer and the {@link ReflectionDatumWriter},
+ * and decoding with the {@link ReflectionDatumReader}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DatumCodecBenchmark {
+
+  private DatumWriter<Record> asmWriter;
+  private DatumWriter<Record> reflectionWriter;
+  private ReflectionDatumReader<Record> reader;
+  private Schema schema;
+  private Record record;
+  private ByteArrayOutputStream output;
+  private byte[] encoded;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    TypeToken<Record> type = TypeToken.of(Record.class);
+    schema = new ReflectionSchemaGenerator().generate(type.getType());
+    asmWriter = new ASMDatumWriterFactory(new ASMFieldAccessorFactory()).create(type, schema);
+    reflectionWriter = new ReflectionDatumWriter<>(schema);
+    reader = new ReflectionDatumReader<>(schema, type);
+
+    Map<String, String> properties = new HashMap<>();
+    List<Long> values = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      properties.put("key" + i, "value" + i);
+      values.add((long) i);
+    }
+    record = new Record("benchmark", System.currentTimeMillis(), 0.5d, properties, values);
+
+    output = new ByteArrayOutputStream();
+    asmWriter.encode(record, new BinaryEncoder(output));
+    encoded = output.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] asmEncode() throws IOException {
+    output.reset();
+    asmWriter.encode(record, new BinaryEncoder(output));
+    return output.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] reflectionEncode() throws IOException {
+    output.reset();
+    reflectionWriter.encode(record, new BinaryEncoder(output));
+    return output.toByteArray();
+  }
+
+  @Benchmark
+  public Record reflectionDecode() throws IOException {
+    return reader.read(new BinaryDecoder(new ByteArrayInputStream(encoded)), schema);
+  }
+
+  /**
+   * The record class being encoded and decoded.
+   */
+  public static final class Record {
+    private final String name;
+    private final long timestamp;
+    private final double weight;
+    private final Map<String, String> properties;
+    private final List<Long> values;
+
+    public Record(String name, long timestamp, double weight, Map<String, String> properties, List<Long> values) {
+      this.name = name;
+      this.timestamp = timestamp;
+      this.weight = weight;
+      this.properties = properties;
+      this.values = values;
+    }
+  }
+}
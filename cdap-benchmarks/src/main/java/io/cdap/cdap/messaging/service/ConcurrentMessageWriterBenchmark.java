@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.service;
+
+import com.google.common.io.Files;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.utils.DirUtils;
+import io.cdap.cdap.common.utils.TimeProvider;
+import io.cdap.cdap.messaging.StoreRequest;
+import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.client.StoreRequestBuilder;
+import io.cdap.cdap.messaging.store.MetadataTable;
+import io.cdap.cdap.messaging.store.TableFactory;
+import io.cdap.cdap.messaging.store.leveldb.LevelDBTableFactory;
+import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.proto.id.TopicId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for publishing to the TMS message table through {@link ConcurrentMessageWriter}, backed by LevelDB.
+ * Multiple benchmark threads publish to the same topic so that the batching behavior of the writer is exercised.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class ConcurrentMessageWriterBenchmark {
+
+  @Param({"1", "100"})
+  private int payloadsPerRequest;
+
+  @Param({"128", "4096"})
+  private int payloadSize;
+
+  private File dataDir;
+  private TableFactory tableFactory;
+  private TopicMetadata topicMetadata;
+  private ConcurrentMessageWriter writer;
+  private StoreRequest storeRequest;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    dataDir = Files.createTempDir();
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, dataDir.getAbsolutePath());
+    tableFactory = new LevelDBTableFactory(cConf);
+
+    TopicId topicId = NamespaceId.SYSTEM.topic("benchmark");
+    try (MetadataTable metadataTable = tableFactory.createMetadataTable()) {
+      metadataTable.createTopic(new TopicMetadata(topicId, TopicMetadata.TTL_KEY, Integer.MAX_VALUE,
+                                                  TopicMetadata.GENERATION_KEY, 1));
+      topicMetadata = metadataTable.getMetadata(topicId);
+    }
+
+    writer = new ConcurrentMessageWriter(
+      new MessageTableStoreRequestWriter(tableFactory.createMessageTable(topicMetadata), TimeProvider.SYSTEM_TIME));
+
+    Random random = new Random(0);
+    List<byte[]> payloads = new ArrayList<>(payloadsPerRequest);
+    for (int i = 0; i < payloadsPerRequest; i++) {
+      byte[] payload = new byte[payloadSize];
+      random.nextBytes(payload);
+      payloads.add(payload);
+    }
+    // The StoreRequest built by the builder is backed by a list, hence it can be iterated over multiple times
+    storeRequest = StoreRequestBuilder.of(topicId).addPayloads(payloads).build();
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    writer.close();
+    tableFactory.close();
+    DirUtils.deleteDirectoryContents(dataDir);
+  }
+
+  @Benchmark
+  public void persist() throws IOException {
+    writer.persist(storeRequest, topicMetadata);
+  }
+}
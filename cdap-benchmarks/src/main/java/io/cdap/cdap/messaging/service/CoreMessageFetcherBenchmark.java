@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.service;
+
+import com.google.common.io.Files;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.metrics.NoOpMetricsCollectionService;
+import io.cdap.cdap.common.utils.DirUtils;
+import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.client.StoreRequestBuilder;
+import io.cdap.cdap.messaging.data.RawMessage;
+import io.cdap.cdap.messaging.store.leveldb.LevelDBTableFactory;
+import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.proto.id.TopicId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for fetching messages through {@link CoreMessageFetcher}, backed by LevelDB.
+ * Each invocation fetches a batch of messages starting from a random message id in a pre-populated topic.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CoreMessageFetcherBenchmark {
+
+  private static final int MESSAGE_COUNT = 100000;
+  private static final int PUBLISH_BATCH_SIZE = 1000;
+
+  @Param({"100", "1000"})
+  private int limit;
+
+  @Param({"128", "4096"})
+  private int payloadSize;
+
+  private File dataDir;
+  private CoreMessagingService messagingService;
+  private TopicId topicId;
+  private List<byte[]> messageIds;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    dataDir = Files.createTempDir();
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, dataDir.getAbsolutePath());
+    // No system topics are needed
+    cConf.set(Constants.MessagingSystem.SYSTEM_TOPICS, "");
+
+    messagingService = new CoreMessagingService(cConf, new LevelDBTableFactory(cConf),
+                                                new NoOpMetricsCollectionService());
+    messagingService.startAndWait();
+
+    topicId = NamespaceId.SYSTEM.topic("benchmark");
+    messagingService.createTopic(new TopicMetadata(topicId));
+
+    Random random = new Random(0);
+    for (int i = 0; i < MESSAGE_COUNT; i += PUBLISH_BATCH_SIZE) {
+      StoreRequestBuilder builder = StoreRequestBuilder.of(topicId);
+      for (int j = 0; j < PUBLISH_BATCH_SIZE; j++) {
+        byte[] payload = new byte[payloadSize];
+        random.nextBytes(payload);
+        builder.addPayload(payload);
+      }
+      messagingService.publish(builder.build());
+    }
+
+    // Collects all message ids so that each fetch can start from a random position
+    messageIds = new ArrayList<>(MESSAGE_COUNT);
+    try (CloseableIterator<RawMessage> iterator = messagingService.prepareFetch(topicId).fetch()) {
+      while (iterator.hasNext()) {
+        messageIds.add(iterator.next().getId());
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    messagingService.stopAndWait();
+    DirUtils.deleteDirectoryContents(dataDir);
+  }
+
+  @Benchmark
+  public void fetch(Blackhole blackhole) throws Exception {
+    byte[] startId = messageIds.get(ThreadLocalRandom.current().nextInt(messageIds.size()));
+    try (CloseableIterator<RawMessage> iterator = messagingService.prepareFetch(topicId)
+      .setStartMessage(startId, true)
+      .setLimit(limit)
+      .fetch()) {
+      while (iterator.hasNext()) {
+        blackhole.consume(iterator.next());
+      }
+    }
+  }
+}
@@ -471,6 +471,8 @@ public final class Constants {
     public static final String DATA_STORAGE_SQL_PASSWORD = "data.storage.sql.jdbc.password";
     public static final String DATA_STORAGE_SQL_PROPERTY_PREFIX = "data.storage.sql.jdbc.property.";
     public static final String DATA_STORAGE_SQL_CONNECTION_SIZE = "data.storage.sql.jdbc.connection.pool.size";
+    public static final String DATA_STORAGE_SQL_STATEMENT_CACHE_SIZE = "data.storage.sql.jdbc.statement.cache.size";
+    public static final String DATA_STORAGE_SQL_SCAN_FETCH_SIZE = "data.storage.sql.jdbc.scan.fetch.size";
 
     // used for Guice named bindings
     public static final String TABLE_TYPE = "table.type";
@@ -604,6 +606,8 @@ public final class Constants {
     public static final String SERVICE_DESCRIPTION = "Service to handle metrics requests.";
     public static final String PROCESSOR_MAX_DELAY_MS = "metrics.processor.max.delay.ms";
     public static final String QUEUE_SIZE = "metrics.processor.queue.size";
+    public static final String PROCESSOR_FLUSH_INTERVAL_MS = "metrics.processor.flush.interval.ms";
+    public static final String PROCESSOR_FLUSH_SIZE = "metrics.processor.flush.size";
 
     public static final String ENTITY_TABLE_NAME = "metrics.data.entity.tableName";
     public static final String METRICS_TABLE_PREFIX = "metrics.data.table.prefix";
@@ -936,6 +940,7 @@ public final class Constants {
     public static final String PIPELINE_CONFIG_DIR = "log.process.pipeline.config.dir";
     public static final String PIPELINE_LIBRARY_DIR = "log.process.pipeline.lib.dir";
     public static final String PIPELINE_AUTO_BUFFER_RATIO = "log.process.pipeline.auto.buffer.ratio";
+    public static final String PIPELINE_WORKERS = "log.process.pipeline.workers";
 
     // The following properties can be defined in cdap-site and overridden in individual pipeline config xml
     public static final String PIPELINE_BUFFER_SIZE = "log.process.pipeline.buffer.size";
@@ -953,6 +958,8 @@ public final class Constants {
 
     // Property key in the logger context to indicate it is performing pipeline validation
     public static final String PIPELINE_VALIDATION = "log.pipeline.validation";
+    // Property key in the logger context for the index of the pipeline worker that the context is used by
+    public static final String PIPELINE_WORKER_ID = "log.pipeline.worker.id";
 
     public static final String SYSTEM_PIPELINE_CHECKPOINT_PREFIX = "cdap";
 
@@ -1252,6 +1259,16 @@ public final class Constants {
   public static final String CFG_DATA_LEVELDB_BLOCKSIZE = "data.local.storage.blocksize";
   public static final String CFG_DATA_LEVELDB_CACHESIZE = "data.local.storage.cachesize";
   public static final String CFG_DATA_LEVELDB_FSYNC = "data.local.storage.fsync";
+  public static final String CFG_DATA_LEVELDB_WRITE_BUFFER_SIZE = "data.local.storage.write.buffer.size";
+  public static final String CFG_DATA_LEVELDB_COMPRESSION = "data.local.storage.compression";
+  public static final String CFG_DATA_LEVELDB_MAX_OPEN_FILES = "data.local.storage.max.open.files";
+  /** Budget of the number of table files kept open across all LevelDB databases, 0 for no budget. **/
+  public static final String CFG_DATA_LEVELDB_MAX_OPEN_FILES_TOTAL = "data.local.storage.max.open.files.total";
+  /**
+   * Prefix for per-table overrides of the block size, write buffer size, compression and max open files, in the form
+   * of {@code data.local.storage.table.[table-name].[option]}, e.g. {@code data.local.storage.table.t1.blocksize}.
+   **/
+  public static final String CFG_DATA_LEVELDB_TABLE_PREFIX = "data.local.storage.table.";
 
   /**
    * Defaults for Data Fabric.
@@ -1260,6 +1277,10 @@ public final class Constants {
   public static final int DEFAULT_DATA_LEVELDB_BLOCKSIZE = 1024;
   public static final long DEFAULT_DATA_LEVELDB_CACHESIZE = 1024 * 1024 * 100;
   public static final boolean DEFAULT_DATA_LEVELDB_FSYNC = true;
+  public static final int DEFAULT_DATA_LEVELDB_WRITE_BUFFER_SIZE = 4 * 1024 * 1024;
+  public static final String DEFAULT_DATA_LEVELDB_COMPRESSION = "snappy";
+  public static final int DEFAULT_DATA_LEVELDB_MAX_OPEN_FILES = 1000;
+  public static final int DEFAULT_DATA_LEVELDB_MAX_OPEN_FILES_TOTAL = 0;
 
   /**
    * Used for upgrade and backwards compatability
@@ -1358,8 +1379,13 @@ public final class Constants {
 
     public static final String LOCAL_DATA_DIR = "messaging.local.data.dir";
     public static final String LOCAL_DATA_CLEANUP_FREQUENCY = "messaging.local.data.cleanup.frequency.secs";
+    public static final String LOCAL_DATA_GROUP_COMMIT_ENABLED = "messaging.local.data.group.commit.enabled";
+    public static final String LOCAL_DATA_SYNC_POLICY = "messaging.local.data.sync.policy";
+    public static final String LOCAL_DATA_SYNC_INTERVAL_MS = "messaging.local.data.sync.interval.ms";
 
     public static final String CACHE_SIZE_MB = "messaging.cache.size.mb";
+    public static final String CACHE_OFF_HEAP_ENABLED = "messaging.cache.offheap.enabled";
+    public static final String CACHE_OFF_HEAP_SEGMENTS = "messaging.cache.offheap.segments";
 
     public static final String HBASE_MAX_SCAN_THREADS = "messaging.hbase.max.scan.threads";
     public static final String HBASE_SCAN_CACHE_ROWS = "messaging.hbase.scan.cache.rows";
@@ -1379,7 +1405,16 @@ public final class Constants {
     public static final String HTTP_SERVER_EXECUTOR_THREADS = "messaging.http.server.executor.threads";
     public static final String HTTP_SERVER_MAX_REQUEST_SIZE_MB = "messaging.http.server.max.request.size.mb";
     public static final String HTTP_SERVER_CONSUME_CHUNK_SIZE = "messaging.http.server.consume.chunk.size";
+    public static final String HTTP_SERVER_CONSUME_DIRECT_ENCODING =
+      "messaging.http.server.consume.direct.encoding.enabled";
+    public static final String HTTP_SERVER_CONSUME_WRAP_PAYLOAD_SIZE =
+      "messaging.http.server.consume.wrap.payload.size";
+    public static final String HTTP_SERVER_CONSUME_MAX_WAIT_MS = "messaging.http.server.consume.max.wait.ms";
+    public static final String HTTP_SERVER_CONSUME_WAIT_THREADS = "messaging.http.server.consume.wait.threads";
     public static final String HTTP_COMPRESS_PAYLOAD = "messaging.http.compress.payload";
+    public static final String HTTP_CLIENT_PUBLISH_MAX_INFLIGHT = "messaging.http.client.publish.max.inflight";
+    public static final String HTTP_CLIENT_PUBLISH_MAX_BATCH_SIZE = "messaging.http.client.publish.max.batch.size";
+    public static final String HTTP_CLIENT_PUBLISH_MAX_PENDING = "messaging.http.client.publish.max.pending";
 
     // Distributed mode related configurations
     public static final String HA_FENCING_DELAY_SECONDS = "messaging.ha.fencing.delay.seconds";
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.common.utils;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Allocates the max open files of LevelDB databases from the budget set by
+ * {@link Constants#CFG_DATA_LEVELDB_MAX_OPEN_FILES_TOTAL}. A single instance is shared by all LevelDB databases
+ * in the process, so that the budget bounds the open table files across all of them.
+ *
+ * Allocation is first come, first served. Each database gets what it asks for, capped by what is left of the
+ * budget. Since LevelDB needs a minimum number of open files to work, a database opened after the budget is used up
+ * still gets {@link #MIN_OPEN_FILES}, which exceeds the budget, and a warning is logged.
+ */
+@Singleton
+public final class LevelDBOpenFilesBudget {
+
+  /**
+   * The minimum max open files of a LevelDB database. LevelDB reserves 10 of the max open files for files
+   * other than the table files.
+   */
+  public static final int MIN_OPEN_FILES = 20;
+
+  private static final Logger LOG = LoggerFactory.getLogger(LevelDBOpenFilesBudget.class);
+
+  private final int total;
+  // Number of open files allocated to each open database, keyed by the database path
+  private final Map<String, Integer> allocations = new HashMap<>();
+  private int allocated;
+
+  @Inject
+  public LevelDBOpenFilesBudget(CConfiguration cConf) {
+    this(cConf.getInt(Constants.CFG_DATA_LEVELDB_MAX_OPEN_FILES_TOTAL,
+                      Constants.DEFAULT_DATA_LEVELDB_MAX_OPEN_FILES_TOTAL));
+  }
+
+  public LevelDBOpenFilesBudget(int total) {
+    if (total > 0 && total < MIN_OPEN_FILES) {
+      LOG.warn("The value of {} is {}, which is smaller than the minimum max open files {} of a single LevelDB " +
+                 "database. Every database will exceed the budget.",
+               Constants.CFG_DATA_LEVELDB_MAX_OPEN_FILES_TOTAL, total, MIN_OPEN_FILES);
+    }
+    this.total = total;
+  }
+
+  /**
+   * Allocates the max open files for the given database, replacing its previous allocation if there is one.
+   *
+   * @param dbPath the path of the database
+   * @param requested the max open files configured for the database
+   * @return the max open files that the database should be opened with
+   */
+  public synchronized int allocate(String dbPath, int requested) {
+    release(dbPath);
+
+    int maxOpenFiles = requested;
+    if (total > 0) {
+      int remaining = total - allocated;
+      if (remaining < MIN_OPEN_FILES) {
+        LOG.warn("Only {} of the {} max open files set by {} are left for LevelDB database {}. " +
+                   "Opening it with the minimum of {} max open files, which exceeds the budget.",
+                 Math.max(remaining, 0), total, Constants.CFG_DATA_LEVELDB_MAX_OPEN_FILES_TOTAL, dbPath,
+                 MIN_OPEN_FILES);
+      }
+      maxOpenFiles = Math.min(maxOpenFiles, remaining);
+    }
+    maxOpenFiles = Math.max(MIN_OPEN_FILES, maxOpenFiles);
+    allocations.put(dbPath, maxOpenFiles);
+    allocated += maxOpenFiles;
+    return maxOpenFiles;
+  }
+
+  /**
+   * Returns the allocation of the given database to the budget. It should be called when the database is closed.
+   */
+  public synchronized void release(String dbPath) {
+    Integer files = allocations.remove(dbPath);
+    if (files != null) {
+      allocated -= files;
+    }
+  }
+
+  /**
+   * Returns the max open files allocated to the given database, or {@code null} if it has no allocation.
+   */
+  @Nullable
+  public synchronized Integer getAllocation(String dbPath) {
+    return allocations.get(dbPath);
+  }
+
+  /**
+   * Returns the total max open files allocated to all databases.
+   */
+  public synchronized int getAllocated() {
+    return allocated;
+  }
+}
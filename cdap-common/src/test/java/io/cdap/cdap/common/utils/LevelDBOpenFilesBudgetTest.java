@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.common.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link LevelDBOpenFilesBudget}.
+ */
+public class LevelDBOpenFilesBudgetTest {
+
+  @Test
+  public void testAllocate() {
+    LevelDBOpenFilesBudget budget = new LevelDBOpenFilesBudget(100);
+
+    // Allocations are capped by what is left of the total
+    Assert.assertEquals(60, budget.allocate("db1", 60));
+    Assert.assertEquals(40, budget.allocate("db2", 60));
+    Assert.assertEquals(100, budget.getAllocated());
+
+    // Once the budget is used up, the minimum is still allocated
+    Assert.assertEquals(LevelDBOpenFilesBudget.MIN_OPEN_FILES, budget.allocate("db3", 60));
+    Assert.assertEquals(100 + LevelDBOpenFilesBudget.MIN_OPEN_FILES, budget.getAllocated());
+
+    // Allocating again for the same database replaces the previous allocation
+    Assert.assertEquals(LevelDBOpenFilesBudget.MIN_OPEN_FILES, budget.allocate("db2", 60));
+    Assert.assertEquals(100, budget.getAllocated());
+
+    // Releasing returns the allocation to the budget
+    budget.release("db1");
+    Assert.assertNull(budget.getAllocation("db1"));
+    Assert.assertEquals(40, budget.getAllocated());
+    Assert.assertEquals(60, budget.allocate("db1", 80));
+  }
+
+  @Test
+  public void testNoLimit() {
+    LevelDBOpenFilesBudget budget = new LevelDBOpenFilesBudget(0);
+    Assert.assertEquals(1000, budget.allocate("db1", 1000));
+    Assert.assertEquals(1000, budget.allocate("db2", 1000));
+    Assert.assertEquals(LevelDBOpenFilesBudget.MIN_OPEN_FILES, budget.allocate("db3", 5));
+    Assert.assertEquals(Integer.valueOf(1000), budget.getAllocation("db2"));
+  }
+}
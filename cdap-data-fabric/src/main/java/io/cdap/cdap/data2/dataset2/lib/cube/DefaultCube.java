@@ -18,15 +18,11 @@ package io.cdap.cdap.data2.dataset2.lib.cube;
 
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
 import com.google.common.util.concurrent.Uninterruptibles;
-import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
 import io.cdap.cdap.api.dataset.lib.cube.AggregationOption;
 import io.cdap.cdap.api.dataset.lib.cube.Cube;
 import io.cdap.cdap.api.dataset.lib.cube.CubeDeleteQuery;
@@ -51,10 +47,10 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -255,7 +251,7 @@ public class DefaultCube implements Cube, MeteredDataset {
     // 3) execute scan query
     FactTable table = resolutionToFactTable.get(query.getResolution());
     FactScanner scanner = table.scan(scan);
-    Table<Map<String, String>, String, Map<Long, Long>> resultMap = getTimeSeries(query, scanner);
+    Table<Map<String, String>, String, TimeSeriesBuffer> resultMap = getTimeSeries(query, scanner);
 
     incrementMetric("cube.query.request.success.count", 1);
     incrementMetric("cube.query.result.size", resultMap.size());
@@ -374,9 +370,9 @@ public class DefaultCube implements Cube, MeteredDataset {
     return currentBest;
   }
 
-  private Table<Map<String, String>, String, Map<Long, Long>> getTimeSeries(CubeQuery query, FactScanner scanner) {
+  private Table<Map<String, String>, String, TimeSeriesBuffer> getTimeSeries(CubeQuery query, FactScanner scanner) {
     // {dimension values, measure} -> {time -> value}s
-    Table<Map<String, String>, String, Map<Long, Long>> result = HashBasedTable.create();
+    Table<Map<String, String>, String, TimeSeriesBuffer> result = HashBasedTable.create();
 
     int count = 0;
     while (scanner.hasNext()) {
@@ -411,32 +407,13 @@ public class DefaultCube implements Cube, MeteredDataset {
         continue;
       }
 
+      TimeSeriesBuffer timeValues = result.get(seriesDimensions, next.getMeasureName());
+      if (timeValues == null) {
+        timeValues = new TimeSeriesBuffer(query.getMeasurements().get(next.getMeasureName()));
+        result.put(seriesDimensions, next.getMeasureName(), timeValues);
+      }
       for (TimeValue timeValue : next) {
-        Map<Long, Long> timeValues = result.get(seriesDimensions, next.getMeasureName());
-        if (timeValues == null) {
-          result.put(seriesDimensions, next.getMeasureName(), Maps.<Long, Long>newHashMap());
-        }
-
-        AggregationFunction function = query.getMeasurements().get(next.getMeasureName());
-        if (AggregationFunction.SUM == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value == null ? 0 : value;
-          value += timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MAX == function) {
-          Long value = result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value > timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MIN == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value < timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.LATEST == function) {
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), timeValue.getValue());
-        } else {
-          // should never happen: developer error
-          throw new RuntimeException("Unknown MeasureType: " + function);
-        }
+        timeValues.add(timeValue.getTimestamp(), timeValue.getValue());
       }
       if (++count >= MAX_RECORDS_TO_SCAN) {
         break;
@@ -446,19 +423,15 @@ public class DefaultCube implements Cube, MeteredDataset {
   }
 
   private Collection<TimeSeries> convertToQueryResult(
-    CubeQuery query, Table<Map<String, String>, String, Map<Long, Long>> resultTable) {
+    CubeQuery query, Table<Map<String, String>, String, TimeSeriesBuffer> resultTable) {
     List<TimeSeries> result = new ArrayList<>();
     // iterating each groupValue dimensions
-    for (Map.Entry<Map<String, String>, Map<String, Map<Long, Long>>> row : resultTable.rowMap().entrySet()) {
+    for (Map.Entry<Map<String, String>, Map<String, TimeSeriesBuffer>> row : resultTable.rowMap().entrySet()) {
       // iterating each measure
-      for (Map.Entry<String, Map<Long, Long>> measureEntry : row.getValue().entrySet()) {
+      for (Map.Entry<String, TimeSeriesBuffer> measureEntry : row.getValue().entrySet()) {
         // generating time series for a grouping and a measure
-        int count = 0;
-        List<TimeValue> timeValues = new ArrayList<>();
-        for (Map.Entry<Long, Long> timeValue : measureEntry.getValue().entrySet()) {
-          timeValues.add(new TimeValue(timeValue.getKey(), timeValue.getValue()));
-        }
-        Collections.sort(timeValues);
+        TimeSeriesBuffer timeValues = measureEntry.getValue();
+        timeValues.sort();
         List<TimeValue> resultTimeValues = new ArrayList<>();
 
         AggregationOption aggregationOption = query.getAggregationOption();
@@ -468,33 +441,33 @@ public class DefaultCube implements Cube, MeteredDataset {
         }
         // only partition the data points if the data points are larger than the required limit and only do it for
         // option LATEST and SUM.
-        if (query.getLimit() < timeValues.size() && PARTITION_AGG_OPTIONS.contains(aggregationOption)) {
-          int partitionSize = timeValues.size() / query.getLimit();
-          int remainder = timeValues.size() % query.getLimit();
+        int size = timeValues.size();
+        if (query.getLimit() < size && PARTITION_AGG_OPTIONS.contains(aggregationOption)) {
+          int partitionSize = size / query.getLimit();
+          int remainder = size % query.getLimit();
           // ignore the first reminderth data points
-          for (List<TimeValue> interval : Iterables.partition(timeValues.subList(remainder,
-                                                                                 timeValues.size()), partitionSize)) {
+          for (int start = remainder; start < size; start += partitionSize) {
+            int last = start + partitionSize - 1;
             // for LATEST we only need to get the last data point in the interval
             if (aggregationOption.equals(AggregationOption.LATEST)) {
-              resultTimeValues.add(interval.get(interval.size() - 1));
+              resultTimeValues.add(new TimeValue(timeValues.getTimestamp(last), timeValues.getValue(last)));
               continue;
             }
             // for SUM we want to sum up all the values in the interval
             if (aggregationOption.equals(AggregationOption.SUM)) {
-              long sum = interval.stream().mapToLong(TimeValue::getValue).sum();
-              resultTimeValues.add(new TimeValue(interval.get(interval.size() - 1).getTimestamp(), sum));
+              long sum = 0;
+              for (int i = start; i <= last; i++) {
+                sum += timeValues.getValue(i);
+              }
+              resultTimeValues.add(new TimeValue(timeValues.getTimestamp(last), sum));
             }
           }
         } else {
           // TODO: CDAP-15565 remove the interpolation logic since it is never maintained and adds huge complexity
-          PeekingIterator<TimeValue> timeValueItor = Iterators.peekingIterator(
-            new TimeSeriesInterpolator(timeValues, query.getInterpolator(), query.getResolution()).iterator());
-          while (timeValueItor.hasNext()) {
-            TimeValue timeValue = timeValueItor.next();
-            resultTimeValues.add(new TimeValue(timeValue.getTimestamp(), timeValue.getValue()));
-            if (++count >= query.getLimit()) {
-              break;
-            }
+          Iterator<TimeValue> timeValueItor =
+            new TimeSeriesInterpolator(timeValues, query.getInterpolator(), query.getResolution()).iterator();
+          while (timeValueItor.hasNext() && resultTimeValues.size() < query.getLimit()) {
+            resultTimeValues.add(timeValueItor.next());
           }
         }
         result.add(new TimeSeries(measureEntry.getKey(), row.getKey(), resultTimeValues));
@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.cube;
+
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+
+import java.util.Arrays;
+
+/**
+ * Data points of a single time series, stored in primitive timestamp and value columns. Data points added with
+ * the same timestamp are aggregated with the {@link AggregationFunction} of the measure. This class is not thread safe.
+ */
+final class TimeSeriesBuffer {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final AggregationFunction function;
+  private long[] timestamps;
+  private long[] values;
+  private int size;
+  private boolean sorted;
+  // open addressing index from timestamp to (position in the columns + 1), with 0 marking an empty slot
+  private int[] slots;
+
+  TimeSeriesBuffer(AggregationFunction function) {
+    if (function == null) {
+      // should never happen: developer error
+      throw new RuntimeException("Unknown MeasureType: " + function);
+    }
+    this.function = function;
+    this.timestamps = new long[INITIAL_CAPACITY];
+    this.values = new long[INITIAL_CAPACITY];
+    this.sorted = true;
+    this.slots = new int[INITIAL_CAPACITY * 2];
+  }
+
+  /**
+   * Adds a data point, aggregating it with the data point of the same timestamp if there is one.
+   */
+  void add(long timestamp, long value) {
+    int slot = findSlot(timestamp);
+    int pos = slots[slot] - 1;
+    if (pos >= 0) {
+      values[pos] = aggregate(values[pos], value);
+      return;
+    }
+
+    if (size == timestamps.length) {
+      timestamps = Arrays.copyOf(timestamps, size * 2);
+      values = Arrays.copyOf(values, size * 2);
+    }
+    sorted = sorted && (size == 0 || timestamp > timestamps[size - 1]);
+    timestamps[size] = timestamp;
+    values[size] = value;
+    slots[slot] = ++size;
+
+    // keep the index at most half full
+    if (size * 2 > slots.length) {
+      rebuildSlots(slots.length * 2);
+    }
+  }
+
+  /**
+   * Returns the number of distinct timestamps in this buffer.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Sorts the data points by timestamp, so that {@link #getTimestamp(int)} and {@link #getValue(int)} return
+   * them in time order.
+   */
+  void sort() {
+    if (sorted) {
+      return;
+    }
+    long[] sortedTimestamps = Arrays.copyOf(timestamps, size);
+    Arrays.sort(sortedTimestamps);
+    long[] sortedValues = new long[timestamps.length];
+    for (int i = 0; i < size; i++) {
+      sortedValues[i] = values[slots[findSlot(sortedTimestamps[i])] - 1];
+    }
+    timestamps = Arrays.copyOf(sortedTimestamps, timestamps.length);
+    values = sortedValues;
+    sorted = true;
+    rebuildSlots(slots.length);
+  }
+
+  long getTimestamp(int index) {
+    return timestamps[index];
+  }
+
+  long getValue(int index) {
+    return values[index];
+  }
+
+  private long aggregate(long existing, long value) {
+    switch (function) {
+      case SUM:
+        return existing + value;
+      case MAX:
+        return Math.max(existing, value);
+      case MIN:
+        return Math.min(existing, value);
+      default:
+        return value;
+    }
+  }
+
+  /**
+   * Returns the slot in the index for the given timestamp, which is either the slot holding the timestamp or
+   * the empty slot for inserting it.
+   */
+  private int findSlot(long timestamp) {
+    int mask = slots.length - 1;
+    int slot = hash(timestamp) & mask;
+    while (slots[slot] != 0 && timestamps[slots[slot] - 1] != timestamp) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void rebuildSlots(int capacity) {
+    slots = new int[capacity];
+    int mask = capacity - 1;
+    for (int i = 0; i < size; i++) {
+      int slot = hash(timestamps[i]) & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = i + 1;
+    }
+  }
+
+  private static int hash(long timestamp) {
+    long h = timestamp * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
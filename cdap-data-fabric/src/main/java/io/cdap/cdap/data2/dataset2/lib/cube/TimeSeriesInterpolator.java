@@ -17,13 +17,9 @@
 package io.cdap.cdap.data2.dataset2.lib.cube;
 
 import com.google.common.collect.AbstractIterator;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterators;
-import com.google.common.collect.PeekingIterator;
 import io.cdap.cdap.api.dataset.lib.cube.Interpolator;
 import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
 
-import java.util.Collection;
 import java.util.Iterator;
 import javax.annotation.Nullable;
 
@@ -48,13 +44,16 @@ import javax.annotation.Nullable;
  */
 class TimeSeriesInterpolator implements Iterable<TimeValue> {
 
-  private final Collection<TimeValue> timeSeries;
+  private final TimeSeriesBuffer timeSeries;
   @Nullable
   private final Interpolator interpolator;
   private final int resolution;
 
-  TimeSeriesInterpolator(Collection<TimeValue> timeValues, @Nullable Interpolator interpolator, int resolution) {
-    this.timeSeries = ImmutableList.copyOf(timeValues);
+  /**
+   * Creates an instance over the given time series, which must be sorted by timestamp.
+   */
+  TimeSeriesInterpolator(TimeSeriesBuffer timeSeries, @Nullable Interpolator interpolator, int resolution) {
+    this.timeSeries = timeSeries;
     this.interpolator = interpolator;
     this.resolution = resolution;
   }
@@ -67,12 +66,12 @@ class TimeSeriesInterpolator implements Iterable<TimeValue> {
   private class InterpolatedAggregatorIterator extends AbstractIterator<TimeValue> {
 
     private long currentTs;
-    BiDirectionalPeekingIterator timeseries;
+    // position of the next actual data point in the timeseries
+    private int next;
 
     InterpolatedAggregatorIterator() {
-      timeseries = new BiDirectionalPeekingIterator(Iterators.peekingIterator(timeSeries.iterator()));
-      if (timeseries.hasNext()) {
-        currentTs = timeseries.peek().getTimestamp();
+      if (timeSeries.size() > 0) {
+        currentTs = timeSeries.getTimestamp(0);
       }
     }
 
@@ -80,64 +79,29 @@ class TimeSeriesInterpolator implements Iterable<TimeValue> {
     protected TimeValue computeNext() {
       long currentTsValue = 0;
       // no more data points in the timeseries
-      if (!timeseries.hasNext()) {
+      if (next >= timeSeries.size()) {
         return endOfData();
       }
 
-      // move the iterator to the next point in this timeseries if this is an actual data point and not interpolated.
-      if (timeseries.peek().getTimestamp() == currentTs) {
-        currentTsValue += timeseries.peek().getValue();
-        timeseries.next();
-      } else if (interpolator != null && timeseries.peekBefore() != null) {
+      // move to the next point in this timeseries if this is an actual data point and not interpolated.
+      if (timeSeries.getTimestamp(next) == currentTs) {
+        currentTsValue += timeSeries.getValue(next);
+        next++;
+      } else if (interpolator != null && next > 0) {
         // don't interpolate unless we're in between data points
-        currentTsValue += interpolator.interpolate(timeseries.peekBefore(), timeseries.peek(), currentTs);
+        currentTsValue += interpolator.interpolate(toTimeValue(next - 1), toTimeValue(next), currentTs);
       }
 
       TimeValue output = new TimeValue(currentTs, currentTsValue);
-      if (timeseries.hasNext()) {
+      if (next < timeSeries.size()) {
         // increment the currentTs by resolution to get the next data point.
-        currentTs = (interpolator == null) ? timeseries.peek().getTimestamp() : currentTs + resolution;
+        currentTs = (interpolator == null) ? timeSeries.getTimestamp(next) : currentTs + resolution;
       }
       return output;
     }
 
-    /**
-     * Iterator that allows peeking on the next value and also retrieving the last value, which will be null
-     * if there was no last value.  Used to allow interpolating between two datapoints in a timeseries.
-     */
-    public final class BiDirectionalPeekingIterator implements PeekingIterator<TimeValue> {
-      PeekingIterator<TimeValue> iter;
-      TimeValue lastValue;
-
-      BiDirectionalPeekingIterator(PeekingIterator<TimeValue> iter) {
-        this.iter = iter;
-        this.lastValue = null;
-      }
-
-      @Override
-      public TimeValue peek() {
-        return iter.peek();
-      }
-
-      @Override
-      public boolean hasNext() {
-        return iter.hasNext();
-      }
-
-      @Override
-      public TimeValue next() {
-        lastValue = iter.next();
-        return lastValue;
-      }
-
-      @Override
-      public void remove() {
-        iter.remove();
-      }
-
-      public TimeValue peekBefore() {
-        return lastValue;
-      }
+    private TimeValue toTimeValue(int index) {
+      return new TimeValue(timeSeries.getTimestamp(index), timeSeries.getValue(index));
     }
   }
 }
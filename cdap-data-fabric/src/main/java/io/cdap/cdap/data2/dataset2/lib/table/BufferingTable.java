@@ -27,6 +27,7 @@ import io.cdap.cdap.api.annotation.WriteOnly;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.data.batch.Split;
 import io.cdap.cdap.api.dataset.DataSetException;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.dataset.metrics.MeteredDataset;
 import io.cdap.cdap.api.dataset.table.ConflictDetection;
 import io.cdap.cdap.api.dataset.table.Filter;
@@ -44,6 +45,7 @@ import org.apache.tephra.TransactionAware;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -53,6 +55,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentSkipListMap;
 import javax.annotation.Nullable;
 
@@ -69,12 +73,15 @@ import javax.annotation.Nullable;
  * <p>
  * This implementation assumes that the table has name and conflicts are resolved on row level.
  * <p>
- * NOTE: this implementation doesn't cache any data in-memory besides changes. I.e. if you do get of same data that is
- *       not in in-memory buffer twice, two times it will try to fetch it from persistent store.
- *       Given the snapshot isolation tx model, this can be improved in future implementations.
+ * NOTE: by default this implementation doesn't cache any data in-memory besides changes. I.e. if you do get of same
+ *       data that is not in in-memory buffer twice, two times it will try to fetch it from persistent store.
+ *       Given the snapshot isolation tx model, reads from persistent store can be cached for the duration of the
+ *       transaction by setting the {@link #PROPERTY_READ_CACHE_SIZE} property. Scans are never cached.
  * <p>
- * NOTE: current implementation persists changes only at the end of transaction. Beware of OOME. There should be better
- *       implementation for MapReduce case (YMMV though, for counters/aggregations this implementation looks sweet)
+ * NOTE: current implementation persists changes only at the end of transaction. Beware of OOME. For large batch
+ *       transactions, setting the {@link #PROPERTY_SPILL_THRESHOLD} property makes the in-memory buffer spill to
+ *       local disk when it grows beyond the threshold. Spilled changes are streamed to {@link #persist(NavigableMap)}
+ *       in chunks of about the same size on commit.
  * <p>
  * NOTE: Using {@link #get(byte[], byte[], byte[], int)} is generally always not efficient since it always hits the
  *       persisted store even if all needed data is in-memory buffer. See more info at method javadoc
@@ -86,6 +93,26 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   protected static final byte[] DELETE_MARKER = new byte[0];
 
+  /**
+   * Table property for the maximum size in bytes of the per-transaction cache of rows read from persistent store.
+   * The cache is disabled if it is not set or is zero.
+   */
+  public static final String PROPERTY_READ_CACHE_SIZE = "dataset.table.tx.read.cache.size.bytes";
+
+  /**
+   * Table property for the approximate size in bytes of the in-memory buffer of changes, beyond which the changes are
+   * spilled to local disk. Spilling is disabled if it is not set or is zero.
+   */
+  public static final String PROPERTY_SPILL_THRESHOLD = "dataset.table.tx.spill.threshold.bytes";
+
+  /**
+   * Table property for the local directory to spill changes to. Defaults to the {@code java.io.tmpdir} directory.
+   */
+  public static final String PROPERTY_SPILL_DIR = "dataset.table.tx.spill.dir";
+
+  // Rough estimate of the memory overhead of each buffered column
+  private static final int BUFFERED_COLUMN_OVERHEAD = 64;
+
   // name of the table
   private final String name;
   // conflict detection level
@@ -94,6 +121,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   private final byte[] nameAsTxChangePrefix;
   // Whether read-less increments should be used when increment() is called
   private final boolean enableReadlessIncrements;
+  // Cache of rows read from persistent store in the current transaction, or null if it is disabled.
+  // Rows written in the transaction are invalidated, since reads of them are mostly served from the buffer.
+  private final TransactionReadCache readCache;
 
   // In-memory buffer that keeps not yet persisted data. It is row->(column->value) map. Value can be null which means
   // that the corresponded column was removed.
@@ -102,6 +132,18 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   // Keeps track of what was persisted so far
   private NavigableMap<byte[], NavigableMap<byte[], Update>> toUndo;
 
+  // Size of the in-memory buffer beyond which changes are spilled to disk, or 0 if spilling is disabled
+  private final long spillThreshold;
+  private final File spillDir;
+  // Approximate size of the in-memory buffer
+  private long buffSize;
+  // Changes spilled to disk in the current transaction, or null if nothing was spilled
+  private SpilledChanges spilled;
+  // Conflict detection keys of the spilled changes, which are computed as changes are spilled
+  private final NavigableSet<byte[]> spilledTxChanges;
+  // Keeps track of what was persisted from spilled changes
+  private SpilledChanges spilledToUndo;
+
   // Report data ops metrics to
   private MetricsCollector metricsCollector;
 
@@ -151,6 +193,27 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // Default uses the above scheme. Subclasses can change it by overriding the #getNameAsTxChangePrefix method
     this.nameAsTxChangePrefix = Bytes.add(new byte[]{(byte) name.length()}, Bytes.toBytes(name));
     this.buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+
+    String readCacheSize = properties.get(PROPERTY_READ_CACHE_SIZE);
+    long maxReadCacheSize;
+    try {
+      maxReadCacheSize = readCacheSize == null ? 0L : Long.parseLong(readCacheSize.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value for table property " + PROPERTY_READ_CACHE_SIZE
+                                           + ": " + readCacheSize, e);
+    }
+    this.readCache = maxReadCacheSize > 0 ? new TransactionReadCache(maxReadCacheSize) : null;
+
+    String spillThreshold = properties.get(PROPERTY_SPILL_THRESHOLD);
+    try {
+      this.spillThreshold = spillThreshold == null ? 0L : Long.parseLong(spillThreshold.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value for table property " + PROPERTY_SPILL_THRESHOLD
+                                           + ": " + spillThreshold, e);
+    }
+    String spillDir = properties.get(PROPERTY_SPILL_DIR);
+    this.spillDir = new File(spillDir == null ? System.getProperty("java.io.tmpdir") : spillDir);
+    this.spilledTxChanges = new TreeSet<>(Bytes.BYTES_COMPARATOR);
   }
 
   /**
@@ -262,6 +325,8 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // releasing resources
     buff = null;
     toUndo = null;
+    clearReadCache();
+    clearSpilled();
   }
 
   @Override
@@ -273,6 +338,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
     // starting with fresh buffer when tx starts
     buff.clear();
+    buffSize = 0L;
+    clearReadCache();
+    clearSpilled();
     toUndo = null;
     this.tx = tx;
   }
@@ -294,19 +362,30 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   @Override
   public Collection<byte[]> getTxChanges() {
+    Collection<byte[]> changes = getTxChanges(buff);
+    if (spilledTxChanges.isEmpty()) {
+      return changes;
+    }
+    NavigableSet<byte[]> allChanges = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    allChanges.addAll(spilledTxChanges);
+    allChanges.addAll(changes);
+    return allChanges;
+  }
+
+  private Collection<byte[]> getTxChanges(NavigableMap<byte[], NavigableMap<byte[], Update>> buff) {
     switch (conflictLevel) {
       case NONE:
         return Collections.emptyList();
       case ROW:
-        return getRowChanges();
+        return getRowChanges(buff);
       case COLUMN:
-        return getColumnChanges();
+        return getColumnChanges(buff);
       default:
         throw new RuntimeException("Unknown conflict detection level: " + conflictLevel);
     }
   }
 
-  private Collection<byte[]> getRowChanges() {
+  private Collection<byte[]> getRowChanges(NavigableMap<byte[], NavigableMap<byte[], Update>> buff) {
     // we resolve conflicts on row level of individual table
     List<byte[]> changes = new ArrayList<>(buff.size());
     for (byte[] changedRow : buff.keySet()) {
@@ -315,7 +394,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     return changes;
   }
 
-  private Collection<byte[]> getColumnChanges() {
+  private Collection<byte[]> getColumnChanges(NavigableMap<byte[], NavigableMap<byte[], Update>> buff) {
     // we resolve conflicts on row level of individual table
     List<byte[]> changes = new ArrayList<>(buff.size());
     for (Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange : buff.entrySet()) {
@@ -338,7 +417,13 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   @Override
   public boolean commitTx() throws Exception {
-    if (!buff.isEmpty()) {
+    if (spilled != null) {
+      // Spill the rest of the buffer, then stream all changes from disk to persistent store in chunks
+      spillBuffer();
+      spilledToUndo = spilled;
+      spilled = null;
+      streamSpilled(spilledToUndo, this::persist);
+    } else if (!buff.isEmpty()) {
       // We first assume that all data will be persisted. So that if exception happen during persist we try to
       // rollback everything we had in in-memory buffer.
       toUndo = buff;
@@ -357,6 +442,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public void postTxCommit() {
     // don't need buffer anymore: tx has been committed
     buff.clear();
+    buffSize = 0L;
+    clearReadCache();
+    clearSpilled();
     toUndo = null;
     tx = null;
   }
@@ -364,10 +452,16 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   @Override
   public boolean rollbackTx() throws Exception {
     buff.clear();
+    buffSize = 0L;
+    clearReadCache();
     if (toUndo != null) {
       undo(toUndo);
       toUndo = null;
     }
+    if (spilledToUndo != null) {
+      streamSpilled(spilledToUndo, this::undo);
+    }
+    clearSpilled();
     tx = null;
     return true;
   }
@@ -414,13 +508,17 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public Row get(byte[] row, byte[] startColumn, byte[] stopColumn, int limit) {
     ensureTransactionIsStarted();
     reportRead(1);
-    // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
 
     // NOTE: since we cannot tell the exact column set, we always have to go to persisted store.
     //       potential improvement: do not fetch columns available in in-mem buffer (we know them at this point)
     try {
-      Map<byte[], byte[]> persistedCols = getPersisted(row, startColumn, stopColumn, limit);
+      // checking if the row was deleted inside this tx
+      NavigableMap<byte[], Update> buffCols = getBuffered(row);
+      Map<byte[], byte[]> persistedCols = readCache == null ? null
+        : readCache.get(row, startColumn, stopColumn, limit);
+      if (persistedCols == null) {
+        persistedCols = getPersisted(row, startColumn, stopColumn, limit);
+      }
 
       // adding server cols, and then overriding with buffered values
       NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
@@ -448,7 +546,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     ensureTransactionIsStarted();
     try {
       // get persisted, then overwrite with whats buffered
-      List<Map<byte[], byte[]>> persistedRows = getPersisted(gets);
+      List<Map<byte[], byte[]>> persistedRows = readCache == null ? getPersisted(gets) : getPersistedCached(gets);
       // gets and rows lists are always of the same size
       Preconditions.checkArgument(gets.size() == persistedRows.size(),
         "Invalid number of rows fetched when performing multi-get. There must be one row for each get.");
@@ -467,7 +565,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
         rowColumns.putAll(persistedRow);
 
         byte[] row = get.getRow();
-        NavigableMap<byte[], Update> buffCols = buff.get(row);
+        NavigableMap<byte[], Update> buffCols = getBuffered(row);
 
         // merge what was in the buffer and what was persisted
         if (buffCols != null) {
@@ -500,6 +598,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   }
 
   private void putInternal(byte[] row, byte[][] columns, byte[][] values) {
+    invalidateReadCache(row);
     NavigableMap<byte[], Update> colVals = buff.get(row);
     boolean newRow = false;
     if (colVals == null) {
@@ -518,6 +617,8 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       // NOTE: we copy passed row's byte arrays to protect buffer against possible changes of this array on client
       buff.put(copy(row), colVals);
     }
+    buffSize += getSize(row) + getSize(columns) + getSize(values) + BUFFERED_COLUMN_OVERHEAD * columns.length;
+    spillIfNeeded();
   }
 
   /**
@@ -620,6 +721,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public void increment(byte[] row, byte[][] columns, long[] amounts) {
     ensureTransactionIsStarted();
     if (enableReadlessIncrements) {
+      invalidateReadCache(row);
       NavigableMap<byte[], Update> colVals = buff.get(row);
       if (colVals == null) {
         colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
@@ -628,6 +730,8 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       for (int i = 0; i < columns.length; i++) {
         colVals.put(columns[i], Updates.mergeUpdates(colVals.get(columns[i]), new IncrementValue(amounts[i])));
       }
+      buffSize += getSize(row) + getSize(columns) + getSize(amounts) + BUFFERED_COLUMN_OVERHEAD * columns.length;
+      spillIfNeeded();
       reportWrite(1, getSize(row) + getSize(columns) + getSize(amounts));
     } else {
       internalIncrementAndGet(row, columns, amounts);
@@ -695,8 +799,8 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   @Override
   public Scanner scan(Scan scan) {
     ensureTransactionIsStarted();
-    NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap = scanBuffer(scan);
     try {
+      NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap = scanBuffer(scan);
       return new BufferingScanner(bufferMap, scanPersisted(scan));
     } catch (Exception e) {
       LOG.debug("scan failed for table: " + getTransactionAwareName() +
@@ -705,10 +809,35 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
   }
 
-  private NavigableMap<byte[], NavigableMap<byte[], Update>> scanBuffer(Scan scan) {
+  private NavigableMap<byte[], NavigableMap<byte[], Update>> scanBuffer(Scan scan) throws IOException {
     NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap;
     byte[] startRow = scan.getStartRow();
     byte[] stopRow = scan.getStopRow();
+    if (spillThreshold > 0) {
+      // Take a copy, since the buffer can be spilled while scanning.
+      // NOTE: the spilled changes in the range are loaded into memory for the scan
+      bufferMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      if (spilled != null) {
+        try (CloseableIterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> iterator =
+               spilled.iterator(startRow, stopRow)) {
+          while (iterator.hasNext()) {
+            Map.Entry<byte[], NavigableMap<byte[], Update>> entry = iterator.next();
+            bufferMap.put(entry.getKey(), entry.getValue());
+          }
+        }
+      }
+      for (Map.Entry<byte[], NavigableMap<byte[], Update>> entry : scanBuffer(startRow, stopRow).entrySet()) {
+        bufferMap.put(entry.getKey(), mergeBuffered(bufferMap.get(entry.getKey()), entry.getValue()));
+      }
+    } else {
+      bufferMap = scanBuffer(startRow, stopRow);
+    }
+    return applyFilter(bufferMap, scan.getFilter());
+  }
+
+  private NavigableMap<byte[], NavigableMap<byte[], Update>> scanBuffer(@Nullable byte[] startRow,
+                                                                        @Nullable byte[] stopRow) {
+    NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap;
     if (startRow == null && stopRow == null) {
       bufferMap = buff;
     } else if (startRow == null) {
@@ -718,7 +847,6 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     } else {
       bufferMap = buff.subMap(startRow, true, stopRow, false);
     }
-    bufferMap = applyFilter(bufferMap, scan.getFilter());
     return bufferMap;
   }
 
@@ -746,14 +874,13 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   private Map<byte[], byte[]> getRowMap(byte[] row) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
+    NavigableMap<byte[], Update> buffCols = getBuffered(row);
     boolean rowDeleted = buffCols == null && buff.containsKey(row);
     if (rowDeleted) {
       return Collections.emptyMap();
     }
 
-    Map<byte[], byte[]> persisted = getPersisted(row, null);
-
+    Map<byte[], byte[]> persisted = getPersistedCached(row, null);
 
     result.putAll(persisted);
     if (buffCols != null) {
@@ -767,11 +894,11 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   private Map<byte[], byte[]> getRowMap(byte[] row, byte[][] columns) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
+    NavigableMap<byte[], Update> buffCols = getBuffered(row);
 
     // if nothing locally, return all from server
     if (buffCols == null) {
-      return getPersisted(row, columns);
+      return getPersistedCached(row, columns);
     }
 
     // otherwise try to fetch data from in-memory buffer. If not all present - fetch leftover from persisted
@@ -793,7 +920,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // fetching from server those that were not found in in-mem buffer
     if (colsToFetchFromPersisted.size() > 0) {
       Map<byte[], byte[]> persistedCols =
-        getPersisted(row, colsToFetchFromPersisted.toArray(new byte[colsToFetchFromPersisted.size()][]));
+        getPersistedCached(row, colsToFetchFromPersisted.toArray(new byte[colsToFetchFromPersisted.size()][]));
       if (persistedCols != null) {
         result.putAll(persistedCols);
       }
@@ -805,6 +932,169 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     return unwrapDeletes(result);
   }
 
+  /**
+   * Returns the buffered changes of the given row, including the spilled ones, or {@code null} if there is none.
+   */
+  @Nullable
+  private NavigableMap<byte[], Update> getBuffered(byte[] row) throws IOException {
+    NavigableMap<byte[], Update> buffCols = buff.get(row);
+    if (spilled == null) {
+      return buffCols;
+    }
+    NavigableMap<byte[], Update> spilledCols = spilled.get(row);
+    return spilledCols == null ? buffCols : mergeBuffered(spilledCols, buffCols);
+  }
+
+  /**
+   * Merges newer buffered changes of a row on top of older ones. The older map is modified in place if not null.
+   */
+  @Nullable
+  private static NavigableMap<byte[], Update> mergeBuffered(@Nullable NavigableMap<byte[], Update> older,
+                                                            @Nullable NavigableMap<byte[], Update> newer) {
+    if (older == null || newer == null) {
+      return older == null ? newer : older;
+    }
+    for (Map.Entry<byte[], Update> entry : newer.entrySet()) {
+      older.put(entry.getKey(), Updates.mergeUpdates(older.get(entry.getKey()), entry.getValue()));
+    }
+    return older;
+  }
+
+  /**
+   * Spills the in-memory buffer to disk if it grows beyond the spill threshold.
+   */
+  private void spillIfNeeded() {
+    if (spillThreshold <= 0 || buffSize < spillThreshold) {
+      return;
+    }
+    try {
+      spillBuffer();
+    } catch (IOException e) {
+      LOG.debug("spill failed for table: " + getTransactionAwareName(), e);
+      throw new DataSetException("spill failed", e);
+    }
+  }
+
+  /**
+   * Spills the in-memory buffer to disk and computes the conflict detection keys of the spilled changes.
+   */
+  private void spillBuffer() throws IOException {
+    if (buff.isEmpty()) {
+      return;
+    }
+    if (spilled == null) {
+      spilled = SpilledChanges.create(spillDir);
+    }
+    spilled.spill(buff);
+    spilledTxChanges.addAll(getTxChanges(buff));
+    buff.clear();
+    buffSize = 0L;
+  }
+
+  /**
+   * Streams the spilled changes in row order to the given consumer, in chunks of about the spill threshold in size.
+   */
+  private void streamSpilled(SpilledChanges changes, ChangesConsumer consumer) throws Exception {
+    try (CloseableIterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> iterator = changes.iterator(null, null)) {
+      NavigableMap<byte[], NavigableMap<byte[], Update>> chunk = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      long chunkSize = 0L;
+      while (iterator.hasNext()) {
+        Map.Entry<byte[], NavigableMap<byte[], Update>> entry = iterator.next();
+        chunk.put(entry.getKey(), entry.getValue());
+        chunkSize += getSize(entry.getKey()) + getSize(entry.getValue());
+        if (chunkSize >= spillThreshold) {
+          consumer.accept(chunk);
+          chunk = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+          chunkSize = 0L;
+        }
+      }
+      if (!chunk.isEmpty()) {
+        consumer.accept(chunk);
+      }
+    }
+  }
+
+  private void clearSpilled() {
+    if (spilled != null) {
+      spilled.close();
+      spilled = null;
+    }
+    if (spilledToUndo != null) {
+      spilledToUndo.close();
+      spilledToUndo = null;
+    }
+    spilledTxChanges.clear();
+  }
+
+  /**
+   * Fetches column->value pairs for set of columns from the read cache, or from persistent store if they are not
+   * all cached.
+   */
+  private NavigableMap<byte[], byte[]> getPersistedCached(byte[] row, @Nullable byte[][] columns) throws Exception {
+    if (readCache == null) {
+      return getPersisted(row, columns);
+    }
+    NavigableMap<byte[], byte[]> result = readCache.get(row, columns);
+    if (result == null) {
+      result = getPersisted(row, columns);
+      readCache.put(row, columns, result);
+    }
+    return result;
+  }
+
+  /**
+   * Fetches a list of rows from the read cache, with the rows that are not cached fetched from persistent store
+   * in one {@link #getPersisted(List)} call.
+   */
+  private List<Map<byte[], byte[]>> getPersistedCached(List<Get> gets) throws Exception {
+    List<Map<byte[], byte[]>> results = new ArrayList<>(Collections.nCopies(gets.size(), null));
+    List<Get> missedGets = new ArrayList<>();
+    List<Integer> missedIndices = new ArrayList<>();
+
+    for (int i = 0; i < gets.size(); i++) {
+      Get get = gets.get(i);
+      Map<byte[], byte[]> cached = readCache.get(get.getRow(), toColumnArray(get));
+      if (cached == null) {
+        missedGets.add(get);
+        missedIndices.add(i);
+      } else {
+        results.set(i, cached);
+      }
+    }
+    if (missedGets.isEmpty()) {
+      return results;
+    }
+
+    List<Map<byte[], byte[]>> persistedRows = getPersisted(missedGets);
+    Preconditions.checkArgument(missedGets.size() == persistedRows.size(),
+      "Invalid number of rows fetched when performing multi-get. There must be one row for each get.");
+    for (int i = 0; i < missedGets.size(); i++) {
+      Get get = missedGets.get(i);
+      Map<byte[], byte[]> persistedRow = persistedRows.get(i);
+      readCache.put(get.getRow(), toColumnArray(get), persistedRow);
+      results.set(missedIndices.get(i), persistedRow);
+    }
+    return results;
+  }
+
+  @Nullable
+  private static byte[][] toColumnArray(Get get) {
+    List<byte[]> columns = get.getColumns();
+    return columns == null ? null : columns.toArray(new byte[columns.size()][]);
+  }
+
+  private void invalidateReadCache(byte[] row) {
+    if (readCache != null) {
+      readCache.invalidate(row);
+    }
+  }
+
+  private void clearReadCache() {
+    if (readCache != null) {
+      readCache.clear();
+    }
+  }
+
   /**
    * Applies the buffered updates on top of the map of persisted values.  The persisted map is modified in place
    * with the updated values.
@@ -937,7 +1227,17 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
   }
 
-  private int getSize(long[] values) {
+  private static int getSize(NavigableMap<byte[], Update> columns) {
+    int size = 0;
+    for (Map.Entry<byte[], Update> entry : columns.entrySet()) {
+      Update update = entry.getValue();
+      size += getSize(entry.getKey()) + (update instanceof IncrementValue ? Bytes.SIZEOF_LONG
+        : getSize(update.getBytes())) + BUFFERED_COLUMN_OVERHEAD;
+    }
+    return size;
+  }
+
+  private static int getSize(long[] values) {
     return Bytes.SIZEOF_LONG * values.length;
   }
 
@@ -988,6 +1288,13 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     return buffer.get(key);
   }
 
+  /**
+   * Consumer of a chunk of changes, which is either {@link #persist(NavigableMap)} or {@link #undo(NavigableMap)}.
+   */
+  private interface ChangesConsumer {
+    void accept(NavigableMap<byte[], NavigableMap<byte[], Update>> changes) throws Exception;
+  }
+
   /**
    * Scanner implementation that overlays buffered data on top of already persisted data.
    */
@@ -0,0 +1,246 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.common.utils.DirUtils;
+import org.iq80.leveldb.CompressionType;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBException;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.Options;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
+
+/**
+ * Changes of a {@link BufferingTable} that are spilled from the in-memory buffer to local disk. Each spill writes
+ * a sorted run of rows. Rows that were already spilled are merged with the new changes using
+ * {@link Updates#mergeUpdates(Update, Update)}, hence the spilled changes can be read back in row order
+ * as if they were never spilled.
+ * <p>
+ * The changes are stored in a private LevelDB instance in a temporary directory, which is deleted on {@link #close()}.
+ */
+final class SpilledChanges implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SpilledChanges.class);
+
+  // The changes are discarded if the process dies, hence there is no need to sync
+  private static final WriteOptions WRITE_OPTIONS = new WriteOptions().sync(false);
+
+  private static final byte PUT_TYPE = 0;
+  private static final byte PUT_NULL_TYPE = 1;
+  private static final byte INCREMENT_TYPE = 2;
+
+  private final File dir;
+  private final DB db;
+
+  /**
+   * Creates a new instance that stores the changes in a new directory under the given base directory.
+   */
+  static SpilledChanges create(File baseDir) throws IOException {
+    if (!DirUtils.mkdirs(baseDir)) {
+      throw new IOException("Failed to create directory " + baseDir + " for spilling table changes");
+    }
+    File dir = DirUtils.createTempDir(baseDir);
+    Options options = new Options()
+      .createIfMissing(true)
+      .errorIfExists(true)
+      .compressionType(CompressionType.NONE);
+    try {
+      return new SpilledChanges(dir, factory.open(dir, options));
+    } catch (IOException | RuntimeException e) {
+      DirUtils.deleteDirectoryContents(dir);
+      throw e;
+    }
+  }
+
+  private SpilledChanges(File dir, DB db) {
+    this.dir = dir;
+    this.db = db;
+  }
+
+  /**
+   * Spills the given changes, merging them on top of the changes already spilled.
+   */
+  void spill(NavigableMap<byte[], NavigableMap<byte[], Update>> changes) throws IOException {
+    try (WriteBatch batch = db.createWriteBatch()) {
+      for (Map.Entry<byte[], NavigableMap<byte[], Update>> entry : changes.entrySet()) {
+        byte[] row = entry.getKey();
+        NavigableMap<byte[], Update> columns = entry.getValue();
+        NavigableMap<byte[], Update> spilled = get(row);
+        if (spilled != null) {
+          for (Map.Entry<byte[], Update> column : columns.entrySet()) {
+            spilled.put(column.getKey(), Updates.mergeUpdates(spilled.get(column.getKey()), column.getValue()));
+          }
+          columns = spilled;
+        }
+        batch.put(row, encode(columns));
+      }
+      db.write(batch, WRITE_OPTIONS);
+    } catch (DBException e) {
+      throw new IOException("Failed to spill table changes to " + dir, e);
+    }
+  }
+
+  /**
+   * Returns the spilled changes of the given row, or {@code null} if there is none.
+   */
+  @Nullable
+  NavigableMap<byte[], Update> get(byte[] row) throws IOException {
+    try {
+      byte[] value = db.get(row);
+      return value == null ? null : decode(value);
+    } catch (DBException e) {
+      throw new IOException("Failed to read spilled table changes from " + dir, e);
+    }
+  }
+
+  /**
+   * Returns an iterator over the spilled changes in row order.
+   *
+   * @param startRow the first row, inclusive, or {@code null} to start from the first row
+   * @param stopRow the last row, exclusive, or {@code null} to iterate to the last row
+   */
+  CloseableIterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> iterator(@Nullable byte[] startRow,
+                                                                             @Nullable byte[] stopRow) {
+    DBIterator iterator = db.iterator();
+    if (startRow == null) {
+      iterator.seekToFirst();
+    } else {
+      iterator.seek(startRow);
+    }
+    return new SpilledChangesIterator(iterator, stopRow);
+  }
+
+  @Override
+  public void close() {
+    try {
+      db.close();
+    } catch (IOException e) {
+      LOG.warn("Failed to close spilled table changes at {}", dir, e);
+    }
+    try {
+      DirUtils.deleteDirectoryContents(dir);
+    } catch (IOException e) {
+      LOG.warn("Failed to delete spilled table changes at {}", dir, e);
+    }
+  }
+
+  private static byte[] encode(NavigableMap<byte[], Update> columns) {
+    ByteArrayDataOutput output = ByteStreams.newDataOutput();
+    output.writeInt(columns.size());
+    for (Map.Entry<byte[], Update> entry : columns.entrySet()) {
+      output.writeInt(entry.getKey().length);
+      output.write(entry.getKey());
+      Update update = entry.getValue();
+      if (update instanceof IncrementValue) {
+        output.writeByte(INCREMENT_TYPE);
+        output.writeLong(((IncrementValue) update).getValue());
+      } else if (update.getBytes() == null) {
+        output.writeByte(PUT_NULL_TYPE);
+      } else {
+        byte[] value = update.getBytes();
+        output.writeByte(PUT_TYPE);
+        output.writeInt(value.length);
+        output.write(value);
+      }
+    }
+    return output.toByteArray();
+  }
+
+  private static NavigableMap<byte[], Update> decode(byte[] bytes) {
+    ByteArrayDataInput input = ByteStreams.newDataInput(bytes);
+    NavigableMap<byte[], Update> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    int size = input.readInt();
+    for (int i = 0; i < size; i++) {
+      byte[] column = new byte[input.readInt()];
+      input.readFully(column);
+      byte type = input.readByte();
+      switch (type) {
+        case INCREMENT_TYPE:
+          columns.put(column, new IncrementValue(input.readLong()));
+          break;
+        case PUT_NULL_TYPE:
+          columns.put(column, new PutValue(null));
+          break;
+        case PUT_TYPE:
+          byte[] value = new byte[input.readInt()];
+          input.readFully(value);
+          columns.put(column, new PutValue(value));
+          break;
+        default:
+          throw new IllegalStateException("Unknown update type " + type);
+      }
+    }
+    return columns;
+  }
+
+  /**
+   * Iterator over a range of the spilled changes.
+   */
+  private static final class SpilledChangesIterator
+    extends AbstractIterator<Map.Entry<byte[], NavigableMap<byte[], Update>>>
+    implements CloseableIterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> {
+
+    private final DBIterator iterator;
+    private final byte[] stopRow;
+
+    private SpilledChangesIterator(DBIterator iterator, @Nullable byte[] stopRow) {
+      this.iterator = iterator;
+      this.stopRow = stopRow;
+    }
+
+    @Override
+    protected Map.Entry<byte[], NavigableMap<byte[], Update>> computeNext() {
+      if (!iterator.hasNext()) {
+        return endOfData();
+      }
+      Map.Entry<byte[], byte[]> entry = iterator.next();
+      if (stopRow != null && Bytes.compareTo(entry.getKey(), stopRow) >= 0) {
+        return endOfData();
+      }
+      return new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), decode(entry.getValue()));
+    }
+
+    @Override
+    public void close() {
+      try {
+        iterator.close();
+      } catch (IOException e) {
+        LOG.warn("Failed to close iterator over spilled table changes", e);
+      }
+    }
+  }
+}
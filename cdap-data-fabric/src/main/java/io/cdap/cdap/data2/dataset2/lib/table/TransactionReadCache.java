@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import io.cdap.cdap.api.common.Bytes;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of rows read from the persistent store by a {@link BufferingTable} within one transaction.
+ * Under snapshot isolation, the persisted values seen by a transaction never change during the transaction,
+ * hence they can be served from the cache for repeated reads. The cache must be cleared when a transaction ends.
+ * <p>
+ * A row is cached either completely, which can serve reads of any columns, or partially with the set of columns
+ * that were read, including those that don't exist in the row.
+ * <p>
+ * The cache is bounded by the total size of the cached rows, keys and values.
+ */
+final class TransactionReadCache {
+
+  // Rough estimate of the memory overhead of a cached row and of each cached column
+  private static final int ROW_OVERHEAD = 128;
+  private static final int COLUMN_OVERHEAD = 64;
+
+  private final Cache<ByteBuffer, CachedRow> cache;
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxWeight maximum total size in bytes of the cached rows
+   */
+  TransactionReadCache(long maxWeight) {
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(maxWeight)
+      .weigher(new Weigher<ByteBuffer, CachedRow>() {
+        @Override
+        public int weigh(ByteBuffer key, CachedRow value) {
+          return key.remaining() + value.weight;
+        }
+      })
+      .build();
+  }
+
+  /**
+   * Returns the cached columns of the given row.
+   *
+   * @param row the row to read
+   * @param columns the columns to read, or {@code null} to read the whole row
+   * @return a copy of the cached column to value map, or {@code null} if not all of the columns are cached
+   */
+  @Nullable
+  NavigableMap<byte[], byte[]> get(byte[] row, @Nullable byte[][] columns) {
+    CachedRow cachedRow = cache.getIfPresent(ByteBuffer.wrap(row));
+    if (cachedRow == null) {
+      return null;
+    }
+    if (columns == null) {
+      return cachedRow.isComplete() ? copy(cachedRow.values) : null;
+    }
+
+    NavigableMap<byte[], byte[]> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (byte[] column : columns) {
+      if (!cachedRow.contains(column)) {
+        return null;
+      }
+      byte[] value = cachedRow.values.get(column);
+      if (value != null) {
+        result.put(copy(column), copy(value));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a range of columns of the given row if the row is completely cached.
+   *
+   * @return a copy of the cached column to value map in the range, or {@code null} if the row is not completely cached
+   */
+  @Nullable
+  NavigableMap<byte[], byte[]> get(byte[] row, @Nullable byte[] startColumn, @Nullable byte[] stopColumn, int limit) {
+    CachedRow cachedRow = cache.getIfPresent(ByteBuffer.wrap(row));
+    if (cachedRow == null || !cachedRow.isComplete()) {
+      return null;
+    }
+    return copy(BufferingTable.getRange(cachedRow.values, startColumn, stopColumn, limit));
+  }
+
+  /**
+   * Caches the columns of a row as read from the persistent store. Partial reads of the same row are merged.
+   *
+   * @param row the row being read
+   * @param columns the columns being read, or {@code null} if the whole row was read
+   * @param values the column to value map as read from the persistent store
+   */
+  void put(byte[] row, @Nullable byte[][] columns, Map<byte[], byte[]> values) {
+    ByteBuffer key = ByteBuffer.wrap(row);
+    CachedRow existing = cache.getIfPresent(key);
+    if (existing != null && existing.isComplete()) {
+      return;
+    }
+
+    NavigableMap<byte[], byte[]> cachedValues = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    NavigableSet<byte[]> cachedColumns = null;
+    if (columns != null) {
+      cachedColumns = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+      for (byte[] column : columns) {
+        cachedColumns.add(copy(column));
+      }
+      if (existing != null) {
+        cachedColumns.addAll(existing.columns);
+        cachedValues.putAll(existing.values);
+      }
+    }
+    for (Map.Entry<byte[], byte[]> entry : values.entrySet()) {
+      cachedValues.put(copy(entry.getKey()), copy(entry.getValue()));
+    }
+    cache.put(ByteBuffer.wrap(copy(row)), new CachedRow(cachedValues, cachedColumns));
+  }
+
+  /**
+   * Removes the given row from the cache.
+   */
+  void invalidate(byte[] row) {
+    cache.invalidate(ByteBuffer.wrap(row));
+  }
+
+  /**
+   * Removes all rows from the cache.
+   */
+  void clear() {
+    cache.invalidateAll();
+  }
+
+  private static NavigableMap<byte[], byte[]> copy(NavigableMap<byte[], byte[]> values) {
+    NavigableMap<byte[], byte[]> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], byte[]> entry : values.entrySet()) {
+      result.put(copy(entry.getKey()), copy(entry.getValue()));
+    }
+    return result;
+  }
+
+  private static byte[] copy(byte[] bytes) {
+    return Arrays.copyOf(bytes, bytes.length);
+  }
+
+  /**
+   * A row in the cache.
+   */
+  private static final class CachedRow {
+    private final NavigableMap<byte[], byte[]> values;
+    // The columns that were read, or null if the whole row was read
+    private final NavigableSet<byte[]> columns;
+    private final int weight;
+
+    private CachedRow(NavigableMap<byte[], byte[]> values, @Nullable NavigableSet<byte[]> columns) {
+      this.values = values;
+      this.columns = columns;
+
+      long weight = ROW_OVERHEAD;
+      for (Map.Entry<byte[], byte[]> entry : values.entrySet()) {
+        weight += COLUMN_OVERHEAD + entry.getKey().length + entry.getValue().length;
+      }
+      if (columns != null) {
+        for (byte[] column : columns) {
+          weight += COLUMN_OVERHEAD + column.length;
+        }
+      }
+      this.weight = (int) Math.min(Integer.MAX_VALUE, weight);
+    }
+
+    boolean isComplete() {
+      return columns == null;
+    }
+
+    boolean contains(byte[] column) {
+      return columns == null || columns.contains(column);
+    }
+  }
+}
@@ -18,6 +18,7 @@ package io.cdap.cdap.data2.dataset2.lib.table.leveldb;
 
 import com.google.common.base.Throwables;
 import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.table.Get;
 import io.cdap.cdap.api.dataset.table.Result;
 import io.cdap.cdap.api.dataset.table.Row;
 import io.cdap.cdap.api.dataset.table.Scanner;
@@ -34,13 +35,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
 import javax.annotation.Nullable;
 
 /**
@@ -85,7 +89,16 @@ public class LevelDBTableCore {
   }
 
 
-  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
+  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
+    List<Lock> locks = lockRows(Collections.singleton(row));
+    try {
+      return swapLocked(row, column, oldValue, newValue);
+    } finally {
+      unlock(locks);
+    }
+  }
+
+  private boolean swapLocked(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
     byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
     // verify
     if (oldValue == null && existing != null) {
@@ -104,47 +117,67 @@ public class LevelDBTableCore {
     return true;
   }
 
-  public synchronized Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
+  public Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
     Map<byte[], Long> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
-
-    DB db = getDB();
-    WriteBatch writeBatch = db.createWriteBatch();
-    try (Snapshot snapshot = db.getSnapshot()) {
-      ReadOptions readOptions = new ReadOptions().snapshot(snapshot);
-
-      for (Map.Entry<byte[], Long> entry : increments.entrySet()) {
-        byte[] rowKey = createPutKey(row, entry.getKey(), Long.MAX_VALUE);
-        byte[] existingValue = db.get(rowKey, readOptions);
-        long newValue = incrementValue(entry.getValue(), existingValue, row, entry.getKey());
-        result.put(entry.getKey(), newValue);
-        writeBatch.put(rowKey, Bytes.toBytes(newValue));
-      }
-      db.write(writeBatch, service.getWriteOptions());
-    }
-
+    increment(Collections.singletonMap(row, increments), result);
     return result;
   }
 
+  public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+    increment(updates, null);
+  }
 
-  public synchronized void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+  /**
+   * Increments the given rows while holding the locks of all of them. All existing values are read from one
+   * snapshot and all new values are written in one {@link WriteBatch}.
+   *
+   * @param updates map from row to column to the amount to increment
+   * @param result if not null, the new values are added to it. It is only used for single row increment.
+   */
+  private void increment(Map<byte[], ? extends Map<byte[], Long>> updates,
+                         @Nullable Map<byte[], Long> result) throws IOException {
     if (updates.isEmpty()) {
       return;
     }
 
     DB db = getDB();
-    WriteBatch writeBatch = db.createWriteBatch();
-    try (Snapshot snapshot = db.getSnapshot()) {
+    List<Lock> locks = lockRows(updates.keySet());
+    try (WriteBatch writeBatch = db.createWriteBatch(); Snapshot snapshot = db.getSnapshot()) {
       ReadOptions readOptions = new ReadOptions().snapshot(snapshot);
 
-      for (Map.Entry<byte[], NavigableMap<byte[], Long>> updateEntry : updates.entrySet()) {
+      for (Map.Entry<byte[], ? extends Map<byte[], Long>> updateEntry : updates.entrySet()) {
         for (Map.Entry<byte[], Long> entry : updateEntry.getValue().entrySet()) {
           byte[] rowKey = createPutKey(updateEntry.getKey(), entry.getKey(), Long.MAX_VALUE);
           byte[] existingValue = db.get(rowKey, readOptions);
           long newValue = incrementValue(entry.getValue(), existingValue, updateEntry.getKey(), entry.getKey());
+          if (result != null) {
+            result.put(entry.getKey(), newValue);
+          }
           writeBatch.put(rowKey, Bytes.toBytes(newValue));
         }
       }
       db.write(writeBatch, service.getWriteOptions());
+    } finally {
+      unlock(locks);
+    }
+  }
+
+  /**
+   * Acquires the locks of the given rows. The locks are shared by all {@link LevelDBTableCore} of the same table,
+   * so that read-modify-write operations on the same row are serialized, while operations on different rows
+   * can run concurrently.
+   */
+  private List<Lock> lockRows(Collection<byte[]> rows) {
+    List<Lock> locks = service.getRowLocks(tableName, rows);
+    for (Lock lock : locks) {
+      lock.lock();
+    }
+    return locks;
+  }
+
+  private void unlock(List<Lock> locks) {
+    for (int i = locks.size() - 1; i >= 0; i--) {
+      locks.get(i).unlock();
     }
   }
 
@@ -215,10 +248,48 @@ public class LevelDBTableCore {
   public NavigableMap<byte[], byte[]> getRow(byte[] row, @Nullable byte[][] columns,
                                              @Nullable byte[] startCol, @Nullable byte[] stopCol,
                                              int limit, @Nullable Transaction tx) throws IOException {
-    if (columns != null) {
-      if (columns.length == 0) {
-        return Collections.emptyNavigableMap();
+    if (columns != null && columns.length == 0) {
+      return Collections.emptyNavigableMap();
+    }
+    try (DBIterator iterator = getDB().iterator()) {
+      return getRow(iterator, row, columns, startCol, stopCol, limit, tx);
+    }
+  }
+
+  /**
+   * Reads multiple rows with one iterator, hence all rows are read from the same snapshot of the database.
+   *
+   * @param gets the rows and columns to read
+   * @return the column maps of the rows, in the same order as the gets
+   */
+  public List<Map<byte[], byte[]>> getRows(List<Get> gets, @Nullable Transaction tx) throws IOException {
+    List<Map<byte[], byte[]>> results = new ArrayList<>(gets.size());
+    if (gets.isEmpty()) {
+      return results;
+    }
+    try (DBIterator iterator = getDB().iterator()) {
+      for (Get get : gets) {
+        List<byte[]> getColumns = get.getColumns();
+        if (getColumns != null && getColumns.isEmpty()) {
+          results.add(Collections.emptyNavigableMap());
+          continue;
+        }
+        byte[][] columns = getColumns == null ? null : getColumns.toArray(new byte[getColumns.size()][]);
+        results.add(getRow(iterator, get.getRow(), columns, null, null, -1, tx));
       }
+    }
+    return results;
+  }
+
+  /**
+   * Reads one row by seeking the given iterator to the start of the row.
+   *
+   * @param columns the columns to read, which must not be empty, or {@code null} to read the column range
+   */
+  private static NavigableMap<byte[], byte[]> getRow(DBIterator iterator, byte[] row, @Nullable byte[][] columns,
+                                                     @Nullable byte[] startCol, @Nullable byte[] stopCol,
+                                                     int limit, @Nullable Transaction tx) {
+    if (columns != null) {
       columns = Arrays.copyOf(columns, columns.length);
       Arrays.sort(columns, Bytes.BYTES_COMPARATOR);
       limit = columns.length;
@@ -226,10 +297,8 @@ public class LevelDBTableCore {
 
     byte[] startKey = createStartKey(row, columns == null ? startCol : columns[0]);
     byte[] endKey = createEndKey(row, columns == null ? stopCol : upperBound(columns[columns.length - 1]));
-    try (DBIterator iterator = getDB().iterator()) {
-      iterator.seek(startKey);
-      return getRow(iterator, endKey, tx, false, columns, limit).getSecond();
-    }
+    iterator.seek(startKey);
+    return getRow(iterator, endKey, tx, false, columns, limit).getSecond();
   }
 
   private static Scanner createEmptyScanner() {
@@ -23,11 +23,15 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.utils.LevelDBOpenFilesBudget;
 import io.cdap.cdap.data2.util.TableId;
+import org.iq80.leveldb.CompressionType;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBComparator;
 import org.iq80.leveldb.Options;
@@ -40,9 +44,14 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import javax.annotation.Nullable;
 
 import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
 
@@ -54,13 +63,22 @@ public class LevelDBTableService implements AutoCloseable {
 
   private static final Logger LOG = LoggerFactory.getLogger(LevelDBTableService.class);
 
+  // Number of lock stripes shared by all tables for read-modify-write operations on rows
+  private static final int ROW_LOCK_STRIPES = 1024;
+
+  private CConfiguration cConf;
   private int blockSize;
   private long cacheSize;
+  private int writeBufferSize;
+  private String compression;
+  private int maxOpenFiles;
+  private LevelDBOpenFilesBudget openFilesBudget;
   private String basePath;
   private WriteOptions writeOptions;
   private boolean isClosed;
 
   private final ConcurrentMap<String, DB> tables = Maps.newConcurrentMap();
+  private final Striped<Lock> rowLocks = Striped.lock(ROW_LOCK_STRIPES);
 
   /**
    * To avoid database locking issues make sure that the single LevelDBTableService instance
@@ -88,18 +106,39 @@ public class LevelDBTableService implements AutoCloseable {
 
     blockSize = config.getInt(Constants.CFG_DATA_LEVELDB_BLOCKSIZE, Constants.DEFAULT_DATA_LEVELDB_BLOCKSIZE);
     cacheSize = config.getLong(Constants.CFG_DATA_LEVELDB_CACHESIZE, Constants.DEFAULT_DATA_LEVELDB_CACHESIZE);
+    writeBufferSize = config.getInt(Constants.CFG_DATA_LEVELDB_WRITE_BUFFER_SIZE,
+                                    Constants.DEFAULT_DATA_LEVELDB_WRITE_BUFFER_SIZE);
+    compression = config.get(Constants.CFG_DATA_LEVELDB_COMPRESSION, Constants.DEFAULT_DATA_LEVELDB_COMPRESSION);
+    maxOpenFiles = config.getInt(Constants.CFG_DATA_LEVELDB_MAX_OPEN_FILES,
+                                 Constants.DEFAULT_DATA_LEVELDB_MAX_OPEN_FILES);
+    if (openFilesBudget == null) {
+      openFilesBudget = new LevelDBOpenFilesBudget(config);
+    }
+    cConf = config;
     writeOptions = new WriteOptions().sync(
       config.getBoolean(Constants.CFG_DATA_LEVELDB_FSYNC, Constants.DEFAULT_DATA_LEVELDB_FSYNC));
   }
 
+  /**
+   * For guice injecting the open files budget shared with other LevelDB databases in the same process.
+   * If it is not set, the budget is only shared among tables of this service.
+   */
+  @Inject(optional = true)
+  public void setOpenFilesBudget(LevelDBOpenFilesBudget openFilesBudget) {
+    this.openFilesBudget = openFilesBudget;
+  }
+
   /**
    * only use in unit test since the singleton may be reused for multiple tests.
    */
   public void clearTables() {
-    for (DB entries : tables.values()) {
-      Closeables.closeQuietly(entries);
+    synchronized (tables) {
+      for (Map.Entry<String, DB> entry : tables.entrySet()) {
+        Closeables.closeQuietly(entry.getValue());
+        openFilesBudget.release(getDBPath(basePath, entry.getKey()));
+      }
+      tables.clear();
     }
-    tables.clear();
   }
 
   private void ensureOpen() {
@@ -171,6 +210,20 @@ public class LevelDBTableService implements AutoCloseable {
     return writeOptions;
   }
 
+  /**
+   * Returns the locks to acquire for read-modify-write operations on the given rows of the given table.
+   * The locks are shared by all clients of the table. They are returned in a consistent order, hence acquiring them
+   * in the returned order is deadlock free. The same lock may appear more than once.
+   */
+  public List<Lock> getRowLocks(String tableName, Collection<byte[]> rows) {
+    int tableHash = tableName.hashCode();
+    List<Integer> keys = new ArrayList<>(rows.size());
+    for (byte[] row : rows) {
+      keys.add(31 * tableHash + Bytes.hashCode(row));
+    }
+    return ImmutableList.copyOf(rowLocks.bulkGet(keys));
+  }
+
   public DB getTable(String tableName) throws IOException {
     ensureOpen();
     DB db = tables.get(tableName);
@@ -202,13 +255,6 @@ public class LevelDBTableService implements AutoCloseable {
   private DB openTable(String tableName) throws IOException {
     String dbPath = getDBPath(basePath, tableName);
 
-    Options options = new Options();
-    options.createIfMissing(false);
-    options.errorIfExists(false);
-    options.comparator(new KeyValueDBComparator());
-    options.blockSize(blockSize);
-    options.cacheSize(cacheSize);
-
     // unfortunately, with the java version of leveldb, with createIfMissing set to false, factory.open will
     // see that there is no table and throw an exception, but it wont clean up after itself and will leave a
     // directory there with a lock.  So we want to avoid calling open if the path doesn't already exist and
@@ -217,28 +263,83 @@ public class LevelDBTableService implements AutoCloseable {
     if (!dbDir.exists()) {
       throw new IOException("Database " + dbPath + " does not exist and the create if missing option is disabled");
     }
-    DB db = factory.open(dbDir, options);
-    tables.put(tableName, db);
-    return db;
+    return openDB(tableName, dbDir, false);
   }
 
   private void createTable(String name) throws IOException {
     String dbPath = getDBPath(basePath, name);
+    openDB(name, new File(dbPath), true);
+  }
+
+  private DB openDB(String tableName, File dbDir, boolean createIfMissing) throws IOException {
+    DB db;
+    try {
+      db = factory.open(dbDir, createOptions(tableName).createIfMissing(createIfMissing));
+    } catch (IOException | RuntimeException e) {
+      openFilesBudget.release(getDBPath(basePath, tableName));
+      throw e;
+    }
+    tables.put(tableName, db);
+    return db;
+  }
 
+  /**
+   * Creates the {@link Options} for opening the given table. The block size, write buffer size, compression and
+   * max open files can be overridden per table with the {@link Constants#CFG_DATA_LEVELDB_TABLE_PREFIX} settings.
+   * The max open files is allocated from the {@link LevelDBOpenFilesBudget}, so that the LRU table caches of all
+   * open LevelDB databases share the budget set by {@link Constants#CFG_DATA_LEVELDB_MAX_OPEN_FILES_TOTAL}.
+   * Must be called while holding the lock on the tables map.
+   */
+  private Options createOptions(String tableName) {
     Options options = new Options();
-    options.createIfMissing(true);
     options.errorIfExists(false);
     options.comparator(new KeyValueDBComparator());
-    options.blockSize(blockSize);
+    options.blockSize(getTableInt(tableName, Constants.CFG_DATA_LEVELDB_BLOCKSIZE, blockSize));
     options.cacheSize(cacheSize);
+    options.writeBufferSize(getTableInt(tableName, Constants.CFG_DATA_LEVELDB_WRITE_BUFFER_SIZE, writeBufferSize));
+
+    String tableCompression = cConf.get(getTableKey(tableName, Constants.CFG_DATA_LEVELDB_COMPRESSION), compression);
+    try {
+      options.compressionType(CompressionType.valueOf(tableCompression.trim().toUpperCase(Locale.ENGLISH)));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unsupported LevelDB compression '" + tableCompression + "' for table "
+                                           + tableName + ". It must be one of 'snappy' or 'none'", e);
+    }
+
+    options.maxOpenFiles(openFilesBudget.allocate(
+      getDBPath(basePath, tableName), getTableInt(tableName, Constants.CFG_DATA_LEVELDB_MAX_OPEN_FILES, maxOpenFiles)));
+    return options;
+  }
 
-    DB db = factory.open(new File(dbPath), options);
-    tables.put(name, db);
+  /**
+   * Returns the max open files of the given open table, or {@code null} if the table is not open.
+   */
+  @VisibleForTesting
+  @Nullable
+  Integer getMaxOpenFiles(String tableName) {
+    synchronized (tables) {
+      return tables.containsKey(tableName) ? openFilesBudget.getAllocation(getDBPath(basePath, tableName)) : null;
+    }
+  }
+
+  private int getTableInt(String tableName, String key, int defaultValue) {
+    return cConf.getInt(getTableKey(tableName, key), defaultValue);
+  }
+
+  /**
+   * Returns the per table configuration key of the given LevelDB configuration key.
+   */
+  private static String getTableKey(String tableName, String key) {
+    return Constants.CFG_DATA_LEVELDB_TABLE_PREFIX + tableName + key.substring(Constants.CFG_DATA_LEVELDB_DIR.length());
   }
 
   public void dropTable(String name) throws IOException {
     ensureOpen();
-    DB db = tables.remove(name);
+    DB db;
+    synchronized (tables) {
+      db = tables.remove(name);
+      openFilesBudget.release(getDBPath(basePath, name));
+    }
     if (db != null) {
       db.close();
     }
@@ -96,6 +96,8 @@ public final class NoSqlStructuredTable implements StructuredTable {
   @Override
   public Collection<StructuredRow> multiRead(Collection<? extends Collection<Field<?>>> multiKeys)
     throws InvalidFieldException {
+    LOG.trace("Table {}: Read with multiple keys {}", schema.getTableId(), multiKeys);
+    // All rows are fetched with one batched get on the underlying table
     List<Get> gets = multiKeys.stream()
       .map(k -> convertKeyToBytes(k, false))
       .map(Get::new)
@@ -60,30 +60,76 @@ import javax.annotation.Nullable;
  */
 public class PostgresSqlStructuredTable implements StructuredTable {
   private static final Logger LOG = LoggerFactory.getLogger(PostgresSqlStructuredTable.class);
-  private static final int SCAN_FETCH_SIZE = 100;
+  // Default number of rows fetched at a time through the cursor of a scan
+  static final int DEFAULT_SCAN_FETCH_SIZE = 100;
+  // Maximum number of rows written by one multi-row INSERT statement
+  private static final int MULTI_UPSERT_MAX_ROWS = 500;
+  // Maximum number of parameters Postgres accepts in one statement
+  private static final int MAX_PARAMETERS = Short.MAX_VALUE;
 
   private final Connection connection;
   private final StructuredTableSchema tableSchema;
   private final FieldValidator fieldValidator;
+  private final int scanFetchSize;
 
   public PostgresSqlStructuredTable(Connection connection, StructuredTableSchema tableSchema) {
+    this(connection, tableSchema, DEFAULT_SCAN_FETCH_SIZE);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param connection the connection of the transaction. It must not be in auto commit mode for the scans
+   *                   to be streamed through a server side cursor
+   * @param tableSchema the schema of the table
+   * @param scanFetchSize the number of rows fetched at a time by scans, or 0 to fetch all rows at once
+   */
+  public PostgresSqlStructuredTable(Connection connection, StructuredTableSchema tableSchema, int scanFetchSize) {
     this.connection = connection;
     this.tableSchema = tableSchema;
     this.fieldValidator = new FieldValidator(tableSchema);
+    this.scanFetchSize = scanFetchSize;
   }
 
   @Override
   public void upsert(Collection<Field<?>> fields) throws InvalidFieldException, IOException {
     LOG.trace("Table {}: Write fields {}", tableSchema.getTableId(), fields);
-    Set<String> fieldNames = fields.stream().map(Field::getName).collect(Collectors.toSet());
-    if (!fieldNames.containsAll(tableSchema.getPrimaryKeys())) {
-      throw new InvalidFieldException(tableSchema.getTableId(), fields,
-                                      String.format("Given fields %s do not contain all the " +
-                                                      "primary keys %s", fieldNames, tableSchema.getPrimaryKeys()));
-    }
+    validateContainsPrimaryKeys(fields);
     upsertInternal(fields);
   }
 
+  /**
+   * Writes the rows with multi-row {@code INSERT ... ON CONFLICT} statements. Consecutive rows that write the same
+   * columns are written by the same statement.
+   */
+  @Override
+  public void multiUpsert(Collection<? extends Collection<Field<?>>> multiFields)
+    throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Write multiple rows {}", tableSchema.getTableId(), multiFields);
+
+    // Map from the primary key to the fields of the rows to write with one statement. A row cannot be written twice
+    // by the same INSERT ... ON CONFLICT statement, hence only the last write of the same row is kept. It is the same
+    // as writing the rows one by one because all rows in the batch write the same columns.
+    Map<Set<Field<?>>, Collection<Field<?>>> batch = new LinkedHashMap<>();
+    List<String> batchColumns = null;
+    for (Collection<Field<?>> fields : multiFields) {
+      validateContainsPrimaryKeys(fields);
+      List<String> columns = fields.stream().map(Field::getName).collect(Collectors.toList());
+      int maxRows = Math.min(MULTI_UPSERT_MAX_ROWS, MAX_PARAMETERS / Math.max(1, columns.size()));
+      if (!columns.equals(batchColumns) || batch.size() >= maxRows) {
+        upsertBatch(batch.values());
+        batch.clear();
+        batchColumns = columns;
+      }
+      Set<Field<?>> keys = fields.stream()
+        .filter(field -> tableSchema.isPrimaryKeyColumn(field.getName()))
+        .collect(Collectors.toSet());
+      batch.remove(keys);
+      batch.put(keys, fields);
+    }
+    upsertBatch(batch.values());
+  }
+
   @Override
   public Optional<StructuredRow> read(Collection<Field<?>> keys) throws InvalidFieldException, IOException {
     return readRow(keys, null);
@@ -194,7 +240,7 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     // We don't close the statement here because once it is closed, the result set is also closed.
     try {
       PreparedStatement statement = connection.prepareStatement(scanQuery);
-      statement.setFetchSize(SCAN_FETCH_SIZE);
+      statement.setFetchSize(scanFetchSize);
       setStatementFieldByRange(keyRange, statement);
       LOG.trace("SQL statement: {}", statement);
 
@@ -294,7 +340,7 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     query.append(" LIMIT ").append(limit).append(";");
 
     PreparedStatement statement = connection.prepareStatement(query.toString());
-    statement.setFetchSize(SCAN_FETCH_SIZE);
+    statement.setFetchSize(scanFetchSize);
 
     // Set the parameters
     int index = setFields(statement, keyFields.values().stream().flatMap(Collection::stream)::iterator, 1);
@@ -316,7 +362,7 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     // We don't close the statement here because once it is closed, the result set is also closed.
     try {
       PreparedStatement statement = connection.prepareStatement(sql);
-      statement.setFetchSize(SCAN_FETCH_SIZE);
+      statement.setFetchSize(scanFetchSize);
       setField(statement, index, 1);
       LOG.trace("SQL statement: {}", statement);
       ResultSet resultSet = statement.executeQuery();
@@ -441,6 +487,48 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     }
   }
 
+  /**
+   * Deletes the rows with one JDBC batch for each run of consecutive rows having the same primary key fields.
+   */
+  @Override
+  public void multiDelete(Collection<? extends Collection<Field<?>>> multiKeys)
+    throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Delete with multiple keys {}", tableSchema.getTableId(), multiKeys);
+    PreparedStatement statement = null;
+    String batchQuery = null;
+    try {
+      for (Collection<Field<?>> keys : multiKeys) {
+        fieldValidator.validatePrimaryKeys(keys, false);
+        String sqlQuery = getDeleteQuery(keys);
+        if (!sqlQuery.equals(batchQuery)) {
+          if (statement != null) {
+            statement.executeBatch();
+            statement.close();
+          }
+          statement = connection.prepareStatement(sqlQuery);
+          batchQuery = sqlQuery;
+        }
+        setFields(statement, keys, 1);
+        statement.addBatch();
+      }
+      if (statement != null) {
+        LOG.trace("SQL statement: {}", statement);
+        statement.executeBatch();
+      }
+    } catch (SQLException e) {
+      throw new IOException(String.format("Failed to delete the rows from table %s with multiple keys %s",
+                                          tableSchema.getTableId().getName(), multiKeys), e);
+    } finally {
+      if (statement != null) {
+        try {
+          statement.close();
+        } catch (SQLException e) {
+          LOG.warn("Failed to close the SQL statement", e);
+        }
+      }
+    }
+  }
+
   @Override
   public void deleteAll(Range keyRange) throws InvalidFieldException, IOException {
     LOG.trace("Table {}: DeleteAll with range {}", tableSchema.getTableId(), keyRange);
@@ -489,6 +577,40 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     }
   }
 
+  private void validateContainsPrimaryKeys(Collection<Field<?>> fields) throws InvalidFieldException {
+    Set<String> fieldNames = fields.stream().map(Field::getName).collect(Collectors.toSet());
+    if (!fieldNames.containsAll(tableSchema.getPrimaryKeys())) {
+      throw new InvalidFieldException(tableSchema.getTableId(), fields,
+                                      String.format("Given fields %s do not contain all the " +
+                                                      "primary keys %s", fieldNames, tableSchema.getPrimaryKeys()));
+    }
+  }
+
+  /**
+   * Writes rows that have the same columns in the same order with one statement.
+   */
+  private void upsertBatch(Collection<Collection<Field<?>>> rows) throws IOException {
+    if (rows.isEmpty()) {
+      return;
+    }
+    if (rows.size() == 1) {
+      upsertInternal(rows.iterator().next());
+      return;
+    }
+    String sqlQuery = getWriteSqlQuery(rows.iterator().next(), null, rows.size());
+    try (PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
+      int index = 1;
+      for (Collection<Field<?>> fields : rows) {
+        index = setFields(statement, fields, index);
+      }
+      LOG.trace("SQL statement: {}", statement);
+      statement.executeUpdate();
+    } catch (SQLException e) {
+      throw new IOException(String.format("Failed to write %d rows to table %s",
+                                          rows.size(), tableSchema.getTableId().getName()), e);
+    }
+  }
+
   private void upsertInternal(Collection<Field<?>> fields) throws IOException {
     String sqlQuery = getWriteSqlQuery(fields, null);
     try (PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
@@ -653,10 +775,20 @@ public class PostgresSqlStructuredTable implements StructuredTable {
    * @return the sql query
    */
   private String getWriteSqlQuery(Collection<Field<?>> fields, @Nullable String incrementField) {
+    return getWriteSqlQuery(fields, incrementField, 1);
+  }
+
+  /**
+   * Get the write sql query for writing the given number of rows with one statement. All rows have to provide the
+   * same fields in the same order. For example, writing two rows to "simpletable" generates the following query:
+   * INSERT INTO simpletable (key1,key2,col1) VALUES (?,?,?),(?,?,?) ON CONFLICT (key1,key2)
+   * DO UPDATE SET col1=EXCLUDED.col1;
+   */
+  private String getWriteSqlQuery(Collection<Field<?>> fields, @Nullable String incrementField, int numRows) {
     StringJoiner insertPart = new StringJoiner(",",
                                                "INSERT INTO " + tableSchema.getTableId().getName() + " (",
                                                ") ");
-    StringJoiner valuePart = new StringJoiner(",", "VALUES (", ") ");
+    StringJoiner valuePart = new StringJoiner(",", "(", ")");
     StringJoiner conflictPart = new StringJoiner(",", "ON CONFLICT (", ") ");
     StringJoiner updatePart = new StringJoiner(",",  "DO UPDATE SET ", ";");
 
@@ -671,7 +803,12 @@ public class PostgresSqlStructuredTable implements StructuredTable {
         updatePart.add(field.getName() + "=EXCLUDED." + field.getName());
       }
     }
-    return insertPart.toString() + valuePart.toString() + conflictPart.toString() + updatePart.toString();
+    String values = valuePart.toString();
+    StringJoiner valuesPart = new StringJoiner(",", "VALUES ", " ");
+    for (int i = 0; i < numRows; i++) {
+      valuesPart.add(values);
+    }
+    return insertPart.toString() + valuesPart.toString() + conflictPart.toString() + updatePart.toString();
   }
 
   private String getReadQuery(Collection<Field<?>> keys, Collection<String> columns, boolean forUpdate) {
@@ -824,8 +961,8 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     @Override
     public void close() {
       try {
-        statement.close();
         resultSet.close();
+        statement.close();
       } catch (SQLException e) {
         LOG.warn("Failed to close the result set", e);
       }
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.cube;
+
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link TimeSeriesBuffer}.
+ */
+public class TimeSeriesBufferTest {
+
+  @Test
+  public void testAggregate() {
+    // timestamps are added out of order and repeated, with more timestamps than the initial capacity
+    long[] timestamps = new long[100];
+    for (int i = 0; i < timestamps.length; i++) {
+      timestamps[i] = ((i * 37) % timestamps.length) * 60L;
+    }
+
+    TimeSeriesBuffer sum = new TimeSeriesBuffer(AggregationFunction.SUM);
+    TimeSeriesBuffer max = new TimeSeriesBuffer(AggregationFunction.MAX);
+    TimeSeriesBuffer min = new TimeSeriesBuffer(AggregationFunction.MIN);
+    TimeSeriesBuffer latest = new TimeSeriesBuffer(AggregationFunction.LATEST);
+    for (int round = 1; round <= 3; round++) {
+      for (long ts : timestamps) {
+        long value = ts / 60 + (round == 2 ? 1000 : round);
+        sum.add(ts, value);
+        max.add(ts, value);
+        min.add(ts, value);
+        latest.add(ts, value);
+      }
+    }
+
+    for (TimeSeriesBuffer buffer : new TimeSeriesBuffer[] { sum, max, min, latest }) {
+      buffer.sort();
+      Assert.assertEquals(timestamps.length, buffer.size());
+    }
+    for (int i = 0; i < timestamps.length; i++) {
+      Assert.assertEquals(i * 60L, sum.getTimestamp(i));
+      Assert.assertEquals(3 * i + 1004, sum.getValue(i));
+      Assert.assertEquals(i + 1000, max.getValue(i));
+      Assert.assertEquals(i + 1, min.getValue(i));
+      Assert.assertEquals(i + 3, latest.getValue(i));
+    }
+
+    // data points added after sorting are aggregated with the existing ones
+    sum.add(60L, 10L);
+    sum.add(-60L, 5L);
+    sum.sort();
+    Assert.assertEquals(timestamps.length + 1, sum.size());
+    Assert.assertEquals(-60L, sum.getTimestamp(0));
+    Assert.assertEquals(5L, sum.getValue(0));
+    Assert.assertEquals(60L, sum.getTimestamp(2));
+    Assert.assertEquals(1017L, sum.getValue(2));
+  }
+}
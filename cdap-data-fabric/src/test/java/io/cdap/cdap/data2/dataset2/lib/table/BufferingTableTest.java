@@ -16,6 +16,7 @@
 
 package io.cdap.cdap.data2.dataset2.lib.table;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import io.cdap.cdap.api.common.Bytes;
@@ -27,12 +28,16 @@ import io.cdap.cdap.api.dataset.table.Scan;
 import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.api.dataset.table.Table;
 import io.cdap.cdap.api.dataset.table.TableProperties;
+import io.cdap.cdap.common.utils.DirUtils;
 import io.cdap.cdap.data2.dataset2.TableAssert;
 import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionAware;
 import org.junit.Assert;
+import org.junit.ClassRule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -45,6 +50,9 @@ import java.util.NavigableMap;
  */
 public abstract class BufferingTableTest<T extends BufferingTable> extends TableConcurrentTest<T> {
 
+  @ClassRule
+  public static final TemporaryFolder SPILL_FOLDER = new TemporaryFolder();
+
   @Test
   public void testRollingBackAfterExceptionDuringPersist() throws Exception {
     DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
@@ -497,6 +505,141 @@ public abstract class BufferingTableTest<T extends BufferingTable> extends Table
     }
   }
 
+  @Test
+  public void testReadCache() throws Exception {
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
+    admin.create();
+    Map<String, String> properties = ImmutableMap.of(BufferingTable.PROPERTY_READ_CACHE_SIZE, "1048576");
+    try (DelegatingBufferingTable table = new DelegatingBufferingTable(getTable(CONTEXT1, MY_TABLE), properties)) {
+      Transaction tx1 = txClient.startShort();
+      table.startTx(tx1);
+      table.put(R1, a(C1, C2), a(V1, V2));
+      table.put(R2, a(C1), a(V1));
+      txClient.canCommitOrThrow(tx1, table.getTxChanges());
+      Assert.assertTrue(table.commitTx());
+      txClient.commitOrThrow(tx1);
+      table.postTxCommit();
+
+      Transaction tx2 = txClient.startShort();
+      table.startTx(tx2);
+
+      // A full row read is cached and serves reads of any columns of the row
+      TableAssert.assertRow(a(C1, V1, C2, V2), table.get(R1));
+      Assert.assertEquals(1, table.getPersistedReads());
+      TableAssert.assertRow(a(C1, V1, C2, V2), table.get(R1));
+      TableAssert.assertRow(a(C2, V2), table.get(R1, a(C2)));
+      TableAssert.assertRow(a(), table.get(R1, a(C3)));
+      TableAssert.assertRow(a(C1, V1), table.get(R1, null, C2, 0));
+      Assert.assertEquals(1, table.getPersistedReads());
+
+      // Partial reads are cached for the columns being read, including the absent ones
+      TableAssert.assertRow(a(C1, V1), table.get(R2, a(C1, C2)));
+      Assert.assertEquals(2, table.getPersistedReads());
+      TableAssert.assertRow(a(C1, V1), table.get(R2, a(C1)));
+      TableAssert.assertRow(a(), table.get(R2, a(C2)));
+      Assert.assertEquals(2, table.getPersistedReads());
+      TableAssert.assertRow(a(C1, V1), table.get(R2));
+      Assert.assertEquals(3, table.getPersistedReads());
+
+      // Multi-get is served from the cache
+      List<Row> rows = table.get(Lists.newArrayList(new Get(R1), new Get(R2, C1)));
+      TableAssert.assertRow(rows.get(0), R1, a(C1, C2), a(V1, V2));
+      TableAssert.assertRow(rows.get(1), R2, a(C1), a(V1));
+      Assert.assertEquals(3, table.getPersistedReads());
+
+      // Modifying returned data doesn't affect the cache
+      table.get(R1).getColumns().clear();
+      TableAssert.assertRow(a(C1, V1, C2, V2), table.get(R1));
+      Assert.assertEquals(3, table.getPersistedReads());
+
+      // A local write invalidates the row
+      table.put(R1, a(C1), a(V3));
+      TableAssert.assertRow(a(C1, V3, C2, V2), table.get(R1));
+      Assert.assertEquals(4, table.getPersistedReads());
+      table.delete(R2, a(C1));
+      TableAssert.assertRow(a(), table.get(R2));
+      Assert.assertEquals(5, table.getPersistedReads());
+
+      Assert.assertTrue(table.rollbackTx());
+      txClient.abort(tx2);
+
+      // The cache doesn't outlive the transaction
+      Transaction tx3 = txClient.startShort();
+      table.startTx(tx3);
+      TableAssert.assertRow(a(C1, V1, C2, V2), table.get(R1));
+      Assert.assertEquals(6, table.getPersistedReads());
+      txClient.commitOrThrow(tx3);
+    } finally {
+      admin.drop();
+    }
+  }
+
+  @Test
+  public void testSpillToDisk() throws Exception {
+    File spillDir = SPILL_FOLDER.newFolder();
+    Map<String, String> properties = ImmutableMap.of(BufferingTable.PROPERTY_SPILL_THRESHOLD, "1024",
+                                                     BufferingTable.PROPERTY_SPILL_DIR, spillDir.getAbsolutePath());
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
+    admin.create();
+    try (DelegatingBufferingTable table = new DelegatingBufferingTable(getTable(CONTEXT1, MY_TABLE), properties)) {
+      Transaction tx1 = txClient.startShort();
+      table.startTx(tx1);
+
+      // Write enough rows to be spilled a few times, with the same rows updated across spills
+      for (int i = 0; i < 100; i++) {
+        table.put(Bytes.toBytes("row" + (i % 50)), a(C1, C2), a(Bytes.toBytes("v" + i), V2));
+        table.incrementAndGet(R1, a(C1), new long[] {1L});
+      }
+      table.delete(Bytes.toBytes("row0"), a(C2));
+      Assert.assertFalse(DirUtils.list(spillDir).isEmpty());
+
+      // Spilled changes are visible in the transaction
+      TableAssert.assertRow(a(C1, Bytes.toBytes("v50")), table.get(Bytes.toBytes("row0")));
+      TableAssert.assertRow(a(C1, Bytes.toBytes("v99"), C2, V2), table.get(Bytes.toBytes("row49")));
+      Assert.assertEquals(100L, Bytes.toLong(table.get(R1, C1)));
+      List<Row> rows = table.get(Lists.newArrayList(new Get(Bytes.toBytes("row1"), C1), new Get(R1)));
+      TableAssert.assertRow(rows.get(0), Bytes.toBytes("row1"), a(C1), a(Bytes.toBytes("v51")));
+      TableAssert.assertRow(rows.get(1), R1, a(C1), lb(100L));
+      try (Scanner scanner = table.scan(Bytes.toBytes("row"), Bytes.toBytes("rox"))) {
+        int count = 0;
+        while (scanner.next() != null) {
+          count++;
+        }
+        Assert.assertEquals(50, count);
+      }
+      // Conflict detection covers both spilled and buffered changes
+      Assert.assertEquals(51, table.getTxChanges().size());
+
+      // The changes are persisted in multiple chunks on commit
+      txClient.canCommitOrThrow(tx1, table.getTxChanges());
+      Assert.assertTrue(table.commitTx());
+      Assert.assertTrue(table.getPersistCalls() > 1);
+      txClient.commitOrThrow(tx1);
+      table.postTxCommit();
+      Assert.assertTrue(DirUtils.list(spillDir).isEmpty());
+
+      // Spilled changes that were persisted are undone on rollback
+      Transaction tx2 = txClient.startShort();
+      table.startTx(tx2);
+      for (int i = 0; i < 100; i++) {
+        table.put(Bytes.toBytes("row" + i), a(C1), a(V3));
+      }
+      Assert.assertTrue(table.commitTx());
+      Assert.assertTrue(table.rollbackTx());
+      txClient.abort(tx2);
+      Assert.assertTrue(DirUtils.list(spillDir).isEmpty());
+
+      Transaction tx3 = txClient.startShort();
+      table.startTx(tx3);
+      TableAssert.assertRow(a(C1, Bytes.toBytes("v50")), table.get(Bytes.toBytes("row0")));
+      TableAssert.assertRow(a(), table.get(Bytes.toBytes("row50")));
+      Assert.assertEquals(100L, Bytes.toLong(table.get(R1, C1)));
+      txClient.commitOrThrow(tx3);
+    } finally {
+      admin.drop();
+    }
+  }
+
   private void verify123(BufferingTable table) throws Exception {
     byte[] row = new byte[] {1};
     byte[] col = new byte[] {2};
@@ -536,6 +679,70 @@ public abstract class BufferingTableTest<T extends BufferingTable> extends Table
     Assert.assertNull(scan.next());
   }
 
+  /**
+   * A {@link BufferingTable} with the given properties that delegates to another {@link BufferingTable} for
+   * accessing the persistent store, and counts the reads and the persist calls to the persistent store.
+   */
+  private static final class DelegatingBufferingTable extends BufferingTable {
+    private final BufferingTable delegate;
+    private int persistedReads;
+    private int persistCalls;
+
+    DelegatingBufferingTable(BufferingTable delegate, Map<String, String> properties) {
+      super(delegate.getTableName(), false, properties);
+      this.delegate = delegate;
+    }
+
+    int getPersistedReads() {
+      return persistedReads;
+    }
+
+    int getPersistCalls() {
+      return persistCalls;
+    }
+
+    @Override
+    protected void persist(NavigableMap<byte[], NavigableMap<byte[], Update>> buff) throws Exception {
+      persistCalls++;
+      delegate.persist(buff);
+    }
+
+    @Override
+    protected void undo(NavigableMap<byte[], NavigableMap<byte[], Update>> persisted) throws Exception {
+      delegate.undo(persisted);
+    }
+
+    @Override
+    protected NavigableMap<byte[], byte[]> getPersisted(byte[] row, byte[][] columns) throws Exception {
+      persistedReads++;
+      return delegate.getPersisted(row, columns);
+    }
+
+    @Override
+    protected NavigableMap<byte[], byte[]> getPersisted(byte[] row, byte[] startColumn, byte[] stopColumn, int limit)
+      throws Exception {
+      persistedReads++;
+      return delegate.getPersisted(row, startColumn, stopColumn, limit);
+    }
+
+    @Override
+    protected Scanner scanPersisted(Scan scan) throws Exception {
+      return delegate.scanPersisted(scan);
+    }
+
+    @Override
+    public void startTx(Transaction tx) {
+      super.startTx(tx);
+      delegate.startTx(tx);
+    }
+
+    @Override
+    public void postTxCommit() {
+      super.postTxCommit();
+      delegate.postTxCommit();
+    }
+  }
+
   // This class looks weird, this is what we have to do to override persist method to make it throw exception in the
   // middle. NOTE: We want to test how every implementation of BufferingTable handles undoing changes in this
   // case, otherwise we would just test the method of BufferingTable directly.
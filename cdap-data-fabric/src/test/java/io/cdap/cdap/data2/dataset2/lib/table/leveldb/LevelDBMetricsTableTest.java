@@ -16,8 +16,10 @@
 
 package io.cdap.cdap.data2.dataset2.lib.table.leveldb;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.DatasetProperties;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
@@ -37,10 +39,17 @@ import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.security.auth.context.AuthenticationContextModules;
 import io.cdap.cdap.security.authorization.AuthorizationEnforcementModule;
 import io.cdap.cdap.security.authorization.AuthorizationTestModule;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
+import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
 /**
  * metrics table test for levelDB.
  */
@@ -76,4 +85,42 @@ public class LevelDBMetricsTableTest extends MetricsTableTest {
     return DatasetsUtil.getOrCreateDataset(dsFramework, metricsDatasetInstanceId, MetricsTable.class.getName(),
                                            DatasetProperties.EMPTY, null);
   }
+
+  @Test
+  public void testConcurrentIncrementAcrossInstances() throws Exception {
+    // Increments from different instances of the same table on the same rows must not be lost
+    String name = "testConcurrentIncrementAcrossInstances";
+    int rounds = 500;
+    NavigableMap<byte[], NavigableMap<byte[], Long>> batch = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    batch.put(A, new TreeMap<>(Bytes.BYTES_COMPARATOR));
+    batch.get(A).put(X, 1L);
+    batch.put(B, new TreeMap<>(Bytes.BYTES_COMPARATOR));
+    batch.get(B).put(Y, 1L);
+
+    List<MetricsTable> tables = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      MetricsTable table = getTable(name);
+      tables.add(table);
+      threads.add(new IncThread(table, A, ImmutableMap.of(X, 1L), rounds));
+      threads.add(new Thread(() -> {
+        for (int j = 0; j < rounds; j++) {
+          table.increment(batch);
+        }
+      }));
+    }
+    for (Thread t : threads) {
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+
+    MetricsTable table = tables.get(0);
+    Assert.assertEquals(4L * rounds, Bytes.toLong(table.get(A, X)));
+    Assert.assertEquals(2L * rounds, Bytes.toLong(table.get(B, Y)));
+    for (MetricsTable t : tables) {
+      t.close();
+    }
+  }
 }
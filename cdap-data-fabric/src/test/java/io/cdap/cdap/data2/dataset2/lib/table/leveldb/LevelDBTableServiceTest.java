@@ -16,14 +16,17 @@
 
 package io.cdap.cdap.data2.dataset2.lib.table.leveldb;
 
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.table.Get;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.guice.ConfigModule;
 import io.cdap.cdap.common.guice.InMemoryDiscoveryModule;
 import io.cdap.cdap.common.guice.NonCustomLocationUnitTestModule;
+import io.cdap.cdap.common.utils.LevelDBOpenFilesBudget;
 import io.cdap.cdap.data.runtime.DataFabricLevelDBModule;
 import io.cdap.cdap.data.runtime.TransactionMetricsModule;
 import io.cdap.cdap.data2.util.TableId;
@@ -37,6 +40,8 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
@@ -110,6 +115,113 @@ public class LevelDBTableServiceTest {
     Assert.assertEquals(table2Size, service.getTableStats().get(tableId2).getDiskSizeBytes());
   }
 
+  @Test
+  public void testMaxOpenFilesBudget() throws Exception {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_DATA_LEVELDB_DIR, tmpFolder.newFolder().getAbsolutePath());
+    cConf.setInt(Constants.CFG_DATA_LEVELDB_MAX_OPEN_FILES, 60);
+    cConf.setInt(Constants.CFG_DATA_LEVELDB_MAX_OPEN_FILES_TOTAL, 120);
+    cConf.setInt(Constants.CFG_DATA_LEVELDB_TABLE_PREFIX + "t2.max.open.files", 40);
+    cConf.set(Constants.CFG_DATA_LEVELDB_TABLE_PREFIX + "t2.compression", "none");
+    cConf.set(Constants.CFG_DATA_LEVELDB_TABLE_PREFIX + "t5.compression", "lz4");
+
+    LevelDBTableService tableService = new LevelDBTableService();
+    tableService.setConfiguration(cConf);
+    try {
+      tableService.ensureTableExists("t1");
+      tableService.ensureTableExists("t2");
+      tableService.ensureTableExists("t3");
+      tableService.ensureTableExists("t4");
+
+      // The per table max open files is bounded by what is left from the total
+      Assert.assertEquals(Integer.valueOf(60), tableService.getMaxOpenFiles("t1"));
+      Assert.assertEquals(Integer.valueOf(40), tableService.getMaxOpenFiles("t2"));
+      Assert.assertEquals(Integer.valueOf(20), tableService.getMaxOpenFiles("t3"));
+      Assert.assertEquals(Integer.valueOf(20), tableService.getMaxOpenFiles("t4"));
+
+      // Dropping a table returns its share to the budget
+      tableService.dropTable("t1");
+      Assert.assertNull(tableService.getMaxOpenFiles("t1"));
+      tableService.ensureTableExists("t1");
+      Assert.assertEquals(Integer.valueOf(40), tableService.getMaxOpenFiles("t1"));
+
+      try {
+        tableService.ensureTableExists("t5");
+        Assert.fail("Expected failure for unsupported compression");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      Assert.assertNull(tableService.getMaxOpenFiles("t5"));
+    } finally {
+      tableService.close();
+    }
+  }
+
+  @Test
+  public void testSharedOpenFilesBudget() throws Exception {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_DATA_LEVELDB_DIR, tmpFolder.newFolder().getAbsolutePath());
+    cConf.setInt(Constants.CFG_DATA_LEVELDB_MAX_OPEN_FILES, 60);
+    cConf.setInt(Constants.CFG_DATA_LEVELDB_MAX_OPEN_FILES_TOTAL, 100);
+
+    // Simulate another LevelDB database, such as a messaging table, that is opened from the same budget
+    LevelDBOpenFilesBudget budget = new LevelDBOpenFilesBudget(cConf);
+    Assert.assertEquals(60, budget.allocate(tmpFolder.newFolder().getAbsolutePath(), 60));
+
+    LevelDBTableService tableService = new LevelDBTableService();
+    tableService.setOpenFilesBudget(budget);
+    tableService.setConfiguration(cConf);
+    try {
+      tableService.ensureTableExists("t1");
+      Assert.assertEquals(Integer.valueOf(40), tableService.getMaxOpenFiles("t1"));
+      Assert.assertEquals(100, budget.getAllocated());
+    } finally {
+      tableService.close();
+    }
+
+    // Closing the service returns the allocations of its tables
+    Assert.assertEquals(60, budget.getAllocated());
+  }
+
+  @Test
+  public void testGetRows() throws Exception {
+    String tableName = "cdap_default.getrows";
+    service.ensureTableExists(tableName);
+    LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+    for (String row : new String[] { "r1", "r3", "r5" }) {
+      for (String column : new String[] { "c1", "c2", "c3" }) {
+        table.put(Bytes.toBytes(row), Bytes.toBytes(column), Bytes.toBytes(row + column), 1L);
+      }
+    }
+    // A newer version must be returned instead of the older one
+    table.put(Bytes.toBytes("r3"), Bytes.toBytes("c2"), Bytes.toBytes("r3c2v2"), 2L);
+
+    // Gets are not in row order, so the iterator has to seek backward as well as forward
+    List<Map<byte[], byte[]>> results = table.getRows(ImmutableList.of(
+      new Get("r5"),
+      new Get("r1", "c3"),
+      new Get("r2"),
+      new Get("r3", "c2", "c3", "c4"),
+      new Get("r1", new String[0]),
+      new Get("r6")), null);
+
+    Assert.assertEquals(6, results.size());
+    Assert.assertEquals(3, results.get(0).size());
+    Assert.assertEquals("r5c1", Bytes.toString(results.get(0).get(Bytes.toBytes("c1"))));
+    Assert.assertEquals("r5c3", Bytes.toString(results.get(0).get(Bytes.toBytes("c3"))));
+    Assert.assertEquals(1, results.get(1).size());
+    Assert.assertEquals("r1c3", Bytes.toString(results.get(1).get(Bytes.toBytes("c3"))));
+    Assert.assertTrue(results.get(2).isEmpty());
+    Assert.assertEquals(2, results.get(3).size());
+    Assert.assertEquals("r3c2v2", Bytes.toString(results.get(3).get(Bytes.toBytes("c2"))));
+    Assert.assertEquals("r3c3", Bytes.toString(results.get(3).get(Bytes.toBytes("c3"))));
+    Assert.assertTrue(results.get(4).isEmpty());
+    Assert.assertTrue(results.get(5).isEmpty());
+
+    Assert.assertTrue(table.getRows(ImmutableList.of(), null).isEmpty());
+    service.dropTable(tableName);
+  }
+
   private void writeSome(String tableName) throws IOException {
     LevelDBTableCore table = new LevelDBTableCore(tableName, service);
     Random r = new Random();
@@ -117,6 +117,19 @@ public final class Range {
     return new Range(Collections.emptySet(), Bound.INCLUSIVE, Collections.emptySet(), Bound.INCLUSIVE);
   }
 
+  /**
+   * Creates a range that continues a scan of this range after the row with the given primary keys. It can be used
+   * for keyset pagination of a large scan: scan this range with a limit, then pass the primary keys of the last row
+   * returned as the continuation to scan the next page. Since the continuation only depends on the row keys,
+   * each page can be scanned in a separate transaction.
+   *
+   * @param primaryKeys the complete primary keys of the last row returned by the previous scan
+   * @return a range object
+   */
+  public Range continueAfter(Collection<Field<?>> primaryKeys) {
+    return new Range(primaryKeys, Bound.EXCLUSIVE, end, endBound);
+  }
+
   /**
    * Returns {@code true} if the range is a single value range.
    */
@@ -173,6 +173,58 @@ public abstract class StructuredTableTest {
     Assert.assertEquals(new HashSet<>(keys), result);
   }
 
+  @Test
+  public void testMultiUpsertDelete() throws Exception {
+    int max = 10;
+
+    List<Collection<Field<?>>> expected = new ArrayList<>();
+    List<Collection<Field<?>>> writes = new ArrayList<>();
+    for (int i = 0; i < max; i++) {
+      List<Field<?>> fields = Arrays.asList(Fields.intField(KEY, i),
+                                            Fields.longField(KEY2, (long) i),
+                                            Fields.stringField(STRING_COL, VAL + i),
+                                            Fields.doubleField(DOUBLE_COL, (double) i),
+                                            Fields.floatField(FLOAT_COL, (float) i),
+                                            Fields.bytesField(BYTES_COL, Bytes.toBytes("bytes-" + i)));
+      expected.add(fields);
+      writes.add(fields);
+    }
+    // Write the same row twice, the last write should win
+    List<Field<?>> updated = Arrays.asList(Fields.intField(KEY, 3),
+                                           Fields.longField(KEY2, 3L),
+                                           Fields.stringField(STRING_COL, VAL + "3-updated"),
+                                           Fields.doubleField(DOUBLE_COL, 3.0),
+                                           Fields.floatField(FLOAT_COL, 3.0f),
+                                           Fields.bytesField(BYTES_COL, Bytes.toBytes("bytes-3")));
+    writes.add(updated);
+    expected.set(3, updated);
+    // Write a row with fewer columns, which updates only the given columns
+    writes.add(Arrays.asList(Fields.intField(KEY, 5), Fields.longField(KEY2, 5L),
+                             Fields.stringField(STRING_COL, VAL + "5-updated")));
+    expected.set(5, Arrays.asList(Fields.intField(KEY, 5),
+                                  Fields.longField(KEY2, 5L),
+                                  Fields.stringField(STRING_COL, VAL + "5-updated"),
+                                  Fields.doubleField(DOUBLE_COL, 5.0),
+                                  Fields.floatField(FLOAT_COL, 5.0f),
+                                  Fields.bytesField(BYTES_COL, Bytes.toBytes("bytes-5"))));
+
+    getTransactionRunner().run(context -> context.getTable(SIMPLE_TABLE).multiUpsert(writes));
+    Assert.assertEquals(expected, readSimpleStructuredRows(max));
+
+    // Delete the rows with even keys
+    List<Collection<Field<?>>> deletes = new ArrayList<>();
+    for (int i = 0; i < max; i += 2) {
+      deletes.add(Arrays.asList(Fields.intField(KEY, i), Fields.longField(KEY2, (long) i)));
+    }
+    getTransactionRunner().run(context -> context.getTable(SIMPLE_TABLE).multiDelete(deletes));
+
+    List<Collection<Field<?>>> remaining = new ArrayList<>();
+    for (int i = 1; i < max; i += 2) {
+      remaining.add(expected.get(i));
+    }
+    Assert.assertEquals(remaining, readSimpleStructuredRows(max));
+  }
+
   @Test
   public void testSimpleScan() throws Exception {
     int max = 100;
@@ -201,6 +253,21 @@ public abstract class StructuredTableTest {
     // TODO: test end only range
   }
 
+  @Test
+  public void testScanContinuation() throws Exception {
+    int max = 20;
+    List<Collection<Field<?>>> expected = writeSimpleStructuredRows(max, "");
+
+    // Scan each range in pages of 3 rows, each page in a separate transaction
+    Range range = Range.create(Collections.singleton(Fields.intField(KEY, 5)), Range.Bound.INCLUSIVE,
+                               Collections.singleton(Fields.intField(KEY, 15)), Range.Bound.EXCLUSIVE);
+    Assert.assertEquals(expected.subList(5, 15), scanSimpleStructuredRowsInPages(range, 3));
+    Assert.assertEquals(expected, scanSimpleStructuredRowsInPages(Range.all(), 3));
+    Assert.assertEquals(expected.subList(7, 8),
+                        scanSimpleStructuredRowsInPages(Range.singleton(Collections.singleton(
+                          Fields.intField(KEY, 7))), 3));
+  }
+
   @Test
   public void testMultiScan() throws Exception {
     int max = 100;
@@ -695,6 +762,20 @@ public abstract class StructuredTableTest {
     }
   }
 
+  private List<Collection<Field<?>>> scanSimpleStructuredRowsInPages(Range range, int pageSize) throws Exception {
+    List<Collection<Field<?>>> actual = new ArrayList<>();
+    Range pageRange = range;
+    while (true) {
+      List<Collection<Field<?>>> page = scanSimpleStructuredRows(pageRange, pageSize);
+      actual.addAll(page);
+      if (page.size() < pageSize) {
+        return actual;
+      }
+      Iterator<Field<?>> lastRow = page.get(page.size() - 1).iterator();
+      pageRange = range.continueAfter(Arrays.asList(lastRow.next(), lastRow.next()));
+    }
+  }
+
   private List<Collection<Field<?>>> scanSimpleStructuredRows(Range range, int max) throws Exception {
     List<Collection<Field<?>>> actual = new ArrayList<>(max);
     getTransactionRunner().run(context -> {
@@ -20,8 +20,10 @@ import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.messaging.TopicNotFoundException;
 import io.cdap.cdap.messaging.data.RawMessage;
 import org.apache.tephra.Transaction;
+import org.apache.twill.common.Cancellable;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -38,6 +40,7 @@ public abstract class MessageFetcher {
 
   // by default there is virtually no limit
   private int limit = Integer.MAX_VALUE;
+  private long timeoutMillis;
 
   /**
    * Setup the message fetching starting point based on the given message id. Calling this method
@@ -96,6 +99,22 @@ public abstract class MessageFetcher {
     return this;
   }
 
+  /**
+   * Sets the maximum time to wait for new messages if there is no message available when fetching.
+   * By default, this is set to {@code 0}, meaning the {@link #fetch()} call returns immediately.
+   *
+   * @param timeout the maximum time to wait
+   * @param unit the unit of the timeout
+   * @return this instance
+   */
+  public MessageFetcher setTimeout(long timeout, TimeUnit unit) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("Invalid message fetching timeout. Timeout must be >= 0");
+    }
+    this.timeoutMillis = unit.toMillis(timeout);
+    return this;
+  }
+
   @Nullable
   protected byte[] getStartOffset() {
     return startOffset;
@@ -119,6 +138,10 @@ public abstract class MessageFetcher {
     return limit;
   }
 
+  protected long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
   /**
    * Returns a {@link CloseableIterator} that iterates over messages fetched from the messaging system.
    *
@@ -126,4 +149,17 @@ public abstract class MessageFetcher {
    * @throws IOException if it fails to create the iterator
    */
   public abstract CloseableIterator<RawMessage> fetch() throws TopicNotFoundException, IOException;
+
+  /**
+   * Adds a listener that is called once when new messages may be available to this fetcher, which is when
+   * messages are published to the topic after the last {@link #fetch()} call started. It allows waiting for
+   * new messages without blocking a thread. By default the listener is never called, in which case the caller
+   * should rely on its own timeout.
+   *
+   * @param listener the listener to call. It may be called from the publishing thread, hence it should return quickly
+   * @return a {@link Cancellable} to remove the listener if it is no longer needed
+   */
+  public Cancellable addPublishListener(Runnable listener) {
+    return () -> { };
+  }
 }
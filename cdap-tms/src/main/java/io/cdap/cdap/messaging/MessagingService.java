@@ -95,6 +95,16 @@ public interface MessagingService {
    */
   MessageFetcher prepareFetch(TopicId topicId) throws TopicNotFoundException, IOException;
 
+  /**
+   * Prepares to fetch messages from multiple topics in one call.
+   *
+   * @return a {@link MultiTopicMessageFetcher} for setting up parameters for fetching messages from
+   *         the messaging system
+   * @throws IOException if failed to fetch messages
+   * @throws ServiceUnavailableException if the messaging service is not available
+   */
+  MultiTopicMessageFetcher prepareMultiTopicFetch() throws IOException;
+
   /**
    * Publishes a list of messages to the messaging system.
    *
@@ -0,0 +1,208 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging;
+
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.api.messaging.TopicNotFoundException;
+import io.cdap.cdap.messaging.data.TopicRawMessage;
+import io.cdap.cdap.proto.id.TopicId;
+import org.apache.tephra.Transaction;
+import org.apache.twill.common.Cancellable;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A builder to setup parameters for fetching messages from multiple topics of the messaging system in one call.
+ * Each topic has its own starting point and limit. Sub-class needs to override the {@link #fetch()} method to
+ * return a {@link CloseableIterator} for fetching messages.
+ */
+public abstract class MultiTopicMessageFetcher {
+
+  private final Map<TopicId, TopicFetch> topicFetches = new LinkedHashMap<>();
+  private Transaction transaction;
+  private long timeoutMillis;
+
+  /**
+   * Adds a topic to fetch from, starting from the given message id.
+   *
+   * @param topicId the topic to fetch message from
+   * @param startOffset the message id to start fetching from, or {@code null} to fetch from the beginning
+   * @param inclusive if {@code true}, it will include the message identified by the given message id as the
+   *                  first message (if still available in the system); otherwise it won't be included.
+   * @param limit maximum number of messages to be fetched from the topic
+   * @return this instance
+   */
+  public MultiTopicMessageFetcher addTopic(TopicId topicId, @Nullable byte[] startOffset,
+                                           boolean inclusive, int limit) {
+    return addTopicFetch(new TopicFetch(topicId, startOffset, inclusive, null, limit));
+  }
+
+  /**
+   * Adds a topic to fetch from, starting from the given publish time.
+   *
+   * @param topicId the topic to fetch message from
+   * @param startTime timestamp in milliseconds
+   * @param limit maximum number of messages to be fetched from the topic
+   * @return this instance
+   */
+  public MultiTopicMessageFetcher addTopic(TopicId topicId, long startTime, int limit) {
+    if (startTime < 0) {
+      throw new IllegalArgumentException("Invalid message fetching start time. Start time must be >= 0");
+    }
+    return addTopicFetch(new TopicFetch(topicId, null, true, startTime, limit));
+  }
+
+  /**
+   * Sets the transaction to use for fetching. It is for transactional consumption and applies to all topics.
+   *
+   * @param transaction the transaction to use for reading messages
+   * @return this instance
+   */
+  public MultiTopicMessageFetcher setTransaction(Transaction transaction) {
+    this.transaction = transaction;
+    return this;
+  }
+
+  /**
+   * Sets the maximum time to wait for new messages if there is no message available in all of the topics.
+   * By default, it is set to {@code 0}, meaning the {@link #fetch()} call returns immediately.
+   *
+   * @param timeout the maximum time to wait
+   * @param unit the unit of the timeout
+   * @return this instance
+   */
+  public MultiTopicMessageFetcher setTimeout(long timeout, TimeUnit unit) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("Invalid message fetching timeout. Timeout must be >= 0");
+    }
+    this.timeoutMillis = unit.toMillis(timeout);
+    return this;
+  }
+
+  /**
+   * Returns the per topic fetch parameters, in the order as they were added.
+   */
+  protected Map<TopicId, TopicFetch> getTopicFetches() {
+    return Collections.unmodifiableMap(topicFetches);
+  }
+
+  @Nullable
+  protected Transaction getTransaction() {
+    return transaction;
+  }
+
+  protected long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
+  /**
+   * Returns a {@link CloseableIterator} that iterates over messages fetched from the messaging system.
+   * Messages of the same topic are returned in order, and messages of different topics are returned in
+   * the order as the topics were added.
+   *
+   * @throws TopicNotFoundException if any of the topics does not exist
+   * @throws IOException if it fails to create the iterator
+   */
+  public abstract CloseableIterator<TopicRawMessage> fetch() throws TopicNotFoundException, IOException;
+
+  /**
+   * Adds a listener that is called once when new messages may be available to this fetcher, which is when
+   * messages are published to any of the topics after the last {@link #fetch()} call started. It allows waiting
+   * for new messages without blocking a thread. By default the listener is never called, in which case the caller
+   * should rely on its own timeout.
+   *
+   * @param listener the listener to call. It may be called from the publishing thread, hence it should return quickly
+   * @return a {@link Cancellable} to remove the listener if it is no longer needed
+   */
+  public Cancellable addPublishListener(Runnable listener) {
+    return () -> { };
+  }
+
+  private MultiTopicMessageFetcher addTopicFetch(TopicFetch topicFetch) {
+    if (topicFetches.containsKey(topicFetch.getTopicId())) {
+      throw new IllegalArgumentException("Topic " + topicFetch.getTopicId() + " was already added");
+    }
+    topicFetches.put(topicFetch.getTopicId(), topicFetch);
+    return this;
+  }
+
+  /**
+   * Contains fetching parameters of a single topic.
+   */
+  public static final class TopicFetch {
+
+    private final TopicId topicId;
+    private final byte[] startOffset;
+    private final boolean includeStart;
+    private final Long startTime;
+    private final int limit;
+
+    private TopicFetch(TopicId topicId, @Nullable byte[] startOffset, boolean includeStart,
+                       @Nullable Long startTime, int limit) {
+      if (limit <= 0) {
+        throw new IllegalArgumentException("Invalid message fetching limit. Limit must be > 0");
+      }
+      this.topicId = topicId;
+      this.startOffset = startOffset;
+      this.includeStart = includeStart;
+      this.startTime = startTime;
+      this.limit = limit;
+    }
+
+    public TopicId getTopicId() {
+      return topicId;
+    }
+
+    @Nullable
+    public byte[] getStartOffset() {
+      return startOffset;
+    }
+
+    public boolean isIncludeStart() {
+      return includeStart;
+    }
+
+    @Nullable
+    public Long getStartTime() {
+      return startTime;
+    }
+
+    public int getLimit() {
+      return limit;
+    }
+
+    /**
+     * Sets the parameters of this topic fetch to the given {@link MessageFetcher}.
+     *
+     * @return the given {@link MessageFetcher}
+     */
+    public MessageFetcher applyTo(MessageFetcher fetcher) {
+      if (startOffset != null) {
+        fetcher.setStartMessage(startOffset, includeStart);
+      }
+      if (startTime != null) {
+        fetcher.setStartTime(startTime);
+      }
+      return fetcher.setLimit(limit);
+    }
+  }
+}
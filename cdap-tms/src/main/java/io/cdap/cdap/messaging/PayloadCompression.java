@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging;
+
+import io.cdap.cdap.api.common.Bytes;
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of message payloads stored in the messaging tables. The compression of a topic is set through the
+ * {@link TopicMetadata#COMPRESSION_KEY} property when the topic is created.
+ */
+public enum PayloadCompression {
+
+  /**
+   * Payloads are stored as is.
+   */
+  NONE {
+    @Override
+    public byte[] compress(byte[] payload) {
+      return payload;
+    }
+
+    @Override
+    public byte[] decompress(byte[] payload) {
+      return payload;
+    }
+  },
+
+  /**
+   * Payloads are compressed with deflate, prefixed with the uncompressed length.
+   */
+  DEFLATE {
+    @Override
+    public byte[] compress(byte[] payload) {
+      Deflater deflater = DEFLATER.get();
+      deflater.reset();
+      deflater.setInput(payload);
+      deflater.finish();
+
+      // Deflate can expand incompressible input slightly, hence leave some room for it
+      byte[] buffer = new byte[Bytes.SIZEOF_INT + payload.length + payload.length / 1000 + 64];
+      Bytes.putInt(buffer, 0, payload.length);
+      int length = Bytes.SIZEOF_INT;
+      while (!deflater.finished()) {
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        length += deflater.deflate(buffer, length, buffer.length - length);
+      }
+      return Arrays.copyOf(buffer, length);
+    }
+
+    @Override
+    public byte[] decompress(byte[] payload) {
+      Inflater inflater = INFLATER.get();
+      inflater.reset();
+      inflater.setInput(payload, Bytes.SIZEOF_INT, payload.length - Bytes.SIZEOF_INT);
+
+      byte[] result = new byte[Bytes.toInt(payload, 0)];
+      try {
+        int length = 0;
+        while (length < result.length && !inflater.finished()) {
+          int n = inflater.inflate(result, length, result.length - length);
+          if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          length += n;
+        }
+        if (length != result.length) {
+          throw new IllegalArgumentException("Corrupted payload. Expected " + result.length
+                                               + " bytes after decompression, but got " + length);
+        }
+      } catch (DataFormatException e) {
+        throw new IllegalArgumentException("Corrupted payload", e);
+      }
+      return result;
+    }
+  },
+
+  /**
+   * Payloads are compressed with snappy.
+   */
+  SNAPPY {
+    @Override
+    public byte[] compress(byte[] payload) {
+      try {
+        return Snappy.compress(payload);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to compress payload with snappy", e);
+      }
+    }
+
+    @Override
+    public byte[] decompress(byte[] payload) {
+      try {
+        return Snappy.uncompress(payload);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to decompress payload with snappy", e);
+      }
+    }
+  };
+
+  // Deflater and Inflater hold native memory, hence are reused per thread instead of created per payload
+  private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+  private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+  /**
+   * Compresses the given payload.
+   */
+  public abstract byte[] compress(byte[] payload);
+
+  /**
+   * Decompresses the given payload, which was compressed by the {@link #compress(byte[])} method.
+   */
+  public abstract byte[] decompress(byte[] payload);
+
+  /**
+   * Returns the {@link PayloadCompression} of the given name, case insensitively.
+   *
+   * @throws IllegalArgumentException if there is no compression of the given name
+   */
+  public static PayloadCompression fromName(String name) {
+    for (PayloadCompression compression : values()) {
+      if (compression.name().equalsIgnoreCase(name)) {
+        return compression;
+      }
+    }
+    throw new IllegalArgumentException("Unsupported payload compression '" + name + "'");
+  }
+}
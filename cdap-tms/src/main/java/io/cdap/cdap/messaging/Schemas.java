@@ -64,6 +64,21 @@ public final class Schemas {
     public static final class ConsumeResponse {
       public static final Schema SCHEMA = loadSchema(ConsumeResponse.class);
     }
+
+    /**
+     * Contains schema for multi-topic consume request.
+     */
+    public static final class MultiConsumeRequest {
+      public static final Schema SCHEMA = loadSchema(MultiConsumeRequest.class);
+    }
+
+    /**
+     * Contains schema for multi-topic consume response. The topicIndex field of each message is the index of
+     * the topic in the request.
+     */
+    public static final class MultiConsumeResponse {
+      public static final Schema SCHEMA = loadSchema(MultiConsumeResponse.class);
+    }
   }
 
   private Schemas() {
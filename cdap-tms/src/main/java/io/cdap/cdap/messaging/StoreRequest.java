@@ -19,6 +19,7 @@ package io.cdap.cdap.messaging;
 import io.cdap.cdap.proto.id.TopicId;
 
 import java.util.Iterator;
+import javax.annotation.Nullable;
 
 /**
  * This class represents messages to be store to the messaging system.
@@ -29,11 +30,18 @@ public abstract class StoreRequest implements Iterable<byte[]> {
   private final TopicId topicId;
   private final boolean transactional;
   private final long transactionWritePointer;
+  private final String partitionKey;
 
   protected StoreRequest(TopicId topicId, boolean transactional, long transactionWritePointer) {
+    this(topicId, transactional, transactionWritePointer, null);
+  }
+
+  protected StoreRequest(TopicId topicId, boolean transactional, long transactionWritePointer,
+                         @Nullable String partitionKey) {
     this.topicId = topicId;
     this.transactional = transactional;
     this.transactionWritePointer = transactionWritePointer;
+    this.partitionKey = partitionKey;
   }
 
   public TopicId getTopicId() {
@@ -55,6 +63,19 @@ public abstract class StoreRequest implements Iterable<byte[]> {
     return transactionWritePointer;
   }
 
+  /**
+   * Returns the key for choosing the partition of a partitioned topic that the messages are published to,
+   * or {@code null} if there is none. Non-transactional requests with the same partition key always go to the same
+   * partition, hence they are fetched in the order they were published. Non-transactional requests without a
+   * partition key are spread across partitions, and only messages within the same request keep their order.
+   * Transactional requests are always assigned to partitions by the transaction write pointer, and the partition
+   * key is ignored. The partition key has no effect on topics that are not partitioned.
+   */
+  @Nullable
+  public String getPartitionKey() {
+    return partitionKey;
+  }
+
   /**
    * Returns {@code true} if there is payload in this request.
    */
@@ -19,9 +19,14 @@ package io.cdap.cdap.messaging;
 import com.google.common.collect.ImmutableMap;
 import io.cdap.cdap.proto.id.TopicId;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.regex.Pattern;
 
 /**
  * Represents metadata about a messaging topic.
@@ -30,6 +35,14 @@ public class TopicMetadata {
 
   public static final String GENERATION_KEY = MessagingUtils.Constants.GENERATION_KEY;
   public static final String TTL_KEY = MessagingUtils.Constants.TTL_KEY;
+  public static final String PARTITIONS_KEY = "partitions";
+  public static final String COMPRESSION_KEY = "compression";
+  // Property written on the topics that store the partitions of a partitioned topic, with the partitioned topic name
+  public static final String PARENT_TOPIC_KEY = "parent.topic";
+
+  // Suffix of the name of the topics that store the partitions of a partitioned topic
+  private static final String PARTITION_SUFFIX = "__p";
+  private static final Pattern PARTITION_TOPIC_PATTERN = Pattern.compile(".+" + PARTITION_SUFFIX + "[0-9]+");
 
   private final TopicId topicId;
   private final Map<String, String> properties;
@@ -109,6 +122,78 @@ public class TopicMetadata {
     return Integer.parseInt(properties.get(TTL_KEY));
   }
 
+  /**
+   * Returns the number of partitions of the topic. A topic without the partitions property has one partition.
+   */
+  public int getPartitions() {
+    if (!validated) {
+      validatePartitions();
+    }
+    String partitions = properties.get(PARTITIONS_KEY);
+    return partitions == null ? 1 : Integer.parseInt(partitions);
+  }
+
+  /**
+   * Returns the {@link PayloadCompression} used for storing the payloads of the topic.
+   * A topic without the compression property is not compressed.
+   */
+  public PayloadCompression getCompression() {
+    if (!validated) {
+      validateCompression();
+    }
+    String compression = properties.get(COMPRESSION_KEY);
+    return compression == null ? PayloadCompression.NONE : PayloadCompression.fromName(compression);
+  }
+
+  /**
+   * Returns {@code true} if this topic stores a partition of a partitioned topic.
+   */
+  public boolean isPartition() {
+    return properties.containsKey(PARENT_TOPIC_KEY);
+  }
+
+  /**
+   * Returns {@code true} if this topic stores a partition of the given partitioned topic.
+   */
+  public boolean isPartitionOf(TopicId parentTopicId) {
+    return topicId.getNamespace().equals(parentTopicId.getNamespace())
+      && parentTopicId.getTopic().equals(properties.get(PARENT_TOPIC_KEY));
+  }
+
+  /**
+   * Returns the ids of the topics that store the partitions of this topic, ordered by the partition number.
+   * Each partition is fetched independently with its own message id offsets. Messages are only ordered within a
+   * partition, and there is no ordering across partitions. See {@link StoreRequest#getPartitionKey()} for how
+   * messages are assigned to partitions. For a topic with one partition, the list only contains the topic itself.
+   */
+  public List<TopicId> getPartitionTopicIds() {
+    int partitions = getPartitions();
+    if (partitions == 1) {
+      return Collections.singletonList(topicId);
+    }
+    List<TopicId> topicIds = new ArrayList<>(partitions);
+    for (int i = 0; i < partitions; i++) {
+      topicIds.add(getPartitionTopicId(topicId, i));
+    }
+    return topicIds;
+  }
+
+  /**
+   * Returns the id of the topic that stores the given partition of a partitioned topic.
+   */
+  public static TopicId getPartitionTopicId(TopicId topicId, int partition) {
+    return new TopicId(topicId.getNamespace(), topicId.getTopic() + PARTITION_SUFFIX + partition);
+  }
+
+  /**
+   * Returns {@code true} if the given topic id has a name that can be used for storing a partition of a partitioned
+   * topic. Such a name is also valid for a regular topic, hence {@link #isPartition()} tells if the topic is
+   * actually a partition. This method is only for skipping the metadata lookup of topics that cannot be partitions.
+   */
+  public static boolean hasPartitionTopicName(TopicId topicId) {
+    return PARTITION_TOPIC_PATTERN.matcher(topicId.getTopic()).matches();
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -142,6 +227,8 @@ public class TopicMetadata {
   private void validateProperties() {
     validateTTL();
     validateGeneration();
+    validatePartitions();
+    validateCompression();
   }
 
   /**
@@ -183,6 +270,44 @@ public class TopicMetadata {
     }
   }
 
+  /**
+   * Validates the "partitions" property of the given topic if it is present.
+   *
+   * @throws IllegalArgumentException if the partitions value is not a number or <= 0.
+   */
+  private void validatePartitions() {
+    String partitions = properties.get(PARTITIONS_KEY);
+    if (partitions == null) {
+      return;
+    }
+    try {
+      if (Integer.parseInt(partitions) <= 0) {
+        throw new IllegalArgumentException("The partitions property must be greater than zero for topic " + topicId);
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("The partitions property must be a number greater than zero for topic "
+                                           + topicId, e);
+    }
+  }
+
+  /**
+   * Validates the "compression" property of the given topic if it is present.
+   *
+   * @throws IllegalArgumentException if the compression is not supported.
+   */
+  private void validateCompression() {
+    String compression = properties.get(COMPRESSION_KEY);
+    if (compression == null) {
+      return;
+    }
+    try {
+      PayloadCompression.fromName(compression);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("The compression property of topic " + topicId + " must be one of "
+                                           + Arrays.toString(PayloadCompression.values()), e);
+    }
+  }
+
   /**
    * Turns a list of {@link Object} into a {@link Map} by using even index objects as keys and the following odd index
    * objects as values. The {@link Object#toString()} method will be used to convert {@link Object} to {@link String}.
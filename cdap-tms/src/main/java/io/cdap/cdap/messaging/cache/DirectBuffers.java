@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Helper for releasing the memory of direct {@link ByteBuffer} without waiting for the buffer to be GC'ed.
+ * If the running JVM doesn't allow it, the memory is released when the buffer is GC'ed as usual.
+ */
+final class DirectBuffers {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DirectBuffers.class);
+  private static final Releaser RELEASER = createReleaser();
+
+  /**
+   * Releases the memory of the given direct buffer. The buffer, as well as any duplicate or slice of it,
+   * must not be used afterward.
+   *
+   * @param buffer a direct buffer created by {@link ByteBuffer#allocateDirect(int)}
+   */
+  static void release(ByteBuffer buffer) {
+    if (!buffer.isDirect()) {
+      return;
+    }
+    try {
+      RELEASER.release(buffer);
+    } catch (Exception e) {
+      // The memory will be released by GC
+      LOG.trace("Failed to release direct buffer", e);
+    }
+  }
+
+  private static Releaser createReleaser() {
+    // Java 9+ provides Unsafe.invokeCleaner
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      Object unsafe = field.get(null);
+      return buffer -> invokeCleaner.invoke(unsafe, buffer);
+    } catch (Exception e) {
+      LOG.trace("Unsafe.invokeCleaner is not available", e);
+    }
+
+    // Java 8 exposes the cleaner from the DirectByteBuffer
+    try {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(1);
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Method cleanMethod = cleanerMethod.getReturnType().getMethod("clean");
+      cleanMethod.setAccessible(true);
+      Releaser releaser = b -> {
+        Object cleaner = cleanerMethod.invoke(b);
+        if (cleaner != null) {
+          cleanMethod.invoke(cleaner);
+        }
+      };
+      releaser.release(buffer);
+      return releaser;
+    } catch (Exception e) {
+      LOG.debug("Releasing direct buffer is not supported. Memory will be released by GC.", e);
+    }
+    return buffer -> { };
+  }
+
+  private DirectBuffers() {
+    // no-op
+  }
+
+  /**
+   * Releases the memory of a direct buffer.
+   */
+  private interface Releaser {
+    void release(ByteBuffer buffer) throws Exception;
+  }
+}
@@ -0,0 +1,824 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.messaging.store.MessageFilter;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * An {@link OrderedMessageCache} that stores encoded entries in off-heap memory, so that cached messages don't
+ * contribute to the JVM heap usage. Same as the {@link MessageCache}, it relies on the TMS properties of having
+ * a single writer and entries being appended in strictly increasing order.
+ *
+ * The memory is organized as a ring of fixed size segments, with the total size bounded by the hard limit
+ * of the {@link MessageCache.Limits}. Entries are appended to the tail segment. When the tail segment is full,
+ * the writer moves to the next segment in the ring, evicting the oldest segment as a whole if the ring is full.
+ * Since eviction is done per segment, the min retain and reduce trigger limits are not used.
+ *
+ * - Appending doesn't acquire any lock, except a short exclusive section when a segment is recycled.
+ * - Scanning never blocks. Each segment is read optimistically and validated after decoding each entry.
+ *   If the segment was recycled or updated concurrently, the scan ends early with the entries returned
+ *   so far, which is still a valid result of consecutive entries.
+ *
+ * Entries are decoded lazily, one at a time as the scanner advances, so that a scan only copies the entries
+ * that are consumed to the heap. The scan filter is applied on the entry header first, so that entries skipped
+ * by the filter, such as rolled back or invalid transactional entries, never have their payloads decoded.
+ *
+ * The ring is reference counted by the writer and by open scanners. When the cache is cleared or resized,
+ * the ring is replaced, and the off-heap memory of the old ring is released once the last of them is done with it.
+ *
+ * Each segment keeps a sparse index of the offsets of every N-th entry, so that locating the start entry of a scan
+ * is a binary search over segments, followed by a binary search over the sparse index of the segment, and a
+ * linear search over at most N entries.
+ *
+ * @param <T> type of entry stored in the cache
+ */
+public class OffHeapMessageCache<T> implements OrderedMessageCache<T> {
+
+  private static final String METRICS_WEIGHT = "cache.weight";
+  private static final String METRICS_ENTRIES_ADDED = "cache.entries.added";
+  private static final String METRICS_ENTRIES_REMOVED = "cache.entries.removed";
+  private static final String METRICS_ADD_REQUESTS = "cache.add.requests";
+  private static final String METRICS_SCAN_REQUESTS = "cache.scan.requests";
+  private static final int DEFAULT_INDEX_INTERVAL = 64;
+
+  private final Comparator<T> comparator;
+  private final Codec<T> codec;
+  private final int segments;
+  private final int indexInterval;
+  private final MetricsContext metricsContext;
+  private final AtomicReference<MessageCache.Limits> limits;
+  private final AtomicReference<Ring<T>> ring;
+  private final AtomicBoolean adding;
+
+  /**
+   * Creates a new instance of the cache.
+   *
+   * @param comparator a {@link Comparator} for ordering cache entries
+   * @param codec a {@link Codec} for encoding and decoding entries to and from off-heap memory
+   * @param segments number of segments in the ring
+   * @param limits the limits for the cache; only the hard limit is used as the total off-heap memory size
+   * @param metricsContext a {@link MetricsContext} for emitting metrics about this cache.
+   */
+  public OffHeapMessageCache(Comparator<T> comparator, Codec<T> codec, int segments,
+                             MessageCache.Limits limits, MetricsContext metricsContext) {
+    this(comparator, codec, segments, DEFAULT_INDEX_INTERVAL, limits, metricsContext);
+  }
+
+  @VisibleForTesting
+  OffHeapMessageCache(Comparator<T> comparator, Codec<T> codec, int segments, int indexInterval,
+                      MessageCache.Limits limits, MetricsContext metricsContext) {
+    Preconditions.checkArgument(segments > 1, "Number of segments must be larger than 1");
+    Preconditions.checkArgument(indexInterval > 0, "Index interval must be positive");
+    this.comparator = comparator;
+    this.codec = codec;
+    this.segments = segments;
+    this.indexInterval = indexInterval;
+    this.metricsContext = metricsContext;
+    this.limits = new AtomicReference<>(limits);
+    this.ring = new AtomicReference<>(new Ring<>(segments, limits));
+    this.adding = new AtomicBoolean();
+  }
+
+  @Override
+  public Comparator<T> getComparator() {
+    return comparator;
+  }
+
+  @Override
+  public void addAll(Iterator<T> entries) {
+    if (!adding.compareAndSet(false, true)) {
+      // This is to guard against bug, otherwise this shouldn't happen
+      throw new ConcurrentModificationException(
+        "The OffHeapMessageCache.addAll method shouldn't be called concurrently by multiple threads.");
+    }
+
+    Ring<T> ring = retainRing();
+    try {
+      int entriesAdded = 0;
+      long entriesRemoved = 0;
+
+      try {
+        while (entries.hasNext()) {
+          T entry = entries.next();
+
+          if (ring.lastEntry != null && comparator.compare(ring.lastEntry, entry) >= 0) {
+            // Entries must be in strictly increasing order
+            // Clear the cache to reset state. This is just for precaution, as this shouldn't happen,
+            // unless there is bug in the TMS system (from the caller side).
+            T lastEntry = ring.lastEntry;
+            clear();
+            throw new IllegalArgumentException("Cache entry must be in strictly increasing order. " +
+                                                 "Entry " + entry + " is smaller than or equal to " + lastEntry);
+          }
+          ring.lastEntry = entry;
+
+          int size = codec.getEncodedSize(entry);
+          int recordSize = size + Integer.BYTES;
+          if (recordSize > ring.segmentSize) {
+            // The entry can never fit into a segment. Evict everything so that the cache still contains
+            // consecutive entries only. Entries added after this one will be cached again.
+            entriesRemoved += ring.evictAll();
+            continue;
+          }
+
+          if (ring.isEmpty() || ring.tailBuffer.remaining() < recordSize) {
+            entriesRemoved += ring.advance();
+          }
+
+          ByteBuffer buffer = ring.tailBuffer;
+          int position = buffer.position();
+          if (ring.tailEntries % indexInterval == 0) {
+            ring.getSegment(ring.tail).addIndex(ring.tailEntries / indexInterval, position);
+          }
+          buffer.putInt(size);
+          codec.encode(entry, buffer);
+          if (buffer.position() != position + recordSize) {
+            // This shouldn't happen, unless there is bug in the codec
+            clear();
+            throw new IllegalStateException("Encoded size of entry " + entry + " is " + (buffer.position() - position)
+                                              + " bytes, which is different from the expected " + recordSize);
+          }
+          ring.tailEntries++;
+          ring.weight += recordSize;
+          entriesAdded++;
+        }
+      } finally {
+        // Publish what have been written to readers
+        ring.publish();
+      }
+
+      metricsContext.increment(METRICS_ADD_REQUESTS, 1L);
+      metricsContext.increment(METRICS_ENTRIES_ADDED, entriesAdded);
+      metricsContext.increment(METRICS_ENTRIES_REMOVED, entriesRemoved);
+      metricsContext.gauge(METRICS_WEIGHT, ring.weight);
+    } finally {
+      ring.release();
+      adding.set(false);
+    }
+  }
+
+  @Override
+  public MessageCache.Scanner<T> scan(T startEntry, boolean includeStart, int limit, MessageFilter<T> filter) {
+    metricsContext.increment(METRICS_SCAN_REQUESTS, 1L);
+
+    Ring<T> ring = retainRing();
+    Position<T> position;
+    try {
+      position = locate(ring, startEntry, includeStart);
+    } catch (RuntimeException e) {
+      ring.release();
+      throw e;
+    }
+    if (position == null) {
+      ring.release();
+      return new RingScanner<>(null, Collections.<T>emptyIterator(), null);
+    }
+
+    // The ring is released when the scanner is closed
+    return new RingScanner<>(ring, new EntryIterator<>(ring, position, codec, limit, filter), position.firstInCache);
+  }
+
+  @Override
+  public void updateEntries(T startEntry, T endEntry, MessageCache.EntryUpdater<T> updater) {
+    Ring<T> ring = retainRing();
+    try {
+      updateEntries(ring, startEntry, endEntry, updater);
+    } finally {
+      ring.release();
+    }
+  }
+
+  private void updateEntries(Ring<T> ring, T startEntry, T endEntry, MessageCache.EntryUpdater<T> updater) {
+    Position<T> position = locate(ring, startEntry, true);
+    if (position == null) {
+      return;
+    }
+
+    int offset = position.offset;
+    for (long segmentId = position.segmentId; segmentId <= position.tail; segmentId++) {
+      Segment segment = ring.getSegment(segmentId);
+
+      // Acquire the exclusive lock to prevent the segment from being recycled while updating.
+      long stamp = segment.lock.writeLock();
+      try {
+        if (segment.id != segmentId) {
+          // The segment was recycled, hence so as all the segments before it
+          offset = 0;
+          continue;
+        }
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int limit = segment.limit;
+        while (offset < limit) {
+          int size = buffer.getInt(offset);
+          buffer.limit(offset + Integer.BYTES + size);
+          buffer.position(offset + Integer.BYTES);
+          T entry = codec.decode(buffer);
+          if (comparator.compare(entry, endEntry) > 0) {
+            return;
+          }
+
+          try {
+            updater.updateEntry(entry);
+          } catch (RuntimeException e) {
+            clear();
+            throw e;
+          }
+
+          // The updated entry must have the same position and size.
+          buffer.position(offset + Integer.BYTES);
+          T key = codec.decodeKey(buffer);
+          if (comparator.compare(key, entry) != 0 || codec.getEncodedSize(entry) != size) {
+            // This shouldn't happen, unless there is bug in the caller.
+            clear();
+            throw new IllegalStateException("Entry order and size should not be altered after update.");
+          }
+          buffer.position(offset + Integer.BYTES);
+          codec.encode(entry, buffer);
+
+          buffer.limit(buffer.capacity());
+          offset += Integer.BYTES + size;
+        }
+      } finally {
+        segment.lock.unlockWrite(stamp);
+      }
+      offset = 0;
+    }
+  }
+
+  @Override
+  public void clear() {
+    // Replacing the ring with a new one. The off-heap memory of the old ring is released
+    // when the writer and all scanners that are using it are done.
+    ring.getAndSet(new Ring<>(segments, limits.get())).release();
+  }
+
+  /**
+   * Resize the cache limits. Since segments are of fixed size, all cached entries are discarded.
+   *
+   * @param limits the new limits for this cache.
+   */
+  @Override
+  public void resize(MessageCache.Limits limits) {
+    this.limits.set(limits);
+    clear();
+  }
+
+  @Override
+  public MessageCache.Limits getLimits() {
+    return limits.get();
+  }
+
+  /**
+   * Returns the current cache weight, which is the number of bytes occupied by the cached entries.
+   */
+  @VisibleForTesting
+  long getCurrentWeight() {
+    return ring.get().weight;
+  }
+
+  /**
+   * Returns the current {@link Ring} with its reference count incremented. The caller must call
+   * {@link Ring#release()} when done with it.
+   */
+  private Ring<T> retainRing() {
+    while (true) {
+      Ring<T> ring = this.ring.get();
+      if (ring.retain()) {
+        return ring;
+      }
+      // The ring was replaced and released concurrently. Retry with the new ring.
+    }
+  }
+
+  /**
+   * Finds the position of the first entry that should be included in a scan that starts from the given entry.
+   *
+   * @return the {@link Position} or {@code null} if the cache is empty or was modified while locating.
+   */
+  @Nullable
+  private Position<T> locate(Ring<T> ring, T startEntry, boolean includeStart) {
+    // Read the head before the tail. Segments between them might get recycled while scanning, which will be
+    // detected by the segment validation.
+    long head = ring.head;
+    long tail = ring.tail;
+    if (tail < head) {
+      return null;
+    }
+
+    T firstInCache = ring.getSegment(head).firstKey(head, codec);
+    if (firstInCache == null) {
+      return null;
+    }
+
+    // Binary search for the last segment that has the first entry smaller than or equal to the start entry
+    long low = head;
+    long high = tail;
+    while (low < high) {
+      long mid = (low + high + 1) >>> 1;
+      SegmentView view = ring.getSegment(mid).view(mid);
+      if (view == null) {
+        return null;
+      }
+      T firstKey = view.limit == 0 ? null : view.decode(0, codec::decodeKey);
+      if (firstKey == null) {
+        // Either the segment is empty, which can only be the tail segment, or it was modified
+        if (view.limit != 0) {
+          return null;
+        }
+        high = mid - 1;
+      } else if (comparator.compare(firstKey, startEntry) <= 0) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+
+    SegmentView view = ring.getSegment(low).view(low);
+    if (view == null) {
+      return null;
+    }
+
+    // Binary search over the sparse index for the last indexed entry that is smaller than the start entry
+    int lowSlot = 0;
+    int highSlot = (view.entries + indexInterval - 1) / indexInterval - 1;
+    while (lowSlot < highSlot) {
+      int mid = (lowSlot + highSlot + 1) >>> 1;
+      T key = view.decode(view.index[mid], codec::decodeKey);
+      if (key == null) {
+        return null;
+      }
+      if (comparator.compare(key, startEntry) < 0) {
+        lowSlot = mid;
+      } else {
+        highSlot = mid - 1;
+      }
+    }
+
+    // Linear search from the indexed entry
+    int offset = view.entries == 0 ? 0 : view.index[lowSlot];
+    while (offset < view.limit) {
+      T key = view.decode(offset, codec::decodeKey);
+      if (key == null) {
+        return null;
+      }
+      int cmp = comparator.compare(key, startEntry);
+      if (cmp > 0 || (cmp == 0 && includeStart)) {
+        break;
+      }
+      offset = view.nextOffset();
+    }
+    return new Position<>(firstInCache, low, offset, tail);
+  }
+
+  /**
+   * This interface is for encoding and decoding entries to and from a {@link ByteBuffer}.
+   *
+   * @param <T> type of the entry
+   */
+  public interface Codec<T> {
+
+    /**
+     * Returns the number of bytes needed to encode the given entry.
+     */
+    int getEncodedSize(T entry);
+
+    /**
+     * Encodes the given entry to the given buffer, starting at the current position of the buffer.
+     * Exactly {@link #getEncodedSize(Object)} bytes should be written.
+     */
+    void encode(T entry, ByteBuffer buffer);
+
+    /**
+     * Decodes an entry from the given buffer. The remaining bytes of the buffer are the encoded entry.
+     */
+    T decode(ByteBuffer buffer);
+
+    /**
+     * Decodes an entry from the given buffer, which only need to be usable for comparison with the
+     * {@link Comparator} of the cache. The remaining bytes of the buffer are the encoded entry.
+     */
+    T decodeKey(ByteBuffer buffer);
+
+    /**
+     * Decodes an entry from the given buffer, which only need to be usable for comparison with the
+     * {@link Comparator} of the cache and by the {@link MessageFilter} of a scan. Entries accepted by the filter
+     * are decoded again with {@link #decode(ByteBuffer)}, hence large fields that are not used by the filter, such as
+     * the payload, should be left out. The remaining bytes of the buffer are the encoded entry.
+     */
+    T decodeHeader(ByteBuffer buffer);
+  }
+
+  /**
+   * The position of an entry in the ring.
+   *
+   * @param <T> type of the entry
+   */
+  private static final class Position<T> {
+    private final T firstInCache;
+    private final long segmentId;
+    private final int offset;
+    private final long tail;
+
+    private Position(T firstInCache, long segmentId, int offset, long tail) {
+      this.firstInCache = firstInCache;
+      this.segmentId = segmentId;
+      this.offset = offset;
+      this.tail = tail;
+    }
+  }
+
+  /**
+   * A ring of {@link Segment}s. The fields without the volatile modifier are only accessed by the writer.
+   *
+   * @param <T> type of the entry
+   */
+  private static final class Ring<T> {
+
+    private final Segment[] segments;
+    private final int segmentSize;
+
+    // Starts with the reference held by the cache. The off-heap memory is released when it reaches zero.
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    // The logical id of the oldest and the newest segments that contain entries.
+    // The ring is empty if tail is smaller than head.
+    private volatile long head;
+    private volatile long tail;
+
+    private ByteBuffer tailBuffer;
+    private int tailEntries;
+    private long weight;
+    private T lastEntry;
+
+    private Ring(int segments, MessageCache.Limits limits) {
+      this.segments = new Segment[segments];
+      this.segmentSize = (int) Math.min(Integer.MAX_VALUE, limits.getHardLimit() / segments);
+      for (int i = 0; i < segments; i++) {
+        this.segments[i] = new Segment();
+      }
+      this.head = 0L;
+      this.tail = -1L;
+    }
+
+    /**
+     * Increments the reference count.
+     *
+     * @return {@code true} if the reference count is incremented, or {@code false} if this ring was already released
+     */
+    boolean retain() {
+      while (true) {
+        int count = refCount.get();
+        if (count <= 0) {
+          return false;
+        }
+        if (refCount.compareAndSet(count, count + 1)) {
+          return true;
+        }
+      }
+    }
+
+    /**
+     * Decrements the reference count, and releases the off-heap memory when it reaches zero.
+     */
+    void release() {
+      if (refCount.decrementAndGet() != 0) {
+        return;
+      }
+      for (Segment segment : segments) {
+        ByteBuffer buffer = segment.buffer;
+        if (buffer != null) {
+          segment.buffer = null;
+          DirectBuffers.release(buffer);
+        }
+      }
+      tailBuffer = null;
+    }
+
+    Segment getSegment(long segmentId) {
+      return segments[(int) (segmentId % segments.length)];
+    }
+
+    boolean isEmpty() {
+      return tail < head;
+    }
+
+    /**
+     * Publishes entries written to the tail segment to readers.
+     */
+    void publish() {
+      if (!isEmpty()) {
+        Segment segment = getSegment(tail);
+        // The entries count is published after the limit, so that readers reading it first always see
+        // a limit that covers all the counted entries.
+        segment.limit = tailBuffer.position();
+        segment.entries = tailEntries;
+      }
+    }
+
+    /**
+     * Moves the tail to a new segment, evicting the oldest segment if needed.
+     *
+     * @return number of entries evicted
+     */
+    long advance() {
+      publish();
+
+      long entriesRemoved = 0;
+      long next = tail + 1;
+      if (next - head >= segments.length) {
+        // Evict the head segment before recycling it
+        Segment evicted = getSegment(head);
+        entriesRemoved = evicted.entries;
+        weight -= evicted.limit;
+        head = head + 1;
+      }
+
+      Segment segment = getSegment(next);
+      long stamp = segment.lock.writeLock();
+      try {
+        if (segment.buffer == null) {
+          segment.buffer = ByteBuffer.allocateDirect(segmentSize);
+        }
+        segment.id = next;
+        segment.entries = 0;
+        segment.limit = 0;
+      } finally {
+        segment.lock.unlockWrite(stamp);
+      }
+
+      tailBuffer = segment.buffer.duplicate();
+      tailEntries = 0;
+      tail = next;
+      return entriesRemoved;
+    }
+
+    /**
+     * Evicts all segments.
+     *
+     * @return number of entries evicted
+     */
+    long evictAll() {
+      publish();
+
+      long entriesRemoved = 0;
+      for (long id = head; id <= tail; id++) {
+        entriesRemoved += getSegment(id).entries;
+      }
+      head = tail + 1;
+      weight = 0L;
+      return entriesRemoved;
+    }
+  }
+
+  /**
+   * A segment of off-heap memory that stores encoded entries consecutively. Each entry is stored as a 4 bytes
+   * length followed by the encoded bytes.
+   */
+  private static final class Segment {
+
+    // The lock is acquired exclusively when the segment is recycled or updated.
+    // Readers only use optimistic read.
+    private final StampedLock lock = new StampedLock();
+
+    private ByteBuffer buffer;
+    private long id = -1L;
+    private volatile int entries;
+    private volatile int limit;
+
+    // Offsets of every N-th entry. It is replaced with a larger copy when full. Slots of published entries
+    // are always written before the entries count is published.
+    private volatile int[] index = new int[16];
+
+    /**
+     * Returns a {@link SegmentView} for reading from this segment, or {@code null} if this segment no longer
+     * holds the given logical segment id.
+     */
+    @Nullable
+    SegmentView view(long segmentId) {
+      long stamp = lock.tryOptimisticRead();
+      if (stamp == 0L) {
+        return null;
+      }
+      ByteBuffer buffer = this.buffer;
+      long id = this.id;
+      int entries = this.entries;
+      int limit = this.limit;
+      int[] index = this.index;
+      if (!lock.validate(stamp) || id != segmentId) {
+        return null;
+      }
+      return new SegmentView(this, stamp, buffer.duplicate(), limit, entries, index);
+    }
+
+    /**
+     * Records the offset of an entry in the sparse index. It is only called by the writer.
+     */
+    void addIndex(int slot, int offset) {
+      int[] index = this.index;
+      if (slot >= index.length) {
+        index = Arrays.copyOf(index, index.length * 2);
+      }
+      index[slot] = offset;
+      this.index = index;
+    }
+
+    /**
+     * Returns the key of the first entry in this segment, or {@code null} if it is not available.
+     */
+    @Nullable
+    <T> T firstKey(long segmentId, Codec<T> codec) {
+      SegmentView view = view(segmentId);
+      if (view == null || view.limit == 0) {
+        return null;
+      }
+      return view.decode(0, codec::decodeKey);
+    }
+  }
+
+  /**
+   * A read only view of a {@link Segment}, which is only valid if the segment is not modified since the
+   * view was created.
+   */
+  private static final class SegmentView {
+
+    private final Segment segment;
+    private final long stamp;
+    private final ByteBuffer buffer;
+    private final int limit;
+    private final int entries;
+    private final int[] index;
+    private int nextOffset;
+
+    private SegmentView(Segment segment, long stamp, ByteBuffer buffer, int limit, int entries, int[] index) {
+      this.segment = segment;
+      this.stamp = stamp;
+      this.buffer = buffer;
+      this.limit = limit;
+      this.entries = entries;
+      this.index = index;
+    }
+
+    /**
+     * Decodes the entry at the given offset with the given decoder.
+     *
+     * @return the decoded entry, or {@code null} if the segment was modified since this view was created
+     */
+    @Nullable
+    <T> T decode(int offset, Function<ByteBuffer, T> decoder) {
+      T entry;
+      int end;
+      try {
+        buffer.limit(buffer.capacity());
+        int size = buffer.getInt(offset);
+        if (size < 0 || size > limit - offset - Integer.BYTES) {
+          throw new IllegalStateException("Invalid entry size " + size + " at offset " + offset);
+        }
+        end = offset + Integer.BYTES + size;
+        buffer.limit(end);
+        buffer.position(offset + Integer.BYTES);
+        entry = decoder.apply(buffer);
+      } catch (RuntimeException e) {
+        // Failure could be due to reading inconsistent data
+        if (!segment.lock.validate(stamp)) {
+          return null;
+        }
+        throw e;
+      }
+      if (!segment.lock.validate(stamp)) {
+        return null;
+      }
+      nextOffset = end;
+      return entry;
+    }
+
+    /**
+     * Returns the offset of the entry next to the last entry returned by {@link #decode(int, Function)}.
+     */
+    int nextOffset() {
+      return nextOffset;
+    }
+  }
+
+  /**
+   * An {@link Iterator} that decodes entries from the ring one at a time, starting from a given position.
+   *
+   * @param <T> type of the entry
+   */
+  private static final class EntryIterator<T> extends AbstractIterator<T> {
+
+    private final Ring<T> ring;
+    private final Codec<T> codec;
+    private final MessageFilter<T> filter;
+    private final long tail;
+    private long segmentId;
+    private int offset;
+    private int remaining;
+    private SegmentView view;
+
+    private EntryIterator(Ring<T> ring, Position<T> position, Codec<T> codec, int limit, MessageFilter<T> filter) {
+      this.ring = ring;
+      this.codec = codec;
+      this.filter = filter;
+      this.tail = position.tail;
+      this.segmentId = position.segmentId;
+      this.offset = position.offset;
+      this.remaining = limit;
+    }
+
+    @Override
+    protected T computeNext() {
+      while (remaining > 0 && segmentId <= tail) {
+        if (view == null) {
+          view = ring.getSegment(segmentId).view(segmentId);
+          if (view == null) {
+            break;
+          }
+        }
+        if (offset >= view.limit) {
+          segmentId++;
+          offset = 0;
+          view = null;
+          continue;
+        }
+
+        // Filter with the header first, so that skipped entries don't need their payloads decoded
+        T header = view.decode(offset, codec::decodeHeader);
+        if (header == null) {
+          // The segment was modified. Stop with what have been returned so far.
+          break;
+        }
+        MessageFilter.Result result = filter.apply(header);
+        if (result == MessageFilter.Result.HOLD) {
+          // Hold means not to scan more
+          break;
+        }
+        if (result == MessageFilter.Result.SKIP) {
+          offset = view.nextOffset();
+          continue;
+        }
+
+        T entry = view.decode(offset, codec::decode);
+        if (entry == null) {
+          break;
+        }
+        offset = view.nextOffset();
+        remaining--;
+        return entry;
+      }
+      return endOfData();
+    }
+  }
+
+  /**
+   * A {@link MessageCache.Scanner} that releases the {@link Ring} it reads from when closed.
+   *
+   * @param <T> type of the entry
+   */
+  private static final class RingScanner<T> extends MessageCache.AbstractScanner<T> {
+
+    private final Ring<T> ring;
+
+    private RingScanner(@Nullable Ring<T> ring, Iterator<T> iterator, @Nullable T firstInCache) {
+      super(iterator, firstInCache);
+      this.ring = ring;
+    }
+
+    @Override
+    void doClose() {
+      if (ring != null) {
+        ring.release();
+      }
+    }
+  }
+}
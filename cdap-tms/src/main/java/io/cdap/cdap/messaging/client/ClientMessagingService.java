@@ -37,11 +37,13 @@ import io.cdap.cdap.common.http.DefaultHttpRequestConfig;
 import io.cdap.cdap.common.internal.remote.RemoteClient;
 import io.cdap.cdap.messaging.MessageFetcher;
 import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.MultiTopicMessageFetcher;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.Schemas;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
 import io.cdap.cdap.messaging.data.RawMessage;
+import io.cdap.cdap.messaging.data.TopicRawMessage;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
 import io.cdap.common.http.HttpMethod;
@@ -69,6 +71,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
+import java.net.URLEncoder;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -77,6 +80,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -101,18 +105,32 @@ public final class ClientMessagingService implements MessagingService {
   private static final Type TOPIC_LIST_TYPE = new TypeToken<List<String>>() { }.getType();
 
   private final RemoteClient remoteClient;
+  private final RemoteClient pollClient;
   private final boolean compressPayload;
+  private final PipelinedPublisher pipelinedPublisher;
 
   @Inject
   ClientMessagingService(CConfiguration cConf, DiscoveryServiceClient discoveryServiceClient) {
-    this(discoveryServiceClient, cConf.getBoolean(Constants.MessagingSystem.HTTP_COMPRESS_PAYLOAD));
+    this(discoveryServiceClient, cConf.getBoolean(Constants.MessagingSystem.HTTP_COMPRESS_PAYLOAD),
+         cConf.getInt(Constants.MessagingSystem.HTTP_CLIENT_PUBLISH_MAX_INFLIGHT),
+         cConf.getInt(Constants.MessagingSystem.HTTP_CLIENT_PUBLISH_MAX_BATCH_SIZE),
+         cConf.getInt(Constants.MessagingSystem.HTTP_CLIENT_PUBLISH_MAX_PENDING));
   }
 
   @VisibleForTesting
   public ClientMessagingService(DiscoveryServiceClient discoveryServiceClient, boolean compressPayload) {
+    this(discoveryServiceClient, compressPayload, 4, 1000, 10000);
+  }
+
+  private ClientMessagingService(DiscoveryServiceClient discoveryServiceClient, boolean compressPayload,
+                                 int publishMaxInFlight, int publishMaxBatchSize, int publishMaxPending) {
     this.remoteClient = new RemoteClient(discoveryServiceClient, Constants.Service.MESSAGING_SERVICE,
                                          HTTP_REQUEST_CONFIG, "/v1/namespaces/");
+    this.pollClient = new RemoteClient(discoveryServiceClient, Constants.Service.MESSAGING_SERVICE,
+                                       HTTP_REQUEST_CONFIG, "/v1/");
     this.compressPayload = compressPayload;
+    this.pipelinedPublisher = new PipelinedPublisher(this::publish, publishMaxInFlight, publishMaxBatchSize,
+                                                     publishMaxPending);
   }
 
   @Override
@@ -190,6 +208,11 @@ public final class ClientMessagingService implements MessagingService {
     return new ClientMessageFetcher(topicId);
   }
 
+  @Override
+  public MultiTopicMessageFetcher prepareMultiTopicFetch() {
+    return new ClientMultiTopicMessageFetcher();
+  }
+
   @Nullable
   @Override
   public RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException {
@@ -205,6 +228,23 @@ public final class ClientMessagingService implements MessagingService {
     return new ClientRollbackDetail(body);
   }
 
+  /**
+   * Publishes the given {@link StoreRequest} asynchronously. The number of concurrent publish calls to the server is
+   * bounded. Requests to the same topic are published in order, and non-transactional requests to the same topic
+   * are coalesced into one publish call while there is a publish call to that topic in flight. The number of
+   * pending requests is bounded, and this method blocks when the bound is reached.
+   *
+   * @param request the request to publish
+   * @return a {@link CompletableFuture} that completes when the server acknowledged the publish. It carries
+   *         the {@link RollbackDetail} for transactional publish, or {@code null} for non-transactional publish.
+   *         It completes exceptionally with {@link TopicNotFoundException} if the topic does not exist or
+   *         with {@link IOException} if failed to publish, or with {@link InterruptedException} if the calling
+   *         thread is interrupted while blocked.
+   */
+  public CompletableFuture<RollbackDetail> publishAsync(StoreRequest request) {
+    return pipelinedPublisher.publish(request);
+  }
+
   @Override
   public void storePayload(StoreRequest request) throws TopicNotFoundException, IOException {
     performWriteRequest(request, false);
@@ -266,7 +306,11 @@ public final class ClientMessagingService implements MessagingService {
       headers.put(HttpHeaders.CONTENT_ENCODING, "gzip");
     }
 
-    HttpRequest httpRequest = remoteClient.requestBuilder(HttpMethod.POST, createTopicPath(topicId) + "/" + writeType)
+    String path = createTopicPath(topicId) + "/" + writeType;
+    if (publish && request.getPartitionKey() != null) {
+      path += "?partitionKey=" + URLEncoder.encode(request.getPartitionKey(), StandardCharsets.UTF_8.name());
+    }
+    HttpRequest httpRequest = remoteClient.requestBuilder(HttpMethod.POST, path)
       .addHeaders(headers)
       .withBody(os.toByteBuffer())
       .build();
@@ -359,6 +403,52 @@ public final class ClientMessagingService implements MessagingService {
     return os.toByteBuffer();
   }
 
+  /**
+   * Based on the given {@link HttpURLConnection} content encoding,
+   * optionally wrap the given {@link InputStream} with either gzip or deflate decompression.
+   */
+  private InputStream decompressIfNeeded(HttpURLConnection urlConn, InputStream is) throws IOException {
+    String contentEncoding = urlConn.getHeaderField(HttpHeaderNames.CONTENT_ENCODING.toString());
+    if (contentEncoding == null) {
+      return is;
+    }
+
+    if ("gzip".equalsIgnoreCase(contentEncoding)) {
+      return new GZIPInputStream(is);
+    }
+    if ("deflate".equalsIgnoreCase(contentEncoding)) {
+      return new DeflaterInputStream(is);
+    }
+
+    throw new IllegalArgumentException("Unsupported content encoding " + contentEncoding);
+  }
+
+  /**
+   * Extends the read timeout of the given {@link HttpURLConnection} by the given fetch timeout,
+   * since the server may hold the request up to the fetch timeout if there is no message available.
+   */
+  private void extendReadTimeout(HttpURLConnection urlConn, long fetchTimeoutMillis) {
+    if (urlConn.getReadTimeout() > 0 && fetchTimeoutMillis > 0) {
+      urlConn.setReadTimeout((int) Math.min(Integer.MAX_VALUE, urlConn.getReadTimeout() + fetchTimeoutMillis));
+    }
+  }
+
+  /**
+   * Reads the response body from the error stream of the given {@link HttpURLConnection}.
+   * The connection will be disconnected after reading.
+   */
+  private String readErrorResponse(HttpURLConnection urlConn) {
+    try (InputStream errorStream = decompressIfNeeded(urlConn, urlConn.getErrorStream())) {
+      return errorStream == null
+        ? ""
+        : urlConn.getResponseMessage() + new String(ByteStreams.toByteArray(errorStream), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      return "";
+    } finally {
+      urlConn.disconnect();
+    }
+  }
+
   /**
    * Verifies the content-type in the header matches with the required type.
    */
@@ -426,11 +516,16 @@ public final class ClientMessagingService implements MessagingService {
 
       // The cask common http library doesn't support read streaming, and we don't want to buffer all messages
       // in memory, hence we use the HttpURLConnection directly instead.
-      HttpURLConnection urlConn = remoteClient.openConnection(HttpMethod.POST, createTopicPath(topicId) + "/poll");
+      String path = createTopicPath(topicId) + "/poll";
+      if (getTimeoutMillis() > 0) {
+        path += "?timeout=" + getTimeoutMillis();
+      }
+      HttpURLConnection urlConn = remoteClient.openConnection(HttpMethod.POST, path);
       urlConn.setRequestProperty(HttpHeaders.CONTENT_TYPE, "avro/binary");
       if (compressPayload) {
         urlConn.setRequestProperty(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
       }
+      extendReadTimeout(urlConn, getTimeoutMillis());
 
       // Send the request
       Encoder encoder = EncoderFactory.get().directBinaryEncoder(urlConn.getOutputStream(), null);
@@ -442,19 +537,7 @@ public final class ClientMessagingService implements MessagingService {
         throw new TopicNotFoundException(topicId.getNamespace(), topicId.getTopic());
       }
 
-      handleError(responseCode, () -> {
-        // If there is any error, read the response body from the error stream
-        try (InputStream errorStream = decompressIfNeeded(urlConn, urlConn.getErrorStream())) {
-          return errorStream == null
-            ? ""
-            : urlConn.getResponseMessage() + new String(ByteStreams.toByteArray(errorStream),
-                                                        StandardCharsets.UTF_8);
-        } catch (IOException e) {
-          return "";
-        } finally {
-          urlConn.disconnect();
-        }
-      }, "Failed to update topic " + topicId);
+      handleError(responseCode, () -> readErrorResponse(urlConn), "Failed to update topic " + topicId);
       verifyContentType(urlConn.getHeaderFields(), "avro/binary");
 
       // Decode the avro array manually instead of using DatumReader in order to support streaming decode.
@@ -501,25 +584,117 @@ public final class ClientMessagingService implements MessagingService {
         }
       };
     }
+  }
 
-    /**
-     * Based on the given {@link HttpURLConnection} content encoding,
-     * optionally wrap the given {@link InputStream} with either gzip or deflate decompression.
-     */
-    private InputStream decompressIfNeeded(HttpURLConnection urlConn, InputStream is) throws IOException {
-      String contentEncoding = urlConn.getHeaderField(HttpHeaderNames.CONTENT_ENCODING.toString());
-      if (contentEncoding == null) {
-        return is;
+  /**
+   * Client side implementation of {@link MultiTopicMessageFetcher}. It streams messages of all topics
+   * from the server in one response with chunk encoding.
+   */
+  private final class ClientMultiTopicMessageFetcher extends MultiTopicMessageFetcher {
+
+    private final DatumReader<GenericRecord> messageReader;
+    private GenericRecord messageRecord;
+
+    private ClientMultiTopicMessageFetcher() {
+      // These are for reading individual message (response is an array of messages)
+      this.messageRecord = new GenericData.Record(Schemas.V1.MultiConsumeResponse.SCHEMA.getElementType());
+      this.messageReader = new GenericDatumReader<>(Schemas.V1.MultiConsumeResponse.SCHEMA.getElementType());
+    }
+
+    @Override
+    public CloseableIterator<TopicRawMessage> fetch() throws TopicNotFoundException, IOException {
+      Schema schema = Schemas.V1.MultiConsumeRequest.SCHEMA;
+      Schema topicSchema = schema.getField("topics").schema().getElementType();
+
+      List<TopicId> topicIds = new ArrayList<>(getTopicFetches().keySet());
+      List<GenericRecord> topics = new ArrayList<>(topicIds.size());
+      for (TopicFetch topicFetch : getTopicFetches().values()) {
+        GenericRecord topicRecord = new GenericData.Record(topicSchema);
+        topicRecord.put("namespace", topicFetch.getTopicId().getNamespace());
+        topicRecord.put("topic", topicFetch.getTopicId().getTopic());
+        if (topicFetch.getStartOffset() != null) {
+          topicRecord.put("startFrom", ByteBuffer.wrap(topicFetch.getStartOffset()));
+        }
+        if (topicFetch.getStartTime() != null) {
+          topicRecord.put("startFrom", topicFetch.getStartTime());
+        }
+        topicRecord.put("inclusive", topicFetch.isIncludeStart());
+        topicRecord.put("limit", topicFetch.getLimit());
+        topics.add(topicRecord);
       }
 
-      if ("gzip".equalsIgnoreCase(contentEncoding)) {
-        return new GZIPInputStream(is);
+      GenericRecord record = new GenericData.Record(schema);
+      record.put("topics", topics);
+      if (getTransaction() != null) {
+        record.put("transaction", ByteBuffer.wrap(TRANSACTION_CODEC.encode(getTransaction())));
+      }
+      record.put("timeout", getTimeoutMillis());
+
+      HttpURLConnection urlConn = pollClient.openConnection(HttpMethod.POST, "poll");
+      urlConn.setRequestProperty(HttpHeaders.CONTENT_TYPE, "avro/binary");
+      if (compressPayload) {
+        urlConn.setRequestProperty(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
       }
-      if ("deflate".equalsIgnoreCase(contentEncoding)) {
-        return new DeflaterInputStream(is);
+      extendReadTimeout(urlConn, getTimeoutMillis());
+
+      // Send the request
+      Encoder encoder = EncoderFactory.get().directBinaryEncoder(urlConn.getOutputStream(), null);
+      DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(schema);
+      datumWriter.write(record, encoder);
+
+      int responseCode = urlConn.getResponseCode();
+      if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+        urlConn.disconnect();
+        // The response doesn't tell which topic is missing, hence look it up to throw the right exception
+        for (TopicId topicId : topicIds) {
+          getTopic(topicId);
+        }
+        throw new IOException("Failed to fetch messages from topics " + topicIds + ". Reason: topic not found");
       }
 
-      throw new IllegalArgumentException("Unsupported content encoding " + contentEncoding);
+      handleError(responseCode, () -> readErrorResponse(urlConn), "Failed to fetch messages from topics " + topicIds);
+      verifyContentType(urlConn.getHeaderFields(), "avro/binary");
+
+      // Decode the avro array manually instead of using DatumReader in order to support streaming decode.
+      InputStream inputStream = decompressIfNeeded(urlConn, urlConn.getInputStream());
+      Decoder decoder = DecoderFactory.get().binaryDecoder(inputStream, null);
+      long initialItemCount = decoder.readArrayStart();
+      return new AbstractCloseableIterator<TopicRawMessage>() {
+
+        private long itemCount = initialItemCount;
+
+        @Override
+        protected TopicRawMessage computeNext() {
+          if (initialItemCount == 0) {
+            return endOfData();
+          }
+
+          try {
+            if (itemCount == 0) {
+              itemCount = decoder.arrayNext();
+              if (itemCount == 0) {
+                // The zero item count signals the end of the array
+                return endOfData();
+              }
+            }
+
+            itemCount--;
+
+            messageRecord = messageReader.read(messageRecord, decoder);
+            return new TopicRawMessage(topicIds.get((Integer) messageRecord.get("topicIndex")),
+                                       Bytes.toBytes((ByteBuffer) messageRecord.get("id")),
+                                       Bytes.toBytes((ByteBuffer) messageRecord.get("payload")));
+          } catch (IOException e) {
+            throw Throwables.propagate(e);
+          }
+        }
+
+        @Override
+        public void close() {
+          Closeables.closeQuietly(inputStream);
+          urlConn.disconnect();
+        }
+      };
     }
   }
 }
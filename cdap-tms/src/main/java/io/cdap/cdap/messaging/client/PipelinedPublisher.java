@@ -0,0 +1,230 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.client;
+
+import com.google.common.collect.Iterables;
+import io.cdap.cdap.api.messaging.TopicNotFoundException;
+import io.cdap.cdap.messaging.RollbackDetail;
+import io.cdap.cdap.messaging.StoreRequest;
+import io.cdap.cdap.proto.id.TopicId;
+import org.apache.twill.common.Threads;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Publishes {@link StoreRequest} asynchronously with a bounded number of in-flight publish calls.
+ * Requests to the same topic are published in the order they are submitted, with at most one in-flight
+ * publish call per topic. Non-transactional requests that are queued up while a publish call to the same topic
+ * is in flight are coalesced into one publish call, up to the max batch size. Transactional requests are always
+ * published individually, since each of them has its own {@link RollbackDetail}.
+ *
+ * The number of requests that are pending or in flight is bounded across all topics. Callers of
+ * {@link #publish(StoreRequest)} are blocked when the bound is reached, until earlier requests are published.
+ * Since each topic has at most one publish task queued in the executor, this also bounds the executor queue.
+ */
+@ThreadSafe
+final class PipelinedPublisher {
+
+  private final PublishFunction publishFunction;
+  private final int maxBatchSize;
+  private final Semaphore pendingPermits;
+  private final ThreadPoolExecutor executor;
+  private final ConcurrentMap<TopicId, Deque<PendingPublish>> pendingPublishes;
+
+  /**
+   * Creates an instance.
+   *
+   * @param publishFunction the function to perform the actual publish call
+   * @param maxInFlight maximum number of concurrent publish calls
+   * @param maxBatchSize maximum number of payloads to coalesce into one publish call
+   * @param maxPending maximum number of requests that are pending or in flight
+   */
+  PipelinedPublisher(PublishFunction publishFunction, int maxInFlight, int maxBatchSize, int maxPending) {
+    if (maxInFlight <= 0) {
+      throw new IllegalArgumentException("Maximum number of in-flight publish must be positive: " + maxInFlight);
+    }
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("Maximum publish batch size must be positive: " + maxBatchSize);
+    }
+    if (maxPending <= 0) {
+      throw new IllegalArgumentException("Maximum number of pending publish must be positive: " + maxPending);
+    }
+    this.publishFunction = publishFunction;
+    this.maxBatchSize = maxBatchSize;
+    this.pendingPermits = new Semaphore(maxPending);
+    // Threads are daemon and terminate when idle, hence there is no need to shutdown the executor
+    this.executor = new ThreadPoolExecutor(maxInFlight, maxInFlight, 60, TimeUnit.SECONDS,
+                                           new LinkedBlockingQueue<>(),
+                                           Threads.createDaemonThreadFactory("messaging-publisher-%d"));
+    this.executor.allowCoreThreadTimeOut(true);
+    this.pendingPublishes = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Publishes the given {@link StoreRequest} asynchronously. If the maximum number of pending requests is reached,
+   * this method blocks until there is room for the request. Hence it should not be called from a callback of the
+   * returned future, which may run on the publish thread.
+   *
+   * @param request the request to publish
+   * @return a {@link CompletableFuture} that completes when the server acknowledged the publish. It carries
+   *         the {@link RollbackDetail} for transactional publish, or {@code null} for non-transactional publish.
+   *         It completes exceptionally with {@link TopicNotFoundException} if the topic does not exist,
+   *         with {@link IOException} if failed to publish, or with {@link InterruptedException} if the calling
+   *         thread is interrupted while waiting for room for the request.
+   */
+  CompletableFuture<RollbackDetail> publish(StoreRequest request) {
+    PendingPublish pendingPublish = new PendingPublish(request);
+    TopicId topicId = request.getTopicId();
+
+    try {
+      pendingPermits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      pendingPublish.future.completeExceptionally(e);
+      return pendingPublish.future;
+    }
+
+    // The topic has a queue in the map if and only if there is a drain task scheduled for the topic
+    pendingPublishes.compute(topicId, (key, queue) -> {
+      if (queue == null) {
+        queue = new ArrayDeque<>();
+        executor.execute(() -> drain(topicId));
+      }
+      queue.add(pendingPublish);
+      return queue;
+    });
+    return pendingPublish.future;
+  }
+
+  /**
+   * Publishes one batch of pending requests of the given topic, and then reschedule itself if there are more
+   * pending requests. Rescheduling instead of looping gives other topics a fair share of the publish threads.
+   */
+  private void drain(TopicId topicId) {
+    List<PendingPublish> batch = new ArrayList<>();
+    pendingPublishes.computeIfPresent(topicId, (key, queue) -> {
+      pollBatch(queue, batch);
+      return batch.isEmpty() ? null : queue;
+    });
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    RollbackDetail rollbackDetail = null;
+    Throwable failure = null;
+    try {
+      StoreRequest request = batch.size() == 1 ? batch.get(0).request : coalesce(topicId, batch);
+      rollbackDetail = publishFunction.publish(request);
+    } catch (Throwable t) {
+      failure = t;
+    }
+
+    // Release the permits before completing the futures, so that blocked callers can proceed without waiting
+    // for the callbacks of the futures
+    pendingPermits.release(batch.size());
+    try {
+      for (PendingPublish pendingPublish : batch) {
+        if (failure == null) {
+          pendingPublish.future.complete(rollbackDetail);
+        } else {
+          pendingPublish.future.completeExceptionally(failure);
+        }
+      }
+    } finally {
+      executor.execute(() -> drain(topicId));
+    }
+  }
+
+  /**
+   * Polls a batch of requests from the given queue. A transactional request always forms a batch by itself.
+   * Non-transactional requests are only batched with requests of the same partition key.
+   */
+  private void pollBatch(Deque<PendingPublish> queue, List<PendingPublish> batch) {
+    PendingPublish head = queue.poll();
+    if (head == null) {
+      return;
+    }
+    batch.add(head);
+    if (head.request.isTransactional()) {
+      return;
+    }
+
+    int size = head.size;
+    PendingPublish next = queue.peek();
+    while (next != null && !next.request.isTransactional()
+      && Objects.equals(head.request.getPartitionKey(), next.request.getPartitionKey())
+      && size + next.size <= maxBatchSize) {
+      batch.add(queue.poll());
+      size += next.size;
+      next = queue.peek();
+    }
+  }
+
+  /**
+   * Combines the payloads of non-transactional requests into one {@link StoreRequest}.
+   */
+  private StoreRequest coalesce(TopicId topicId, List<PendingPublish> batch) {
+    StoreRequestBuilder builder = StoreRequestBuilder.of(topicId)
+      .setPartitionKey(batch.get(0).request.getPartitionKey());
+    for (PendingPublish pendingPublish : batch) {
+      builder.addPayloads(pendingPublish.request);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Function to perform the publish call.
+   */
+  @FunctionalInterface
+  interface PublishFunction {
+
+    /**
+     * Publishes the given request and returns the {@link RollbackDetail} as returned by the server.
+     */
+    @Nullable
+    RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException;
+  }
+
+  /**
+   * A request pending to be published and the future to complete after the publish.
+   */
+  private static final class PendingPublish {
+    private final StoreRequest request;
+    private final int size;
+    private final CompletableFuture<RollbackDetail> future;
+
+    private PendingPublish(StoreRequest request) {
+      this.request = request;
+      this.size = Iterables.size(request);
+      this.future = new CompletableFuture<>();
+    }
+  }
+}
@@ -39,6 +39,7 @@ public final class StoreRequestBuilder {
   private final TopicId topicId;
   private List<byte[]> payloads;
   private Long txWritePointer;
+  private String partitionKey;
 
   /**
    * Creates a new {@link StoreRequestBuilder} instance.
@@ -98,6 +99,18 @@ public final class StoreRequestBuilder {
     return this;
   }
 
+  /**
+   * Sets the key for choosing the partition of a partitioned topic. Non-transactional requests with the same
+   * partition key are published to the same partition, hence they keep their publish order.
+   * See {@link StoreRequest#getPartitionKey()} for details.
+   *
+   * @param partitionKey the partition key, or {@code null} to spread the requests across partitions
+   */
+  public StoreRequestBuilder setPartitionKey(@Nullable String partitionKey) {
+    this.partitionKey = partitionKey;
+    return this;
+  }
+
   /**
    * Returns {@code true} if there is some payload in this builder.
    */
@@ -113,7 +126,7 @@ public final class StoreRequestBuilder {
       throw new IllegalArgumentException("Payload cannot be empty for non-transactional publish");
     }
     return new SimpleStoreRequest(topicId, txWritePointer != null, txWritePointer == null ? -1L : txWritePointer,
-                                  payloads);
+                                  partitionKey, payloads);
   }
 
   /**
@@ -135,8 +148,8 @@ public final class StoreRequestBuilder {
     private final List<byte[]> payloads;
 
     SimpleStoreRequest(TopicId topicId, boolean transactional, long transactionWritePointer,
-                       @Nullable List<byte[]> payloads) {
-      super(topicId, transactional, transactionWritePointer);
+                       @Nullable String partitionKey, @Nullable List<byte[]> payloads) {
+      super(topicId, transactional, transactionWritePointer, partitionKey);
       this.payloads = payloads == null ? Collections.emptyList() : payloads;
     }
 
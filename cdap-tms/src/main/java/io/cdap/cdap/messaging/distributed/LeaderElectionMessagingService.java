@@ -26,6 +26,7 @@ import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.messaging.MessageFetcher;
 import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.MultiTopicMessageFetcher;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
@@ -159,6 +160,11 @@ public class LeaderElectionMessagingService extends AbstractIdleService implemen
     return getMessagingService().prepareFetch(topicId);
   }
 
+  @Override
+  public MultiTopicMessageFetcher prepareMultiTopicFetch() throws IOException {
+    return getMessagingService().prepareMultiTopicFetch();
+  }
+
   @Override
   @Nullable
   public RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException {
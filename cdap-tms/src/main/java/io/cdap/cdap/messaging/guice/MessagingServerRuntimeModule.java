@@ -32,7 +32,7 @@ import io.cdap.cdap.data2.util.hbase.HBaseTableUtil;
 import io.cdap.cdap.data2.util.hbase.HBaseTableUtilFactory;
 import io.cdap.cdap.gateway.handlers.CommonHandlers;
 import io.cdap.cdap.messaging.MessagingService;
-import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.messaging.cache.OrderedMessageCache;
 import io.cdap.cdap.messaging.distributed.LeaderElectionMessagingService;
 import io.cdap.cdap.messaging.server.FetchHandler;
 import io.cdap.cdap.messaging.server.MessagingHttpService;
@@ -111,7 +111,7 @@ public class MessagingServerRuntimeModule extends RuntimeModule {
       bind(MessageTableCacheProvider.class).toInstance(new MessageTableCacheProvider() {
         @Nullable
         @Override
-        public MessageCache<MessageTable.Entry> getMessageCache(TopicId topicId) {
+        public OrderedMessageCache<MessageTable.Entry> getMessageCache(TopicId topicId) {
           return null;
         }
 
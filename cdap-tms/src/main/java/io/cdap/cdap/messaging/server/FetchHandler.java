@@ -22,6 +22,7 @@ import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.messaging.TopicNotFoundException;
 import io.cdap.cdap.common.BadRequestException;
+import io.cdap.cdap.common.HttpExceptionHandler;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.io.ByteBuffers;
@@ -29,20 +30,28 @@ import io.cdap.cdap.common.logging.LogSamplers;
 import io.cdap.cdap.common.logging.Loggers;
 import io.cdap.cdap.messaging.MessageFetcher;
 import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.MultiTopicMessageFetcher;
 import io.cdap.cdap.messaging.Schemas;
 import io.cdap.cdap.messaging.data.RawMessage;
+import io.cdap.cdap.messaging.data.TopicRawMessage;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
 import io.cdap.http.AbstractHttpHandler;
 import io.cdap.http.BodyProducer;
+import io.cdap.http.ExceptionHandler;
+import io.cdap.http.HandlerContext;
 import io.cdap.http.HttpResponder;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
@@ -55,6 +64,8 @@ import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
 import org.apache.tephra.TransactionCodec;
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,17 +74,27 @@ import java.net.SocketException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * A netty http handler for handling message fetching REST API for the messaging system.
  */
-@Path("/v1/namespaces/{namespace}/topics/{topic}")
+@Path("/v1")
 public final class FetchHandler extends AbstractHttpHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(FetchHandler.class);
@@ -86,47 +107,170 @@ public final class FetchHandler extends AbstractHttpHandler {
   );
 
   private final MessagingService messagingService;
-  private int messageChunkSize;
+  private final int messageChunkSize;
+  private final boolean directEncoding;
+  private final int wrapPayloadSize;
+  private final long maxWaitMillis;
+  private final int waitThreads;
+  private final ExceptionHandler exceptionHandler;
+  private ScheduledExecutorService waitExecutor;
 
   @Inject
   FetchHandler(CConfiguration cConf, MessagingService messagingService) {
     this.messagingService = messagingService;
     this.messageChunkSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE);
+    this.directEncoding = cConf.getBoolean(Constants.MessagingSystem.HTTP_SERVER_CONSUME_DIRECT_ENCODING);
+    this.wrapPayloadSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_WRAP_PAYLOAD_SIZE);
+    this.maxWaitMillis = cConf.getLong(Constants.MessagingSystem.HTTP_SERVER_CONSUME_MAX_WAIT_MS);
+    this.waitThreads = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_WAIT_THREADS);
+    this.exceptionHandler = new HttpExceptionHandler();
   }
 
+  @Override
+  public void init(HandlerContext context) {
+    super.init(context);
+    // Fetch calls that wait for new messages are resumed in this executor,
+    // so that no thread is blocked while waiting
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+      waitThreads, Threads.createDaemonThreadFactory("messaging-fetch-wait-%d"));
+    executor.setRemoveOnCancelPolicy(true);
+    waitExecutor = executor;
+  }
+
+  @Override
+  public void destroy(HandlerContext context) {
+    waitExecutor.shutdownNow();
+    super.destroy(context);
+  }
+
+  /**
+   * Fetches messages from a topic. If the timeout query parameter is given and there is no message available,
+   * the call waits for new messages, up to the given number of milliseconds.
+   */
   @POST
-  @Path("poll")
+  @Path("/namespaces/{namespace}/topics/{topic}/poll")
   public void poll(FullHttpRequest request, HttpResponder responder,
                    @PathParam("namespace") String namespace,
-                   @PathParam("topic") String topic) throws Exception {
+                   @PathParam("topic") String topic,
+                   @QueryParam("timeout") @DefaultValue("0") long timeout) throws Exception {
 
     TopicId topicId = new NamespaceId(namespace).topic(topic);
 
     // Currently only support avro
-    if (!"avro/binary".equals(request.headers().get(HttpHeaderNames.CONTENT_TYPE))) {
-      throw new BadRequestException("Only avro/binary content type is supported.");
-    }
+    checkContentType(request);
 
     // Decode the poll request
     Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(request.content()), null);
     DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.ConsumeRequest.SCHEMA);
 
     // Fetch the messages
-    CloseableIterator<RawMessage> iterator = fetchMessages(datumReader.read(null, decoder), topicId);
-    try {
-      responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
-                            new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
-    } catch (Throwable t) {
-      iterator.close();
-      throw t;
+    MessageFetcher fetcher = createFetcher(datumReader.read(null, decoder), topicId);
+    new PendingFetch<>(request, responder, getWaitMillis(timeout), new FetchCall<RawMessage>() {
+      @Override
+      public CloseableIterator<RawMessage> fetch() throws Exception {
+        return fetcher.fetch();
+      }
+
+      @Override
+      public Cancellable addPublishListener(Runnable listener) {
+        return fetcher.addPublishListener(listener);
+      }
+
+      @Override
+      public BodyProducer createBodyProducer(CloseableIterator<RawMessage> iterator) {
+        return directEncoding
+          ? new DirectMessagesBodyProducer<>(iterator, messageChunkSize, wrapPayloadSize)
+          : new MessagesBodyProducer(iterator, messageChunkSize);
+      }
+    }).fetchOrWait();
+  }
+
+  /**
+   * Fetches messages from multiple topics in one call. The response is an avro array of messages, with each
+   * message carrying the index of the topic in the request. If there is no message available in all topics,
+   * the call waits for new messages, up to the timeout given in the request.
+   */
+  @POST
+  @Path("/poll")
+  public void multiPoll(FullHttpRequest request, HttpResponder responder) throws Exception {
+    checkContentType(request);
+
+    // Decode the poll request
+    Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(request.content()), null);
+    DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.MultiConsumeRequest.SCHEMA);
+    GenericRecord fetchRequest = datumReader.read(null, decoder);
+
+    MultiTopicMessageFetcher fetcher = messagingService.prepareMultiTopicFetch();
+    Map<TopicId, Integer> topicIndexes = new HashMap<>();
+
+    @SuppressWarnings("unchecked")
+    List<GenericRecord> topics = (List<GenericRecord>) fetchRequest.get("topics");
+    for (GenericRecord topicRequest : topics) {
+      TopicId topicId = new NamespaceId(topicRequest.get("namespace").toString())
+        .topic(topicRequest.get("topic").toString());
+      if (topicIndexes.putIfAbsent(topicId, topicIndexes.size()) != null) {
+        throw new BadRequestException("Topic " + topicId + " appears more than once in the request.");
+      }
+
+      Integer limit = (Integer) topicRequest.get("limit");
+      int topicLimit = limit == null ? Integer.MAX_VALUE : limit;
+      Object startFrom = topicRequest.get("startFrom");
+      if (startFrom instanceof ByteBuffer) {
+        fetcher.addTopic(topicId, Bytes.toBytes((ByteBuffer) startFrom), (Boolean) topicRequest.get("inclusive"),
+                         topicLimit);
+      } else if (startFrom instanceof Long) {
+        fetcher.addTopic(topicId, (Long) startFrom, topicLimit);
+      } else {
+        fetcher.addTopic(topicId, null, true, topicLimit);
+      }
+    }
+
+    ByteBuffer encodedTx = (ByteBuffer) fetchRequest.get("transaction");
+    if (encodedTx != null) {
+      fetcher.setTransaction(TRANSACTION_CODEC.decode(ByteBuffers.getByteArray(encodedTx)));
+    }
+
+    long waitMillis = getWaitMillis((Long) fetchRequest.get("timeout"));
+    new PendingFetch<>(request, responder, waitMillis, new FetchCall<TopicRawMessage>() {
+      @Override
+      public CloseableIterator<TopicRawMessage> fetch() throws Exception {
+        return fetcher.fetch();
+      }
+
+      @Override
+      public Cancellable addPublishListener(Runnable listener) {
+        return fetcher.addPublishListener(listener);
+      }
+
+      @Override
+      public BodyProducer createBodyProducer(CloseableIterator<TopicRawMessage> iterator) {
+        return new MultiTopicMessagesBodyProducer(iterator, messageChunkSize, wrapPayloadSize, topicIndexes);
+      }
+    }).fetchOrWait();
+  }
+
+  /**
+   * Returns the number of milliseconds to wait for new messages, based on the timeout requested by the client
+   * and the maximum wait time configured for the server.
+   */
+  private long getWaitMillis(long requestedTimeout) {
+    return Math.max(0L, Math.min(requestedTimeout, maxWaitMillis));
+  }
+
+  /**
+   * Verifies the request has the avro binary content type, which is the only supported type.
+   */
+  private void checkContentType(FullHttpRequest request) throws BadRequestException {
+    if (!"avro/binary".equals(request.headers().get(HttpHeaderNames.CONTENT_TYPE))) {
+      throw new BadRequestException("Only avro/binary content type is supported.");
     }
   }
 
   /**
-   * Creates a {@link CloseableIterator} of {@link RawMessage} based on the given fetch request.
+   * Creates a {@link MessageFetcher} based on the given fetch request.
    */
-  private CloseableIterator<RawMessage> fetchMessages(GenericRecord fetchRequest,
-                                                      TopicId topicId) throws IOException, TopicNotFoundException {
+  private MessageFetcher createFetcher(GenericRecord fetchRequest,
+                                       TopicId topicId) throws IOException, TopicNotFoundException {
     MessageFetcher fetcher = messagingService.prepareFetch(topicId);
 
     Object startFrom = fetchRequest.get("startFrom");
@@ -152,8 +296,185 @@ public final class FetchHandler extends AbstractHttpHandler {
     if (encodedTx != null) {
       fetcher.setTransaction(TRANSACTION_CODEC.decode(ByteBuffers.getByteArray(encodedTx)));
     }
+    return fetcher;
+  }
+
+  /**
+   * A fetch call that can be repeated until there are messages to send back.
+   *
+   * @param <T> type of the messages
+   */
+  private interface FetchCall<T extends RawMessage> {
+
+    /**
+     * Fetches messages from the messaging service.
+     */
+    CloseableIterator<T> fetch() throws Exception;
+
+    /**
+     * Adds a listener that is called once when new messages may be available after the last fetch.
+     */
+    Cancellable addPublishListener(Runnable listener);
+
+    /**
+     * Creates a {@link BodyProducer} for sending back messages from the given iterator.
+     */
+    BodyProducer createBodyProducer(CloseableIterator<T> iterator);
+  }
+
+  /**
+   * A fetch request that waits for new messages if there is no message available. While waiting, the response is
+   * deferred without holding any thread. The fetch is repeated in the wait executor when new messages are
+   * published or when the wait time has passed.
+   *
+   * @param <T> type of the messages
+   */
+  private final class PendingFetch<T extends RawMessage> {
+
+    private final HttpRequest request;
+    private final HttpResponder responder;
+    private final long deadline;
+    private final FetchCall<T> fetchCall;
+
+    PendingFetch(HttpRequest request, HttpResponder responder, long waitMillis, FetchCall<T> fetchCall) {
+      this.request = request;
+      this.responder = responder;
+      this.deadline = System.currentTimeMillis() + waitMillis;
+      this.fetchCall = fetchCall;
+    }
+
+    /**
+     * Fetches messages and sends them back if there is any or the wait time has passed.
+     * Otherwise, waits for new messages without blocking the calling thread.
+     */
+    void fetchOrWait() throws Exception {
+      CloseableIterator<T> iterator = fetchCall.fetch();
+      try {
+        if (System.currentTimeMillis() >= deadline || iterator.hasNext()) {
+          responder.sendContent(HttpResponseStatus.OK, fetchCall.createBodyProducer(iterator),
+                                new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+          return;
+        }
+      } catch (Throwable t) {
+        iterator.close();
+        throw t;
+      }
+      iterator.close();
+
+      // Wake up either by new publish or when the wait time has passed, whichever comes first
+      Wakeup wakeup = new Wakeup();
+      wakeup.listenerCancellable = fetchCall.addPublishListener(wakeup);
+      wakeup.timeoutFuture = waitExecutor.schedule(wakeup, deadline - System.currentTimeMillis(),
+                                                   TimeUnit.MILLISECONDS);
+      // The listener can be called before the fields were set
+      if (wakeup.called.get()) {
+        wakeup.cancel();
+      }
+    }
+
+    /**
+     * Repeats the fetch in the wait executor. Failures are sent back to the client as the handler method
+     * already returned.
+     */
+    private void resume(Wakeup wakeup) {
+      wakeup.cancel();
+      try {
+        fetchOrWait();
+      } catch (Throwable t) {
+        exceptionHandler.handle(t, request, responder);
+      }
+    }
+
+    /**
+     * A {@link Runnable} used both as the publish listener and the timeout task. Only the first call resumes
+     * the fetch.
+     */
+    private final class Wakeup implements Runnable {
+
+      private final AtomicBoolean called = new AtomicBoolean();
+      private volatile Cancellable listenerCancellable;
+      private volatile Future<?> timeoutFuture;
 
-    return fetcher.fetch();
+      @Override
+      public void run() {
+        if (!called.compareAndSet(false, true)) {
+          return;
+        }
+        try {
+          waitExecutor.execute(() -> resume(this));
+        } catch (RejectedExecutionException e) {
+          // The handler is being destroyed
+          LOG.debug("Ignore waiting fetch request {} {} as the handler is stopped", request.method(), request.uri());
+        }
+      }
+
+      void cancel() {
+        if (listenerCancellable != null) {
+          listenerCancellable.cancel();
+        }
+        if (timeoutFuture != null) {
+          timeoutFuture.cancel(false);
+        }
+      }
+    }
+  }
+
+  /**
+   * Base {@link BodyProducer} for sending back messages from a {@link CloseableIterator}.
+   */
+  private abstract static class AbstractMessagesBodyProducer<T extends RawMessage> extends BodyProducer {
+
+    protected final CloseableIterator<T> iterator;
+    protected final List<T> messages;
+    protected final int messageChunkSize;
+
+    AbstractMessagesBodyProducer(CloseableIterator<T> iterator, int messageChunkSize) {
+      this.iterator = iterator;
+      this.messages = new ArrayList<>();
+      this.messageChunkSize = messageChunkSize;
+    }
+
+    /**
+     * Fills the {@link #messages} list with messages from the iterator, up to the chunk size.
+     *
+     * @return the approximate encoded size of the messages
+     */
+    protected int fillMessages() {
+      int size = 0;
+      messages.clear();
+      while (iterator.hasNext() && size < messageChunkSize) {
+        T message = iterator.next();
+        messages.add(message);
+
+        // Avro encodes bytes as (len + bytes), hence adding 8 to cater for the length of the id and payload
+        // Straightly speaking it can be up to 9 bytes each (hence 18 bytes),
+        // but we don't expect id and payload of such size
+        size += message.getId().length + message.getPayload().length + 8;
+      }
+      return size;
+    }
+
+    @Override
+    public void finished() throws Exception {
+      iterator.close();
+    }
+
+    @Override
+    public void handleError(@Nullable Throwable cause) {
+      iterator.close();
+      // Since response header is already sent, there is nothing we can send back to client. Simply log the failure
+      if (cause instanceof SocketException
+        || cause instanceof ClosedChannelException
+        || (cause instanceof IOException && KNOWN_IO_EXCEPTION_MESSAGES.contains(cause.getMessage()))) {
+        // This can easily caused by client close connection prematurely. Don't want to flood the log.
+        LOG.trace("Connection closed by client prematurely while sending messages back to client", cause);
+      } else {
+        // Use sampling logger to log to avoid flooding the log if there is any systematic failure
+        SAMPLING_LOG.warn("Exception raised when sending messages back to client", cause);
+        // Also log a trace to provide a way to see every error if needed
+        LOG.trace("Exception raised when sending messages back to client", cause);
+      }
+    }
   }
 
   /**
@@ -161,11 +482,8 @@ public final class FetchHandler extends AbstractHttpHandler {
    * Instead of using GenericDatumWriter, we perform the array encoding manually so that we don't have to buffer
    * all messages in memory before sending out.
    */
-  private static class MessagesBodyProducer extends BodyProducer {
+  private static final class MessagesBodyProducer extends AbstractMessagesBodyProducer<RawMessage> {
 
-    private final CloseableIterator<RawMessage> iterator;
-    private final List<RawMessage> messages;
-    private final int messageChunkSize;
     private final ByteBuf chunk;
     private final Encoder encoder;
     private final GenericRecord messageRecord;
@@ -174,9 +492,7 @@ public final class FetchHandler extends AbstractHttpHandler {
     private boolean arrayEnded;
 
     MessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
-      this.iterator = iterator;
-      this.messages = new ArrayList<>();
-      this.messageChunkSize = messageChunkSize;
+      super(iterator, messageChunkSize);
       this.chunk = Unpooled.buffer(messageChunkSize);
       this.encoder = EncoderFactory.get().directBinaryEncoder(new ByteBufOutputStream(chunk), null);
 
@@ -209,17 +525,7 @@ public final class FetchHandler extends AbstractHttpHandler {
       }
 
       // Try to buffer up to buffer size
-      int size = 0;
-      messages.clear();
-      while (iterator.hasNext() && size < messageChunkSize) {
-        RawMessage message = iterator.next();
-        messages.add(message);
-
-        // Avro encodes bytes as (len + bytes), hence adding 8 to cater for the length of the id and payload
-        // Straightly speaking it can be up to 9 bytes each (hence 18 bytes),
-        // but we don't expect id and payload of such size
-        size += message.getId().length + message.getPayload().length + 8;
-      }
+      fillMessages();
 
       encoder.setItemCount(messages.size());
       for (RawMessage message : messages) {
@@ -243,25 +549,121 @@ public final class FetchHandler extends AbstractHttpHandler {
 
     @Override
     public void finished() throws Exception {
-      iterator.close();
+      super.finished();
       chunk.release();
     }
+  }
+
+  /**
+   * A {@link BodyProducer} that writes the message id and payload bytes directly into pooled {@link ByteBuf},
+   * without going through an Avro {@link GenericRecord} and {@link Encoder} per message.
+   * The response is encoded in the same format as the {@link MessagesBodyProducer}, which is an Avro array of
+   * records, where each record has the message id and payload as Avro bytes.
+   * Payloads not smaller than the wrap payload size are wrapped as components of a {@link CompositeByteBuf}
+   * instead of being copied into the chunk.
+   */
+  private static class DirectMessagesBodyProducer<T extends RawMessage> extends AbstractMessagesBodyProducer<T> {
+
+    private static final ByteBufAllocator ALLOCATOR = PooledByteBufAllocator.DEFAULT;
+
+    private final int wrapPayloadSize;
+    private boolean arrayEnded;
+
+    DirectMessagesBodyProducer(CloseableIterator<T> iterator, int messageChunkSize, int wrapPayloadSize) {
+      super(iterator, messageChunkSize);
+      this.wrapPayloadSize = wrapPayloadSize;
+    }
 
     @Override
-    public void handleError(@Nullable Throwable cause) {
-      iterator.close();
-      // Since response header is already sent, there is nothing we can send back to client. Simply log the failure
-      if (cause instanceof SocketException
-        || cause instanceof ClosedChannelException
-        || (cause instanceof IOException && KNOWN_IO_EXCEPTION_MESSAGES.contains(cause.getMessage()))) {
-        // This can easily caused by client close connection prematurely. Don't want to flood the log.
-        LOG.trace("Connection closed by client prematurely while sending messages back to client", cause);
-      } else {
-        // Use sampling logger to log to avoid flooding the log if there is any systematic failure
-        SAMPLING_LOG.warn("Exception raised when sending messages back to client", cause);
-        // Also log a trace to provide a way to see every error if needed
-        LOG.trace("Exception raised when sending messages back to client", cause);
+    public ByteBuf nextChunk() throws Exception {
+      // Already sent all messages, return empty to signal the end of response
+      if (arrayEnded) {
+        return Unpooled.EMPTY_BUFFER;
       }
+
+      int size = fillMessages();
+
+      // Use a composite buffer with no limit on number of components, so that wrapped payloads are never copied
+      CompositeByteBuf chunk = ALLOCATOR.compositeBuffer(Integer.MAX_VALUE);
+      ByteBuf buffer = ALLOCATOR.buffer(Math.min(size, messageChunkSize) + 20);
+      try {
+        // Avro array is encoded as blocks of (item count, items), terminated by a block of zero item.
+        if (!messages.isEmpty()) {
+          writeLong(buffer, messages.size());
+        }
+        for (T message : messages) {
+          writeMessagePrefix(buffer, message);
+
+          byte[] id = message.getId();
+          writeLong(buffer, id.length);
+          buffer.writeBytes(id);
+
+          byte[] payload = message.getPayload();
+          writeLong(buffer, payload.length);
+          if (payload.length < wrapPayloadSize) {
+            buffer.writeBytes(payload);
+          } else {
+            // Adding a component transfers the ownership of the buffer to the composite buffer
+            chunk.addComponent(true, buffer);
+            buffer = null;
+            chunk.addComponent(true, Unpooled.wrappedBuffer(payload));
+            buffer = ALLOCATOR.buffer();
+          }
+        }
+
+        if (!iterator.hasNext()) {
+          arrayEnded = true;
+          writeLong(buffer, 0L);
+        }
+        chunk.addComponent(true, buffer);
+        buffer = null;
+        return chunk;
+      } catch (Throwable t) {
+        if (buffer != null) {
+          buffer.release();
+        }
+        chunk.release();
+        throw t;
+      }
+    }
+
+    /**
+     * Writes the fields of the message record that come before the message id. By default there is none.
+     */
+    protected void writeMessagePrefix(ByteBuf buffer, T message) {
+      // no-op
+    }
+
+    /**
+     * Writes a long value to the given {@link ByteBuf} with Avro variable-length zig-zag encoding.
+     */
+    static void writeLong(ByteBuf buffer, long value) {
+      long n = (value << 1) ^ (value >> 63);
+      while ((n & ~0x7FL) != 0) {
+        buffer.writeByte((int) ((n & 0x7F) | 0x80));
+        n >>>= 7;
+      }
+      buffer.writeByte((int) n);
+    }
+  }
+
+  /**
+   * A {@link DirectMessagesBodyProducer} for the multi-topic fetch response, which has the topic index
+   * encoded before the message id of each message.
+   */
+  private static final class MultiTopicMessagesBodyProducer extends DirectMessagesBodyProducer<TopicRawMessage> {
+
+    private final Map<TopicId, Integer> topicIndexes;
+
+    MultiTopicMessagesBodyProducer(CloseableIterator<TopicRawMessage> iterator, int messageChunkSize,
+                                   int wrapPayloadSize, Map<TopicId, Integer> topicIndexes) {
+      super(iterator, messageChunkSize, wrapPayloadSize);
+      this.topicIndexes = topicIndexes;
+    }
+
+    @Override
+    protected void writeMessagePrefix(ByteBuf buffer, TopicRawMessage message) {
+      writeLong(buffer, topicIndexes.get(message.getTopicId()));
     }
   }
 }
@@ -23,6 +23,8 @@ import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -62,8 +64,11 @@ import javax.annotation.concurrent.ThreadSafe;
 @ThreadSafe
 final class ConcurrentMessageWriter implements Closeable {
 
+  private static final Logger LOG = LoggerFactory.getLogger(ConcurrentMessageWriter.class);
+
   private final StoreRequestWriter<?> messagesWriter;
   private final MetricsCollector metricsCollector;
+  private final Runnable persistListener;
   private final PendingStoreQueue pendingStoreQueue;
   private final AtomicBoolean writerFlag;
   private final AtomicBoolean closed;
@@ -83,8 +88,22 @@ final class ConcurrentMessageWriter implements Closeable {
    * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
    */
   ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector) {
+    this(messagesWriter, metricsCollector, () -> { });
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
+   * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
+   * @param persistListener a {@link Runnable} to be called after each successful write of a batch of
+   *                        {@link StoreRequest}, before the persist callers are unblocked
+   */
+  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector,
+                          Runnable persistListener) {
     this.messagesWriter = messagesWriter;
     this.metricsCollector = metricsCollector;
+    this.persistListener = persistListener;
     this.pendingStoreQueue = new PendingStoreQueue(metricsCollector);
     this.writerFlag = new AtomicBoolean();
     this.closed = new AtomicBoolean();
@@ -144,7 +163,7 @@ final class ConcurrentMessageWriter implements Closeable {
       return false;
     }
     try {
-      pendingStoreQueue.persist(messagesWriter);
+      pendingStoreQueue.persist(messagesWriter, persistListener);
     } finally {
       writerFlag.set(false);
     }
@@ -192,7 +211,7 @@ final class ConcurrentMessageWriter implements Closeable {
     /**
      * Persists all {@link PendingStoreRequest} currently in the queue with the given writer.
      */
-    void persist(StoreRequestWriter<?> writer) {
+    void persist(StoreRequestWriter<?> writer, Runnable persistListener) {
       // Capture all current events.
       // The reason for capturing instead of using a live iterator is to avoid the possible case of infinite write
       // time. E.g. while generating the entry to write to the storage table, a new store request get enqueued.
@@ -208,12 +227,24 @@ final class ConcurrentMessageWriter implements Closeable {
 
       metricsCollector.gauge("persist.queue.size", inflightRequests.size());
 
+      if (inflightRequests.isEmpty()) {
+        return;
+      }
+
       try {
         writer.write(inflightRequests.iterator());
-        completeAll(null);
       } catch (Throwable t) {
         completeAll(t);
+        return;
+      }
+
+      try {
+        persistListener.run();
+      } catch (Throwable t) {
+        // The write was already succeeded, hence don't fail the requests
+        LOG.warn("Exception raised from the persist listener", t);
       }
+      completeAll(null);
     }
 
     /**
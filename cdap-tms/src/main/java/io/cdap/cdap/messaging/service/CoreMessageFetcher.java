@@ -19,16 +19,19 @@ package io.cdap.cdap.messaging.service;
 import com.google.common.base.Throwables;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.messaging.MessageFetcher;
+import io.cdap.cdap.messaging.PayloadCompression;
 import io.cdap.cdap.messaging.TopicMetadata;
 import io.cdap.cdap.messaging.data.MessageId;
 import io.cdap.cdap.messaging.data.RawMessage;
 import io.cdap.cdap.messaging.store.MessageTable;
 import io.cdap.cdap.messaging.store.PayloadTable;
 import io.cdap.cdap.proto.id.TopicId;
+import org.apache.twill.common.Cancellable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
@@ -44,17 +47,58 @@ final class CoreMessageFetcher extends MessageFetcher {
   private final TopicMetadata topicMetadata;
   private final TableProvider<MessageTable> messageTableProvider;
   private final TableProvider<PayloadTable> payloadTableProvider;
+  private final PublishNotifier publishNotifier;
+  private volatile long fetchPublishCount = -1L;
 
   CoreMessageFetcher(TopicMetadata topicMetadata,
                      TableProvider<MessageTable> messageTableProvider,
-                     TableProvider<PayloadTable> payloadTableProvider) {
+                     TableProvider<PayloadTable> payloadTableProvider,
+                     PublishNotifier publishNotifier) {
     this.topicMetadata = topicMetadata;
     this.messageTableProvider = messageTableProvider;
     this.payloadTableProvider = payloadTableProvider;
+    this.publishNotifier = publishNotifier;
   }
 
   @Override
   public CloseableIterator<RawMessage> fetch() throws IOException {
+    long deadline = System.currentTimeMillis() + getTimeoutMillis();
+    while (true) {
+      // Get the publish count before fetching so that no publish will be missed while waiting
+      long publishCount = publishNotifier.getPublishCount(topicMetadata.getTopicId());
+      fetchPublishCount = publishCount;
+      CloseableIterator<RawMessage> iterator = openIterator();
+      long remaining = deadline - System.currentTimeMillis();
+      try {
+        if (remaining <= 0 || iterator.hasNext()) {
+          return iterator;
+        }
+      } catch (Throwable t) {
+        closeQuietly(iterator);
+        throw t;
+      }
+
+      // Wait for new messages being published to the topic
+      iterator.close();
+      try {
+        publishNotifier.await(topicMetadata.getTopicId(), publishCount, remaining);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for new messages in topic "
+                                           + topicMetadata.getTopicId());
+      }
+    }
+  }
+
+  @Override
+  public Cancellable addPublishListener(Runnable listener) {
+    return publishNotifier.addListener(topicMetadata.getTopicId(), fetchPublishCount, listener);
+  }
+
+  /**
+   * Opens a {@link CloseableIterator} for fetching messages from the message table and payload table.
+   */
+  private CloseableIterator<RawMessage> openIterator() throws IOException {
     MessageTable messageTable = messageTableProvider.get();
     try {
       return new MessageCloseableIterator(messageTable);
@@ -126,6 +170,7 @@ final class CoreMessageFetcher extends MessageFetcher {
 
     private final CloseableIterator<MessageTable.Entry> messageIterator;
     private final TopicId topicId;
+    private final PayloadCompression compression;
     private final MessageTable messageTable;
     private RawMessage nextMessage;
     private MessageTable.Entry messageEntry;
@@ -137,6 +182,7 @@ final class CoreMessageFetcher extends MessageFetcher {
 
     MessageCloseableIterator(MessageTable messageTable) throws IOException {
       this.topicId = topicMetadata.getTopicId();
+      this.compression = topicMetadata.getCompression();
       this.messageTable = messageTable;
       this.inclusive = isIncludeStart();
       this.messageLimit = getLimit();
@@ -180,7 +226,8 @@ final class CoreMessageFetcher extends MessageFetcher {
         if (payloadIterator != null && payloadIterator.hasNext()) {
           PayloadTable.Entry payloadEntry = payloadIterator.next();
           // messageEntry is guaranteed to be non-null if payloadIterator is non-null
-          nextMessage = new RawMessage(createMessageId(messageEntry, payloadEntry), payloadEntry.getPayload());
+          nextMessage = new RawMessage(createMessageId(messageEntry, payloadEntry),
+                                       compression.decompress(payloadEntry.getPayload()));
           break;
         }
 
@@ -211,7 +258,8 @@ final class CoreMessageFetcher extends MessageFetcher {
             }
           } else {
             // Otherwise, the message entry is the next message
-            nextMessage = new RawMessage(createMessageId(messageEntry, null), messageEntry.getPayload());
+            nextMessage = new RawMessage(createMessageId(messageEntry, null),
+                                         compression.decompress(messageEntry.getPayload()));
           }
         } else {
           // If there is no more message from the message iterator as well, then no more message to fetch
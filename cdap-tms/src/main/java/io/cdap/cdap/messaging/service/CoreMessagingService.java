@@ -39,6 +39,8 @@ import io.cdap.cdap.messaging.MessageFetcher;
 import io.cdap.cdap.messaging.MessagingService;
 import io.cdap.cdap.messaging.MessagingServiceUtils;
 import io.cdap.cdap.messaging.MessagingUtils;
+import io.cdap.cdap.messaging.MultiTopicMessageFetcher;
+import io.cdap.cdap.messaging.PayloadCompression;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
@@ -55,6 +57,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -66,6 +69,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -86,6 +90,8 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   private final TimeProvider timeProvider;
   private final MetricsCollectionService metricsCollectionService;
   private final long txMaxLifeTimeInMillis;
+  private final PublishNotifier publishNotifier;
+  private final AtomicInteger partitionCounter;
 
   @Inject
   protected CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
@@ -99,6 +105,8 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     this.cConf = cConf;
     this.tableFactory = tableFactory;
     this.topicCache = createTopicCache();
+    this.publishNotifier = new PublishNotifier();
+    this.partitionCounter = new AtomicInteger();
     this.messageTableWriterCache = createTableWriterCache(true, cConf);
     this.payloadTableWriterCache = createTableWriterCache(false, cConf);
     this.timeProvider = timeProvider;
@@ -119,30 +127,100 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
 
   @Override
   public void createTopic(TopicMetadata topicMetadata) throws TopicAlreadyExistsException, IOException {
+    TopicId topicId = topicMetadata.getTopicId();
+    checkNoParentTopic(topicMetadata);
+
     try (MetadataTable metadataTable = createMetadataTable()) {
       Map<String, String> properties = createDefaultProperties();
       properties.putAll(topicMetadata.getProperties());
-      metadataTable.createTopic(new TopicMetadata(topicMetadata.getTopicId(), properties, true));
+      TopicMetadata metadata = new TopicMetadata(topicId, properties, true);
+
+      // Create the partitions first, so that all partitions exist once the topic exists
+      if (metadata.getPartitions() > 1) {
+        // Partitions may already exist if the previous creation of the topic failed after creating them.
+        // Any other topic with the name of a partition is a regular topic, which cannot be used as a partition.
+        for (TopicId partitionTopicId : metadata.getPartitionTopicIds()) {
+          try {
+            if (!metadataTable.getMetadata(partitionTopicId).isPartitionOf(topicId)) {
+              throw new TopicAlreadyExistsException(partitionTopicId.getNamespace(), partitionTopicId.getTopic());
+            }
+          } catch (TopicNotFoundException e) {
+            // expected
+          }
+        }
+        for (TopicId partitionTopicId : metadata.getPartitionTopicIds()) {
+          try {
+            metadataTable.createTopic(createPartitionMetadata(topicId, partitionTopicId, properties));
+          } catch (TopicAlreadyExistsException e) {
+            LOG.debug("Partition {} of topic {} already exists", partitionTopicId, topicId);
+          }
+        }
+      }
+      metadataTable.createTopic(metadata);
     }
   }
 
   @Override
   public void updateTopic(TopicMetadata topicMetadata) throws TopicNotFoundException, IOException {
+    TopicId topicId = topicMetadata.getTopicId();
+    checkNoParentTopic(topicMetadata);
     try (MetadataTable metadataTable = createMetadataTable()) {
       Map<String, String> properties = createDefaultProperties();
       properties.putAll(topicMetadata.getProperties());
-      metadataTable.updateTopic(new TopicMetadata(topicMetadata.getTopicId(), properties, true));
-      topicCache.invalidate(topicMetadata.getTopicId());
+
+      // The number of partitions and the compression cannot be changed,
+      // since messages are already stored with the existing settings
+      TopicMetadata existing = metadataTable.getMetadata(topicId);
+      checkNotPartition(existing);
+      int partitions = existing.getPartitions();
+      if (!properties.containsKey(TopicMetadata.PARTITIONS_KEY) && partitions > 1) {
+        properties.put(TopicMetadata.PARTITIONS_KEY, Integer.toString(partitions));
+      }
+      PayloadCompression compression = existing.getCompression();
+      if (!properties.containsKey(TopicMetadata.COMPRESSION_KEY) && compression != PayloadCompression.NONE) {
+        properties.put(TopicMetadata.COMPRESSION_KEY, compression.name().toLowerCase());
+      }
+      TopicMetadata metadata = new TopicMetadata(topicId, properties, true);
+      if (metadata.getPartitions() != partitions) {
+        throw new IllegalArgumentException("Cannot change the number of partitions of topic " + topicId
+                                             + " from " + partitions + " to " + metadata.getPartitions());
+      }
+      if (metadata.getCompression() != compression) {
+        throw new IllegalArgumentException("Cannot change the compression of topic " + topicId
+                                             + " from " + compression + " to " + metadata.getCompression());
+      }
+
+      if (partitions > 1) {
+        for (TopicId partitionTopicId : metadata.getPartitionTopicIds()) {
+          metadataTable.updateTopic(createPartitionMetadata(topicId, partitionTopicId, properties));
+          topicCache.invalidate(partitionTopicId);
+        }
+      }
+      metadataTable.updateTopic(metadata);
+      topicCache.invalidate(topicId);
     }
   }
 
   @Override
   public void deleteTopic(TopicId topicId) throws TopicNotFoundException, IOException {
     try (MetadataTable metadataTable = createMetadataTable()) {
+      TopicMetadata metadata = metadataTable.getMetadata(topicId);
+      checkNotPartition(metadata);
+
+      // Delete the topic first, so that the topic doesn't exist if any partition is deleted
       metadataTable.deleteTopic(topicId);
-      topicCache.invalidate(topicId);
-      messageTableWriterCache.invalidate(topicId);
-      payloadTableWriterCache.invalidate(topicId);
+      invalidateTopic(topicId);
+
+      if (metadata.getPartitions() > 1) {
+        for (TopicId partitionTopicId : metadata.getPartitionTopicIds()) {
+          try {
+            metadataTable.deleteTopic(partitionTopicId);
+          } catch (TopicNotFoundException e) {
+            LOG.debug("Partition {} of topic {} does not exist", partitionTopicId, topicId);
+          }
+          invalidateTopic(partitionTopicId);
+        }
+      }
     }
   }
 
@@ -160,27 +238,48 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   @Override
   public List<TopicId> listTopics(NamespaceId namespaceId) throws IOException {
     try (MetadataTable metadataTable = createMetadataTable()) {
-      return metadataTable.listTopics(namespaceId);
+      // Partitions of partitioned topics are not listed
+      List<TopicId> topics = new ArrayList<>();
+      for (TopicId topicId : metadataTable.listTopics(namespaceId)) {
+        try {
+          if (!TopicMetadata.hasPartitionTopicName(topicId) || !metadataTable.getMetadata(topicId).isPartition()) {
+            topics.add(topicId);
+          }
+        } catch (TopicNotFoundException e) {
+          // The topic was deleted after listing
+        }
+      }
+      return topics;
     }
   }
 
   @Override
   public MessageFetcher prepareFetch(final TopicId topicId) throws TopicNotFoundException, IOException {
     final TopicMetadata metadata = getTopic(topicId);
+    if (metadata.getPartitions() > 1) {
+      throw new IllegalArgumentException("Topic " + topicId + " has " + metadata.getPartitions() + " partitions. "
+                                           + "Messages can only be fetched from the partitions of the topic.");
+    }
     return new CoreMessageFetcher(metadata,
                                   () -> createMessageTable(metadata),
-                                  () -> createPayloadTable(metadata));
+                                  () -> createPayloadTable(metadata),
+                                  publishNotifier);
+  }
+
+  @Override
+  public MultiTopicMessageFetcher prepareMultiTopicFetch() {
+    return new CoreMultiTopicMessageFetcher(this, publishNotifier);
   }
 
   @Nullable
   @Override
   public RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException {
     try {
-      TopicMetadata metadata = topicCache.get(request.getTopicId());
+      TopicMetadata metadata = getPartitionMetadata(topicCache.get(request.getTopicId()), request);
       if (request.isTransactional()) {
         ensureValidTxLifetime(request.getTransactionWritePointer());
       }
-      return messageTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      return messageTableWriterCache.get(metadata.getTopicId()).persist(request, metadata);
     } catch (ExecutionException e) {
       Throwable cause = Objects.firstNonNull(e.getCause(), e);
       Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
@@ -191,8 +290,8 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   @Override
   public void storePayload(StoreRequest request) throws TopicNotFoundException, IOException {
     try {
-      TopicMetadata metadata = topicCache.get(request.getTopicId());
-      payloadTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      TopicMetadata metadata = getPartitionMetadata(topicCache.get(request.getTopicId()), request);
+      payloadTableWriterCache.get(metadata.getTopicId()).persist(request, metadata);
     } catch (ExecutionException e) {
       Throwable cause = Objects.firstNonNull(e.getCause(), e);
       Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
@@ -203,6 +302,11 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   @Override
   public void rollback(TopicId topicId, RollbackDetail rollbackDetail) throws TopicNotFoundException, IOException {
     TopicMetadata metadata = getTopic(topicId);
+    checkNotPartition(metadata);
+    if (metadata.getPartitions() > 1) {
+      // Transactional messages are always published to the same partition based on the transaction write pointer
+      metadata = getTopic(getPartitionTopicId(metadata, rollbackDetail.getTransactionWritePointer()));
+    }
     Exception failure = null;
     try (MessageTable messageTable = createMessageTable(metadata)) {
       messageTable.rollback(metadata, rollbackDetail);
@@ -256,6 +360,83 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     LOG.info("Core Messaging Service stopped");
   }
 
+  /**
+   * Returns the {@link TopicMetadata} of the partition that the given {@link StoreRequest} should be written to.
+   * Transactional requests are assigned to partitions based on the transaction write pointer, so that all
+   * messages and payloads of the same transaction are in the same partition. Non-transactional requests are
+   * assigned to partitions by the hash of the partition key, so that requests with the same key keep their order.
+   * Non-transactional requests without a partition key are assigned to partitions in round robin.
+   */
+  private TopicMetadata getPartitionMetadata(TopicMetadata metadata,
+                                             StoreRequest request) throws TopicNotFoundException, IOException {
+    checkNotPartition(metadata);
+    int partitions = metadata.getPartitions();
+    if (partitions == 1) {
+      return metadata;
+    }
+    if (request.isTransactional()) {
+      return getTopic(getPartitionTopicId(metadata, request.getTransactionWritePointer()));
+    }
+    String partitionKey = request.getPartitionKey();
+    int partition = partitionKey == null
+      ? Math.floorMod(partitionCounter.getAndIncrement(), partitions)
+      : Math.floorMod(partitionKey.hashCode(), partitions);
+    return getTopic(TopicMetadata.getPartitionTopicId(metadata.getTopicId(), partition));
+  }
+
+  private TopicId getPartitionTopicId(TopicMetadata metadata, long transactionWritePointer) {
+    int partition = (int) Math.floorMod(transactionWritePointer, (long) metadata.getPartitions());
+    return TopicMetadata.getPartitionTopicId(metadata.getTopicId(), partition);
+  }
+
+  /**
+   * Checks that the given topic is not a partition of a partitioned topic. Partitions are managed through the
+   * partitioned topic and can only be fetched from directly.
+   *
+   * @throws IllegalArgumentException if the topic is a partition
+   */
+  private void checkNotPartition(TopicMetadata metadata) {
+    if (metadata.isPartition()) {
+      throw new IllegalArgumentException("Topic " + metadata.getTopicId() + " stores a partition of topic "
+                                           + metadata.getProperties().get(TopicMetadata.PARENT_TOPIC_KEY)
+                                           + " and cannot be modified directly");
+    }
+  }
+
+  /**
+   * Checks that the given metadata provided by the user doesn't have the property that is reserved for partitions.
+   *
+   * @throws IllegalArgumentException if the metadata has the property
+   */
+  private void checkNoParentTopic(TopicMetadata metadata) {
+    if (metadata.isPartition()) {
+      throw new IllegalArgumentException("Property " + TopicMetadata.PARENT_TOPIC_KEY + " of topic "
+                                           + metadata.getTopicId() + " is reserved for partitions");
+    }
+  }
+
+  /**
+   * Creates the {@link TopicMetadata} for a partition of a partitioned topic. A partition has the same
+   * properties as the topic, except that it is not partitioned and it has the name of the partitioned topic.
+   */
+  private TopicMetadata createPartitionMetadata(TopicId topicId, TopicId partitionTopicId,
+                                                Map<String, String> properties) {
+    Map<String, String> partitionProperties = new HashMap<>(properties);
+    partitionProperties.remove(TopicMetadata.PARTITIONS_KEY);
+    partitionProperties.put(TopicMetadata.PARENT_TOPIC_KEY, topicId.getTopic());
+    return new TopicMetadata(partitionTopicId, partitionProperties, true);
+  }
+
+  /**
+   * Removes all cached states of the given topic.
+   */
+  private void invalidateTopic(TopicId topicId) {
+    topicCache.invalidate(topicId);
+    messageTableWriterCache.invalidate(topicId);
+    payloadTableWriterCache.invalidate(topicId);
+    publishNotifier.removeTopic(topicId);
+  }
+
   private void ensureValidTxLifetime(long transactionWritePointer) throws IOException {
     long txTimestamp = TxUtils.getTimestamp(transactionWritePointer);
     boolean validLifetime = (txTimestamp + txMaxLifeTimeInMillis) > System.currentTimeMillis();
@@ -366,7 +547,11 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
             Constants.Metrics.Tag.TABLE, messageTable ? "message" : "payload"
           ));
 
-          return new ConcurrentMessageWriter(messagesWriter, metricsContext);
+          // Only messages written to the message table are visible to fetchers, hence only notify for those writes
+          return messageTable
+            ? new ConcurrentMessageWriter(messagesWriter, metricsContext,
+                                          () -> publishNotifier.notifyPublished(topicId))
+            : new ConcurrentMessageWriter(messagesWriter, metricsContext);
         }
       });
   }
@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.service;
+
+import com.google.common.base.Throwables;
+import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.api.messaging.TopicNotFoundException;
+import io.cdap.cdap.messaging.MessageFetcher;
+import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.MultiTopicMessageFetcher;
+import io.cdap.cdap.messaging.data.RawMessage;
+import io.cdap.cdap.messaging.data.TopicRawMessage;
+import io.cdap.cdap.proto.id.TopicId;
+import org.apache.twill.common.Cancellable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Implementation of {@link MultiTopicMessageFetcher} that fetches messages from each topic sequentially
+ * through the {@link MessageFetcher} of the given {@link MessagingService}. If there is no message in all topics,
+ * it waits for new messages being published, up to the timeout.
+ */
+final class CoreMultiTopicMessageFetcher extends MultiTopicMessageFetcher {
+
+  private final MessagingService messagingService;
+  private final PublishNotifier publishNotifier;
+  private volatile Map<TopicId, Long> fetchPublishCounts = Collections.emptyMap();
+
+  CoreMultiTopicMessageFetcher(MessagingService messagingService, PublishNotifier publishNotifier) {
+    this.messagingService = messagingService;
+    this.publishNotifier = publishNotifier;
+  }
+
+  @Override
+  public CloseableIterator<TopicRawMessage> fetch() throws TopicNotFoundException, IOException {
+    // Prepare all the fetchers first so that missing topics are reported before any fetching
+    List<TopicMessageFetcher> fetchers = new ArrayList<>();
+    for (TopicFetch topicFetch : getTopicFetches().values()) {
+      MessageFetcher fetcher = topicFetch.applyTo(messagingService.prepareFetch(topicFetch.getTopicId()));
+      if (getTransaction() != null) {
+        fetcher.setTransaction(getTransaction());
+      }
+      fetchers.add(new TopicMessageFetcher(topicFetch.getTopicId(), fetcher));
+    }
+
+    long deadline = System.currentTimeMillis() + getTimeoutMillis();
+    while (true) {
+      // Get the publish counts before fetching so that no publish will be missed while waiting
+      Map<TopicId, Long> publishCounts = getPublishCounts();
+      fetchPublishCounts = publishCounts;
+      MultiTopicIterator iterator = new MultiTopicIterator(fetchers.iterator());
+      try {
+        if (iterator.hasNext()) {
+          return iterator;
+        }
+      } catch (Throwable t) {
+        iterator.close();
+        Throwables.propagateIfPossible(t.getCause(), TopicNotFoundException.class, IOException.class);
+        throw t;
+      }
+
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        // An exhausted iterator has no resource open
+        return iterator;
+      }
+      CountDownLatch latch = new CountDownLatch(1);
+      Cancellable cancellable = addListener(publishCounts, latch::countDown);
+      try {
+        latch.await(remaining, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for new messages");
+      } finally {
+        cancellable.cancel();
+      }
+    }
+  }
+
+  @Override
+  public Cancellable addPublishListener(Runnable listener) {
+    Map<TopicId, Long> publishCounts = new HashMap<>(fetchPublishCounts);
+    // Topics not fetched yet are considered as having new messages
+    for (TopicId topicId : getTopicFetches().keySet()) {
+      publishCounts.putIfAbsent(topicId, -1L);
+    }
+    return addListener(publishCounts, listener);
+  }
+
+  /**
+   * Returns the current publish count of each topic being fetched.
+   */
+  private Map<TopicId, Long> getPublishCounts() {
+    Map<TopicId, Long> publishCounts = new HashMap<>();
+    for (TopicId topicId : getTopicFetches().keySet()) {
+      publishCounts.put(topicId, publishNotifier.getPublishCount(topicId));
+    }
+    return publishCounts;
+  }
+
+  /**
+   * Adds a listener to each of the given topics. The given {@link Runnable} is called once when there is new
+   * publish to any of the topics after the given publish count.
+   */
+  private Cancellable addListener(Map<TopicId, Long> publishCounts, Runnable runnable) {
+    AtomicBoolean called = new AtomicBoolean();
+    Runnable listener = () -> {
+      if (called.compareAndSet(false, true)) {
+        runnable.run();
+      }
+    };
+    List<Cancellable> cancellables = new ArrayList<>();
+    for (Map.Entry<TopicId, Long> entry : publishCounts.entrySet()) {
+      cancellables.add(publishNotifier.addListener(entry.getKey(), entry.getValue(), listener));
+    }
+    return () -> cancellables.forEach(Cancellable::cancel);
+  }
+
+  /**
+   * A {@link MessageFetcher} with the topic that it fetches from.
+   */
+  private static final class TopicMessageFetcher {
+    private final TopicId topicId;
+    private final MessageFetcher fetcher;
+
+    private TopicMessageFetcher(TopicId topicId, MessageFetcher fetcher) {
+      this.topicId = topicId;
+      this.fetcher = fetcher;
+    }
+  }
+
+  /**
+   * A {@link CloseableIterator} that iterates through messages of all topics. The iterator of each topic is
+   * only opened after the iterator of the previous topic is exhausted, so that there is at most one
+   * opened iterator at a time.
+   */
+  private static final class MultiTopicIterator extends AbstractCloseableIterator<TopicRawMessage> {
+
+    private final Iterator<TopicMessageFetcher> fetchers;
+    private TopicId currentTopicId;
+    private CloseableIterator<RawMessage> currentIterator;
+
+    private MultiTopicIterator(Iterator<TopicMessageFetcher> fetchers) {
+      this.fetchers = fetchers;
+    }
+
+    @Override
+    protected TopicRawMessage computeNext() {
+      while (currentIterator == null || !currentIterator.hasNext()) {
+        if (currentIterator != null) {
+          currentIterator.close();
+          currentIterator = null;
+        }
+        if (!fetchers.hasNext()) {
+          return endOfData();
+        }
+        TopicMessageFetcher topicFetcher = fetchers.next();
+        try {
+          currentTopicId = topicFetcher.topicId;
+          currentIterator = topicFetcher.fetcher.fetch();
+        } catch (Exception e) {
+          throw Throwables.propagate(e);
+        }
+      }
+
+      RawMessage message = currentIterator.next();
+      return new TopicRawMessage(currentTopicId, message.getId(), message.getPayload());
+    }
+
+    @Override
+    public void close() {
+      if (currentIterator != null) {
+        currentIterator.close();
+        currentIterator = null;
+      }
+    }
+  }
+}
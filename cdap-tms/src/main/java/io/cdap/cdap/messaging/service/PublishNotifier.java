@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.service;
+
+import io.cdap.cdap.proto.id.TopicId;
+import org.apache.twill.common.Cancellable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Allows fetchers to get notified when new messages are published to a topic. Each topic has its own
+ * publish count and set of listeners, so that a publish only wakes up fetchers of the same topic.
+ * Listeners are called on the publishing thread, hence they should return quickly.
+ */
+@ThreadSafe
+final class PublishNotifier {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PublishNotifier.class);
+
+  private final ConcurrentMap<TopicId, TopicState> topicStates = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the number of publishes to the given topic seen so far. The returned value should be passed to the
+   * {@link #addListener(TopicId, long, Runnable)} or {@link #await(TopicId, long, long)} method after checking
+   * for new messages.
+   */
+  long getPublishCount(TopicId topicId) {
+    return getTopicState(topicId).publishCount.get();
+  }
+
+  /**
+   * Notifies listeners of the given topic that new messages are published to the topic.
+   */
+  void notifyPublished(TopicId topicId) {
+    TopicState state = getTopicState(topicId);
+    state.publishCount.incrementAndGet();
+    for (Listener listener : state.listeners) {
+      listener.fire();
+    }
+  }
+
+  /**
+   * Removes the publish count and listeners of the given topic. It should be called when the topic is deleted.
+   * Listeners of the topic are called so that fetchers waiting for the topic can find out about the deletion.
+   */
+  void removeTopic(TopicId topicId) {
+    TopicState state = topicStates.remove(topicId);
+    if (state != null) {
+      for (Listener listener : state.listeners) {
+        listener.fire();
+      }
+    }
+  }
+
+  /**
+   * Adds a listener that is called once when there is new publish to the given topic after the given publish count.
+   * If there was already new publish, the listener is called immediately from the calling thread.
+   *
+   * @param topicId the topic to listen to
+   * @param publishCount the publish count as returned by {@link #getPublishCount(TopicId)}
+   * @param listener the listener to call
+   * @return a {@link Cancellable} to remove the listener if it is no longer needed
+   */
+  Cancellable addListener(TopicId topicId, long publishCount, Runnable listener) {
+    TopicState state = getTopicState(topicId);
+    Listener topicListener = new Listener(state, listener);
+
+    // Add the listener before checking the publish count, so that no publish will be missed
+    state.listeners.add(topicListener);
+    if (state.publishCount.get() != publishCount) {
+      topicListener.fire();
+    }
+    return topicListener::cancel;
+  }
+
+  /**
+   * Waits until there is new publish to the given topic after the given publish count, or the timeout reached.
+   *
+   * @param topicId the topic to wait for
+   * @param publishCount the publish count as returned by {@link #getPublishCount(TopicId)}
+   * @param timeoutMillis maximum time to wait in milliseconds
+   * @return {@code true} if there was new publish; {@code false} if timeout reached
+   * @throws InterruptedException if the waiting thread is interrupted
+   */
+  boolean await(TopicId topicId, long publishCount, long timeoutMillis) throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    Cancellable cancellable = addListener(topicId, publishCount, latch::countDown);
+    try {
+      return latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    } finally {
+      cancellable.cancel();
+    }
+  }
+
+  private TopicState getTopicState(TopicId topicId) {
+    return topicStates.computeIfAbsent(topicId, k -> new TopicState());
+  }
+
+  /**
+   * The publish count and the listeners of a topic.
+   */
+  private static final class TopicState {
+    private final AtomicLong publishCount = new AtomicLong();
+    private final Set<Listener> listeners = ConcurrentHashMap.newKeySet();
+  }
+
+  /**
+   * A listener that is only called once. It is removed from the topic when called or cancelled.
+   */
+  private static final class Listener {
+    private final TopicState state;
+    private final Runnable runnable;
+
+    private Listener(TopicState state, Runnable runnable) {
+      this.state = state;
+      this.runnable = runnable;
+    }
+
+    void fire() {
+      // Only the caller that removes the listener runs it, so that it is called at most once
+      if (state.listeners.remove(this)) {
+        try {
+          runnable.run();
+        } catch (Throwable t) {
+          // Never fail the publish because of a listener
+          LOG.warn("Exception raised when calling publish listener {}", runnable, t);
+        }
+      }
+    }
+
+    void cancel() {
+      state.listeners.remove(this);
+    }
+  }
+}
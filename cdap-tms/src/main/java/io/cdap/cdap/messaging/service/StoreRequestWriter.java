@@ -20,6 +20,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.common.utils.TimeProvider;
+import io.cdap.cdap.messaging.PayloadCompression;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
 
@@ -151,6 +152,7 @@ abstract class StoreRequestWriter<T> implements Closeable {
 
     private final boolean generateNullPayloadEntry;
     private PendingStoreRequest storeRequest;
+    private PayloadCompression compression;
     private Iterator<byte[]> payloadIterator;
     private boolean computedFirst;
     private T nextEntry;
@@ -172,7 +174,7 @@ abstract class StoreRequestWriter<T> implements Closeable {
       // If the request has next payload
       // or if the iterator is empty but we wanted to generate an entry with null payload
       if (payloadIterator.hasNext() || (generateNullPayloadEntry && !computedFirst)) {
-        byte[] payload = payloadIterator.hasNext() ? payloadIterator.next() : null;
+        byte[] payload = payloadIterator.hasNext() ? compression.compress(payloadIterator.next()) : null;
         nextEntry = getEntry(storeRequest.getTopicMetadata(), storeRequest.isTransactional(),
                              storeRequest.getTransactionWritePointer(), writeTimestamp, (short) seqId, payload);
       }
@@ -201,6 +203,7 @@ abstract class StoreRequestWriter<T> implements Closeable {
 
     private PayloadTransformIterator reset(PendingStoreRequest storeRequest) {
       this.storeRequest = storeRequest;
+      this.compression = storeRequest.getTopicMetadata().getCompression();
       this.storeRequest.setStartTimestamp(writeTimestamp);
       this.storeRequest.setStartSequenceId(seqId);
       this.payloadIterator = storeRequest.iterator();
@@ -27,6 +27,7 @@ import io.cdap.cdap.common.utils.TimeProvider;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.TopicMetadata;
 import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.messaging.cache.OrderedMessageCache;
 import io.cdap.cdap.messaging.data.MessageId;
 import io.cdap.cdap.messaging.store.MessageFilter;
 import io.cdap.cdap.messaging.store.MessageTable;
@@ -42,7 +43,7 @@ import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
- * A {@link MessageTable} that uses {@link MessageCache} for caching recently published messages.
+ * A {@link MessageTable} that uses {@link OrderedMessageCache} for caching recently published messages.
  */
 final class CachingMessageTable implements MessageTable {
 
@@ -73,7 +74,7 @@ final class CachingMessageTable implements MessageTable {
   @Override
   public CloseableIterator<Entry> fetch(TopicMetadata metadata, long startTime,
                                         int limit, @Nullable Transaction transaction) throws IOException {
-    MessageCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
+    OrderedMessageCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
     if (messageCache == null) {
       // If no caching for the given topic, just return result from table directly
       return messageTable.fetch(metadata, startTime, limit, transaction);
@@ -100,7 +101,7 @@ final class CachingMessageTable implements MessageTable {
   public CloseableIterator<Entry> fetch(TopicMetadata metadata, MessageId messageId, boolean inclusive,
                                         int limit, @Nullable Transaction transaction) throws IOException {
 
-    MessageCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
+    OrderedMessageCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
     if (messageCache == null) {
       // If no caching for the given topic, just return result from table directly
       return messageTable.fetch(metadata, messageId, inclusive, limit, transaction);
@@ -133,7 +134,7 @@ final class CachingMessageTable implements MessageTable {
 
     Multimap<TopicId, Entry> topicEntries = iterator.getEntries();
     for (Map.Entry<TopicId, Collection<Entry>> entry : topicEntries.asMap().entrySet()) {
-      MessageCache<Entry> messageCache = cacheProvider.getMessageCache(entry.getKey());
+      OrderedMessageCache<Entry> messageCache = cacheProvider.getMessageCache(entry.getKey());
       // Write it to the cache if it is enabled for the topic
       if (messageCache != null) {
         messageCache.addAll(entry.getValue().iterator());
@@ -143,7 +144,7 @@ final class CachingMessageTable implements MessageTable {
 
   @Override
   public void rollback(TopicMetadata metadata, RollbackDetail rollbackDetail) throws IOException {
-    MessageCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
+    OrderedMessageCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
     if (messageCache != null) {
       // Rollback from the cache first so that we don't have to worry about invalid list pruning for the cache,
       // assuming the rollback from cache shouldn't fail.
@@ -158,7 +159,7 @@ final class CachingMessageTable implements MessageTable {
         public void updateEntry(Entry entry) {
           if (!(entry instanceof CacheMessageTableEntry)) {
             // This shouldn't happen
-            throw new IllegalStateException("Entries in MessageCache must be of type "
+            throw new IllegalStateException("Entries in message cache must be of type "
                                               + CacheMessageTableEntry.class.getName()
                                               + ", but got type " + entry.getClass().getName() + " instead.");
           }
@@ -203,7 +204,7 @@ final class CachingMessageTable implements MessageTable {
   }
 
   /**
-   * Creates a {@link MessageFilter} for scanning entries from the {@link MessageCache}.
+   * Creates a {@link MessageFilter} for scanning entries from the {@link OrderedMessageCache}.
    */
   private MessageFilter<Entry> createFilter(TopicMetadata metadata, @Nullable Transaction transaction) {
     final int generation = metadata.getGeneration();
@@ -235,7 +236,7 @@ final class CachingMessageTable implements MessageTable {
 
   /**
    * A {@link CloseableIterator} of {@link Entry} by combine entries scanned from {@link MessageTable}
-   * and from {@link MessageCache}.
+   * and from {@link OrderedMessageCache}.
    */
   private static final class CombineMessageEntryIterator extends AbstractCloseableIterator<Entry> {
 
@@ -330,7 +331,7 @@ final class CachingMessageTable implements MessageTable {
   }
 
   /**
-   * A {@link Entry} implementation used for entries in {@link MessageCache}, which allows
+   * A {@link Entry} implementation used for entries in {@link OrderedMessageCache}, which allows
    * altering the transaction write point for rollback purpose of messages that were published transactionally.
    */
   @VisibleForTesting
@@ -347,15 +348,32 @@ final class CachingMessageTable implements MessageTable {
     private boolean rollback;
 
     CacheMessageTableEntry(TopicMetadata topicMetadata, long publishTimestamp, short sequenceId) {
+      this(topicMetadata.getTopicId(), topicMetadata.getGeneration(), publishTimestamp, sequenceId);
+    }
+
+    CacheMessageTableEntry(TopicId topicId, int generation, long publishTimestamp, short sequenceId) {
       this.lookupOnly = true;
-      this.topicId = topicMetadata.getTopicId();
-      this.generation = topicMetadata.getGeneration();
+      this.topicId = topicId;
+      this.generation = generation;
       this.transactional = false;
       this.payload = null;
       this.publishTimestamp = publishTimestamp;
       this.sequenceId = sequenceId;
     }
 
+    CacheMessageTableEntry(TopicId topicId, int generation, boolean transactional, long transactionWritePointer,
+                           @Nullable byte[] payload, long publishTimestamp, short sequenceId, boolean rollback) {
+      this.lookupOnly = false;
+      this.topicId = topicId;
+      this.generation = generation;
+      this.transactional = transactional;
+      this.transactionWritePointer = transactionWritePointer;
+      this.payload = payload;
+      this.publishTimestamp = publishTimestamp;
+      this.sequenceId = sequenceId;
+      this.rollback = rollback;
+    }
+
     CacheMessageTableEntry(Entry other) {
       this.lookupOnly = false;
       this.topicId = other.getTopicId();
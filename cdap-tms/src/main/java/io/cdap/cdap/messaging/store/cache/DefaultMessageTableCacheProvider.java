@@ -24,6 +24,8 @@ import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.messaging.MessagingServiceUtils;
 import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.messaging.cache.OffHeapMessageCache;
+import io.cdap.cdap.messaging.cache.OrderedMessageCache;
 import io.cdap.cdap.messaging.store.MessageTable;
 import io.cdap.cdap.proto.id.TopicId;
 
@@ -40,7 +42,7 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
 
   private final CConfiguration cConf;
   private final MetricsCollectionService metricsCollectionService;
-  private Map<TopicId, MessageCache<MessageTable.Entry>> topicMessageCaches;
+  private Map<TopicId, OrderedMessageCache<MessageTable.Entry>> topicMessageCaches;
   private volatile boolean initialized;
 
   @Inject
@@ -54,11 +56,11 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
 
   @Nullable
   @Override
-  public MessageCache<MessageTable.Entry> getMessageCache(TopicId topicId) {
+  public OrderedMessageCache<MessageTable.Entry> getMessageCache(TopicId topicId) {
     if (!initialized) {
       synchronized (this) {
         if (!initialized) {
-          Map<TopicId, MessageCache<MessageTable.Entry>> caches = new HashMap<>();
+          Map<TopicId, OrderedMessageCache<MessageTable.Entry>> caches = new HashMap<>();
 
           long cacheSize = cConf.getInt(Constants.MessagingSystem.CACHE_SIZE_MB) * 1024 * 1024;
           Set<TopicId> systemTopics = MessagingServiceUtils.getSystemTopics(cConf, true);
@@ -75,9 +77,16 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
               // Have reduce trigger as 70% of the hard limit and min retain as 50% of the hard limit
               // In future, it can be adjusted dynamically based on metrics
               MessageCache.Limits limits = new MessageCache.Limits(hardLimit / 2, hardLimit * 7 / 10, hardLimit);
+              boolean offHeap = cConf.getBoolean(Constants.MessagingSystem.CACHE_OFF_HEAP_ENABLED);
+              int segments = cConf.getInt(Constants.MessagingSystem.CACHE_OFF_HEAP_SEGMENTS);
               for (TopicId topic : systemTopics) {
-                caches.put(topic, new MessageCache<>(comparator, weigher, limits,
-                                                     createMetricsContext(cConf, topic, metricsCollectionService)));
+                MetricsContext metricsContext = createMetricsContext(cConf, topic, metricsCollectionService);
+                if (offHeap) {
+                  caches.put(topic, new OffHeapMessageCache<>(comparator, new MessageTableEntryCodec(topic),
+                                                              segments, limits, metricsContext));
+                } else {
+                  caches.put(topic, new MessageCache<>(comparator, weigher, limits, metricsContext));
+                }
               }
             }
           }
@@ -93,7 +102,7 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
 
   @Override
   public void clear() {
-    Collection<MessageCache<MessageTable.Entry>> caches;
+    Collection<OrderedMessageCache<MessageTable.Entry>> caches;
 
     synchronized (this) {
       initialized = false;
@@ -102,14 +111,14 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
     }
 
     if (caches != null) {
-      for (MessageCache<MessageTable.Entry> cache : caches) {
+      for (OrderedMessageCache<MessageTable.Entry> cache : caches) {
         cache.clear();
       }
     }
   }
 
   /**
-   * Creates a {@link MetricsContext} for {@link MessageCache} to use for the given topic.
+   * Creates a {@link MetricsContext} for {@link OrderedMessageCache} to use for the given topic.
    */
   private MetricsContext createMetricsContext(CConfiguration cConf, TopicId topicId,
                                               MetricsCollectionService metricsCollectionService) {
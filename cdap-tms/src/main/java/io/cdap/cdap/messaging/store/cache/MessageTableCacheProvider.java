@@ -16,28 +16,28 @@
 
 package io.cdap.cdap.messaging.store.cache;
 
-import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.messaging.cache.OrderedMessageCache;
 import io.cdap.cdap.messaging.store.MessageTable;
 import io.cdap.cdap.proto.id.TopicId;
 
 import javax.annotation.Nullable;
 
 /**
- * A provider to provide {@link MessageCache} over {@link MessageTable.Entry} based on {@link TopicId}.
+ * A provider to provide {@link OrderedMessageCache} over {@link MessageTable.Entry} based on {@link TopicId}.
  */
 public interface MessageTableCacheProvider {
 
   /**
-   * Returns a {@link MessageCache} for the given topic.
+   * Returns a {@link OrderedMessageCache} for the given topic.
    *
    * @param topicId the topic id
-   * @return a {@link MessageCache} or {@code null} if caching is not enabled for the given topic.
+   * @return a {@link OrderedMessageCache} or {@code null} if caching is not enabled for the given topic.
    */
   @Nullable
-  MessageCache<MessageTable.Entry> getMessageCache(TopicId topicId);
+  OrderedMessageCache<MessageTable.Entry> getMessageCache(TopicId topicId);
 
   /**
-   * Resets all {@link MessageCache} created by this cache provider.
+   * Resets all {@link OrderedMessageCache} created by this cache provider.
    */
   void clear();
 }
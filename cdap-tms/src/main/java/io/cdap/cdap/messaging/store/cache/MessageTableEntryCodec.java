@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.cache;
+
+import io.cdap.cdap.messaging.cache.OffHeapMessageCache;
+import io.cdap.cdap.messaging.store.MessageTable;
+import io.cdap.cdap.proto.id.TopicId;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link OffHeapMessageCache.Codec} for {@link MessageTable.Entry} of a given topic. Entries are decoded as
+ * {@link CachingMessageTable.CacheMessageTableEntry} so that they can be rolled back.
+ *
+ * The encoded format is:
+ *
+ * <pre>
+ *   generation (int) | publish timestamp (long) | sequence id (short) | flags (byte) |
+ *   transaction write pointer (long) | payload (remaining bytes)
+ * </pre>
+ */
+final class MessageTableEntryCodec implements OffHeapMessageCache.Codec<MessageTable.Entry> {
+
+  private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Short.BYTES + 1 + Long.BYTES;
+
+  private static final byte FLAG_TRANSACTIONAL = 0x01;
+  private static final byte FLAG_ROLLBACK = 0x02;
+  private static final byte FLAG_PAYLOAD = 0x04;
+
+  private final TopicId topicId;
+
+  MessageTableEntryCodec(TopicId topicId) {
+    this.topicId = topicId;
+  }
+
+  @Override
+  public int getEncodedSize(MessageTable.Entry entry) {
+    byte[] payload = entry.getPayload();
+    return HEADER_SIZE + (payload == null ? 0 : payload.length);
+  }
+
+  @Override
+  public void encode(MessageTable.Entry entry, ByteBuffer buffer) {
+    byte[] payload = entry.getPayload();
+    byte flags = 0;
+    if (entry.isTransactional()) {
+      flags |= FLAG_TRANSACTIONAL;
+    }
+    if (entry instanceof CachingMessageTable.CacheMessageTableEntry
+      && ((CachingMessageTable.CacheMessageTableEntry) entry).isRollback()) {
+      flags |= FLAG_ROLLBACK;
+    }
+    if (payload != null) {
+      flags |= FLAG_PAYLOAD;
+    }
+
+    buffer.putInt(entry.getGeneration())
+      .putLong(entry.getPublishTimestamp())
+      .putShort(entry.getSequenceId())
+      .put(flags)
+      .putLong(entry.getTransactionWritePointer());
+    if (payload != null) {
+      buffer.put(payload);
+    }
+  }
+
+  @Override
+  public MessageTable.Entry decode(ByteBuffer buffer) {
+    int generation = buffer.getInt();
+    long publishTimestamp = buffer.getLong();
+    short sequenceId = buffer.getShort();
+    byte flags = buffer.get();
+    long transactionWritePointer = buffer.getLong();
+    byte[] payload = null;
+    if ((flags & FLAG_PAYLOAD) != 0) {
+      payload = new byte[buffer.remaining()];
+      buffer.get(payload);
+    }
+    return new CachingMessageTable.CacheMessageTableEntry(topicId, generation, (flags & FLAG_TRANSACTIONAL) != 0,
+                                                          transactionWritePointer, payload, publishTimestamp,
+                                                          sequenceId, (flags & FLAG_ROLLBACK) != 0);
+  }
+
+  @Override
+  public MessageTable.Entry decodeHeader(ByteBuffer buffer) {
+    // Everything used by the scan filter except the payload
+    int generation = buffer.getInt();
+    long publishTimestamp = buffer.getLong();
+    short sequenceId = buffer.getShort();
+    byte flags = buffer.get();
+    long transactionWritePointer = buffer.getLong();
+    return new CachingMessageTable.CacheMessageTableEntry(topicId, generation, (flags & FLAG_TRANSACTIONAL) != 0,
+                                                          transactionWritePointer, null, publishTimestamp,
+                                                          sequenceId, (flags & FLAG_ROLLBACK) != 0);
+  }
+
+  @Override
+  public MessageTable.Entry decodeKey(ByteBuffer buffer) {
+    int generation = buffer.getInt();
+    long publishTimestamp = buffer.getLong();
+    short sequenceId = buffer.getShort();
+    return new CachingMessageTable.CacheMessageTableEntry(topicId, generation, publishTimestamp, sequenceId);
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.leveldb;
+
+import org.apache.twill.common.Threads;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBException;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+
+/**
+ * Commits {@link WriteBatch} to LevelDB {@link DB} based on the {@link SyncPolicy}. It is shared by all message
+ * and payload tables created by the same {@link LevelDBTableFactory}.
+ *
+ * When group commit is enabled, concurrent writes from all topics are committed together by one thread,
+ * with at most one log sync per {@link DB} for each group of writes.
+ */
+final class LevelDBCommitter implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LevelDBCommitter.class);
+  private static final WriteOptions SYNC_WRITE_OPTIONS = new WriteOptions().sync(true);
+  private static final WriteOptions NO_SYNC_WRITE_OPTIONS = new WriteOptions().sync(false);
+
+  // The key deleted for forcing a log sync. The empty key is never used by the messaging tables.
+  private static final byte[] SYNC_KEY = new byte[0];
+
+  /**
+   * Policy for syncing the LevelDB write ahead log to disk.
+   */
+  enum SyncPolicy {
+    // Sync on every commit
+    COMMIT,
+    // Sync periodically
+    INTERVAL,
+    // Never sync explicitly and leave it to the OS
+    OS
+  }
+
+  private final SyncPolicy syncPolicy;
+  private final boolean groupCommit;
+  private final Queue<PendingWrite> pendingWrites;
+  private final Lock commitLock;
+  private final Set<DB> unsyncedDBs;
+  private final ScheduledExecutorService syncExecutor;
+
+  /**
+   * Creates an instance.
+   *
+   * @param syncPolicy the {@link SyncPolicy} to use
+   * @param syncIntervalMillis interval in milliseconds for syncing when the policy is {@link SyncPolicy#INTERVAL}
+   * @param groupCommit {@code true} to commit concurrent writes together
+   */
+  LevelDBCommitter(SyncPolicy syncPolicy, long syncIntervalMillis, boolean groupCommit) {
+    this.syncPolicy = syncPolicy;
+    this.groupCommit = groupCommit;
+    this.pendingWrites = new ConcurrentLinkedQueue<>();
+    this.commitLock = new ReentrantLock();
+    this.unsyncedDBs = ConcurrentHashMap.newKeySet();
+
+    if (syncPolicy == SyncPolicy.INTERVAL) {
+      if (syncIntervalMillis <= 0) {
+        throw new IllegalArgumentException("Sync interval must be positive: " + syncIntervalMillis);
+      }
+      syncExecutor = Executors.newSingleThreadScheduledExecutor(
+        Threads.createDaemonThreadFactory("leveldb-tms-sync"));
+      syncExecutor.scheduleWithFixedDelay(this::syncAll, syncIntervalMillis, syncIntervalMillis,
+                                          TimeUnit.MILLISECONDS);
+    } else {
+      syncExecutor = null;
+    }
+  }
+
+  /**
+   * Writes the given {@link WriteBatch} to the given {@link DB}. This method returns after the write is committed.
+   *
+   * @throws IOException if failed to write
+   */
+  void write(DB db, WriteBatch writeBatch) throws IOException {
+    if (!groupCommit) {
+      try {
+        db.write(writeBatch, syncPolicy == SyncPolicy.COMMIT ? SYNC_WRITE_OPTIONS : NO_SYNC_WRITE_OPTIONS);
+      } catch (DBException e) {
+        throw new IOException(e);
+      }
+      if (syncPolicy == SyncPolicy.INTERVAL) {
+        unsyncedDBs.add(db);
+      }
+      return;
+    }
+
+    PendingWrite pendingWrite = new PendingWrite(db, writeBatch);
+    pendingWrites.add(pendingWrite);
+
+    // Either the current lock holder commits this write, or this thread becomes the committer
+    commitLock.lock();
+    try {
+      if (!pendingWrite.completed) {
+        commitPendingWrites();
+      }
+    } finally {
+      commitLock.unlock();
+    }
+
+    if (pendingWrite.failure != null) {
+      throw pendingWrite.failure;
+    }
+  }
+
+  @Override
+  public void close() {
+    if (syncExecutor != null) {
+      syncExecutor.shutdownNow();
+      syncAll();
+    }
+  }
+
+  /**
+   * Commits all the pending writes. It must be called with the commit lock held.
+   */
+  private void commitPendingWrites() {
+    Map<DB, List<PendingWrite>> writesByDB = new LinkedHashMap<>();
+    PendingWrite pendingWrite = pendingWrites.poll();
+    while (pendingWrite != null) {
+      writesByDB.computeIfAbsent(pendingWrite.db, k -> new ArrayList<>()).add(pendingWrite);
+      pendingWrite = pendingWrites.poll();
+    }
+
+    for (Map.Entry<DB, List<PendingWrite>> entry : writesByDB.entrySet()) {
+      DB db = entry.getKey();
+      List<PendingWrite> writes = entry.getValue();
+
+      // Sync only once after all the writes to the same DB
+      for (PendingWrite write : writes) {
+        try {
+          db.write(write.writeBatch, NO_SYNC_WRITE_OPTIONS);
+        } catch (DBException e) {
+          write.failure = new IOException(e);
+        }
+      }
+      if (syncPolicy == SyncPolicy.COMMIT) {
+        IOException failure = sync(db);
+        if (failure != null) {
+          writes.stream().filter(write -> write.failure == null).forEach(write -> write.failure = failure);
+        }
+      } else if (syncPolicy == SyncPolicy.INTERVAL) {
+        unsyncedDBs.add(db);
+      }
+      writes.forEach(write -> write.completed = true);
+    }
+  }
+
+  /**
+   * Syncs all the {@link DB} that have writes since the last sync.
+   */
+  private void syncAll() {
+    Iterator<DB> iterator = unsyncedDBs.iterator();
+    while (iterator.hasNext()) {
+      DB db = iterator.next();
+      // Remove before sync so that writes happen during the sync will be synced in the next round
+      iterator.remove();
+      IOException failure = sync(db);
+      if (failure != null) {
+        // It can happen if the DB is closed by the data cleanup, which is fine to ignore
+        LOG.debug("Failed to sync LevelDB", failure);
+      }
+    }
+  }
+
+  /**
+   * Forces a sync of the write ahead log of the given {@link DB}. LevelDB only syncs when there is a write,
+   * hence a delete on a key that never exist is written.
+   *
+   * @return the failure or {@code null} if the sync succeeded
+   */
+  @Nullable
+  private IOException sync(DB db) {
+    try (WriteBatch writeBatch = db.createWriteBatch()) {
+      writeBatch.delete(SYNC_KEY);
+      db.write(writeBatch, SYNC_WRITE_OPTIONS);
+      return null;
+    } catch (Exception e) {
+      return e instanceof IOException ? (IOException) e : new IOException(e);
+    }
+  }
+
+  /**
+   * A {@link WriteBatch} pending to be committed. The mutable fields are only updated with the commit lock held.
+   */
+  private static final class PendingWrite {
+    private final DB db;
+    private final WriteBatch writeBatch;
+    private boolean completed;
+    private IOException failure;
+
+    private PendingWrite(DB db, WriteBatch writeBatch) {
+      this.db = db;
+      this.writeBatch = writeBatch;
+    }
+  }
+}
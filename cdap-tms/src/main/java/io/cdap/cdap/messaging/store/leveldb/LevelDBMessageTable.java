@@ -28,9 +28,7 @@ import io.cdap.cdap.messaging.store.MessageTable;
 import io.cdap.cdap.messaging.store.RawMessageTableEntry;
 import io.cdap.cdap.proto.id.TopicId;
 import org.iq80.leveldb.DB;
-import org.iq80.leveldb.DBException;
 import org.iq80.leveldb.WriteBatch;
-import org.iq80.leveldb.WriteOptions;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -44,7 +42,6 @@ import javax.annotation.Nullable;
  * LevelDB implementation of {@link MessageTable}.
  */
 final class LevelDBMessageTable extends AbstractMessageTable {
-  private static final WriteOptions WRITE_OPTIONS = new WriteOptions().sync(true);
   private static final String PAYLOAD_COL = "p";
   private static final String TX_COL = "t";
 
@@ -65,10 +62,12 @@ final class LevelDBMessageTable extends AbstractMessageTable {
   }
 
   private final DB levelDB;
+  private final LevelDBCommitter committer;
   private final TopicMetadata topicMetadata;
 
-  LevelDBMessageTable(DB levelDB, TopicMetadata topicMetadata) {
+  LevelDBMessageTable(DB levelDB, LevelDBCommitter committer, TopicMetadata topicMetadata) {
     this.levelDB = levelDB;
+    this.committer = committer;
     this.topicMetadata = topicMetadata;
   }
 
@@ -119,9 +118,7 @@ final class LevelDBMessageTable extends AbstractMessageTable {
         // LevelDB doesn't make copies, and since we reuse RawMessageTableEntry object, we need to create copies.
         writeBatch.put(Arrays.copyOf(rowKey, rowKey.length), encodeValue(entry.getTxPtr(), entry.getPayload()));
       }
-      levelDB.write(writeBatch, WRITE_OPTIONS);
-    } catch (DBException ex) {
-      throw new IOException(ex);
+      committer.write(levelDB, writeBatch);
     }
   }
 
@@ -137,11 +134,7 @@ final class LevelDBMessageTable extends AbstractMessageTable {
       }
     }
 
-    try {
-      levelDB.write(writeBatch, WRITE_OPTIONS);
-    } catch (DBException ex) {
-      throw new IOException(ex);
-    }
+    committer.write(levelDB, writeBatch);
   }
 
   @Override
@@ -187,11 +180,7 @@ final class LevelDBMessageTable extends AbstractMessageTable {
       }
     }
 
-    try {
-      levelDB.write(writeBatch, WRITE_OPTIONS);
-    } catch (DBException ex) {
-      throw new IOException(ex);
-    }
+    committer.write(levelDB, writeBatch);
   }
 
   // Encoding:
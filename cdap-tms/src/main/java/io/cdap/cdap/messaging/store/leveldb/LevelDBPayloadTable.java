@@ -28,9 +28,7 @@ import io.cdap.cdap.messaging.store.PayloadTable;
 import io.cdap.cdap.messaging.store.RawPayloadTableEntry;
 import io.cdap.cdap.proto.id.TopicId;
 import org.iq80.leveldb.DB;
-import org.iq80.leveldb.DBException;
 import org.iq80.leveldb.WriteBatch;
-import org.iq80.leveldb.WriteOptions;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -42,12 +40,13 @@ import java.util.concurrent.TimeUnit;
  * LevelDB implementation of {@link PayloadTable}.
  */
 public class LevelDBPayloadTable extends AbstractPayloadTable {
-  private static final WriteOptions WRITE_OPTIONS = new WriteOptions().sync(true);
   private final DB levelDB;
+  private final LevelDBCommitter committer;
   private final TopicMetadata topicMetadata;
 
-  LevelDBPayloadTable(DB levelDB, TopicMetadata topicMetadata) {
+  LevelDBPayloadTable(DB levelDB, LevelDBCommitter committer, TopicMetadata topicMetadata) {
     this.levelDB = levelDB;
+    this.committer = committer;
     this.topicMetadata = topicMetadata;
   }
 
@@ -101,9 +100,7 @@ public class LevelDBPayloadTable extends AbstractPayloadTable {
         // LevelDB doesn't make copies, and since we reuse RawPayloadTableEntry object, we need to create copies.
         writeBatch.put(Arrays.copyOf(key, key.length), Arrays.copyOf(value, value.length));
       }
-      levelDB.write(writeBatch, WRITE_OPTIONS);
-    } catch (DBException ex) {
-      throw new IOException(ex);
+      committer.write(levelDB, writeBatch);
     }
   }
 
@@ -144,11 +141,7 @@ public class LevelDBPayloadTable extends AbstractPayloadTable {
       }
     }
 
-    try {
-      levelDB.write(writeBatch, WRITE_OPTIONS);
-    } catch (DBException ex) {
-      throw new IOException(ex);
-    }
+    committer.write(levelDB, writeBatch);
   }
 
   @Override
@@ -23,6 +23,7 @@ import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.utils.DirUtils;
+import io.cdap.cdap.common.utils.LevelDBOpenFilesBudget;
 import io.cdap.cdap.messaging.TopicMetadata;
 import io.cdap.cdap.messaging.store.MessageTable;
 import io.cdap.cdap.messaging.store.MetadataTable;
@@ -31,6 +32,7 @@ import io.cdap.cdap.messaging.store.TableFactory;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
 import org.apache.twill.common.Threads;
+import org.iq80.leveldb.CompressionType;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.Options;
 import org.iq80.leveldb.impl.Iq80DBFactory;
@@ -39,10 +41,11 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Collection;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
@@ -57,24 +60,27 @@ public final class LevelDBTableFactory implements TableFactory {
   private static final Logger LOG = LoggerFactory.getLogger(LevelDBTableFactory.class);
   private static final Iq80DBFactory LEVEL_DB_FACTORY = Iq80DBFactory.factory;
 
+  private final CConfiguration cConf;
   private final File baseDir;
-  private final Options dbOptions;
+  private final LevelDBOpenFilesBudget openFilesBudget;
   private final String metadataTableName;
   private final String messageTableName;
   private final String payloadTableName;
   private final ConcurrentMap<File, DB> levelDBs;
+  private final LevelDBCommitter committer;
 
   private LevelDBMetadataTable metadataTable;
 
   @VisibleForTesting
-  @Inject
   public LevelDBTableFactory(CConfiguration cConf) {
+    this(cConf, new LevelDBOpenFilesBudget(cConf));
+  }
+
+  @Inject
+  LevelDBTableFactory(CConfiguration cConf, LevelDBOpenFilesBudget openFilesBudget) {
+    this.cConf = cConf;
     this.baseDir = new File(cConf.get(Constants.MessagingSystem.LOCAL_DATA_DIR));
-    this.dbOptions = new Options()
-      .blockSize(cConf.getInt(Constants.CFG_DATA_LEVELDB_BLOCKSIZE, Constants.DEFAULT_DATA_LEVELDB_BLOCKSIZE))
-      .cacheSize(cConf.getLong(Constants.CFG_DATA_LEVELDB_CACHESIZE, Constants.DEFAULT_DATA_LEVELDB_CACHESIZE))
-      .errorIfExists(false)
-      .createIfMissing(true);
+    this.openFilesBudget = openFilesBudget;
     ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
       Threads.createDaemonThreadFactory("leveldb-tms-data-cleanup"));
     executor.scheduleAtFixedRate(new DataCleanup(), 0L,
@@ -85,6 +91,11 @@ public final class LevelDBTableFactory implements TableFactory {
     this.messageTableName = cConf.get(Constants.MessagingSystem.MESSAGE_TABLE_NAME);
     this.payloadTableName = cConf.get(Constants.MessagingSystem.PAYLOAD_TABLE_NAME);
     this.levelDBs = new ConcurrentHashMap<>();
+    this.committer = new LevelDBCommitter(
+      LevelDBCommitter.SyncPolicy.valueOf(
+        cConf.get(Constants.MessagingSystem.LOCAL_DATA_SYNC_POLICY).toUpperCase()),
+      cConf.getLong(Constants.MessagingSystem.LOCAL_DATA_SYNC_INTERVAL_MS),
+      cConf.getBoolean(Constants.MessagingSystem.LOCAL_DATA_GROUP_COMMIT_ENABLED));
   }
 
   @Override
@@ -94,19 +105,19 @@ public final class LevelDBTableFactory implements TableFactory {
     }
 
     File dbPath = getMetadataDBPath(metadataTableName);
-    metadataTable = new LevelDBMetadataTable(LEVEL_DB_FACTORY.open(dbPath, dbOptions));
+    metadataTable = new LevelDBMetadataTable(openLevelDB(dbPath, metadataTableName));
     LOG.info("Messaging metadata table created at {}", dbPath);
     return metadataTable;
   }
 
   @Override
   public MessageTable createMessageTable(TopicMetadata topicMetadata) throws IOException {
-    return new LevelDBMessageTable(getLevelDB(topicMetadata, messageTableName), topicMetadata);
+    return new LevelDBMessageTable(getLevelDB(topicMetadata, messageTableName), committer, topicMetadata);
   }
 
   @Override
   public PayloadTable createPayloadTable(TopicMetadata topicMetadata) throws IOException {
-    return new LevelDBPayloadTable(getLevelDB(topicMetadata, payloadTableName), topicMetadata);
+    return new LevelDBPayloadTable(getLevelDB(topicMetadata, payloadTableName), committer, topicMetadata);
   }
 
   @Override
@@ -118,10 +129,15 @@ public final class LevelDBTableFactory implements TableFactory {
     }
     if (metadataTable != null) {
       Closeables.closeQuietly(metadataTable.getLevelDB());
+      releaseLevelDB(getMetadataDBDir(metadataTableName));
+    }
+    // Sync all pending writes before closing the DBs
+    committer.close();
+    for (Map.Entry<File, DB> entry : levelDBs.entrySet()) {
+      Closeables.closeQuietly(entry.getValue());
+      releaseLevelDB(entry.getKey());
     }
-    Collection<DB> dbs = levelDBs.values();
-    dbs.forEach(Closeables::closeQuietly);
-    dbs.clear();
+    levelDBs.clear();
   }
 
   /**
@@ -142,7 +158,7 @@ public final class LevelDBTableFactory implements TableFactory {
         return db;
       }
 
-      db = LEVEL_DB_FACTORY.open(ensureDirExists(dbPath), dbOptions);
+      db = openLevelDB(ensureDirExists(dbPath), tablePrefix);
       levelDBs.put(dbPath, db);
     }
 
@@ -150,14 +166,72 @@ public final class LevelDBTableFactory implements TableFactory {
     return db;
   }
 
+  /**
+   * Opens the LevelDB at the given path. The block size, write buffer size, compression and max open files are
+   * taken from the LevelDB settings of the data fabric, which can be overridden per messaging table name with the
+   * {@link Constants#CFG_DATA_LEVELDB_TABLE_PREFIX} settings. The max open files of the DB is allocated from the
+   * {@link LevelDBOpenFilesBudget} shared with the data fabric LevelDB tables.
+   */
+  private synchronized DB openLevelDB(File dbPath, String tableName) throws IOException {
+    Options options = new Options()
+      .blockSize(getTableInt(tableName, Constants.CFG_DATA_LEVELDB_BLOCKSIZE,
+                             Constants.DEFAULT_DATA_LEVELDB_BLOCKSIZE))
+      .cacheSize(cConf.getLong(Constants.CFG_DATA_LEVELDB_CACHESIZE, Constants.DEFAULT_DATA_LEVELDB_CACHESIZE))
+      .writeBufferSize(getTableInt(tableName, Constants.CFG_DATA_LEVELDB_WRITE_BUFFER_SIZE,
+                                   Constants.DEFAULT_DATA_LEVELDB_WRITE_BUFFER_SIZE))
+      .compressionType(getCompression(tableName))
+      .errorIfExists(false)
+      .createIfMissing(true);
+
+    options.maxOpenFiles(openFilesBudget.allocate(
+      dbPath.getAbsolutePath(), getTableInt(tableName, Constants.CFG_DATA_LEVELDB_MAX_OPEN_FILES,
+                                            Constants.DEFAULT_DATA_LEVELDB_MAX_OPEN_FILES)));
+    try {
+      return LEVEL_DB_FACTORY.open(dbPath, options);
+    } catch (IOException | RuntimeException e) {
+      releaseLevelDB(dbPath);
+      throw e;
+    }
+  }
+
+  private void releaseLevelDB(File dbPath) {
+    openFilesBudget.release(dbPath.getAbsolutePath());
+  }
+
+  private int getTableInt(String tableName, String key, int defaultValue) {
+    return cConf.getInt(getTableKey(tableName, key), cConf.getInt(key, defaultValue));
+  }
+
+  private CompressionType getCompression(String tableName) {
+    String compression = cConf.get(getTableKey(tableName, Constants.CFG_DATA_LEVELDB_COMPRESSION),
+                                   cConf.get(Constants.CFG_DATA_LEVELDB_COMPRESSION,
+                                             Constants.DEFAULT_DATA_LEVELDB_COMPRESSION));
+    try {
+      return CompressionType.valueOf(compression.trim().toUpperCase(Locale.ENGLISH));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unsupported LevelDB compression '" + compression + "' for messaging table "
+                                           + tableName + ". It must be one of 'snappy' or 'none'", e);
+    }
+  }
+
+  /**
+   * Returns the per table configuration key of the given LevelDB configuration key.
+   */
+  private static String getTableKey(String tableName, String key) {
+    return Constants.CFG_DATA_LEVELDB_TABLE_PREFIX + tableName + key.substring(Constants.CFG_DATA_LEVELDB_DIR.length());
+  }
+
   private File getDataDBPath(String tableName, TopicId topicId, int generation) {
     String fileName = String.format("%s.%s.%s.%d", topicId.getNamespace(), tableName, topicId.getTopic(), generation);
     return new File(baseDir, fileName);
   }
 
   private File getMetadataDBPath(String tableName) throws IOException {
-    String fileName = String.format("%s.%s", NamespaceId.SYSTEM, tableName);
-    return ensureDirExists(new File(baseDir, fileName));
+    return ensureDirExists(getMetadataDBDir(tableName));
+  }
+
+  private File getMetadataDBDir(String tableName) {
+    return new File(baseDir, String.format("%s.%s", NamespaceId.SYSTEM, tableName));
   }
 
   private File ensureDirExists(File dir) throws IOException {
@@ -198,6 +272,7 @@ public final class LevelDBTableFactory implements TableFactory {
             }
             // We can safely remove and close the levelDB as no one should be accessing them anymore
             Closeables.closeQuietly(levelDBs.remove(dataDBPath));
+            releaseLevelDB(dataDBPath);
             filesToDelete.add(dataDBPath);
 
             // Payload table
@@ -207,6 +282,7 @@ public final class LevelDBTableFactory implements TableFactory {
             }
             // We can safely remove and close the levelDB as no one should be accessing them anymore
             Closeables.closeQuietly(levelDBs.remove(dataDBPath));
+            releaseLevelDB(dataDBPath);
             filesToDelete.add(dataDBPath);
           }
 
@@ -222,14 +298,14 @@ public final class LevelDBTableFactory implements TableFactory {
           File dataDBPath = getDataDBPath(messageTableName, metadata.getTopicId(), metadata.getGeneration());
           DB levelDB = levelDBs.get(dataDBPath);
           if (levelDB != null && dataDBPath.exists()) {
-            new LevelDBMessageTable(levelDB, metadata).pruneMessages(now);
+            new LevelDBMessageTable(levelDB, committer, metadata).pruneMessages(now);
           }
 
           // Payload table
           dataDBPath = getDataDBPath(payloadTableName, metadata.getTopicId(), metadata.getGeneration());
           levelDB = levelDBs.get(dataDBPath);
           if (levelDB != null && dataDBPath.exists()) {
-            new LevelDBPayloadTable(levelDB, metadata).pruneMessages(now);
+            new LevelDBPayloadTable(levelDB, committer, metadata).pruneMessages(now);
           }
         }
       } catch (IOException ex) {
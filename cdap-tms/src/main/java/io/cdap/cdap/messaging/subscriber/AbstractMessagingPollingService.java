@@ -30,6 +30,7 @@ import io.cdap.cdap.common.logging.Loggers;
 import io.cdap.cdap.common.service.AbstractRetryableScheduledService;
 import io.cdap.cdap.common.service.RetryStrategy;
 import io.cdap.cdap.common.utils.ImmutablePair;
+import io.cdap.cdap.messaging.context.LongPollMessageFetcher;
 import io.cdap.cdap.messaging.data.MessageId;
 import io.cdap.cdap.proto.id.TopicId;
 import org.slf4j.Logger;
@@ -39,6 +40,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.xml.ws.handler.MessageContext;
 
@@ -149,6 +151,18 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
     return delayMillis;
   }
 
+  /**
+   * Returns the maximum number of milliseconds that a fetch waits for new messages if there is no message
+   * available in the topic. A fetch returns as soon as new messages are published to the topic, hence waiting
+   * on the server side replaces sleeping between empty fetches. By default it returns the delay after an empty
+   * fetch, so that stopping this service is not delayed by more than that. The messaging service further caps
+   * the wait time with its {@code messaging.http.server.consume.max.wait.ms} setting.
+   * Sub-classes can return {@code 0} to disable waiting.
+   */
+  protected long getFetchTimeoutMillis() {
+    return emptyFetchDelayMillis;
+  }
+
   /**
    * Fetching messages from TMS.
    */
@@ -156,8 +170,11 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
     List<Message> messages = new ArrayList<>();
     LOG.trace("Fetching from topic '{}' with messageId '{}'", topicId, messageId);
     MessageFetcher messageFetcher = getMessagingContext().getMessageFetcher();
-    try (CloseableIterator<Message> iterator = messageFetcher.fetch(getTopicId().getNamespace(),
-                                                                    getTopicId().getTopic(), fetchSize, messageId)) {
+    long timeoutMillis = getFetchTimeoutMillis();
+    try (CloseableIterator<Message> iterator = (timeoutMillis > 0 && messageFetcher instanceof LongPollMessageFetcher)
+      ? ((LongPollMessageFetcher) messageFetcher).fetch(getTopicId().getNamespace(), getTopicId().getTopic(),
+                                                        fetchSize, messageId, timeoutMillis, TimeUnit.MILLISECONDS)
+      : messageFetcher.fetch(getTopicId().getNamespace(), getTopicId().getTopic(), fetchSize, messageId)) {
       while (iterator.hasNext() && state() == State.RUNNING) {
         messages.add(iterator.next());
       }
@@ -185,6 +202,7 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
     metricsContext.increment("tms.fetch.messages", messages.size());
 
     // Return if stopping or request to sleep for configured number of milliseconds if there is no message fetched.
+    // If the fetch waited for new messages on the server side, the remaining delay is likely to be zero.
     if (messages.isEmpty() || state() != State.RUNNING) {
       return Math.max(0L, emptyFetchDelayMillis - (System.currentTimeMillis() - startTime));
     }
@@ -0,0 +1,541 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.cache;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
+import io.cdap.cdap.messaging.store.MessageFilter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit test for {@link OffHeapMessageCache}.
+ */
+public class OffHeapMessageCacheTest {
+
+  private static final MetricsContext NOOP_METRICS = new NoopMetricsContext();
+
+  @Test
+  public void testNoCache() {
+    OffHeapMessageCache<Integer> cache = new OffHeapMessageCache<>(new IntComparator(), new IntCodec(), 4,
+                                                                   new MessageCache.Limits(0, 0, 0), NOOP_METRICS);
+    cache.addAll(Arrays.asList(1, 2, 3).iterator());
+    Assert.assertEquals(0L, cache.getCurrentWeight());
+
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 10, MessageFilter.<Integer>alwaysAccept())) {
+      Assert.assertNull(scanner.getFirstInCache());
+      Assert.assertFalse(scanner.hasNext());
+    }
+  }
+
+  @Test
+  public void testBasic() {
+    // Each segment can hold 12 entries
+    OffHeapMessageCache<Integer> cache = new OffHeapMessageCache<>(new IntComparator(), new IntCodec(), 4,
+                                                                   new MessageCache.Limits(0, 0, 400), NOOP_METRICS);
+
+    cache.addAll(Arrays.asList(1, 2, 3, 4, 5, 11, 12, 13, 14, 15).iterator());
+    Assert.assertEquals(80, cache.getCurrentWeight());
+
+    MessageFilter<Integer> filter = MessageFilter.alwaysAccept();
+
+    // Scan with a start key that is not in cache
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 10, filter)) {
+      Assert.assertEquals(Integer.valueOf(1), scanner.getFirstInCache());
+      Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 11, 12, 13, 14, 15), Lists.newArrayList(scanner));
+    }
+
+    // Scan with a limit
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 5, filter)) {
+      Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5), Lists.newArrayList(scanner));
+    }
+
+    // Scan with a start key that is in the cache, inclusive and exclusive
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(3, true, 5, filter)) {
+      Assert.assertEquals(Arrays.asList(3, 4, 5, 11, 12), Lists.newArrayList(scanner));
+    }
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(3, false, 5, filter)) {
+      Assert.assertEquals(Arrays.asList(4, 5, 11, 12, 13), Lists.newArrayList(scanner));
+    }
+
+    // Scan with a start key that is between keys in the cache, and after all keys in the cache
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(9, true, 5, filter)) {
+      Assert.assertEquals(Arrays.asList(11, 12, 13, 14, 15), Lists.newArrayList(scanner));
+    }
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(20, true, 5, filter)) {
+      Assert.assertEquals(Integer.valueOf(1), scanner.getFirstInCache());
+      Assert.assertFalse(scanner.hasNext());
+    }
+
+    // Scan with filter that only accept evens
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 3, new MessageFilter<Integer>() {
+      @Override
+      public Result apply(Integer input) {
+        return input % 2 == 0 ? Result.ACCEPT : Result.SKIP;
+      }
+    })) {
+      Assert.assertEquals(Arrays.asList(2, 4, 12), Lists.newArrayList(scanner));
+    }
+
+    // Scan with filter that hold when number 11
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 10, new MessageFilter<Integer>() {
+      @Override
+      public Result apply(Integer input) {
+        return input == 11 ? Result.HOLD : Result.ACCEPT;
+      }
+    })) {
+      Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5), Lists.newArrayList(scanner));
+    }
+  }
+
+  @Test
+  public void testEviction() {
+    // Each segment can hold 2 entries, with 4 segments in total
+    OffHeapMessageCache<Integer> cache = new OffHeapMessageCache<>(new IntComparator(), new IntCodec(), 4,
+                                                                   new MessageCache.Limits(0, 0, 64), NOOP_METRICS);
+    MessageFilter<Integer> filter = MessageFilter.alwaysAccept();
+
+    cache.addAll(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8).iterator());
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 10, filter)) {
+      Assert.assertEquals(Integer.valueOf(1), scanner.getFirstInCache());
+      Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8), Lists.newArrayList(scanner));
+    }
+
+    // Adding one more entry should evict the oldest segment
+    cache.addAll(Collections.singletonList(9).iterator());
+    Assert.assertEquals(56, cache.getCurrentWeight());
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 10, filter)) {
+      Assert.assertEquals(Integer.valueOf(3), scanner.getFirstInCache());
+      Assert.assertEquals(Arrays.asList(3, 4, 5, 6, 7, 8, 9), Lists.newArrayList(scanner));
+    }
+
+    // Keep adding to wrap around the ring multiple times
+    List<Integer> entries = new ArrayList<>();
+    for (int i = 10; i < 100; i++) {
+      entries.add(i);
+    }
+    cache.addAll(entries.iterator());
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(95, false, 10, filter)) {
+      Assert.assertEquals(Integer.valueOf(93), scanner.getFirstInCache());
+      Assert.assertEquals(Arrays.asList(96, 97, 98, 99), Lists.newArrayList(scanner));
+    }
+
+    // Resize discards everything
+    cache.resize(new MessageCache.Limits(0, 0, 128));
+    Assert.assertEquals(0, cache.getCurrentWeight());
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 10, filter)) {
+      Assert.assertNull(scanner.getFirstInCache());
+      Assert.assertFalse(scanner.hasNext());
+    }
+  }
+
+  @Test
+  public void testLargeEntry() {
+    // Each segment is 32 bytes
+    OffHeapMessageCache<Entry> cache = new OffHeapMessageCache<>(new EntryComparator(), new EntryCodec(), 4,
+                                                                 new MessageCache.Limits(0, 0, 128), NOOP_METRICS);
+    MessageFilter<Entry> filter = MessageFilter.alwaysAccept();
+
+    cache.addAll(Arrays.asList(new Entry(0, "a"), new Entry(1, "b"),
+                               new Entry(2, Strings.repeat("c", 100)), new Entry(3, "d")).iterator());
+
+    // The large entry evicted everything before it, and entries after it are cached
+    try (MessageCache.Scanner<Entry> scanner = cache.scan(new Entry(0, null), true, 10, filter)) {
+      Assert.assertEquals(3, scanner.getFirstInCache().getId());
+      Assert.assertEquals(3, scanner.next().getId());
+      Assert.assertFalse(scanner.hasNext());
+    }
+  }
+
+  @Test
+  public void testUpdate() {
+    OffHeapMessageCache<Entry> cache = new OffHeapMessageCache<>(new EntryComparator(), new EntryCodec(), 4,
+                                                                 new MessageCache.Limits(0, 0, 1024), NOOP_METRICS);
+
+    // Update that alters the order should fail and clear the cache
+    cache.addAll(Arrays.asList(new Entry(0, "Name"), new Entry(1, "Name"), new Entry(2, "Name")).iterator());
+    try {
+      cache.updateEntries(new Entry(0, null), new Entry(2, null), new MessageCache.EntryUpdater<Entry>() {
+        @Override
+        public void updateEntry(Entry entry) {
+          entry.setId(entry.getId() + 1);
+        }
+      });
+      Assert.fail("Expected exception of out of order update");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals(0, cache.getCurrentWeight());
+    }
+
+    // Update that alters the size should fail and clear the cache
+    cache.addAll(Arrays.asList(new Entry(0, "Name"), new Entry(1, "Name"), new Entry(2, "Name")).iterator());
+    try {
+      cache.updateEntries(new Entry(0, null), new Entry(2, null), new MessageCache.EntryUpdater<Entry>() {
+        @Override
+        public void updateEntry(Entry entry) {
+          entry.setName("Longer name");
+        }
+      });
+      Assert.fail("Expected exception of size altering update");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals(0, cache.getCurrentWeight());
+    }
+
+    // Update entries normally
+    cache.addAll(Arrays.asList(new Entry(0, "Name"), new Entry(1, "Name"),
+                               new Entry(2, "Name"), new Entry(3, "Name")).iterator());
+    cache.updateEntries(new Entry(1, null), new Entry(2, null), new MessageCache.EntryUpdater<Entry>() {
+      @Override
+      public void updateEntry(Entry entry) {
+        entry.setName("Nam" + entry.getId());
+      }
+    });
+
+    try (MessageCache.Scanner<Entry> scanner = cache.scan(new Entry(0, null), true, 10,
+                                                          MessageFilter.<Entry>alwaysAccept())) {
+      List<String> names = new ArrayList<>();
+      while (scanner.hasNext()) {
+        names.add(scanner.next().getName());
+      }
+      Assert.assertEquals(Arrays.asList("Name", "Nam1", "Nam2", "Name"), names);
+    }
+  }
+
+  @Test
+  public void testAddError() {
+    OffHeapMessageCache<Integer> cache = new OffHeapMessageCache<>(new IntComparator(), new IntCodec(), 4,
+                                                                   new MessageCache.Limits(0, 0, 64), NOOP_METRICS);
+
+    // Adding out of order should result in error and the cache should be cleared
+    try {
+      cache.addAll(Arrays.asList(5, 2, 3, 4).iterator());
+      Assert.fail("Expected failure for adding out of order");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals(0, cache.getCurrentWeight());
+    }
+
+    // Adding entries that are smaller than the largest one in the cache
+    cache.addAll(Arrays.asList(5, 6, 7, 8).iterator());
+    try {
+      cache.addAll(Arrays.asList(1, 2, 3, 4).iterator());
+      Assert.fail("Expected failure for adding out of order");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals(0, cache.getCurrentWeight());
+    }
+
+    // Adding after the error should work
+    cache.addAll(Arrays.asList(1, 2).iterator());
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 10, MessageFilter.<Integer>alwaysAccept())) {
+      Assert.assertEquals(Arrays.asList(1, 2), Lists.newArrayList(scanner));
+    }
+  }
+
+  @Test
+  public void testConcurrentScan() throws Exception {
+    // A small cache that keeps recycling segments while being scanned
+    final OffHeapMessageCache<Integer> cache = new OffHeapMessageCache<>(new IntComparator(), new IntCodec(), 4,
+                                                                         new MessageCache.Limits(0, 0, 256),
+                                                                         NOOP_METRICS);
+    final int total = 200000;
+    final AtomicBoolean writerDone = new AtomicBoolean();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      futures.add(executor.submit(() -> {
+        int i = 0;
+        while (i < total) {
+          List<Integer> batch = new ArrayList<>();
+          for (int j = 0; j < 5; j++) {
+            batch.add(i++);
+          }
+          cache.addAll(batch.iterator());
+        }
+        writerDone.set(true);
+      }));
+
+      for (int r = 0; r < 3; r++) {
+        futures.add(executor.submit(() -> {
+          MessageFilter<Integer> filter = MessageFilter.alwaysAccept();
+          int start = 0;
+          while (!writerDone.get()) {
+            try (MessageCache.Scanner<Integer> scanner = cache.scan(start, true, 10, filter)) {
+              Integer firstInCache = scanner.getFirstInCache();
+              Integer expected = firstInCache == null ? null : Math.max(start, firstInCache);
+              while (scanner.hasNext()) {
+                // Entries returned must always be consecutive
+                Integer entry = scanner.next();
+                Assert.assertEquals(expected, entry);
+                expected = entry + 1;
+                start = entry;
+              }
+            }
+          }
+        }));
+      }
+
+      for (Future<?> future : futures) {
+        future.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * A {@link Comparator} for {@link Integer}.
+   */
+  private static final class IntComparator implements Comparator<Integer> {
+
+    @Override
+    public int compare(Integer o1, Integer o2) {
+      return o1.compareTo(o2);
+    }
+  }
+
+  @Test
+  public void testSparseIndex() {
+    // Each segment can hold 200 entries, with every 4th entry indexed
+    AtomicInteger keyDecodes = new AtomicInteger();
+    OffHeapMessageCache<Integer> cache = new OffHeapMessageCache<>(new IntComparator(), new IntCodec() {
+      @Override
+      public Integer decodeKey(ByteBuffer buffer) {
+        keyDecodes.incrementAndGet();
+        return super.decodeKey(buffer);
+      }
+    }, 4, 4, new MessageCache.Limits(0, 0, 6400), NOOP_METRICS);
+
+    // Add 601 even numbers, which spans across 4 segments
+    List<Integer> entries = new ArrayList<>();
+    for (int i = 0; i <= 1200; i += 2) {
+      entries.add(i);
+    }
+    cache.addAll(entries.iterator());
+
+    MessageFilter<Integer> filter = MessageFilter.alwaysAccept();
+    for (int start = -1; start <= 1201; start++) {
+      try (MessageCache.Scanner<Integer> scanner = cache.scan(start, true, 1, filter)) {
+        int expected = start < 0 ? 0 : start + (start % 2);
+        Assert.assertEquals(expected <= 1200 ? Collections.singletonList(expected) : Collections.emptyList(),
+                            Lists.newArrayList(scanner));
+      }
+      try (MessageCache.Scanner<Integer> scanner = cache.scan(start, false, 1, filter)) {
+        int expected = start < 0 ? 0 : start + 2 - (start % 2);
+        Assert.assertEquals(expected <= 1200 ? Collections.singletonList(expected) : Collections.emptyList(),
+                            Lists.newArrayList(scanner));
+      }
+    }
+
+    // Locating the start entry should only decode a few keys instead of scanning through the segment
+    keyDecodes.set(0);
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(799, true, 1, filter)) {
+      Assert.assertEquals(Collections.singletonList(800), Lists.newArrayList(scanner));
+    }
+    Assert.assertTrue("Too many keys decoded: " + keyDecodes.get(), keyDecodes.get() < 20);
+  }
+
+  @Test
+  public void testLazyScan() {
+    // Each segment can hold 12 entries
+    AtomicInteger decodes = new AtomicInteger();
+    OffHeapMessageCache<Integer> cache = new OffHeapMessageCache<>(new IntComparator(), new IntCodec() {
+      @Override
+      public Integer decode(ByteBuffer buffer) {
+        decodes.incrementAndGet();
+        return super.decode(buffer);
+      }
+    }, 4, new MessageCache.Limits(0, 0, 400), NOOP_METRICS);
+
+    List<Integer> entries = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      entries.add(i);
+    }
+    cache.addAll(entries.iterator());
+
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 30, MessageFilter.<Integer>alwaysAccept())) {
+      // Entries are only decoded when consumed
+      Assert.assertEquals(0, decodes.get());
+      Assert.assertEquals(Integer.valueOf(0), scanner.next());
+      Assert.assertEquals(Integer.valueOf(1), scanner.next());
+      Assert.assertEquals(2, decodes.get());
+
+      // Clearing the cache shouldn't release the memory while the scanner is still reading it
+      cache.clear();
+      Assert.assertEquals(entries.subList(2, 30), Lists.newArrayList(scanner));
+    }
+
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 30, MessageFilter.<Integer>alwaysAccept())) {
+      Assert.assertNull(scanner.getFirstInCache());
+      Assert.assertFalse(scanner.hasNext());
+    }
+
+    // The cache should be usable after the old memory is released
+    cache.addAll(entries.iterator());
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(10, true, 5, MessageFilter.<Integer>alwaysAccept())) {
+      Assert.assertEquals(entries.subList(10, 15), Lists.newArrayList(scanner));
+    }
+  }
+
+  @Test
+  public void testSkipWithHeader() {
+    // Each segment can hold 12 entries
+    AtomicInteger decodes = new AtomicInteger();
+    OffHeapMessageCache<Integer> cache = new OffHeapMessageCache<>(new IntComparator(), new IntCodec() {
+      @Override
+      public Integer decode(ByteBuffer buffer) {
+        decodes.incrementAndGet();
+        return super.decode(buffer);
+      }
+    }, 4, new MessageCache.Limits(0, 0, 400), NOOP_METRICS);
+
+    List<Integer> entries = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      entries.add(i);
+    }
+    cache.addAll(entries.iterator());
+
+    // Only entries accepted by the filter should be fully decoded
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 30, new MessageFilter<Integer>() {
+      @Override
+      public Result apply(Integer input) {
+        return input % 10 == 0 ? Result.ACCEPT : Result.SKIP;
+      }
+    })) {
+      Assert.assertEquals(Arrays.asList(0, 10, 20), Lists.newArrayList(scanner));
+    }
+    Assert.assertEquals(3, decodes.get());
+  }
+
+  /**
+   * A {@link OffHeapMessageCache.Codec} for {@link Integer}.
+   */
+  private static class IntCodec implements OffHeapMessageCache.Codec<Integer> {
+
+    @Override
+    public int getEncodedSize(Integer entry) {
+      return Integer.BYTES;
+    }
+
+    @Override
+    public void encode(Integer entry, ByteBuffer buffer) {
+      buffer.putInt(entry);
+    }
+
+    @Override
+    public Integer decode(ByteBuffer buffer) {
+      return buffer.getInt();
+    }
+
+    @Override
+    public Integer decodeKey(ByteBuffer buffer) {
+      return buffer.getInt();
+    }
+
+    @Override
+    public Integer decodeHeader(ByteBuffer buffer) {
+      return buffer.getInt();
+    }
+  }
+
+  /**
+   * A cache entry for testing.
+   */
+  private static final class Entry {
+    private int id;
+    private String name;
+
+    Entry(int id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+
+    int getId() {
+      return id;
+    }
+
+    void setId(int id) {
+      this.id = id;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    void setName(String name) {
+      this.name = name;
+    }
+  }
+
+  /**
+   * A {@link Comparator} for {@link Entry} that only compares the id.
+   */
+  private static final class EntryComparator implements Comparator<Entry> {
+
+    @Override
+    public int compare(Entry o1, Entry o2) {
+      return Integer.compare(o1.getId(), o2.getId());
+    }
+  }
+
+  /**
+   * A {@link OffHeapMessageCache.Codec} for {@link Entry}.
+   */
+  private static final class EntryCodec implements OffHeapMessageCache.Codec<Entry> {
+
+    @Override
+    public int getEncodedSize(Entry entry) {
+      return Integer.BYTES + entry.getName().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Override
+    public void encode(Entry entry, ByteBuffer buffer) {
+      buffer.putInt(entry.getId()).put(entry.getName().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Entry decode(ByteBuffer buffer) {
+      int id = buffer.getInt();
+      byte[] name = new byte[buffer.remaining()];
+      buffer.get(name);
+      return new Entry(id, new String(name, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Entry decodeKey(ByteBuffer buffer) {
+      return new Entry(buffer.getInt(), null);
+    }
+
+    @Override
+    public Entry decodeHeader(ByteBuffer buffer) {
+      return decodeKey(buffer);
+    }
+  }
+}
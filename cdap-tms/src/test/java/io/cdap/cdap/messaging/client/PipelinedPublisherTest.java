@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.client;
+
+import com.google.common.collect.Iterables;
+import io.cdap.cdap.messaging.RollbackDetail;
+import io.cdap.cdap.messaging.StoreRequest;
+import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.proto.id.TopicId;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit test for {@link PipelinedPublisher}.
+ */
+public class PipelinedPublisherTest {
+
+  @Test
+  public void testMaxPending() throws Exception {
+    TopicId topicId = NamespaceId.DEFAULT.topic("topic");
+    CountDownLatch publishStarted = new CountDownLatch(1);
+    CountDownLatch publishBlocked = new CountDownLatch(1);
+    List<Integer> published = new ArrayList<>();
+
+    PipelinedPublisher publisher = new PipelinedPublisher(request -> {
+      publishStarted.countDown();
+      try {
+        publishBlocked.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      synchronized (published) {
+        published.add(Iterables.size(request));
+      }
+      return null;
+    }, 1, 10, 2);
+
+    // The first request is in flight and blocked, the second one is pending
+    List<CompletableFuture<RollbackDetail>> futures = new ArrayList<>();
+    futures.add(publisher.publish(createRequest(topicId)));
+    Assert.assertTrue(publishStarted.await(10, TimeUnit.SECONDS));
+    futures.add(publisher.publish(createRequest(topicId)));
+
+    // The third request should block the caller, since the max pending is reached
+    AtomicReference<CompletableFuture<RollbackDetail>> thirdFuture = new AtomicReference<>();
+    Thread caller = new Thread(() -> thirdFuture.set(publisher.publish(createRequest(topicId))));
+    caller.start();
+    caller.join(500);
+    Assert.assertTrue(caller.isAlive());
+    Assert.assertNull(thirdFuture.get());
+
+    // Unblock the publish, then all requests should get published
+    publishBlocked.countDown();
+    caller.join(10000);
+    Assert.assertFalse(caller.isAlive());
+    futures.add(thirdFuture.get());
+    for (CompletableFuture<RollbackDetail> future : futures) {
+      Assert.assertNull(future.get(10, TimeUnit.SECONDS));
+    }
+    synchronized (published) {
+      Assert.assertEquals(3, published.stream().mapToInt(Integer::intValue).sum());
+    }
+  }
+
+  @Test
+  public void testInterruptWhenFull() throws Exception {
+    TopicId topicId = NamespaceId.DEFAULT.topic("topic");
+    CountDownLatch publishBlocked = new CountDownLatch(1);
+
+    PipelinedPublisher publisher = new PipelinedPublisher(request -> {
+      try {
+        publishBlocked.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      return null;
+    }, 1, 10, 1);
+
+    CompletableFuture<RollbackDetail> future = publisher.publish(createRequest(topicId));
+
+    // Publishing from an interrupted thread while full fails the future instead of blocking
+    Thread.currentThread().interrupt();
+    CompletableFuture<RollbackDetail> failedFuture = publisher.publish(createRequest(topicId));
+    Assert.assertTrue(Thread.interrupted());
+    try {
+      failedFuture.get();
+      Assert.fail("Expected publish to fail");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof InterruptedException);
+    }
+
+    publishBlocked.countDown();
+    Assert.assertNull(future.get(10, TimeUnit.SECONDS));
+  }
+
+  private StoreRequest createRequest(TopicId topicId) {
+    return StoreRequestBuilder.of(topicId).addPayload("payload").build();
+  }
+}
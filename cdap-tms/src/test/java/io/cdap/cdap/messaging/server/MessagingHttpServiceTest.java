@@ -16,7 +16,9 @@
 
 package io.cdap.cdap.messaging.server;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
@@ -31,7 +33,8 @@ import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.guice.ConfigModule;
 import io.cdap.cdap.common.guice.InMemoryDiscoveryModule;
 import io.cdap.cdap.common.metrics.NoOpMetricsCollectionService;
-import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.MultiTopicMessageFetcher;
+import io.cdap.cdap.messaging.PayloadCompression;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
@@ -39,6 +42,7 @@ import io.cdap.cdap.messaging.client.ClientMessagingService;
 import io.cdap.cdap.messaging.client.StoreRequestBuilder;
 import io.cdap.cdap.messaging.data.MessageId;
 import io.cdap.cdap.messaging.data.RawMessage;
+import io.cdap.cdap.messaging.data.TopicRawMessage;
 import io.cdap.cdap.messaging.guice.MessagingServerRuntimeModule;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
@@ -63,6 +67,12 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -71,11 +81,13 @@ import java.util.stream.Collectors;
 @RunWith(Parameterized.class)
 public class MessagingHttpServiceTest {
 
-  @Parameterized.Parameters(name = "{index}: compressPayload = {0}")
+  @Parameterized.Parameters(name = "{index}: compressPayload = {0}, directEncoding = {1}")
   public static Collection<Object[]> parameters() {
     return Arrays.asList(new Object[][]{
-      {false},
-      {true},
+      {false, false},
+      {false, true},
+      {true, false},
+      {true, true},
     });
   }
 
@@ -83,12 +95,14 @@ public class MessagingHttpServiceTest {
   public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
 
   private final boolean compressPayload;
+  private final boolean directEncoding;
   private CConfiguration cConf;
   private MessagingHttpService httpService;
-  private MessagingService client;
+  private ClientMessagingService client;
 
-  public MessagingHttpServiceTest(boolean compressPayload) {
+  public MessagingHttpServiceTest(boolean compressPayload, boolean directEncoding) {
     this.compressPayload = compressPayload;
+    this.directEncoding = directEncoding;
   }
 
   @Before
@@ -97,11 +111,17 @@ public class MessagingHttpServiceTest {
     cConf.set(Constants.CFG_LOCAL_DATA_DIR, TEMP_FOLDER.newFolder().getAbsolutePath());
     cConf.set(Constants.MessagingSystem.HTTP_SERVER_BIND_ADDRESS, InetAddress.getLocalHost().getHostName());
     cConf.setInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE, 128);
+    cConf.setBoolean(Constants.MessagingSystem.HTTP_SERVER_CONSUME_DIRECT_ENCODING, directEncoding);
+    // Use a small wrap size so that both copied and wrapped payloads are tested
+    cConf.setInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_WRAP_PAYLOAD_SIZE, 64);
     // Set max life time to a high value so that dummy tx ids that we create in the tests still work
     cConf.setLong(TxConstants.Manager.CFG_TX_MAX_LIFETIME, 10000000000L);
     // Reduce the buffer size for the http request buffer to test "large" message request
     cConf.setInt(Constants.MessagingSystem.HTTP_SERVER_MAX_REQUEST_SIZE_MB, 1);
     cConf.setBoolean(Constants.MessagingSystem.HTTP_COMPRESS_PAYLOAD, compressPayload);
+    // Use a single IO thread to make sure fetch calls waiting for new messages don't block other calls
+    cConf.setInt(Constants.MessagingSystem.HTTP_SERVER_WORKER_THREADS, 1);
+    cConf.setInt(Constants.MessagingSystem.HTTP_SERVER_EXECUTOR_THREADS, 0);
 
     Injector injector = Guice.createInjector(
       new ConfigModule(cConf),
@@ -462,6 +482,466 @@ public class MessagingHttpServiceTest {
     client.deleteTopic(topicId);
   }
 
+  @Test
+  public void testMultiTopicFetch() throws Exception {
+    TopicId topic1 = new NamespaceId("ns1").topic("testMultiTopicFetch1");
+    TopicId topic2 = new NamespaceId("ns1").topic("testMultiTopicFetch2");
+    TopicId topic3 = new NamespaceId("ns2").topic("testMultiTopicFetch3");
+
+    client.createTopic(new TopicMetadata(topic1));
+    client.createTopic(new TopicMetadata(topic2));
+    client.createTopic(new TopicMetadata(topic3));
+
+    // Publish 5 messages to topic1 and 3 messages to topic3. Leave topic2 empty.
+    for (int i = 0; i < 5; i++) {
+      client.publish(StoreRequestBuilder.of(topic1).addPayload("t1-" + i).build());
+    }
+    for (int i = 0; i < 3; i++) {
+      client.publish(StoreRequestBuilder.of(topic3).addPayload("t3-" + i).build());
+    }
+
+    // Fetch from all topics, with different limits
+    List<TopicRawMessage> messages = new ArrayList<>();
+    try (CloseableIterator<TopicRawMessage> iterator = client.prepareMultiTopicFetch()
+      .addTopic(topic1, null, true, 3)
+      .addTopic(topic2, null, true, 10)
+      .addTopic(topic3, 0L, 10)
+      .fetch()) {
+      Iterators.addAll(messages, iterator);
+    }
+    Assert.assertEquals(6, messages.size());
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(topic1, messages.get(i).getTopicId());
+      Assert.assertEquals("t1-" + i, Bytes.toString(messages.get(i).getPayload()));
+    }
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(topic3, messages.get(i + 3).getTopicId());
+      Assert.assertEquals("t3-" + i, Bytes.toString(messages.get(i + 3).getPayload()));
+    }
+
+    // Continue fetching from the last message of topic1 and topic3. Only the remaining of topic1 should be fetched
+    byte[] topic1Offset = messages.get(2).getId();
+    byte[] topic3Offset = messages.get(5).getId();
+    messages.clear();
+    try (CloseableIterator<TopicRawMessage> iterator = client.prepareMultiTopicFetch()
+      .addTopic(topic3, topic3Offset, false, 10)
+      .addTopic(topic1, topic1Offset, false, 10)
+      .fetch()) {
+      Iterators.addAll(messages, iterator);
+    }
+    Assert.assertEquals(2, messages.size());
+    for (int i = 0; i < 2; i++) {
+      Assert.assertEquals(topic1, messages.get(i).getTopicId());
+      Assert.assertEquals("t1-" + (i + 3), Bytes.toString(messages.get(i).getPayload()));
+    }
+
+    // Fetching from a non-existing topic should fail
+    try {
+      client.prepareMultiTopicFetch()
+        .addTopic(topic1, null, true, 10)
+        .addTopic(new NamespaceId("ns1").topic("nonExisting"), null, true, 10)
+        .fetch();
+      Assert.fail("Expected TopicNotFoundException");
+    } catch (TopicNotFoundException e) {
+      Assert.assertEquals("nonExisting", e.getTopic());
+    }
+
+    client.deleteTopic(topic1);
+    client.deleteTopic(topic2);
+    client.deleteTopic(topic3);
+  }
+
+  @Test
+  public void testLongPoll() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("testLongPoll");
+    client.createTopic(new TopicMetadata(topicId));
+
+    // Fetching from an empty topic should wait for the timeout and return no message
+    Stopwatch stopwatch = new Stopwatch().start();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+      .setTimeout(200, TimeUnit.MILLISECONDS)
+      .fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+    Assert.assertTrue(stopwatch.elapsedMillis() >= 200);
+
+    // Publish a message after the fetch call started waiting. The fetch should return with the message.
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> future = executor.submit(() -> {
+        TimeUnit.MILLISECONDS.sleep(500);
+        return client.publish(StoreRequestBuilder.of(topicId).addPayload("message").build());
+      });
+
+      List<RawMessage> messages = new ArrayList<>();
+      stopwatch.reset().start();
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+        .setTimeout(20, TimeUnit.SECONDS)
+        .fetch()) {
+        Iterators.addAll(messages, iterator);
+      }
+      future.get();
+
+      Assert.assertTrue(stopwatch.elapsedMillis() < TimeUnit.SECONDS.toMillis(20));
+      Assert.assertEquals(1, messages.size());
+      Assert.assertEquals("message", Bytes.toString(messages.get(0).getPayload()));
+
+      // Fetching after the last message should wait again
+      stopwatch.reset().start();
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+        .setStartMessage(messages.get(0).getId(), false)
+        .setTimeout(200, TimeUnit.MILLISECONDS)
+        .fetch()) {
+        Assert.assertFalse(iterator.hasNext());
+      }
+      Assert.assertTrue(stopwatch.elapsedMillis() >= 200);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    client.deleteTopic(topicId);
+  }
+
+  @Test
+  public void testMultiTopicLongPoll() throws Exception {
+    TopicId topic1 = new NamespaceId("ns1").topic("testMultiTopicLongPoll1");
+    TopicId topic2 = new NamespaceId("ns1").topic("testMultiTopicLongPoll2");
+
+    client.createTopic(new TopicMetadata(topic1));
+    client.createTopic(new TopicMetadata(topic2));
+
+    // Fetching from empty topics should wait for the timeout and return no message
+    Stopwatch stopwatch = new Stopwatch().start();
+    try (CloseableIterator<TopicRawMessage> iterator = client.prepareMultiTopicFetch()
+      .addTopic(topic1, null, true, 10)
+      .addTopic(topic2, null, true, 10)
+      .setTimeout(200, TimeUnit.MILLISECONDS)
+      .fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+    Assert.assertTrue(stopwatch.elapsedMillis() >= 200);
+
+    // Publish a message to topic2 after the fetch call started waiting. The fetch should return with the message.
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> future = executor.submit(() -> {
+        TimeUnit.MILLISECONDS.sleep(500);
+        return client.publish(StoreRequestBuilder.of(topic2).addPayload("message").build());
+      });
+
+      List<TopicRawMessage> messages = new ArrayList<>();
+      try (CloseableIterator<TopicRawMessage> iterator = client.prepareMultiTopicFetch()
+        .addTopic(topic1, null, true, 10)
+        .addTopic(topic2, null, true, 10)
+        .setTimeout(20, TimeUnit.SECONDS)
+        .fetch()) {
+        Iterators.addAll(messages, iterator);
+      }
+      future.get();
+
+      Assert.assertEquals(1, messages.size());
+      Assert.assertEquals(topic2, messages.get(0).getTopicId());
+      Assert.assertEquals("message", Bytes.toString(messages.get(0).getPayload()));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    client.deleteTopic(topic1);
+    client.deleteTopic(topic2);
+  }
+
+
+  @Test
+  public void testAsyncPublish() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("testAsyncPublish");
+    client.createTopic(new TopicMetadata(topicId));
+
+    // Publish concurrently from multiple threads
+    int threads = 5;
+    int messagesPerThread = 100;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<List<CompletableFuture<RollbackDetail>>>> results = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        int threadId = i;
+        results.add(executor.submit(() -> {
+          List<CompletableFuture<RollbackDetail>> futures = new ArrayList<>();
+          for (int j = 0; j < messagesPerThread; j++) {
+            futures.add(client.publishAsync(StoreRequestBuilder.of(topicId)
+                                              .addPayload(threadId + ":" + j).build()));
+          }
+          return futures;
+        }));
+      }
+      for (Future<List<CompletableFuture<RollbackDetail>>> result : results) {
+        for (CompletableFuture<RollbackDetail> future : result.get(10, TimeUnit.SECONDS)) {
+          Assert.assertNull(future.get(10, TimeUnit.SECONDS));
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // All messages should be published, and messages from the same thread should be in the publish order
+    int[] nextSeqs = new int[threads];
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId).setLimit(Integer.MAX_VALUE).fetch()) {
+      while (iterator.hasNext()) {
+        String[] parts = Bytes.toString(iterator.next().getPayload()).split(":");
+        int threadId = Integer.parseInt(parts[0]);
+        Assert.assertEquals(nextSeqs[threadId]++, Integer.parseInt(parts[1]));
+      }
+    }
+    for (int nextSeq : nextSeqs) {
+      Assert.assertEquals(messagesPerThread, nextSeq);
+    }
+
+    // Transactional publish returns the rollback detail
+    RollbackDetail rollbackDetail = client.publishAsync(StoreRequestBuilder.of(topicId).addPayload("tx")
+                                                          .setTransaction(1L).build()).get(10, TimeUnit.SECONDS);
+    Assert.assertNotNull(rollbackDetail);
+    Assert.assertEquals(1L, rollbackDetail.getTransactionWritePointer());
+
+    // Publish to non-existing topic fails the future
+    try {
+      client.publishAsync(StoreRequestBuilder.of(new NamespaceId("ns1").topic("nonExisting"))
+                            .addPayload("a").build()).get(10, TimeUnit.SECONDS);
+      Assert.fail("Expected TopicNotFoundException");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof TopicNotFoundException);
+    }
+
+    client.deleteTopic(topicId);
+  }
+
+  @Test
+  public void testPartitionedTopic() throws Exception {
+    NamespaceId namespaceId = new NamespaceId("ns1");
+    TopicId topicId = namespaceId.topic("testPartitionedTopic");
+    client.createTopic(new TopicMetadata(topicId, TopicMetadata.PARTITIONS_KEY, 3));
+
+    TopicMetadata metadata = client.getTopic(topicId);
+    Assert.assertEquals(3, metadata.getPartitions());
+    List<TopicId> partitionTopicIds = metadata.getPartitionTopicIds();
+    Assert.assertEquals(3, partitionTopicIds.size());
+
+    // Partitions are not listed
+    List<TopicId> topics = client.listTopics(namespaceId);
+    Assert.assertTrue(topics.contains(topicId));
+    for (TopicId partitionTopicId : partitionTopicIds) {
+      Assert.assertFalse(topics.contains(partitionTopicId));
+    }
+
+    // Non-transactional publishes are spread across all partitions
+    for (int i = 0; i < 6; i++) {
+      Assert.assertNull(client.publish(StoreRequestBuilder.of(topicId).addPayload("m" + i).build()));
+    }
+    for (TopicId partitionTopicId : partitionTopicIds) {
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(partitionTopicId).fetch()) {
+        Assert.assertEquals(2, Iterators.size(iterator));
+      }
+    }
+
+    // Fetch from all partitions together. Each partition is fetched with its own offset.
+    MultiTopicMessageFetcher fetcher = client.prepareMultiTopicFetch();
+    for (TopicId partitionTopicId : partitionTopicIds) {
+      fetcher.addTopic(partitionTopicId, null, true, 10);
+    }
+    Set<String> payloads = new HashSet<>();
+    try (CloseableIterator<TopicRawMessage> iterator = fetcher.fetch()) {
+      while (iterator.hasNext()) {
+        payloads.add(Bytes.toString(iterator.next().getPayload()));
+      }
+    }
+    Assert.assertEquals(ImmutableSet.of("m0", "m1", "m2", "m3", "m4", "m5"), payloads);
+
+    // Fetching from the partitioned topic directly is not allowed
+    try {
+      client.prepareFetch(topicId).fetch();
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+
+    // Transactional publish and rollback goes to the partition based on the transaction write pointer
+    RollbackDetail rollbackDetail = client.publish(StoreRequestBuilder.of(topicId)
+                                                     .addPayload("tx").setTransaction(4L).build());
+    Assert.assertNotNull(rollbackDetail);
+    client.rollback(topicId, rollbackDetail);
+
+    Transaction transaction = new Transaction(5L, 5L, new long[0], new long[0], 5L);
+    for (int i = 0; i < partitionTopicIds.size(); i++) {
+      List<String> messages = new ArrayList<>();
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(partitionTopicIds.get(i)).fetch()) {
+        iterator.forEachRemaining(message -> messages.add(Bytes.toString(message.getPayload())));
+      }
+      // The rolled back message is still visible to non-transactional fetch, but not to transactional fetch
+      Assert.assertEquals(i == 1 ? 3 : 2, messages.size());
+      Assert.assertEquals(i == 1, messages.contains("tx"));
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(partitionTopicIds.get(i))
+        .setStartTime(0).setTransaction(transaction).fetch()) {
+        Assert.assertEquals(2, Iterators.size(iterator));
+      }
+    }
+
+    // Non-transactional publishes with the same partition key go to the same partition in publish order
+    for (int i = 0; i < 5; i++) {
+      client.publish(StoreRequestBuilder.of(topicId).setPartitionKey("key").addPayload("k" + i).build());
+    }
+    List<String> keyedPayloads = new ArrayList<>();
+    for (TopicId partitionTopicId : partitionTopicIds) {
+      List<String> partitionPayloads = new ArrayList<>();
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(partitionTopicId).fetch()) {
+        iterator.forEachRemaining(message -> partitionPayloads.add(Bytes.toString(message.getPayload())));
+      }
+      partitionPayloads.removeIf(payload -> !payload.startsWith("k"));
+      Assert.assertTrue(partitionPayloads.isEmpty() || keyedPayloads.isEmpty());
+      keyedPayloads.addAll(partitionPayloads);
+    }
+    Assert.assertEquals(Arrays.asList("k0", "k1", "k2", "k3", "k4"), keyedPayloads);
+
+    // Properties are updated for all partitions, but the number of partitions cannot be changed
+    client.updateTopic(new TopicMetadata(topicId, TopicMetadata.TTL_KEY, 100));
+    Assert.assertEquals(3, client.getTopic(topicId).getPartitions());
+    for (TopicId partitionTopicId : partitionTopicIds) {
+      Assert.assertEquals(100, client.getTopic(partitionTopicId).getTTL());
+    }
+    try {
+      client.updateTopic(new TopicMetadata(topicId, TopicMetadata.PARTITIONS_KEY, 4));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+
+    // Partitions cannot be updated, published to or deleted directly
+    TopicId firstPartitionId = partitionTopicIds.get(0);
+    try {
+      client.updateTopic(new TopicMetadata(firstPartitionId, TopicMetadata.TTL_KEY, 10));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+    try {
+      client.publish(StoreRequestBuilder.of(firstPartitionId).addPayload("p").build());
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+    try {
+      client.deleteTopic(firstPartitionId);
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+    Assert.assertEquals(100, client.getTopic(firstPartitionId).getTTL());
+
+    // Deleting the topic deletes all partitions
+    client.deleteTopic(topicId);
+    for (TopicId partitionTopicId : partitionTopicIds) {
+      try {
+        client.getTopic(partitionTopicId);
+        Assert.fail("Expected TopicNotFoundException");
+      } catch (TopicNotFoundException e) {
+        // Expected
+      }
+    }
+  }
+
+  @Test
+  public void testPartitionTopicName() throws Exception {
+    NamespaceId namespaceId = new NamespaceId("ns1");
+    TopicId topicId = namespaceId.topic("testPartitionTopicName");
+    TopicId regularTopicId = TopicMetadata.getPartitionTopicId(topicId, 1);
+
+    // A regular topic can have the name of a partition, and is managed as any other topic
+    client.createTopic(new TopicMetadata(regularTopicId));
+    Assert.assertTrue(client.listTopics(namespaceId).contains(regularTopicId));
+    client.updateTopic(new TopicMetadata(regularTopicId, TopicMetadata.TTL_KEY, 10));
+    Assert.assertEquals(10, client.getTopic(regularTopicId).getTTL());
+    client.publish(StoreRequestBuilder.of(regularTopicId).addPayload("m").build());
+
+    // A partitioned topic cannot use the regular topic as a partition
+    try {
+      client.createTopic(new TopicMetadata(topicId, TopicMetadata.PARTITIONS_KEY, 2));
+      Assert.fail("Expected TopicAlreadyExistsException");
+    } catch (TopicAlreadyExistsException e) {
+      // Expected
+    }
+    try {
+      client.getTopic(topicId);
+      Assert.fail("Expected TopicNotFoundException");
+    } catch (TopicNotFoundException e) {
+      // Expected
+    }
+    try {
+      client.getTopic(TopicMetadata.getPartitionTopicId(topicId, 0));
+      Assert.fail("Expected TopicNotFoundException");
+    } catch (TopicNotFoundException e) {
+      // Expected
+    }
+
+    client.deleteTopic(regularTopicId);
+    Assert.assertFalse(client.listTopics(namespaceId).contains(regularTopicId));
+
+    // The property that marks partitions cannot be set by users
+    try {
+      client.createTopic(new TopicMetadata(namespaceId.topic("testParentTopic"),
+                                           TopicMetadata.PARENT_TOPIC_KEY, topicId.getTopic()));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testCompressedTopic() throws Exception {
+    NamespaceId namespaceId = new NamespaceId("ns1");
+
+    // Invalid compression is rejected
+    try {
+      client.createTopic(new TopicMetadata(namespaceId.topic("invalidCompression"),
+                                           TopicMetadata.COMPRESSION_KEY, "unknown"));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+
+    String largePayload = Strings.repeat("compressible", 1000);
+    for (PayloadCompression compression : PayloadCompression.values()) {
+      TopicId topicId = namespaceId.topic("testCompressedTopic" + compression);
+      client.createTopic(new TopicMetadata(topicId, TopicMetadata.COMPRESSION_KEY, compression.name().toLowerCase()));
+      Assert.assertEquals(compression, client.getTopic(topicId).getCompression());
+
+      // Non-transactional publish to the message table
+      client.publish(StoreRequestBuilder.of(topicId).addPayload("m0").addPayload("").addPayload(largePayload).build());
+
+      // Transactional publish to the message table, and to the payload table followed by a commit marker
+      client.publish(StoreRequestBuilder.of(topicId).addPayload("tx1").setTransaction(1L).build());
+      client.storePayload(StoreRequestBuilder.of(topicId).addPayload("p0").addPayload(largePayload)
+                            .setTransaction(2L).build());
+      client.publish(StoreRequestBuilder.of(topicId).setTransaction(2L).build());
+
+      List<String> payloads = new ArrayList<>();
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId).fetch()) {
+        iterator.forEachRemaining(message -> payloads.add(Bytes.toString(message.getPayload())));
+      }
+      Assert.assertEquals(Arrays.asList("m0", "", largePayload, "tx1", "p0", largePayload), payloads);
+
+      // Compression is retained if not provided on update, but cannot be changed
+      client.updateTopic(new TopicMetadata(topicId, TopicMetadata.TTL_KEY, 1000));
+      Assert.assertEquals(compression, client.getTopic(topicId).getCompression());
+      try {
+        PayloadCompression other = compression == PayloadCompression.NONE
+          ? PayloadCompression.SNAPPY : PayloadCompression.NONE;
+        client.updateTopic(new TopicMetadata(topicId, TopicMetadata.COMPRESSION_KEY, other.name()));
+        Assert.fail("Expected IllegalArgumentException");
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+
+      client.deleteTopic(topicId);
+    }
+  }
+
   @Test
   public void testPayloadTable() throws Exception {
     // This test is to verify storing transaction messages to the payload table
@@ -22,6 +22,7 @@ import com.google.common.collect.ListMultimap;
 import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.metrics.MetricsCollector;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.common.utils.TimeProvider;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
@@ -95,6 +96,26 @@ public class ConcurrentMessageWriterTest {
     Assert.assertEquals(Arrays.asList("a", "b", "c"), payloads);
   }
 
+  @Test
+  public void testPersistListener() throws IOException {
+    TopicId topicId = new NamespaceId("ns1").topic("t1");
+    TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+
+    // The listener should be called after the messages are written
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+    List<Integer> writtenCounts = new ArrayList<>();
+    ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new NoopMetricsContext(),
+                                                                 () -> writtenCounts.add(testWriter.getMessages()
+                                                                                           .get(topicId).size()));
+    writer.persist(new TestStoreRequest(topicId, Arrays.asList("1", "2", "3")), metadata);
+    writer.persist(new TestStoreRequest(topicId, Arrays.asList("4", "5")), metadata);
+    Assert.assertEquals(Arrays.asList(3, 5), writtenCounts);
+
+    // Closing the writer with nothing pending shouldn't call the listener
+    writer.close();
+    Assert.assertEquals(Arrays.asList(3, 5), writtenCounts);
+  }
+
   @Test
   public void testMaxSequence() throws IOException {
     // This test the case when a single StoreRequest has more than SEQUENCE_ID_LIMIT (65536) payload.
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.service;
+
+import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.proto.id.TopicId;
+import org.apache.twill.common.Cancellable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit-test for {@link PublishNotifier}.
+ */
+public class PublishNotifierTest {
+
+  @Test
+  public void testListeners() {
+    PublishNotifier notifier = new PublishNotifier();
+    TopicId topic1 = NamespaceId.DEFAULT.topic("topic1");
+    TopicId topic2 = NamespaceId.DEFAULT.topic("topic2");
+
+    AtomicInteger calls1 = new AtomicInteger();
+    AtomicInteger calls2 = new AtomicInteger();
+    notifier.addListener(topic1, notifier.getPublishCount(topic1), calls1::incrementAndGet);
+    Cancellable cancellable = notifier.addListener(topic2, notifier.getPublishCount(topic2), calls2::incrementAndGet);
+
+    // Publishing to topic1 should only call the listener of topic1, and only once
+    notifier.notifyPublished(topic1);
+    notifier.notifyPublished(topic1);
+    Assert.assertEquals(1, calls1.get());
+    Assert.assertEquals(0, calls2.get());
+
+    // A cancelled listener is not called
+    cancellable.cancel();
+    notifier.notifyPublished(topic2);
+    Assert.assertEquals(0, calls2.get());
+
+    // A listener added with an old publish count is called immediately
+    notifier.addListener(topic1, 0L, calls1::incrementAndGet);
+    Assert.assertEquals(2, calls1.get());
+  }
+
+  @Test
+  public void testAwait() throws InterruptedException {
+    PublishNotifier notifier = new PublishNotifier();
+    TopicId topic1 = NamespaceId.DEFAULT.topic("topic1");
+    TopicId topic2 = NamespaceId.DEFAULT.topic("topic2");
+
+    long publishCount = notifier.getPublishCount(topic1);
+    Thread publisher = new Thread(() -> {
+      notifier.notifyPublished(topic2);
+      notifier.notifyPublished(topic1);
+    });
+    publisher.start();
+    Assert.assertTrue(notifier.await(topic1, publishCount, 10000L));
+    publisher.join();
+
+    // No new publish, should time out
+    Assert.assertFalse(notifier.await(topic1, notifier.getPublishCount(topic1), 100L));
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.cache;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
+import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.messaging.cache.OffHeapMessageCache;
+import io.cdap.cdap.messaging.cache.OrderedMessageCache;
+import io.cdap.cdap.messaging.store.MessageTable;
+import io.cdap.cdap.messaging.store.leveldb.LevelDBMessageTableTest;
+import io.cdap.cdap.proto.id.TopicId;
+import org.junit.BeforeClass;
+
+/**
+ * Unit test for {@link CachingMessageTable} using the {@link OffHeapMessageCache}.
+ */
+public class OffHeapCachingMessageTableTest extends LevelDBMessageTableTest {
+
+  private static MessageTableCacheProvider cacheProvider;
+
+  @BeforeClass
+  public static void initCache() {
+    final LoadingCache<TopicId, OrderedMessageCache<MessageTable.Entry>> caches = CacheBuilder
+      .newBuilder()
+      .build(new CacheLoader<TopicId, OrderedMessageCache<MessageTable.Entry>>() {
+        @Override
+        public OrderedMessageCache<MessageTable.Entry> load(TopicId key) {
+          return new OffHeapMessageCache<>(new MessageTableEntryComparator(), new MessageTableEntryCodec(key), 4,
+                                           new MessageCache.Limits(0, 0, 4096), new NoopMetricsContext());
+        }
+      });
+
+    cacheProvider = new MessageTableCacheProvider() {
+      @Override
+      public OrderedMessageCache<MessageTable.Entry> getMessageCache(TopicId topicId) {
+        return caches.getUnchecked(topicId);
+      }
+
+      @Override
+      public void clear() {
+        for (OrderedMessageCache<MessageTable.Entry> cache : caches.asMap().values()) {
+          cache.clear();
+        }
+        caches.invalidateAll();
+      }
+    };
+  }
+
+  @Override
+  protected MessageTable getMessageTable(TopicMetadata topicMetadata) throws Exception {
+    MessageTable messageTable = super.getMessageTable(topicMetadata);
+    return new CachingMessageTable(cConf, messageTable, cacheProvider);
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.leveldb;
+
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.store.MessageTable;
+import io.cdap.cdap.messaging.store.MetadataTable;
+import io.cdap.cdap.messaging.store.TableFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+import java.io.IOException;
+
+/**
+ * Tests for {@link LevelDBMessageTable} with group commit and interval sync policy.
+ */
+public class LevelDBGroupCommitMessageTableTest extends LevelDBMessageTableTest {
+
+  private static TableFactory groupCommitTableFactory;
+
+  @BeforeClass
+  public static void initGroupCommit() throws IOException {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, tmpFolder.newFolder().getAbsolutePath());
+    cConf.setBoolean(Constants.MessagingSystem.LOCAL_DATA_GROUP_COMMIT_ENABLED, true);
+    cConf.set(Constants.MessagingSystem.LOCAL_DATA_SYNC_POLICY, "interval");
+    cConf.setLong(Constants.MessagingSystem.LOCAL_DATA_SYNC_INTERVAL_MS, 100L);
+    groupCommitTableFactory = new LevelDBTableFactory(cConf);
+  }
+
+  @AfterClass
+  public static void finishGroupCommit() throws IOException {
+    groupCommitTableFactory.close();
+  }
+
+  @Override
+  protected MessageTable getMessageTable(TopicMetadata topicMetadata) throws Exception {
+    return groupCommitTableFactory.createMessageTable(topicMetadata);
+  }
+
+  @Override
+  protected MetadataTable getMetadataTable() throws Exception {
+    return groupCommitTableFactory.createMetadataTable();
+  }
+}
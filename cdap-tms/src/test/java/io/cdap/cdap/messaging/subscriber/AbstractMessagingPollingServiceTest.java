@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.subscriber;
+
+import com.google.common.base.Stopwatch;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import io.cdap.cdap.api.messaging.Message;
+import io.cdap.cdap.api.messaging.MessagingContext;
+import io.cdap.cdap.api.messaging.TopicNotFoundException;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.guice.ConfigModule;
+import io.cdap.cdap.common.guice.InMemoryDiscoveryModule;
+import io.cdap.cdap.common.metrics.NoOpMetricsCollectionService;
+import io.cdap.cdap.common.service.RetryStrategies;
+import io.cdap.cdap.common.utils.ImmutablePair;
+import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.client.ClientMessagingService;
+import io.cdap.cdap.messaging.client.StoreRequestBuilder;
+import io.cdap.cdap.messaging.context.MultiThreadMessagingContext;
+import io.cdap.cdap.messaging.guice.MessagingServerRuntimeModule;
+import io.cdap.cdap.messaging.server.MessagingHttpService;
+import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.proto.id.TopicId;
+import org.apache.twill.discovery.DiscoveryServiceClient;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Unit test for {@link AbstractMessagingPollingService}.
+ */
+public class AbstractMessagingPollingServiceTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static MessagingHttpService httpService;
+  private static ClientMessagingService client;
+
+  @BeforeClass
+  public static void init() throws IOException {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, TEMP_FOLDER.newFolder().getAbsolutePath());
+    cConf.set(Constants.MessagingSystem.HTTP_SERVER_BIND_ADDRESS, InetAddress.getLocalHost().getHostName());
+
+    Injector injector = Guice.createInjector(
+      new ConfigModule(cConf),
+      new InMemoryDiscoveryModule(),
+      new MessagingServerRuntimeModule().getInMemoryModules(),
+      new AbstractModule() {
+        @Override
+        protected void configure() {
+          bind(MetricsCollectionService.class).toInstance(new NoOpMetricsCollectionService());
+        }
+      }
+    );
+
+    httpService = injector.getInstance(MessagingHttpService.class);
+    httpService.startAndWait();
+    client = new ClientMessagingService(injector.getInstance(DiscoveryServiceClient.class), false);
+  }
+
+  @AfterClass
+  public static void finish() {
+    httpService.stopAndWait();
+  }
+
+  @Test
+  public void testFetchWait() throws Exception {
+    TopicId topicId = NamespaceId.DEFAULT.topic("testFetchWait");
+    client.createTopic(new TopicMetadata(topicId));
+
+    long emptyFetchDelayMillis = 3000L;
+    TestPollingService service = new TestPollingService(topicId, new MultiThreadMessagingContext(client),
+                                                        emptyFetchDelayMillis);
+    service.startAndWait();
+    try {
+      // Publish after the first fetch started. The fetch should be waiting on the server for the new message,
+      // instead of returning empty and sleeping for the empty fetch delay.
+      Assert.assertTrue(service.fetchStarted.await(10, TimeUnit.SECONDS));
+      TimeUnit.MILLISECONDS.sleep(500);
+      Stopwatch stopwatch = new Stopwatch().start();
+      client.publish(StoreRequestBuilder.of(topicId).addPayload("message").build());
+
+      Assert.assertEquals("message", service.payloads.poll(10, TimeUnit.SECONDS));
+      Assert.assertTrue(stopwatch.elapsedMillis() < emptyFetchDelayMillis / 2);
+      // The message should be returned by the first fetch
+      Assert.assertEquals(1, service.processedFetchCount);
+    } finally {
+      service.stopAndWait();
+      client.deleteTopic(topicId);
+    }
+  }
+
+  /**
+   * A {@link AbstractMessagingPollingService} that records the payloads of the messages it fetched.
+   */
+  private static final class TestPollingService extends AbstractMessagingPollingService<String> {
+
+    private final MessagingContext messagingContext;
+    private final CountDownLatch fetchStarted = new CountDownLatch(1);
+    private final BlockingQueue<String> payloads = new LinkedBlockingQueue<>();
+    private volatile int fetchCount;
+    private volatile int processedFetchCount;
+
+    TestPollingService(TopicId topicId, MessagingContext messagingContext, long emptyFetchDelayMillis) {
+      super(topicId, new NoOpMetricsCollectionService().getContext(Collections.emptyMap()), 10,
+            emptyFetchDelayMillis, RetryStrategies.fixDelay(100, TimeUnit.MILLISECONDS));
+      this.messagingContext = messagingContext;
+    }
+
+    @Override
+    protected MessagingContext getMessagingContext() {
+      return messagingContext;
+    }
+
+    @Override
+    protected String decodeMessage(Message message) {
+      return message.getPayloadAsString();
+    }
+
+    @Nullable
+    @Override
+    protected String loadMessageId() {
+      return null;
+    }
+
+    @Override
+    protected List<Message> fetchMessages(@Nullable String messageId) throws TopicNotFoundException, IOException {
+      fetchCount++;
+      fetchStarted.countDown();
+      return super.fetchMessages(messageId);
+    }
+
+    @Nullable
+    @Override
+    protected String processMessages(Iterator<ImmutablePair<String, String>> messages) {
+      processedFetchCount = fetchCount;
+      String messageId = null;
+      while (messages.hasNext()) {
+        ImmutablePair<String, String> message = messages.next();
+        messageId = message.getFirst();
+        payloads.add(message.getSecond());
+      }
+      return messageId;
+    }
+  }
+}
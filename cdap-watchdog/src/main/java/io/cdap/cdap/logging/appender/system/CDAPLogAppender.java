@@ -146,7 +146,9 @@ public class CDAPLogAppender extends AppenderBase<ILoggingEvent> implements Flus
                                           syncIntervalBytes,
                                           new FileMetaDataWriter(context.getTransactionRunner()),
                                           context.getLocationFactory());
-      if (context.getInstanceId() == 0) {
+      // Only run the log cleanup in the first worker of the first instance
+      Object workerId = context.getObject(Constants.Logging.PIPELINE_WORKER_ID);
+      if (context.getInstanceId() == 0 && (workerId == null || Integer.valueOf(0).equals(workerId))) {
         scheduledExecutorService =
           Executors.newSingleThreadScheduledExecutor(Threads.createDaemonThreadFactory("log-clean-up"));
         FileMetadataCleaner fileMetadataCleaner = new FileMetadataCleaner(context.getTransactionRunner());
@@ -22,6 +22,7 @@ import io.cdap.cdap.common.io.ByteBuffers;
 import io.cdap.cdap.common.io.Syncable;
 import io.cdap.cdap.logging.serialize.LoggingEvent;
 import io.cdap.cdap.logging.serialize.LoggingEventSerializer;
+import io.cdap.cdap.logging.write.LogFileIndex;
 import org.apache.avro.Schema;
 import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.generic.GenericDatumWriter;
@@ -47,19 +48,35 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   private static final Logger LOG = LoggerFactory.getLogger(LogFileOutputStream.class);
 
   private final Location location;
+  private final String filePermissions;
   private final long createTime;
   private final Closeable closeable;
   private final LoggingEventSerializer serializer;
+  private final long indexIntervalBytes;
+  private final LogFileIndex.Builder indexBuilder;
 
   private OutputStream outputStream;
   private DataFileWriter<GenericRecord> dataFileWriter;
   private long fileSize;
+  // start of a block to be indexed with the next event appended, or -1 if there is none
+  private long pendingIndexPosition;
+  private long lastIndexedPosition;
 
   LogFileOutputStream(Location location, String filePermissions,
                       int syncIntervalBytes, long createTime, Closeable closeable) throws IOException {
+    this(location, filePermissions, syncIntervalBytes, LogFileIndex.DEFAULT_INDEX_INTERVAL_BYTES,
+         createTime, closeable);
+  }
+
+  LogFileOutputStream(Location location, String filePermissions, int syncIntervalBytes,
+                      long indexIntervalBytes, long createTime, Closeable closeable) throws IOException {
     this.location = location;
+    this.filePermissions = filePermissions;
     this.closeable = closeable;
     this.serializer = new LoggingEventSerializer();
+    this.indexIntervalBytes = indexIntervalBytes;
+    this.indexBuilder = new LogFileIndex.Builder();
+    this.lastIndexedPosition = -1L;
 
     Schema schema = serializer.getAvroSchema();
     try {
@@ -68,6 +85,8 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
       this.dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
       this.dataFileWriter.create(schema, outputStream);
       this.dataFileWriter.setSyncInterval(syncIntervalBytes);
+      // The first block starts right after the header
+      this.pendingIndexPosition = dataFileWriter.sync();
       this.createTime = createTime;
       this.fileSize = 0;
     } catch (IOException e) {
@@ -82,6 +101,13 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   }
 
   void append(ILoggingEvent event) throws IOException {
+    if (pendingIndexPosition >= 0) {
+      indexBuilder.add(event.getTimeStamp(), pendingIndexPosition, event.getLevel().toInt());
+      lastIndexedPosition = pendingIndexPosition;
+      pendingIndexPosition = -1L;
+    } else {
+      indexBuilder.addLevel(event.getLevel().toInt());
+    }
     // If the event is already a LoggingEvent, we don't need to re-encode.
     if (event instanceof LoggingEvent) {
       ByteBuffer encoded = ((LoggingEvent) event).getEncoded();
@@ -115,6 +141,10 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   @Override
   public void flush() throws IOException {
     fileSize = dataFileWriter.sync();
+    // The position after a sync is the start of the next block, which can be indexed
+    if (pendingIndexPosition < 0 && (lastIndexedPosition < 0 || fileSize - lastIndexedPosition >= indexIntervalBytes)) {
+      pendingIndexPosition = fileSize;
+    }
   }
 
   @Override
@@ -131,9 +161,28 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   public void close() throws IOException {
     LOG.trace("Closing file {}", location);
     try {
-      dataFileWriter.close();
+      try {
+        fileSize = dataFileWriter.sync();
+      } finally {
+        dataFileWriter.close();
+      }
+      writeIndex();
     } finally {
       closeable.close();
     }
   }
+
+  /**
+   * Writes the index of the closed file. Failure is only logged, since readers can always read the file without it.
+   */
+  private void writeIndex() {
+    if (indexBuilder.isEmpty()) {
+      return;
+    }
+    try {
+      indexBuilder.write(location, fileSize, filePermissions);
+    } catch (IOException e) {
+      LOG.warn("Failed to write index for log file {}", location, e);
+    }
+  }
 }
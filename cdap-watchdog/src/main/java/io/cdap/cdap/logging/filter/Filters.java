@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.filter;
+
+import ch.qos.logback.classic.Level;
+
+/**
+ * Utility methods to inspect a {@link Filter}, so that it can be pushed down into the reading of log files.
+ */
+public final class Filters {
+
+  /**
+   * Returns {@code true} if the given filter only looks at the level and the MDC of log events, hence it can be
+   * evaluated before the rest of a log event is decoded.
+   */
+  public static boolean isLevelAndMdcOnly(Filter filter) {
+    if (filter instanceof AndFilter) {
+      return ((AndFilter) filter).getExpressions().stream().allMatch(Filters::isLevelAndMdcOnly);
+    }
+    if (filter instanceof OrFilter) {
+      return ((OrFilter) filter).getExpressions().stream().allMatch(Filters::isLevelAndMdcOnly);
+    }
+    return filter instanceof LogLevelExpression || filter instanceof MdcExpression
+      || filter instanceof Filter.EmptyFilter;
+  }
+
+  /**
+   * Returns the minimum level that a log event must have to match the given filter. If the filter doesn't
+   * restrict the level, {@link Level#ALL} is returned.
+   */
+  public static Level getMinimumLevel(Filter filter) {
+    if (filter instanceof LogLevelExpression) {
+      return ((LogLevelExpression) filter).getLevel();
+    }
+    if (filter instanceof AndFilter) {
+      // All expressions must match, hence the most restrictive level applies
+      Level level = Level.ALL;
+      for (Filter expression : ((AndFilter) filter).getExpressions()) {
+        Level expressionLevel = getMinimumLevel(expression);
+        level = expressionLevel.isGreaterOrEqual(level) ? expressionLevel : level;
+      }
+      return level;
+    }
+    if (filter instanceof OrFilter) {
+      // Any expression can match, hence the least restrictive level applies
+      Level level = Level.OFF;
+      for (Filter expression : ((OrFilter) filter).getExpressions()) {
+        Level expressionLevel = getMinimumLevel(expression);
+        level = level.isGreaterOrEqual(expressionLevel) ? expressionLevel : level;
+      }
+      return level;
+    }
+    return Level.ALL;
+  }
+
+  private Filters() {
+    // no-op
+  }
+}
@@ -16,6 +16,7 @@
 
 package io.cdap.cdap.logging.framework.distributed;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.AbstractIdleService;
@@ -43,9 +44,11 @@ import org.apache.twill.kafka.client.BrokerService;
 import org.apache.twill.zookeeper.ZKClient;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -79,32 +82,42 @@ public class DistributedLogFramework extends ResourceBalancerService {
   @Override
   @SuppressWarnings("unchecked")
   protected Service createService(Set<Integer> partitions) {
-    Map<String, LogPipelineSpecification<AppenderContext>> specs = new LogPipelineLoader(cConf).load(contextProvider);
-    int pipelineCount = specs.size();
-
-    // Create one KafkaLogProcessorPipeline per spec
+    List<Set<Integer>> workerPartitions = getWorkerPartitions(partitions,
+                                                              cConf.getInt(Constants.Logging.PIPELINE_WORKERS, 1));
     final List<Service> pipelines = new ArrayList<>();
-    for (final LogPipelineSpecification<AppenderContext> pipelineSpec : specs.values()) {
-      final CConfiguration cConf = pipelineSpec.getConf();
-      final AppenderContext context = pipelineSpec.getContext();
-
-      long bufferSize = getBufferSize(pipelineCount, cConf, partitions.size());
-      final String topic = cConf.get(Constants.Logging.KAFKA_TOPIC);
-      final KafkaPipelineConfig config = new KafkaPipelineConfig(
-        topic, partitions, bufferSize,
-        cConf.getLong(Constants.Logging.PIPELINE_EVENT_DELAY_MS),
-        cConf.getInt(Constants.Logging.PIPELINE_KAFKA_FETCH_SIZE),
-        cConf.getLong(Constants.Logging.PIPELINE_CHECKPOINT_INTERVAL_MS)
-      );
-
-      RetryStrategy retryStrategy = RetryStrategies.fromConfiguration(cConf, "system.log.process.");
-      pipelines.add(new RetryOnStartFailureService(
-        () -> new KafkaLogProcessorPipeline(
-          new LogProcessorPipelineContext(cConf, context.getName(), context,
-                                          context.getMetricsContext(), context.getInstanceId()),
-          checkpointManagerFactory.create(pipelineSpec.getCheckpointPrefix() + topic,
-                                          CheckpointManagerFactory.Type.KAFKA), brokerService, config),
-        retryStrategy));
+
+    // Each worker has its own set of pipelines, which have their own logger context and appenders.
+    // Since logs of a program are always published to the same partition, they are only processed by one worker.
+    for (int workerId = 0; workerId < workerPartitions.size(); workerId++) {
+      int worker = workerId;
+      Map<String, LogPipelineSpecification<AppenderContext>> specs = new LogPipelineLoader(cConf).load(() -> {
+        AppenderContext context = contextProvider.get();
+        context.putObject(Constants.Logging.PIPELINE_WORKER_ID, worker);
+        return context;
+      });
+      // Create one KafkaLogProcessorPipeline per spec
+      for (final LogPipelineSpecification<AppenderContext> pipelineSpec : specs.values()) {
+        final CConfiguration cConf = pipelineSpec.getConf();
+        final AppenderContext context = pipelineSpec.getContext();
+
+        long bufferSize = getBufferSize(cConf, specs.size(), workerPartitions.size(), partitions.size());
+        final String topic = cConf.get(Constants.Logging.KAFKA_TOPIC);
+        final KafkaPipelineConfig config = new KafkaPipelineConfig(
+          topic, workerPartitions.get(worker), bufferSize,
+          cConf.getLong(Constants.Logging.PIPELINE_EVENT_DELAY_MS),
+          cConf.getInt(Constants.Logging.PIPELINE_KAFKA_FETCH_SIZE),
+          cConf.getLong(Constants.Logging.PIPELINE_CHECKPOINT_INTERVAL_MS)
+        );
+
+        RetryStrategy retryStrategy = RetryStrategies.fromConfiguration(cConf, "system.log.process.");
+        pipelines.add(new RetryOnStartFailureService(
+          () -> new KafkaLogProcessorPipeline(
+            new LogProcessorPipelineContext(cConf, context.getName(), context,
+                                            context.getMetricsContext(), context.getInstanceId()),
+            checkpointManagerFactory.create(pipelineSpec.getCheckpointPrefix() + topic,
+                                            CheckpointManagerFactory.Type.KAFKA), brokerService, config),
+          retryStrategy));
+      }
     }
 
     // Returns a Service that start/stop all pipelines.
@@ -154,13 +167,42 @@ public class DistributedLogFramework extends ResourceBalancerService {
   }
 
   /**
-   * Determines the buffer size for one pipeline.
+   * Divides the given partitions among at most the given number of workers, such that each worker gets at least one
+   * partition.
+   */
+  @VisibleForTesting
+  static List<Set<Integer>> getWorkerPartitions(Set<Integer> partitions, int workers) {
+    Preconditions.checkArgument(workers > 0, "Config %s must be greater than 0", Constants.Logging.PIPELINE_WORKERS);
+
+    // There is always at least one worker, even if there is no partition
+    List<Set<Integer>> result = new ArrayList<>();
+    for (int i = 0; i < Math.max(1, Math.min(workers, partitions.size())); i++) {
+      result.add(new HashSet<>());
+    }
+    int worker = 0;
+    for (int partition : new TreeSet<>(partitions)) {
+      result.get(worker).add(partition);
+      worker = (worker + 1) % result.size();
+    }
+    return result;
+  }
+
+  /**
+   * Determines the buffer size for one pipeline of one worker. The configured or derived buffer size of a pipeline
+   * is divided among the workers, so that the total buffer memory doesn't grow with the number of workers.
+   *
+   * @param cConf the configuration of the pipeline
+   * @param pipelinesPerWorker the number of pipelines of each worker
+   * @param workers the number of workers
+   * @param partitions the number of Kafka partitions processed by all workers
    */
-  private long getBufferSize(int numberOfPipelines, CConfiguration cConf, int partitions) {
+  @VisibleForTesting
+  static long getBufferSize(CConfiguration cConf, int pipelinesPerWorker, int workers, int partitions) {
     long bufferSize = cConf.getLong(Constants.Logging.PIPELINE_BUFFER_SIZE);
     if (bufferSize > 0) {
-      return bufferSize;
+      return Math.max(1L, bufferSize / workers);
     }
+    int numberOfPipelines = pipelinesPerWorker * workers;
 
     double bufferRatio = cConf.getDouble(Constants.Logging.PIPELINE_AUTO_BUFFER_RATIO);
     Preconditions.checkArgument(bufferRatio > 0 && bufferRatio < 1,
@@ -16,16 +16,22 @@
 
 package io.cdap.cdap.logging.pipeline.queue;
 
+import com.google.common.annotations.VisibleForTesting;
 import it.unimi.dsi.fastutil.ints.Int2ObjectArrayMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.NoSuchElementException;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
  * A queue for storing time based events with offsets association.
+ * <p>
+ * Events of each partition are stored in arrays sorted by event time. Since events of a partition mostly arrive
+ * in time order, adding an event is usually an append to the arrays, and removing the earliest event only moves the
+ * start position of the arrays. Events of all partitions are iterated in time order with a k-way merge over the
+ * partitions, so that no per event node is needed for sorting.
  *
  * @param <EVENT> Type of event stored in the queue.
  * @param <OFFSET> Type of event offset associated with the event.
@@ -33,29 +39,28 @@ import javax.annotation.concurrent.NotThreadSafe;
 @NotThreadSafe
 public final class TimeEventQueue<EVENT, OFFSET extends Comparable<OFFSET>> implements Iterable<EVENT> {
 
-  private final SortedSet<TimeEvent<EVENT, OFFSET>> events;
-  private final Int2ObjectMap<SortedSet<OFFSET>> partitionOffsets;
+  private static final int INITIAL_CAPACITY = 16;
+  // Don't keep the arrays of a partition that becomes empty if they grew larger than this during a burst of events
+  private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+  private final Int2ObjectMap<PartitionEvents<EVENT, OFFSET>> partitionEvents;
+  private final PartitionEvents<EVENT, OFFSET>[] partitions;
+  private int size;
   private long totalSize;
 
+  @SuppressWarnings("unchecked")
   public TimeEventQueue(Iterable<Integer> partitions) {
-    this.events = new TreeSet<>();
-    this.partitionOffsets = new Int2ObjectArrayMap<>();
+    this.partitionEvents = new Int2ObjectArrayMap<>();
 
     for (int partition : partitions) {
-      partitionOffsets.put(partition, new TreeSet<>());
+      partitionEvents.put(partition, new PartitionEvents<>(partition));
     }
+    this.partitions = partitionEvents.values().toArray(new PartitionEvents[0]);
   }
 
   public void add(EVENT event, long eventTimestamp, int eventSize, int partition, OFFSET offset) {
-    SortedSet<OFFSET> offsets = getOffsets(partition);
-    TimeEvent<EVENT, OFFSET> timeEvent = new TimeEvent<>(eventTimestamp, partition, offset, event, eventSize);
-    if (events.add(timeEvent)) {
-      if (!offsets.add(offset)) {
-        events.remove(timeEvent);
-        throw new IllegalArgumentException("Adding different event with the same offset "
-                                             + offset + ", " + event);
-      }
-
+    if (getPartitionEvents(partition).add(event, eventTimestamp, eventSize, offset)) {
+      size++;
       totalSize += eventSize;
     }
   }
@@ -64,28 +69,37 @@ public final class TimeEventQueue<EVENT, OFFSET extends Comparable<OFFSET>> impl
    * Returns the event in the queue with the smallest timestamp.
    */
   public EVENT first() {
-    return events.first().getEvent();
+    PartitionEvents<EVENT, OFFSET> first = null;
+    for (PartitionEvents<EVENT, OFFSET> events : partitions) {
+      if (!events.isEmpty() && (first == null || compare(events, events.head, first, first.head) < 0)) {
+        first = events;
+      }
+    }
+    if (first == null) {
+      throw new NoSuchElementException("Queue is empty");
+    }
+    return first.getEvent(first.head);
   }
 
   /**
    * Returns {@code true} if there is no event in the queue.
    */
   public boolean isEmpty() {
-    return events.isEmpty();
+    return size == 0;
   }
 
   /**
    * Returns {@code true} if there is no event for the given partition in the queue.
    */
   public boolean isEmpty(int partition) {
-    return getOffsets(partition).isEmpty();
+    return getPartitionEvents(partition).isEmpty();
   }
 
   /**
    * Returns the number of events in the queue.
    */
   public int size() {
-    return events.size();
+    return size;
   }
 
   /**
@@ -99,67 +113,52 @@ public final class TimeEventQueue<EVENT, OFFSET extends Comparable<OFFSET>> impl
    * Returns the smallest offset stored for the given partition.
    */
   public OFFSET getSmallestOffset(int partition) {
-    SortedSet<OFFSET> offsets = getOffsets(partition);
-    if (offsets.isEmpty()) {
+    PartitionEvents<EVENT, OFFSET> events = getPartitionEvents(partition);
+    if (events.isEmpty()) {
       throw new IllegalStateException("Queue is empty");
     }
-    return offsets.first();
+    return events.getSmallestOffset();
+  }
+
+  /**
+   * Returns the capacity of the arrays that keep the offsets of the given partition.
+   */
+  @VisibleForTesting
+  int getOffsetCapacity(int partition) {
+    return getPartitionEvents(partition).offsetSet.capacity();
   }
 
   @Override
   public EventIterator<EVENT, OFFSET> iterator() {
-    final Iterator<TimeEvent<EVENT, OFFSET>> iterator = events.iterator();
-    return new EventIterator<EVENT, OFFSET>() {
-
-      private TimeEvent<EVENT, OFFSET> currentEvent;
-
-      @Override
-      public boolean hasNext() {
-        return iterator.hasNext();
-      }
-
-      @Override
-      public EVENT next() {
-        currentEvent = iterator.next();
-        return currentEvent.getEvent();
-      }
-
-      @Override
-      public void remove() {
-        if (currentEvent == null) {
-          throw new IllegalStateException("The next() method must be called first.");
-        }
-        iterator.remove();
-        partitionOffsets.get(currentEvent.getPartition()).remove(currentEvent.getOffset());
-        totalSize -= currentEvent.getEventSize();
-        currentEvent = null;
-      }
-
-      @Override
-      public OFFSET getOffset() {
-        if (currentEvent == null) {
-          throw new IllegalStateException("The next() method must be called first.");
-        }
-        return currentEvent.getOffset();
-      }
-
-      @Override
-      public int getPartition() {
-        if (currentEvent == null) {
-          throw new IllegalStateException("The next() method must be called first.");
-        }
-        return currentEvent.getPartition();
-      }
-    };
+    return new MergeIterator();
   }
 
-  private SortedSet<OFFSET> getOffsets(int partition) {
-    SortedSet<OFFSET> offsets = partitionOffsets.get(partition);
-    if (offsets == null) {
+  private PartitionEvents<EVENT, OFFSET> getPartitionEvents(int partition) {
+    PartitionEvents<EVENT, OFFSET> events = partitionEvents.get(partition);
+    if (events == null) {
       throw new IllegalArgumentException("Partition " + partition +
-                                           " is not in allowed partitions " + partitionOffsets.keySet());
+                                           " is not in allowed partitions " + partitionEvents.keySet());
     }
-    return offsets;
+    return events;
+  }
+
+  /**
+   * Compares two events by event time, then by partition, then by offset.
+   * Combination of them are guaranteed to be unique.
+   */
+  private static <EVENT, OFFSET extends Comparable<OFFSET>> int compare(PartitionEvents<EVENT, OFFSET> events1,
+                                                                         int pos1,
+                                                                         PartitionEvents<EVENT, OFFSET> events2,
+                                                                         int pos2) {
+    int cmp = Long.compare(events1.timestamps[pos1], events2.timestamps[pos2]);
+    if (cmp != 0) {
+      return cmp;
+    }
+    cmp = Integer.compare(events1.partition, events2.partition);
+    if (cmp != 0) {
+      return cmp;
+    }
+    return events1.getOffset(pos1).compareTo(events2.getOffset(pos2));
   }
 
   /**
@@ -182,58 +181,420 @@ public final class TimeEventQueue<EVENT, OFFSET extends Comparable<OFFSET>> impl
   }
 
   /**
-   * This class represent an event stored in the event set.
+   * An {@link EventIterator} that merges the events of all partitions in time order, using a heap of the
+   * partitions ordered by the next event to iterate in each partition.
    */
-  private static final class TimeEvent<EVENT, OFFSET extends Comparable<OFFSET>>
-                        implements Comparable<TimeEvent<EVENT, OFFSET>> {
-    private final long eventTime;
-    private final int partition;
-    private final OFFSET offset;
-    private final EVENT event;
-    private final int eventSize;
+  private final class MergeIterator implements EventIterator<EVENT, OFFSET> {
+
+    // Position of the next event to iterate in each partition
+    private final int[] cursors;
+    // Heap of indices to the partitions array
+    private final int[] heap;
+    private int heapSize;
+
+    private PartitionEvents<EVENT, OFFSET> current;
+    private int currentPos;
+
+    MergeIterator() {
+      this.cursors = new int[partitions.length];
+      this.heap = new int[partitions.length];
+      for (int i = 0; i < partitions.length; i++) {
+        cursors[i] = partitions[i].head;
+        if (!partitions[i].isEmpty()) {
+          heap[heapSize++] = i;
+        }
+      }
+      for (int i = heapSize / 2 - 1; i >= 0; i--) {
+        siftDown(i);
+      }
+    }
 
-    TimeEvent(long eventTime, int partition, OFFSET offset, EVENT event, int eventSize) {
-      this.eventTime = eventTime;
+    @Override
+    public boolean hasNext() {
+      return heapSize > 0;
+    }
+
+    @Override
+    public EVENT next() {
+      if (heapSize == 0) {
+        throw new NoSuchElementException();
+      }
+      int idx = heap[0];
+      current = partitions[idx];
+      currentPos = cursors[idx]++;
+      if (cursors[idx] == current.tail) {
+        heap[0] = heap[--heapSize];
+      }
+      siftDown(0);
+      return current.getEvent(currentPos);
+    }
+
+    @Override
+    public void remove() {
+      if (current == null) {
+        throw new IllegalStateException("The next() method must be called first.");
+      }
+      totalSize -= current.sizes[currentPos];
+      size--;
+      // Removing an event doesn't change the positions of the events after it, hence the cursors stay valid
+      current.remove(currentPos);
+      current = null;
+    }
+
+    @Override
+    public OFFSET getOffset() {
+      if (current == null) {
+        throw new IllegalStateException("The next() method must be called first.");
+      }
+      return current.getOffset(currentPos);
+    }
+
+    @Override
+    public int getPartition() {
+      if (current == null) {
+        throw new IllegalStateException("The next() method must be called first.");
+      }
+      return current.partition;
+    }
+
+    private void siftDown(int i) {
+      while (true) {
+        int smallest = i;
+        int left = 2 * i + 1;
+        int right = left + 1;
+        if (left < heapSize && compareHeap(left, smallest) < 0) {
+          smallest = left;
+        }
+        if (right < heapSize && compareHeap(right, smallest) < 0) {
+          smallest = right;
+        }
+        if (smallest == i) {
+          return;
+        }
+        int tmp = heap[i];
+        heap[i] = heap[smallest];
+        heap[smallest] = tmp;
+        i = smallest;
+      }
+    }
+
+    private int compareHeap(int i, int j) {
+      return compare(partitions[heap[i]], cursors[heap[i]], partitions[heap[j]], cursors[heap[j]]);
+    }
+  }
+
+  /**
+   * Events of one partition, sorted by event time then by offset in the range {@code [head, tail)} of the arrays.
+   */
+  private static final class PartitionEvents<EVENT, OFFSET extends Comparable<OFFSET>> {
+
+    private final int partition;
+    private final OffsetSet<OFFSET> offsetSet;
+    private long[] timestamps;
+    private int[] sizes;
+    private Object[] offsets;
+    private Object[] events;
+    private int head;
+    private int tail;
+
+    PartitionEvents(int partition) {
       this.partition = partition;
-      this.offset = offset;
-      this.event = event;
-      this.eventSize = eventSize;
+      this.offsetSet = new OffsetSet<>();
+      allocate(INITIAL_CAPACITY);
+    }
+
+    boolean isEmpty() {
+      return head == tail;
     }
 
-    long getEventTime() {
-      return eventTime;
+    @SuppressWarnings("unchecked")
+    EVENT getEvent(int pos) {
+      return (EVENT) events[pos];
     }
 
-    int getPartition() {
-      return partition;
+    @SuppressWarnings("unchecked")
+    OFFSET getOffset(int pos) {
+      return (OFFSET) offsets[pos];
     }
 
-    OFFSET getOffset() {
-      return offset;
+    OFFSET getSmallestOffset() {
+      return offsetSet.first();
     }
 
-    EVENT getEvent() {
-      return event;
+    /**
+     * Adds an event.
+     *
+     * @return {@code true} if the event is added, or {@code false} if the same event is already in the queue
+     */
+    boolean add(EVENT event, long timestamp, int eventSize, OFFSET offset) {
+      int pos = search(timestamp, offset);
+      if (pos >= 0) {
+        return false;
+      }
+      if (!offsetSet.add(offset)) {
+        throw new IllegalArgumentException("Adding different event with the same offset " + offset + ", " + event);
+      }
+
+      pos = -pos - 1;
+      if (tail == timestamps.length) {
+        pos -= makeRoom();
+      }
+      if (pos < tail) {
+        System.arraycopy(timestamps, pos, timestamps, pos + 1, tail - pos);
+        System.arraycopy(sizes, pos, sizes, pos + 1, tail - pos);
+        System.arraycopy(offsets, pos, offsets, pos + 1, tail - pos);
+        System.arraycopy(events, pos, events, pos + 1, tail - pos);
+      }
+      timestamps[pos] = timestamp;
+      sizes[pos] = eventSize;
+      offsets[pos] = offset;
+      events[pos] = event;
+      tail++;
+      return true;
     }
 
-    int getEventSize() {
-      return eventSize;
+    /**
+     * Removes the event at the given position. Positions of the events after it are not changed.
+     */
+    void remove(int pos) {
+      offsetSet.remove(getOffset(pos));
+      if (pos > head) {
+        System.arraycopy(timestamps, head, timestamps, head + 1, pos - head);
+        System.arraycopy(sizes, head, sizes, head + 1, pos - head);
+        System.arraycopy(offsets, head, offsets, head + 1, pos - head);
+        System.arraycopy(events, head, events, head + 1, pos - head);
+      }
+      offsets[head] = null;
+      events[head] = null;
+      head++;
+
+      if (head == tail) {
+        if (timestamps.length > MAX_RETAINED_CAPACITY) {
+          allocate(INITIAL_CAPACITY);
+        }
+        head = tail = 0;
+      }
     }
 
-    @Override
-    public int compareTo(TimeEvent<EVENT, OFFSET> other) {
-      // Compare by event time, then by partition, then by offset
-      // Combination of them are guaranteed to be unique.
+    /**
+     * Searches for the event with the given timestamp and offset. Since events mostly arrive in time order,
+     * the last event is checked first.
+     *
+     * @return the position of the event if found, otherwise {@code (-(insertion point) - 1)}
+     */
+    private int search(long timestamp, OFFSET offset) {
+      if (head == tail || compare(tail - 1, timestamp, offset) < 0) {
+        return -tail - 1;
+      }
+      int low = head;
+      int high = tail - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int cmp = compare(mid, timestamp, offset);
+        if (cmp < 0) {
+          low = mid + 1;
+        } else if (cmp > 0) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -low - 1;
+    }
+
+    private int compare(int pos, long timestamp, OFFSET offset) {
+      int cmp = Long.compare(timestamps[pos], timestamp);
+      return cmp != 0 ? cmp : getOffset(pos).compareTo(offset);
+    }
+
+    /**
+     * Makes room for one more event at the end of the arrays, either by moving the events to the start of the arrays
+     * if at least half of the arrays is free, or by growing the arrays.
+     *
+     * @return the number of positions that the events are moved towards the start of the arrays
+     */
+    private int makeRoom() {
+      int count = tail - head;
+      int moved = head;
+      if (count < timestamps.length / 2) {
+        System.arraycopy(timestamps, head, timestamps, 0, count);
+        System.arraycopy(sizes, head, sizes, 0, count);
+        System.arraycopy(offsets, head, offsets, 0, count);
+        System.arraycopy(events, head, events, 0, count);
+        Arrays.fill(offsets, count, tail, null);
+        Arrays.fill(events, count, tail, null);
+      } else {
+        long[] oldTimestamps = timestamps;
+        int[] oldSizes = sizes;
+        Object[] oldOffsets = offsets;
+        Object[] oldEvents = events;
+        allocate(timestamps.length * 2);
+        System.arraycopy(oldTimestamps, head, timestamps, 0, count);
+        System.arraycopy(oldSizes, head, sizes, 0, count);
+        System.arraycopy(oldOffsets, head, offsets, 0, count);
+        System.arraycopy(oldEvents, head, events, 0, count);
+      }
+      head = 0;
+      tail = count;
+      return moved;
+    }
+
+    private void allocate(int capacity) {
+      timestamps = new long[capacity];
+      sizes = new int[capacity];
+      offsets = new Object[capacity];
+      events = new Object[capacity];
+    }
+  }
+
+  /**
+   * A set of offsets, stored in an array sorted by offset in the range {@code [head, tail)}. Removed offsets are
+   * only marked as removed, and are dropped once they reach the head. Since events are mostly removed in offset order,
+   * removing is usually just moving the head. Offsets marked as removed behind a head that stays in the set are
+   * dropped when the array is full, so that the array never holds more than twice the number of offsets in the set.
+   */
+  private static final class OffsetSet<OFFSET extends Comparable<OFFSET>> {
+
+    private Object[] offsets = new Object[INITIAL_CAPACITY];
+    private boolean[] removed = new boolean[INITIAL_CAPACITY];
+    private int head;
+    private int tail;
+    private int removedCount;
+
+    @SuppressWarnings("unchecked")
+    OFFSET first() {
+      return (OFFSET) offsets[head];
+    }
+
+    /**
+     * Adds an offset.
+     *
+     * @return {@code true} if the offset is added, or {@code false} if the offset is already in this set
+     */
+    boolean add(OFFSET offset) {
+      int pos = search(offset);
+      if (pos >= 0) {
+        if (!removed[pos]) {
+          return false;
+        }
+        removed[pos] = false;
+        removedCount--;
+        return true;
+      }
+
+      pos = -pos - 1;
+      if (tail == offsets.length) {
+        pos = compact(pos);
+      }
+      if (pos < tail) {
+        System.arraycopy(offsets, pos, offsets, pos + 1, tail - pos);
+        System.arraycopy(removed, pos, removed, pos + 1, tail - pos);
+      }
+      offsets[pos] = offset;
+      removed[pos] = false;
+      tail++;
+      return true;
+    }
 
-      int cmp = Long.compare(eventTime, other.getEventTime());
-      if (cmp != 0) {
-        return cmp;
+    void remove(OFFSET offset) {
+      int pos = search(offset);
+      if (pos < 0) {
+        return;
+      }
+      if (removed[pos]) {
+        return;
+      }
+      removed[pos] = true;
+      removedCount++;
+      while (head < tail && removed[head]) {
+        offsets[head] = null;
+        removed[head] = false;
+        removedCount--;
+        head++;
+      }
+      if (head == tail) {
+        if (offsets.length > MAX_RETAINED_CAPACITY) {
+          offsets = new Object[INITIAL_CAPACITY];
+          removed = new boolean[INITIAL_CAPACITY];
+        }
+        head = tail = 0;
       }
-      cmp = Integer.compare(partition, other.getPartition());
-      if (cmp != 0) {
-        return cmp;
+    }
+
+    /**
+     * Moves the offsets in the set to the start of the array and drops the offsets marked as removed.
+     * The array is only grown if the offsets in the set take at least half of it.
+     *
+     * @param pos the insertion point of an offset to be added
+     * @return the insertion point after the offsets are moved
+     */
+    private int compact(int pos) {
+      int count = tail - head - removedCount;
+      Object[] newOffsets = offsets;
+      boolean[] newRemoved = removed;
+      if (count >= offsets.length / 2) {
+        newOffsets = new Object[offsets.length * 2];
+        newRemoved = new boolean[offsets.length * 2];
+      }
+
+      // Copying towards the start of the array, hence it is safe to copy within the same array
+      int newPos = -1;
+      int newTail = 0;
+      for (int i = head; i < tail; i++) {
+        if (i == pos) {
+          newPos = newTail;
+        }
+        if (!removed[i]) {
+          newOffsets[newTail] = offsets[i];
+          newRemoved[newTail] = false;
+          newTail++;
+        }
+      }
+      if (newOffsets == offsets) {
+        Arrays.fill(offsets, newTail, tail, null);
+        Arrays.fill(removed, newTail, tail, false);
+      }
+
+      offsets = newOffsets;
+      removed = newRemoved;
+      head = 0;
+      tail = newTail;
+      removedCount = 0;
+      return newPos < 0 ? newTail : newPos;
+    }
+
+    /**
+     * Returns the length of the array for storing the offsets.
+     */
+    int capacity() {
+      return offsets.length;
+    }
+
+    /**
+     * Searches for the given offset. Since offsets mostly arrive in increasing order, the last offset is
+     * checked first.
+     *
+     * @return the position of the offset if found, otherwise {@code (-(insertion point) - 1)}
+     */
+    @SuppressWarnings("unchecked")
+    private int search(OFFSET offset) {
+      if (head == tail || ((OFFSET) offsets[tail - 1]).compareTo(offset) < 0) {
+        return -tail - 1;
+      }
+      int low = head;
+      int high = tail - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int cmp = ((OFFSET) offsets[mid]).compareTo(offset);
+        if (cmp < 0) {
+          low = mid + 1;
+        } else if (cmp > 0) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
       }
-      return offset.compareTo(other.getOffset());
+      return -low - 1;
     }
   }
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.serialize;
+
+import com.google.common.collect.ImmutableSet;
+import io.cdap.cdap.logging.filter.Filter;
+import io.cdap.cdap.logging.filter.Filters;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.Decoder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link GenericDatumReader} for logging events that evaluates a {@link Filter} as soon as the timestamp, level
+ * and MDC of an event are decoded. If the event doesn't match, the rest of the event, such as the message and the
+ * stack trace, is skipped without being decoded, and a partial record that only has the timestamp, level and MDC
+ * is returned. The given filter still matches the same events when applied to the returned records.
+ * <p>
+ * The filter is only pushed down if it uses nothing else than the level and the MDC, as determined by
+ * {@link Filters#isLevelAndMdcOnly(Filter)}. Otherwise every event is fully decoded.
+ */
+public final class FilteringDatumReader extends GenericDatumReader<GenericRecord> {
+
+  private static final Schema SCHEMA = LogSchema.LoggingEvent.SCHEMA;
+  private static final Set<String> FILTER_FIELDS = ImmutableSet.of("timestamp", "level", "mdc");
+
+  private final Filter filter;
+  private final boolean pushdown;
+  private final List<GenericDatumReader<Object>> fieldReaders;
+  private boolean sameSchema;
+
+  public FilteringDatumReader(Filter filter) {
+    super(SCHEMA);
+    this.filter = filter;
+    this.pushdown = Filters.isLevelAndMdcOnly(filter) && filter != Filter.EMPTY_FILTER;
+    this.fieldReaders = new ArrayList<>();
+    for (Schema.Field field : SCHEMA.getFields()) {
+      fieldReaders.add(new GenericDatumReader<>(field.schema()));
+    }
+  }
+
+  @Override
+  public void setSchema(Schema writer) {
+    super.setSchema(writer);
+    // Events can only be decoded field by field if they were written with the same schema
+    sameSchema = SCHEMA.equals(writer);
+  }
+
+  @Override
+  public GenericRecord read(GenericRecord reuse, Decoder in) throws IOException {
+    if (!pushdown || !sameSchema) {
+      return super.read(reuse, in);
+    }
+
+    GenericRecord record = reuse != null && SCHEMA.equals(reuse.getSchema()) ? reuse : new GenericData.Record(SCHEMA);
+    List<Schema.Field> fields = SCHEMA.getFields();
+    int filterFieldsRemaining = FILTER_FIELDS.size();
+    boolean skip = false;
+    for (int i = 0; i < fields.size(); i++) {
+      Schema.Field field = fields.get(i);
+      if (skip) {
+        skip(field.schema(), in);
+        record.put(i, null);
+        continue;
+      }
+      record.put(i, fieldReaders.get(i).read(record.get(i), in));
+      if (FILTER_FIELDS.contains(field.name()) && --filterFieldsRemaining == 0) {
+        skip = !filter.match(new LoggingEvent(record));
+      }
+    }
+    return record;
+  }
+}
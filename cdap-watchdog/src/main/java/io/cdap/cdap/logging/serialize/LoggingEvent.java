@@ -20,23 +20,26 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.IThrowableProxy;
 import ch.qos.logback.classic.spi.LoggerContextVO;
+import com.google.common.base.Throwables;
 import io.cdap.cdap.logging.LoggingUtil;
 import org.apache.avro.generic.GenericArray;
 import org.apache.avro.generic.GenericRecord;
 import org.slf4j.Marker;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
-* Class used to serialize/de-serialize ILoggingEvent.
+* Class used to serialize/de-serialize ILoggingEvent. An instance is either backed by a decoded
+* {@link GenericRecord}, or by the encoded event, in which case the fields are decoded on demand.
 */
 public final class LoggingEvent implements ILoggingEvent {
 
   private final ByteBuffer encoded;
-  private final GenericRecord record;
+  private GenericRecord record;
 
   private boolean threadNamePreserved;
   private String threadName;
@@ -85,6 +88,17 @@ public final class LoggingEvent implements ILoggingEvent {
     this.encoded = encoded;
   }
 
+  /**
+   * Creates an instance backed by the given encoded event, with the timestamp and level already decoded.
+   */
+  LoggingEvent(ByteBuffer encoded, long timestamp, int level) {
+    this.encoded = encoded;
+    this.timestamp = timestamp;
+    this.timestampPreserved = true;
+    this.level = Level.toLevel(level);
+    this.levelPreserved = true;
+  }
+
   /**
    * Returns the {@link ByteBuffer} that this event is decoded from or {@code null} if
    * the original encoded buffer is unknown.
@@ -98,13 +112,21 @@ public final class LoggingEvent implements ILoggingEvent {
    * Returns the {@link GenericRecord} that this event is constructed from.
    */
   public GenericRecord getRecord() {
+    if (record == null) {
+      try {
+        record = LoggingEventSerializer.decodeRecord(encoded);
+      } catch (IOException e) {
+        // This shouldn't happen since the encoded event is validated when the instance is created.
+        throw Throwables.propagate(e);
+      }
+    }
     return record;
   }
 
   @Override
   public String getThreadName() {
     if (!threadNamePreserved) {
-      threadName = LoggingUtil.stringOrNull(record.get("threadName"));
+      threadName = LoggingUtil.stringOrNull(getRecord().get("threadName"));
       threadNamePreserved = true;
     }
     return threadName;
@@ -113,7 +135,7 @@ public final class LoggingEvent implements ILoggingEvent {
   @Override
   public Level getLevel() {
     if (!levelPreserved) {
-      level = Level.toLevel((Integer) record.get("level"));
+      level = Level.toLevel((Integer) getRecord().get("level"));
       levelPreserved = true;
     }
     return level;
@@ -122,7 +144,7 @@ public final class LoggingEvent implements ILoggingEvent {
   @Override
   public String getMessage() {
     if (!messagePreserved) {
-      message = LoggingUtil.stringOrNull(record.get("message"));
+      message = LoggingUtil.stringOrNull(getRecord().get("message"));
       messagePreserved = true;
     }
     return message;
@@ -131,7 +153,7 @@ public final class LoggingEvent implements ILoggingEvent {
   @Override
   public Object[] getArgumentArray() {
     if (!argumentArrayPreserved) {
-      GenericArray<?> argArray = (GenericArray<?>) record.get("argumentArray");
+      GenericArray<?> argArray = (GenericArray<?>) getRecord().get("argumentArray");
       if (argArray != null) {
         argumentArray = new String[argArray.size()];
         int i = 0;
@@ -147,7 +169,7 @@ public final class LoggingEvent implements ILoggingEvent {
   @Override
   public String getFormattedMessage() {
     if (!formattedMessagePreserved) {
-      formattedMessage = LoggingUtil.stringOrNull(record.get("formattedMessage"));
+      formattedMessage = LoggingUtil.stringOrNull(getRecord().get("formattedMessage"));
       formattedMessagePreserved = true;
     }
     return formattedMessage;
@@ -156,7 +178,7 @@ public final class LoggingEvent implements ILoggingEvent {
   @Override
   public String getLoggerName() {
     if (!loggerNamePreserved) {
-      loggerName = LoggingUtil.stringOrNull(record.get("loggerName"));
+      loggerName = LoggingUtil.stringOrNull(getRecord().get("loggerName"));
       loggerNamePreserved = true;
     }
     return loggerName;
@@ -165,7 +187,7 @@ public final class LoggingEvent implements ILoggingEvent {
   @Override
   public LoggerContextVO getLoggerContextVO() {
     if (!loggerContextVOPreserved) {
-      loggerContextVO =  LoggerContextSerializer.decode((GenericRecord) record.get("loggerContextVO"));
+      loggerContextVO =  LoggerContextSerializer.decode((GenericRecord) getRecord().get("loggerContextVO"));
       loggerContextVOPreserved = true;
     }
     return loggerContextVO;
@@ -174,7 +196,7 @@ public final class LoggingEvent implements ILoggingEvent {
   @Override
   public IThrowableProxy getThrowableProxy() {
     if (!throwableProxyPreserved) {
-      throwableProxy = ThrowableProxySerializer.decode((GenericRecord) record.get("throwableProxy"));
+      throwableProxy = ThrowableProxySerializer.decode((GenericRecord) getRecord().get("throwableProxy"));
       throwableProxyPreserved = true;
     }
     return throwableProxy;
@@ -184,7 +206,7 @@ public final class LoggingEvent implements ILoggingEvent {
   public StackTraceElement[] getCallerData() {
     if (!callerDataPreserved) {
       //noinspection unchecked
-      callerData = CallerDataSerializer.decode((GenericArray<GenericRecord>) record.get("callerData"));
+      callerData = CallerDataSerializer.decode((GenericArray<GenericRecord>) getRecord().get("callerData"));
       callerDataPreserved = true;
     }
     return callerData;
@@ -193,7 +215,7 @@ public final class LoggingEvent implements ILoggingEvent {
   @Override
   public boolean hasCallerData() {
     if (!hasCallerDataPreserved) {
-      hasCallerData = (Boolean) record.get("hasCallerData");
+      hasCallerData = (Boolean) getRecord().get("hasCallerData");
       hasCallerDataPreserved = true;
     }
     return hasCallerData;
@@ -208,7 +230,14 @@ public final class LoggingEvent implements ILoggingEvent {
   @Override
   public Map<String, String> getMDCPropertyMap() {
     if (!mdcPreserved) {
-      mdc = LoggingUtil.decodeMDC((Map<?, ?>) record.get("mdc"));
+      try {
+        // Only decode the MDC if the rest of the event is not decoded yet, since it is used for routing events
+        mdc = LoggingUtil.decodeMDC(record == null ? LoggingEventSerializer.decodeMDC(encoded)
+                                                   : (Map<?, ?>) record.get("mdc"));
+      } catch (IOException e) {
+        // This shouldn't happen since the encoded event is validated when the instance is created.
+        throw Throwables.propagate(e);
+      }
       mdcPreserved = true;
     }
     return mdc;
@@ -222,7 +251,7 @@ public final class LoggingEvent implements ILoggingEvent {
   @Override
   public long getTimeStamp() {
     if (!timestampPreserved) {
-      timestamp = (Long) record.get("timestamp");
+      timestamp = (Long) getRecord().get("timestamp");
       timestampPreserved = true;
     }
     return timestamp;
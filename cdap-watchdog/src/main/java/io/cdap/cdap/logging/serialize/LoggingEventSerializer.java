@@ -17,7 +17,11 @@
 package io.cdap.cdap.logging.serialize;
 
 import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ClassPackagingData;
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
 import com.google.common.base.Throwables;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.logging.LoggingUtil;
@@ -25,27 +29,41 @@ import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericArray;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
-import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
  * Avro serializer for ILoggingEvent.
  * Method of this class is not thread safe, hence cannot be called from multiple threads concurrently.
+ * <p>
+ * Events are encoded by writing the fields of the {@link ILoggingEvent} directly to a reusable buffer, without
+ * creating an intermediate {@link GenericRecord}. Decoded events only have the timestamp and level decoded eagerly,
+ * the rest of the fields are decoded on demand.
  */
 @NotThreadSafe
 public final class LoggingEventSerializer {
 
-  private final GenericDatumReader<GenericRecord> datumReader = new GenericDatumReader<>(getAvroSchema());
+  // GenericDatumReader is thread safe, hence can be shared by all events that are decoded on demand
+  private static final GenericDatumReader<GenericRecord> DATUM_READER =
+    new GenericDatumReader<>(LogSchema.LoggingEvent.SCHEMA);
+  // Don't keep the encoding buffer if it grew larger than this after encoding an exceptionally large event
+  private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+  private ByteArrayOutputStream encodeBuffer = new ByteArrayOutputStream();
+  private BinaryEncoder encoder;
   private BinaryDecoder decoder;
 
   /**
@@ -59,28 +77,51 @@ public final class LoggingEventSerializer {
    * Encodes a {@link ILoggingEvent} to byte array.
    */
   public byte[] toBytes(ILoggingEvent event) {
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
-    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
-    GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<>(getAvroSchema());
+    // If the event is decoded from bytes, there is no need to re-encode.
+    if (event instanceof LoggingEvent && ((LoggingEvent) event).getEncoded() != null) {
+      return Bytes.toBytes(((LoggingEvent) event).getEncoded());
+    }
+
+    encodeBuffer.reset();
+    encoder = EncoderFactory.get().directBinaryEncoder(encodeBuffer, encoder);
     try {
-      writer.write(toGenericRecord(event), encoder);
+      encode(event, encoder);
+      encoder.flush();
     } catch (IOException e) {
       // This shouldn't happen since we are writing to byte array output stream.
       throw Throwables.propagate(e);
     }
-    return out.toByteArray();
+    byte[] bytes = encodeBuffer.toByteArray();
+    if (bytes.length > MAX_RETAINED_BUFFER_SIZE) {
+      encodeBuffer = new ByteArrayOutputStream();
+    }
+    return bytes;
   }
 
   /**
    * Decodes the content of the given {@link ByteBuffer} into {@link ILoggingEvent}, based on the
-   * schema returned by the {@link #getAvroSchema()} method.
+   * schema returned by the {@link #getAvroSchema()} method. Only the timestamp and level are decoded by this method,
+   * the rest of the content is validated and then decoded on demand by the returned event. The returned event
+   * is backed by the given buffer, hence the content of the buffer must not be modified afterwards.
    *
    * @param buffer the buffer to decode
    * @return a new instance of {@link ILoggingEvent} decoded from the buffer
    * @throws IOException if fail to decode
    */
   public ILoggingEvent fromBytes(ByteBuffer buffer) throws IOException {
-    return new LoggingEvent(toGenericRecord(buffer), buffer);
+    BinaryDecoder decoder = getDecoder(buffer);
+    long timestamp = 0L;
+    int level = Level.ERROR_INT;
+    for (Schema.Field field : getAvroSchema().getFields()) {
+      if ("timestamp".equals(field.name())) {
+        timestamp = decoder.readLong();
+      } else if ("level".equals(field.name())) {
+        level = decoder.readInt();
+      } else {
+        skip(field.schema(), decoder);
+      }
+    }
+    return new LoggingEvent(buffer, timestamp, level);
   }
 
   /**
@@ -109,25 +150,60 @@ public final class LoggingEventSerializer {
   }
 
   private BinaryDecoder getDecoder(ByteBuffer buffer) {
+    decoder = createDecoder(buffer, decoder);
+    return decoder;
+  }
+
+  private static BinaryDecoder createDecoder(ByteBuffer buffer, @Nullable BinaryDecoder reuse) {
     if (buffer.hasArray()) {
-      decoder = DecoderFactory.get().binaryDecoder(buffer.array(), buffer.arrayOffset() + buffer.position(),
-                                                   buffer.remaining(), decoder);
-    } else {
-      decoder = DecoderFactory.get().binaryDecoder(Bytes.toBytes(buffer), decoder);
+      return DecoderFactory.get().binaryDecoder(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                                                buffer.remaining(), reuse);
     }
-    return decoder;
+    return DecoderFactory.get().binaryDecoder(Bytes.toBytes(buffer), reuse);
   }
 
   /**
    * Decodes the content of the given {@link ByteBuffer} into {@link GenericRecord}, based on the schema
-   * returned by the {@link #getAvroSchema()} method.
+   * returned by the {@link #getAvroSchema()} method. This method is thread safe.
    *
    * @param buffer the buffer to decode
    * @return a {@link GenericRecord} representing the decoded content.
    * @throws IOException if fail to decode
    */
-  private GenericRecord toGenericRecord(ByteBuffer buffer) throws IOException {
-    return datumReader.read(null, getDecoder(buffer));
+  static GenericRecord decodeRecord(ByteBuffer buffer) throws IOException {
+    return DATUM_READER.read(null, createDecoder(buffer, null));
+  }
+
+  /**
+   * Decodes the MDC of the {@link ILoggingEvent} encoded in the given {@link ByteBuffer}, without decoding the
+   * fields after it. This method is thread safe.
+   *
+   * @param buffer the buffer to decode
+   * @return the encoded MDC as described by {@link LoggingUtil#encodeMDC(Map)}, or {@code null} if it was encoded
+   *         as {@code null}
+   * @throws IOException if fail to decode
+   */
+  @Nullable
+  static Map<?, ?> decodeMDC(ByteBuffer buffer) throws IOException {
+    BinaryDecoder decoder = createDecoder(buffer, null);
+    for (Schema.Field field : LogSchema.LoggingEvent.SCHEMA.getFields()) {
+      if ("mdc".equals(field.name())) {
+        if (decoder.readIndex() == 0) {
+          return null;
+        }
+        Map<String, String> mdc = new HashMap<>();
+        for (long i = decoder.readMapStart(); i != 0; i = decoder.mapNext()) {
+          for (long j = 0; j < i; j++) {
+            String key = decoder.readString();
+            mdc.put(key, decoder.readIndex() == 0 ? null : decoder.readString());
+          }
+        }
+        return mdc;
+      }
+      skip(field.schema(), decoder);
+    }
+    // If reached here, meaning the mdc is not found, which shouldn't happen.
+    throw new IOException("Missing mdc field in the LoggingEvent schema");
   }
 
   /**
@@ -168,10 +244,163 @@ public final class LoggingEventSerializer {
     return datum;
   }
 
+  /**
+   * Encodes the given {@link ILoggingEvent} with the schema returned by the {@link #getAvroSchema()} method.
+   * The fields are written in the schema order, with the same content as {@link #toGenericRecord(ILoggingEvent)}.
+   */
+  private void encode(ILoggingEvent event, Encoder encoder) throws IOException {
+    encoder.writeLong(event.getTimeStamp());
+    encoder.writeInt(event.getLevel() == null ? Level.ERROR_INT : event.getLevel().toInt());
+    Map<String, String> mdc = event.getMDCPropertyMap();
+    writeStringMap(mdc == null ? null : LoggingUtil.encodeMDC(mdc), encoder);
+    // marker is not serialized
+    encoder.writeIndex(0);
+    writeString(event.getThreadName(), encoder);
+    writeString(event.getMessage(), encoder);
+
+    Object[] arguments = event.getArgumentArray();
+    if (arguments == null) {
+      encoder.writeIndex(0);
+    } else {
+      encoder.writeIndex(1);
+      encoder.writeArrayStart();
+      encoder.setItemCount(arguments.length);
+      for (Object argument : arguments) {
+        encoder.startItem();
+        writeString(argument == null ? null : argument.toString(), encoder);
+      }
+      encoder.writeArrayEnd();
+    }
+
+    writeString(event.getFormattedMessage(), encoder);
+    writeString(event.getLoggerName(), encoder);
+
+    LoggerContextVO loggerContext = event.getLoggerContextVO();
+    if (loggerContext == null) {
+      encoder.writeIndex(0);
+    } else {
+      encoder.writeIndex(1);
+      writeString(loggerContext.getName(), encoder);
+      writeStringMap(LoggingUtil.encodeMDC(loggerContext.getPropertyMap()), encoder);
+      encoder.writeLong(loggerContext.getBirthTime());
+    }
+
+    writeThrowableProxy(event.getThrowableProxy(), encoder);
+
+    boolean hasCallerData = event.hasCallerData();
+    encoder.writeBoolean(hasCallerData);
+    StackTraceElement[] callerData = hasCallerData ? event.getCallerData() : null;
+    if (callerData == null) {
+      encoder.writeIndex(0);
+    } else {
+      encoder.writeIndex(1);
+      encoder.writeArrayStart();
+      encoder.setItemCount(callerData.length);
+      for (StackTraceElement element : callerData) {
+        encoder.startItem();
+        writeStackTraceElement(element, encoder);
+      }
+      encoder.writeArrayEnd();
+    }
+  }
+
+  private void writeThrowableProxy(@Nullable IThrowableProxy throwableProxy, Encoder encoder) throws IOException {
+    if (throwableProxy == null) {
+      encoder.writeIndex(0);
+      return;
+    }
+    encoder.writeIndex(1);
+    writeString(throwableProxy.getClassName(), encoder);
+    writeString(throwableProxy.getMessage(), encoder);
+    encoder.writeInt(throwableProxy.getCommonFrames());
+
+    StackTraceElementProxy[] proxies = throwableProxy.getStackTraceElementProxyArray();
+    if (proxies == null) {
+      encoder.writeIndex(0);
+    } else {
+      encoder.writeIndex(1);
+      encoder.writeArrayStart();
+      encoder.setItemCount(proxies.length);
+      for (StackTraceElementProxy proxy : proxies) {
+        encoder.startItem();
+        writeStackTraceElement(proxy.getStackTraceElement(), encoder);
+        ClassPackagingData packagingData = proxy.getClassPackagingData();
+        if (packagingData == null) {
+          encoder.writeIndex(0);
+        } else {
+          encoder.writeIndex(1);
+          writeString(packagingData.getCodeLocation(), encoder);
+          writeString(packagingData.getVersion(), encoder);
+          encoder.writeBoolean(packagingData.isExact());
+        }
+      }
+      encoder.writeArrayEnd();
+    }
+
+    writeThrowableProxy(throwableProxy.getCause(), encoder);
+
+    IThrowableProxy[] suppressed = throwableProxy.getSuppressed();
+    if (suppressed == null) {
+      encoder.writeIndex(0);
+    } else {
+      encoder.writeIndex(1);
+      encoder.writeArrayStart();
+      encoder.setItemCount(suppressed.length);
+      for (IThrowableProxy proxy : suppressed) {
+        encoder.startItem();
+        writeThrowableProxy(proxy, encoder);
+      }
+      encoder.writeArrayEnd();
+    }
+  }
+
+  private void writeStackTraceElement(@Nullable StackTraceElement element, Encoder encoder) throws IOException {
+    if (element == null) {
+      encoder.writeIndex(0);
+      return;
+    }
+    encoder.writeIndex(1);
+    writeString(element.getClassName(), encoder);
+    writeString(element.getMethodName(), encoder);
+    writeString(element.getFileName(), encoder);
+    encoder.writeInt(element.getLineNumber());
+  }
+
+  /**
+   * Writes a nullable map with nullable string values.
+   */
+  private void writeStringMap(@Nullable Map<String, String> map, Encoder encoder) throws IOException {
+    if (map == null) {
+      encoder.writeIndex(0);
+      return;
+    }
+    encoder.writeIndex(1);
+    encoder.writeMapStart();
+    encoder.setItemCount(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      encoder.startItem();
+      encoder.writeString(entry.getKey());
+      writeString(entry.getValue(), encoder);
+    }
+    encoder.writeMapEnd();
+  }
+
+  /**
+   * Writes a nullable string.
+   */
+  private void writeString(@Nullable String str, Encoder encoder) throws IOException {
+    if (str == null) {
+      encoder.writeIndex(0);
+    } else {
+      encoder.writeIndex(1);
+      encoder.writeString(str);
+    }
+  }
+
   /**
    * Skips data from the decoder based on the schema.
    */
-  private void skip(Schema schema, Decoder decoder) throws IOException {
+  private static void skip(Schema schema, Decoder decoder) throws IOException {
     switch (schema.getType()) {
       case RECORD:
         for (Schema.Field f : schema.getFields()) {
@@ -197,7 +426,11 @@ public final class LoggingEventSerializer {
         }
         break;
       case UNION:
-        decoder.readIndex();
+        int index = decoder.readIndex();
+        if (index < 0 || index >= schema.getTypes().size()) {
+          throw new IOException("Invalid union index " + index + " for schema " + schema);
+        }
+        skip(schema.getTypes().get(index), decoder);
         break;
       case FIXED:
         decoder.skipFixed(schema.getFixedSize());
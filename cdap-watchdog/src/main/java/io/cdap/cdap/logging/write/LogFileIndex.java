@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.write;
+
+import io.cdap.cdap.common.io.Locations;
+import org.apache.twill.filesystem.Location;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * A sparse index of a log file, which maps the timestamp of the first log event of an Avro block to the position
+ * of that block in the file. The index is written next to the log file when the file is closed, so that readers
+ * can seek to a point in time without walking through the sync markers of the whole file. Each entry also has the
+ * maximum level of the log events from its position to the position of the next entry, so that readers can skip
+ * the parts of the file that have no event of the requested levels.
+ */
+public final class LogFileIndex {
+
+  /**
+   * Minimum number of bytes between two indexed positions.
+   */
+  public static final long DEFAULT_INDEX_INTERVAL_BYTES = 1024 * 1024;
+
+  private static final String INDEX_FILE_SUFFIX = ".idx";
+  private static final int VERSION = 2;
+
+  private final long[] timestamps;
+  private final long[] positions;
+  private final int[] maxLevels;
+
+  private LogFileIndex(long[] timestamps, long[] positions, int[] maxLevels) {
+    this.timestamps = timestamps;
+    this.positions = positions;
+    this.maxLevels = maxLevels;
+  }
+
+  /**
+   * Returns the {@link Location} of the index of the given log file.
+   */
+  public static Location getIndexLocation(Location logLocation) throws IOException {
+    return Locations.getParent(logLocation).append(logLocation.getName() + INDEX_FILE_SUFFIX);
+  }
+
+  /**
+   * Reads the index of the given log file.
+   *
+   * @param logLocation location of the log file
+   * @return the index, or {@code null} if the log file has no index or the index is not for the current content of
+   *         the log file
+   * @throws IOException if failed to read the index
+   */
+  @Nullable
+  public static LogFileIndex read(Location logLocation) throws IOException {
+    Location indexLocation = getIndexLocation(logLocation);
+    if (!indexLocation.exists()) {
+      return null;
+    }
+    try (DataInputStream is = new DataInputStream(new BufferedInputStream(indexLocation.getInputStream()))) {
+      int version = is.readInt();
+      if (version != VERSION) {
+        return null;
+      }
+      long fileLength = is.readLong();
+      if (fileLength != logLocation.length()) {
+        return null;
+      }
+      int size = is.readInt();
+      long[] timestamps = new long[size];
+      long[] positions = new long[size];
+      int[] maxLevels = new int[size];
+      for (int i = 0; i < size; i++) {
+        timestamps[i] = is.readLong();
+        positions[i] = is.readLong();
+        maxLevels[i] = is.readInt();
+      }
+      return size == 0 ? null : new LogFileIndex(timestamps, positions, maxLevels);
+    }
+  }
+
+  /**
+   * Returns the number of entries in this index, which is always at least one.
+   */
+  public int size() {
+    return timestamps.length;
+  }
+
+  /**
+   * Returns the timestamp of the first log event at the position of the given entry.
+   */
+  public long getTimestamp(int entry) {
+    return timestamps[entry];
+  }
+
+  /**
+   * Returns the position of the given entry, which is the start of an Avro block that can be used with
+   * {@link org.apache.avro.file.DataFileReader#seek(long)}.
+   */
+  public long getPosition(int entry) {
+    return positions[entry];
+  }
+
+  /**
+   * Returns the maximum level, as given by {@link ch.qos.logback.classic.Level#toInt()}, of the log events from
+   * the position of the given entry to the position of the next entry.
+   */
+  public int getMaxLevel(int entry) {
+    return maxLevels[entry];
+  }
+
+  /**
+   * Returns the last entry with timestamp smaller than the given timestamp, or {@code -1} if there is none.
+   */
+  public int getLastEntryBefore(long timestamp) {
+    int result = -1;
+    for (int i = 0; i < timestamps.length; i++) {
+      if (timestamps[i] < timestamp) {
+        result = i;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the first entry with timestamp larger than the given timestamp, or {@link #size()} if there is none.
+   */
+  public int getFirstEntryAfter(long timestamp) {
+    for (int i = 0; i < timestamps.length; i++) {
+      if (timestamps[i] > timestamp) {
+        return i;
+      }
+    }
+    return timestamps.length;
+  }
+
+  /**
+   * Builder for the index of a log file that is being written.
+   */
+  public static final class Builder {
+
+    private long[] timestamps = new long[16];
+    private long[] positions = new long[16];
+    private int[] maxLevels = new int[16];
+    private int size;
+
+    /**
+     * Adds an entry to the index.
+     *
+     * @param timestamp timestamp of the first log event written at the given position
+     * @param position start position of an Avro block in the log file
+     * @param level level of the first log event written at the given position
+     */
+    public Builder add(long timestamp, long position, int level) {
+      if (size == timestamps.length) {
+        timestamps = Arrays.copyOf(timestamps, size * 2);
+        positions = Arrays.copyOf(positions, size * 2);
+        maxLevels = Arrays.copyOf(maxLevels, size * 2);
+      }
+      timestamps[size] = timestamp;
+      positions[size] = position;
+      maxLevels[size] = level;
+      size++;
+      return this;
+    }
+
+    /**
+     * Updates the last entry with the level of a log event written after its position.
+     */
+    public Builder addLevel(int level) {
+      if (size > 0 && level > maxLevels[size - 1]) {
+        maxLevels[size - 1] = level;
+      }
+      return this;
+    }
+
+    /**
+     * Returns {@code true} if no entry was added to this builder.
+     */
+    public boolean isEmpty() {
+      return size == 0;
+    }
+
+    /**
+     * Writes the index of the given log file, overwriting the existing one if there is any.
+     *
+     * @param logLocation location of the log file
+     * @param fileLength length of the log file that the index is for
+     * @param filePermissions permissions of the index file, or an empty string to use the default permissions
+     * @throws IOException if failed to write the index
+     */
+    public void write(Location logLocation, long fileLength, String filePermissions) throws IOException {
+      Location indexLocation = getIndexLocation(logLocation);
+      OutputStream output = filePermissions.isEmpty()
+        ? indexLocation.getOutputStream() : indexLocation.getOutputStream(filePermissions);
+      try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(output))) {
+        os.writeInt(VERSION);
+        os.writeLong(fileLength);
+        os.writeInt(size);
+        for (int i = 0; i < size; i++) {
+          os.writeLong(timestamps[i]);
+          os.writeLong(positions[i]);
+          os.writeInt(maxLevels[i]);
+        }
+      }
+    }
+  }
+}
@@ -16,6 +16,7 @@
 
 package io.cdap.cdap.logging.write;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
@@ -27,16 +28,16 @@ import io.cdap.cdap.common.io.SeekableInputStream;
 import io.cdap.cdap.common.logging.LogSamplers;
 import io.cdap.cdap.common.logging.Loggers;
 import io.cdap.cdap.logging.filter.Filter;
+import io.cdap.cdap.logging.filter.Filters;
 import io.cdap.cdap.logging.read.Callback;
 import io.cdap.cdap.logging.read.LogEvent;
 import io.cdap.cdap.logging.read.LogOffset;
-import io.cdap.cdap.logging.serialize.LogSchema;
+import io.cdap.cdap.logging.serialize.FilteringDatumReader;
 import io.cdap.cdap.logging.serialize.LoggingEvent;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.security.impersonation.Impersonator;
 import org.apache.avro.file.DataFileReader;
 import org.apache.avro.file.SeekableInput;
-import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
@@ -50,6 +51,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 
 /**
  * LogLocation representing a log file and methods to read the file's contents.
@@ -153,12 +155,17 @@ public class LogLocation {
     Deque<Collection<LogEvent>> logSegments = new LinkedList<>();
     int count = 0;
     try {
-      try (DataFileReader<GenericRecord> dataFileReader = createReader()) {
+      try (DataFileReader<GenericRecord> dataFileReader = createReader(logFilter)) {
 
         if (!dataFileReader.hasNext()) {
           return ImmutableList.of();
         }
 
+        LogFileIndex index = readIndex();
+        if (index != null) {
+          return readLogPrev(dataFileReader, index, logFilter, fromTimeMs, maxEvents);
+        }
+
         // Calculate skipLen based on fileLength
         long length = location.length();
         LOG.trace("File length {} {}", location, length);
@@ -206,6 +213,40 @@ public class LogLocation {
     return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
   }
 
+  /**
+   * Reads the log events before the given time using the index of the file. Starting from the indexed block right
+   * after the one that has events after fromTimeMs, reads backwards one indexed block at a time.
+   */
+  private Collection<LogEvent> readLogPrev(DataFileReader<GenericRecord> dataFileReader, LogFileIndex index,
+                                           Filter logFilter, long fromTimeMs, int maxEvents) throws IOException {
+    Deque<Collection<LogEvent>> logSegments = new LinkedList<>();
+    int count = 0;
+
+    // Also read the block after the first one that starts after fromTimeMs, in case events are slightly out of order
+    int endEntry = index.getFirstEntryAfter(fromTimeMs) + 1;
+    long endPosition = endEntry < index.size() ? index.getPosition(endEntry) : -1;
+    int minLevel = Filters.getMinimumLevel(logFilter).toInt();
+    for (int entry = Math.min(endEntry, index.size()) - 1; entry >= 0 && count < maxEvents; entry--) {
+      if (index.getMaxLevel(entry) < minLevel) {
+        // No event in this part of the file can match the filter
+        endPosition = index.getPosition(entry);
+        continue;
+      }
+      dataFileReader.seek(index.getPosition(entry));
+      List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, endPosition);
+      if (!logSegment.isEmpty()) {
+        logSegments.addFirst(logSegment);
+        count = count + logSegment.size();
+      }
+      LOG.trace("Read log events {} from indexed position {} to endPosition {}", count, index.getPosition(entry),
+                endPosition);
+      endPosition = index.getPosition(entry);
+    }
+
+    int skip = count >= maxEvents ? count - maxEvents : 0;
+    return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
+  }
+
   /**
    *  Read current block in Avro file from current block sync marker to next block sync marker
    */
@@ -218,7 +259,6 @@ public class LogLocation {
     // or read until endSyncPosition has been reached
     while (dataFileReader.hasNext() && (endSyncPosition == -1 || (currentSyncPosition < endSyncPosition))) {
       ILoggingEvent loggingEvent = new LoggingEvent(dataFileReader.next());
-      loggingEvent.prepareForDeferredProcessing();
 
       // Stop when reached fromTimeMs
       if (loggingEvent.getTimeStamp() > fromTimeMs) {
@@ -226,6 +266,7 @@ public class LogLocation {
       }
 
       if (logFilter.match(loggingEvent)) {
+        loggingEvent.prepareForDeferredProcessing();
         logSegment.add(new LogEvent(loggingEvent,
                                     new LogOffset(LogOffset.INVALID_KAFKA_OFFSET, loggingEvent.getTimeStamp())));
       }
@@ -257,8 +298,12 @@ public class LogLocation {
     private final long fromTimeMs;
     private final long toTimeMs;
     private final long maxEvents;
+    private final int minLevel;
 
     private DataFileReader<GenericRecord> dataFileReader;
+    private LogFileIndex index;
+    // the index entry of the part of the file being read
+    private int indexEntry;
 
     private ILoggingEvent loggingEvent;
     private GenericRecord datum;
@@ -273,18 +318,29 @@ public class LogLocation {
       this.fromTimeMs = fromTimeMs;
       this.toTimeMs = toTimeMs;
       this.maxEvents = maxEvents;
+      this.minLevel = Filters.getMinimumLevel(logFilter).toInt();
 
       try {
-        dataFileReader = createReader();
+        dataFileReader = createReader(logFilter);
         if (dataFileReader.hasNext()) {
           datum = dataFileReader.next();
           loggingEvent = new LoggingEvent(datum);
-          loggingEvent.prepareForDeferredProcessing();
+
+          // The index is used for seeking to fromTimeMs and for skipping parts of the file by level
+          boolean seekNeeded = loggingEvent.getTimeStamp() < fromTimeMs;
+          index = seekNeeded || minLevel > Level.ALL_INT ? readIndex() : null;
+          if (index != null) {
+            // Seek to the indexed block before the last one starting before fromTimeMs,
+            // which is the same rewind as done below when there is no index
+            indexEntry = seekNeeded ? Math.max(0, index.getLastEntryBefore(fromTimeMs) - 1) : 0;
+            dataFileReader.seek(index.getPosition(indexEntry));
+            LOG.trace("Seek to indexed pos {}", index.getPosition(indexEntry));
+          }
 
           long prevPrevSyncPos = 0;
           long prevSyncPos = 0;
           // Seek to time fromTimeMs
-          while (loggingEvent.getTimeStamp() < fromTimeMs && dataFileReader.hasNext()) {
+          while (index == null && loggingEvent.getTimeStamp() < fromTimeMs && dataFileReader.hasNext()) {
             // Seek to the next sync point
             long curPos = dataFileReader.tell();
             prevPrevSyncPos = prevSyncPos;
@@ -293,13 +349,14 @@ public class LogLocation {
             dataFileReader.sync(curPos);
             if (dataFileReader.hasNext()) {
               loggingEvent = new LoggingEvent(dataFileReader.next(datum));
-              loggingEvent.prepareForDeferredProcessing();
             }
           }
 
-          // We're now likely past the record with fromTimeMs, rewind to the previous sync point
-          dataFileReader.sync(prevPrevSyncPos);
-          LOG.trace("Final sync pos {}", prevPrevSyncPos);
+          if (index == null) {
+            // We're now likely past the record with fromTimeMs, rewind to the previous sync point
+            dataFileReader.sync(prevPrevSyncPos);
+            LOG.trace("Final sync pos {}", prevPrevSyncPos);
+          }
         }
 
         // populate the first element
@@ -315,9 +372,8 @@ public class LogLocation {
     private void computeNext() {
       try {
         // read events from file
-        while (next == null && dataFileReader.hasNext()) {
+        while (next == null && hasMoreEvents()) {
           loggingEvent = new LoggingEvent(dataFileReader.next(datum));
-          loggingEvent.prepareForDeferredProcessing();
 
           if (loggingEvent.getTimeStamp() >= fromTimeMs && logFilter.match(loggingEvent)) {
             ++count;
@@ -325,6 +381,7 @@ public class LogLocation {
               && loggingEvent.getTimeStamp() != prevTimestamp) {
               break;
             }
+            loggingEvent.prepareForDeferredProcessing();
             next = new LogEvent(loggingEvent,
                                 new LogOffset(LogOffset.INVALID_KAFKA_OFFSET, loggingEvent.getTimeStamp()));
           }
@@ -338,6 +395,36 @@ public class LogLocation {
       }
     }
 
+    /**
+     * Returns whether there are more events to read. If the file has an index, the parts of the file that have no
+     * event of the minimum level required by the filter are skipped.
+     */
+    private boolean hasMoreEvents() throws IOException {
+      if (!dataFileReader.hasNext()) {
+        return false;
+      }
+      if (index == null) {
+        return true;
+      }
+      // The previous sync is the start of the block that the next event is read from
+      long blockStart = dataFileReader.previousSync();
+      while (indexEntry + 1 < index.size() && index.getPosition(indexEntry + 1) <= blockStart) {
+        indexEntry++;
+      }
+      if (index.getMaxLevel(indexEntry) >= minLevel) {
+        return true;
+      }
+      do {
+        indexEntry++;
+      } while (indexEntry < index.size() && index.getMaxLevel(indexEntry) < minLevel);
+      if (indexEntry >= index.size()) {
+        return false;
+      }
+      LOG.trace("Skipping to indexed pos {} by level", index.getPosition(indexEntry));
+      dataFileReader.seek(index.getPosition(indexEntry));
+      return dataFileReader.hasNext();
+    }
+
     @Override
     public void close() {
       try {
@@ -371,10 +458,32 @@ public class LogLocation {
     }
   }
 
-  private DataFileReader<GenericRecord> createReader() throws IOException {
+  /**
+   * Reads the index of the log file. Returns {@code null} if the file has no valid index, in which case the file
+   * is read by walking through the sync markers.
+   */
+  @Nullable
+  private LogFileIndex readIndex() {
+    // Index is only written by the V1 logging framework
+    if (!VERSION_1.equals(frameworkVersion)) {
+      return null;
+    }
+    try {
+      return LogFileIndex.read(location);
+    } catch (IOException e) {
+      READ_FAILURE_LOG.warn("Failed to read index of log file {}. Reading without index.", location, e);
+      return null;
+    }
+  }
+
+  /**
+   * Creates a reader of the log file. Events that don't match the given filter are only partially decoded,
+   * see {@link FilteringDatumReader}.
+   */
+  private DataFileReader<GenericRecord> createReader(Filter logFilter) throws IOException {
     boolean shouldImpersonate = this.getFrameworkVersion().equals(VERSION_0);
     return new DataFileReader<>(new LocationSeekableInput(location, namespaceId, impersonator, shouldImpersonate),
-                                new GenericDatumReader<GenericRecord>(LogSchema.LoggingEvent.SCHEMA));
+                                new FilteringDatumReader(logFilter));
   }
 
   /**
@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.process;
+
+import io.cdap.cdap.api.metrics.MetricType;
+import io.cdap.cdap.api.metrics.MetricValue;
+import io.cdap.cdap.api.metrics.MetricValues;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Buffer of {@link MetricValues} that pre-aggregates the values of the same metric with the same tags and timestamp.
+ * Counters are summed up, while a gauge replaces the value aggregated so far, the same way as the metrics are
+ * applied to the metric store. This class is not thread safe.
+ */
+final class AggregatedMetricValues {
+
+  private final Map<Key, Map<String, MetricValue>> metrics = new LinkedHashMap<>();
+  private int size;
+  private long rawCount;
+
+  /**
+   * Adds the given {@link MetricValues} to this buffer.
+   */
+  void add(MetricValues metricValues) {
+    Map<String, MetricValue> values = metrics.computeIfAbsent(new Key(metricValues), k -> new HashMap<>());
+    for (MetricValue value : metricValues.getMetrics()) {
+      MetricValue existing = values.get(value.getName());
+      if (existing == null) {
+        values.put(value.getName(), value);
+        size++;
+      } else if (value.getType() == MetricType.GAUGE) {
+        values.put(value.getName(), value);
+      } else {
+        values.put(value.getName(), new MetricValue(value.getName(), existing.getType(),
+                                                    existing.getValue() + value.getValue()));
+      }
+    }
+    rawCount++;
+  }
+
+  /**
+   * Returns the number of distinct metrics in this buffer.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of {@link MetricValues} added to this buffer.
+   */
+  long getRawCount() {
+    return rawCount;
+  }
+
+  boolean isEmpty() {
+    return rawCount == 0;
+  }
+
+  /**
+   * Returns the aggregated {@link MetricValues}, one for each distinct set of tags and timestamp.
+   */
+  List<MetricValues> getMetricValues() {
+    List<MetricValues> result = new ArrayList<>(metrics.size());
+    for (Map.Entry<Key, Map<String, MetricValue>> entry : metrics.entrySet()) {
+      result.add(new MetricValues(entry.getKey().tags, entry.getKey().timestamp, entry.getValue().values()));
+    }
+    return result;
+  }
+
+  /**
+   * Removes all metrics from this buffer.
+   */
+  void clear() {
+    metrics.clear();
+    size = 0;
+    rawCount = 0;
+  }
+
+  /**
+   * The tags and timestamp of a {@link MetricValues}.
+   */
+  private static final class Key {
+    private final Map<String, String> tags;
+    private final long timestamp;
+    private final int hashCode;
+
+    private Key(MetricValues metricValues) {
+      this.tags = metricValues.getTags();
+      this.timestamp = metricValues.getTimestamp();
+      this.hashCode = Objects.hash(tags, timestamp);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key other = (Key) o;
+      return timestamp == other.timestamp && tags.equals(other.tags);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -52,10 +52,8 @@ import org.slf4j.LoggerFactory;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -90,6 +88,13 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private final BlockingDeque<MetricValues> metricsFromAllTopics;
   private final ConcurrentMap<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap;
   private final AtomicBoolean persistingFlag;
+  private final long flushIntervalMillis;
+  private final int flushSize;
+  // Metrics taken from metricsFromAllTopics but not yet persisted, and the topic process meta to persist with them.
+  // They are only accessed by the thread that holds the persistingFlag.
+  private final AggregatedMetricValues pendingMetrics;
+  private Map<TopicIdMetaKey, TopicProcessMeta> pendingTopicProcessMeta;
+  private long lastFlushTime;
   // maximum number of milliseconds to sleep between each run of fetching & processing new metrics, the max sleep time
   // is 1 min
   private final long metricsProcessIntervalMillis;
@@ -152,6 +157,10 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     this.metricsFromAllTopics = new LinkedBlockingDeque<>(queueSize);
     this.topicProcessMetaMap = new ConcurrentHashMap<>();
     this.persistingFlag = new AtomicBoolean();
+    this.flushIntervalMillis = cConf.getLong(Constants.Metrics.PROCESSOR_FLUSH_INTERVAL_MS);
+    this.flushSize = Math.max(1, cConf.getInt(Constants.Metrics.PROCESSOR_FLUSH_SIZE));
+    this.pendingMetrics = new AggregatedMetricValues();
+    this.pendingTopicProcessMeta = new HashMap<>();
     // the max sleep time will be 1 min
     this.metricsProcessIntervalMillis = metricsProcessIntervalMillis < Constants.Metrics.PROCESS_INTERVAL_MILLIS ?
       metricsProcessIntervalMillis : Constants.Metrics.PROCESS_INTERVAL_MILLIS;
@@ -216,9 +225,11 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       }
     }
 
-    // Persist metricsFromAllTopics and messageId's after all ProcessMetricsThread's complete.
+    // Persist the pending metrics, metricsFromAllTopics and messageId's after all ProcessMetricsThread's complete.
     // No need to make a copy of metricsFromAllTopics and topicProcessMetaMap because no thread is writing to them
-    persistMetricsAndTopicProcessMeta(metricsFromAllTopics, topicProcessMetaMap);
+    metricsFromAllTopics.forEach(pendingMetrics::add);
+    pendingTopicProcessMeta = topicProcessMetaMap;
+    persistMetricsAndTopicProcessMeta();
   }
 
   @Override
@@ -232,20 +243,19 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   }
 
   /**
-   * Persist metrics from all topics into metric store and messageId's of the last persisted metrics of each topic into
-   * metrics meta table
-   *
-   * @param metricValues        a deque of {@link MetricValues}
-   * @param topicProcessMetaMap a map with each key {@link TopicIdMetaKey} representing a topic and {@link
-   *                            TopicProcessMeta} which has info on messageId and processing stats
+   * Persist the pending metrics from all topics into metric store and messageId's of the last persisted metrics of
+   * each topic into metrics meta table. The messageId's are only persisted after the metrics are persisted, hence
+   * metrics are processed at least once. If persisting the metrics fails, they are kept pending and will be retried
+   * in the next flush.
    */
-  private void persistMetricsAndTopicProcessMeta(Deque<MetricValues> metricValues,
-                                                 Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
+  private void persistMetricsAndTopicProcessMeta() {
     try {
-      if (!metricValues.isEmpty()) {
-        persistMetrics(metricValues, topicProcessMetaMap);
+      if (!pendingMetrics.isEmpty()) {
+        persistMetrics(pendingMetrics, pendingTopicProcessMeta);
+        pendingMetrics.clear();
       }
-      persistTopicProcessMeta(topicProcessMetaMap);
+      persistTopicProcessMeta(pendingTopicProcessMeta);
+      lastFlushTime = System.currentTimeMillis();
     } catch (Exception e) {
       LOG.warn("Failed to persist metrics.", e);
     }
@@ -266,12 +276,13 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   /**
    * Persist metrics into metric store
    *
-   * @param metricValues a non-empty deque of {@link MetricValues}
+   * @param aggregatedMetrics a non-empty {@link AggregatedMetricValues}
    */
-  private void persistMetrics(Deque<MetricValues> metricValues,
+  private void persistMetrics(AggregatedMetricValues aggregatedMetrics,
                               Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
     long now = System.currentTimeMillis();
-    long lastMetricTime = metricValues.peekLast().getTimestamp();
+    List<MetricValues> metricValues = aggregatedMetrics.getMetricValues();
+    long lastMetricTime = metricValues.get(metricValues.size() - 1).getTimestamp();
     List<MetricValue> topicLevelDelays = new ArrayList<>();
 
     //write topic level delay metrics
@@ -285,11 +296,11 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
                                            MetricType.GAUGE, delay));
     }
     List<MetricValue> processorMetrics = new ArrayList<>(topicLevelDelays);
-    processorMetrics.add(new MetricValue(processMetricName, MetricType.COUNTER, metricValues.size()));
+    processorMetrics.add(new MetricValue(processMetricName, MetricType.COUNTER, aggregatedMetrics.getRawCount()));
 
     metricValues.add(new MetricValues(metricsContextMap, TimeUnit.MILLISECONDS.toSeconds(now), processorMetrics));
     metricsWriter.write(metricValues);
-    metricsProcessedCount += metricValues.size();
+    metricsProcessedCount += aggregatedMetrics.getRawCount();
     PROGRESS_LOG.debug("{} metrics persisted. Last metric's timestamp: {}",
                        metricsProcessedCount, lastMetricTime);
   }
@@ -421,7 +432,10 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     }
 
     /**
-     * Persist metrics and messageId's of the last metrics to be persisted if no other thread is persisting
+     * Take the fetched metrics into the pending metrics, and persist them together with the messageId's of the last
+     * metrics taken if no other thread is persisting. The pending metrics are only persisted when there are at least
+     * {@code flushSize} distinct metrics or when {@code flushIntervalMillis} has passed since the last flush, so that
+     * increments of the same metric from different fetches are aggregated before they are written.
      */
     private void tryPersist() {
       // Ensure there's only one thread can persist metricsFromAllTopics and messageId's.
@@ -432,26 +446,30 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
         return;
       }
       try {
-        // Make a copy of topicProcessMetaMap before copying metrics from metricsFromAllTopics to ensure that
-        // topicMessageIdsCopy will not contain new MessageId's in metricsFromAllTopics but not in metricsCopy.
-        // This guarantees the metrics corresponding to last persisted MessageId's of each topic are persisted.
-        Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMapCopy = new HashMap<>(topicProcessMetaMap);
-        // Remove at most queueSize of metrics from metricsFromAllTopics and put into metricsCopy to limit
-        // the number of metrics being persisted each time
-        Deque<MetricValues> metricsCopy = new LinkedList<>();
-        Iterator<MetricValues> iterator = metricsFromAllTopics.iterator();
-        // Though the blocking queue(metricsFromAllTopics) has upper bound on its size (which is the "queueSize")
-        // there can be a scenario, as the current thread is removing entries from blocking queue
-        // and adding it to a copy list, other threads are simultaneously adding entries to the queue and
-        // the current list might become very big causing out of memory issues, we avoid this
-        // by making the copy list size also to be limited by the max queue size.
-        while (iterator.hasNext() && metricsCopy.size() < queueSize) {
-          metricsCopy.add(iterator.next());
-          iterator.remove();
+        // Don't take more metrics if the pending metrics failed to flush, so that they don't grow unbounded.
+        // The fetchers will stop fetching once metricsFromAllTopics is full.
+        if (pendingMetrics.size() < flushSize) {
+          // Make a copy of topicProcessMetaMap before copying metrics from metricsFromAllTopics to ensure that
+          // topicMessageIdsCopy will not contain new MessageId's in metricsFromAllTopics but not in pendingMetrics.
+          // This guarantees the metrics corresponding to last persisted MessageId's of each topic are persisted.
+          Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMapCopy = new HashMap<>(topicProcessMetaMap);
+          // Remove at most queueSize of metrics from metricsFromAllTopics and put into pendingMetrics.
+          // Though the blocking queue(metricsFromAllTopics) has upper bound on its size (which is the "queueSize")
+          // there can be a scenario, as the current thread is removing entries from blocking queue
+          // and adding it to the pending metrics, other threads are simultaneously adding entries to the queue,
+          // we avoid taking too many by limiting the number of metrics taken to the max queue size.
+          Iterator<MetricValues> iterator = metricsFromAllTopics.iterator();
+          int count = 0;
+          while (iterator.hasNext() && count++ < queueSize) {
+            pendingMetrics.add(iterator.next());
+            iterator.remove();
+          }
+          pendingTopicProcessMeta = topicProcessMetaMapCopy;
         }
-        // Persist the copy of metrics and MessageId's
 
-        persistMetricsAndTopicProcessMeta(metricsCopy, topicProcessMetaMapCopy);
+        if (pendingMetrics.size() >= flushSize || System.currentTimeMillis() - lastFlushTime >= flushIntervalMillis) {
+          persistMetricsAndTopicProcessMeta();
+        }
       } catch (Exception e) {
         LOG.warn("Failed to persist metrics. Will be retried in next iteration.", e);
       } finally {
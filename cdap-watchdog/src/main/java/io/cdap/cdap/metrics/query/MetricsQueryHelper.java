@@ -256,8 +256,9 @@ public class MetricsQueryHelper {
         : AggregationOption.FALSE;
     boolean aggregate = aggregationOption.equals(AggregationOption.TRUE) || ((start == null) && (end == null));
 
-    Integer resolution = queryTimeParams.containsKey(PARAM_RESOLUTION) ?
-      getResolution(queryTimeParams.get(PARAM_RESOLUTION).get(0), start, end) : getResolution(null, start, end);
+    String resolutionParam = queryTimeParams.containsKey(PARAM_RESOLUTION) ?
+      queryTimeParams.get(PARAM_RESOLUTION).get(0) : null;
+    Integer resolution = getResolution(resolutionParam, start, end);
 
     Interpolator interpolator = null;
     if (queryTimeParams.containsKey(PARAM_INTERPOLATE)) {
@@ -268,6 +269,13 @@ public class MetricsQueryHelper {
 
     if (queryTimeParams.containsKey(PARAM_COUNT)) {
       count = Integer.valueOf(queryTimeParams.get(PARAM_COUNT).get(0));
+      boolean partitioned = aggregationOption.equals(AggregationOption.SUM)
+        || aggregationOption.equals(AggregationOption.LATEST);
+      if (partitioned && start != null && end != null
+        && (resolutionParam == null || resolutionParam.equals(PARAM_AUTO_RESOLUTION))) {
+        // the result is reduced to count data points, so read from the coarsest table that still has enough points
+        resolution = getAggregatedResolution(start, end, count, resolution);
+      }
       if (start == null && end != null) {
         start = end - count * resolution;
       } else if (start != null && end == null) {
@@ -333,6 +341,44 @@ public class MetricsQueryHelper {
     }
   }
 
+  /**
+   * Get the resolution for an auto resolution query that has its result aggregated into the given number of data
+   * points. All resolutions are written to the metric store at the same time, so a resolution coarser than the one
+   * picked by the time range can be used if it still has at least count intervals between start and end, which
+   * reduces the number of data points read.
+   * A coarser resolution is only used if the start time is a multiple of it, and the time range, with both start
+   * and end inclusive, splits into count intervals that are multiples of it. Otherwise the aggregated data points
+   * would not cover the same seconds as they would with a finer resolution. Since coarser resolutions keep
+   * the sum of counters and the latest value of gauges, the results are the same as reading from a finer
+   * resolution for sum of counters and latest of gauges.
+   * If no such resolution exists, the resolution picked by the time range will be used.
+   *
+   * @param start the start timestamp
+   * @param end the end timestamp
+   * @param count the number of data points to aggregate the result into
+   * @param rangeResolution the resolution picked by the time range as returned by
+   *                        {@link #getResolution(String, Long, Long)}
+   * @return the integer resolution for the query
+   */
+  @VisibleForTesting
+  int getAggregatedResolution(long start, long end, int count, int rangeResolution) {
+    if (count <= 0) {
+      return rangeResolution;
+    }
+    // both start and end are inclusive in the query
+    long duration = end - start + 1;
+    if (duration % count != 0) {
+      return rangeResolution;
+    }
+    long interval = duration / count;
+    for (int resolution : new int[] { 3600, 60 }) {
+      if (resolution > rangeResolution && start % resolution == 0 && interval % resolution == 0) {
+        return resolution;
+      }
+    }
+    return rangeResolution;
+  }
+
   private int getResolution(long difference) {
     if (difference > Constants.Metrics.Query.MAX_HOUR_RESOLUTION_QUERY_INTERVAL) {
       return 3600;
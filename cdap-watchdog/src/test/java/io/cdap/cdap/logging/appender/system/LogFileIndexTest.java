@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.appender.system;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.logging.filter.Filter;
+import io.cdap.cdap.logging.filter.LogLevelExpression;
+import io.cdap.cdap.logging.read.LogEvent;
+import io.cdap.cdap.logging.write.LogFileIndex;
+import io.cdap.cdap.logging.write.LogLocation;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for reading log files with the {@link LogFileIndex} written by {@link LogFileOutputStream}.
+ */
+public class LogFileIndexTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testReadWithIndex() throws Exception {
+    Location location = new LocalLocationFactory(TMP_FOLDER.newFolder()).create("1000.avro");
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    // Write 1000 events, 10ms apart, flushing every 10 events. Every flush is indexed.
+    try (LogFileOutputStream outputStream = new LogFileOutputStream(location, "", 1024 * 1024, 1L,
+                                                                    System.currentTimeMillis(), () -> { })) {
+      for (int i = 0; i < 1000; i++) {
+        LoggingEvent event = new LoggingEvent("io.cdap.Test", logger, Level.INFO, "message " + i, null, null);
+        event.setTimeStamp(1000L + i * 10);
+        outputStream.append(event);
+        if (i % 10 == 9) {
+          outputStream.flush();
+        }
+      }
+    }
+
+    LogFileIndex index = LogFileIndex.read(location);
+    Assert.assertNotNull(index);
+    Assert.assertEquals(100, index.size());
+    Assert.assertEquals(1000L, index.getTimestamp(0));
+    Assert.assertEquals(10900L, index.getTimestamp(99));
+
+    LogLocation logLocation = new LogLocation(LogLocation.VERSION_1, 1000L, 0L, location, "default", null);
+    List<List<Long>> indexedResults = readAll(logLocation);
+
+    // Reading without the index should give the same results
+    Assert.assertTrue(LogFileIndex.getIndexLocation(location).delete());
+    Assert.assertNull(LogFileIndex.read(location));
+    Assert.assertEquals(readAll(logLocation), indexedResults);
+
+    Assert.assertEquals(Arrays.asList(5000L, 5010L, 5020L), indexedResults.get(0));
+    Assert.assertEquals(Arrays.asList(4980L, 4990L, 5000L), indexedResults.get(1));
+  }
+
+  @Test
+  public void testSkipByLevel() throws Exception {
+    Location location = new LocalLocationFactory(TMP_FOLDER.newFolder()).create("1000.avro");
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    // Write 1000 DEBUG events with an ERROR event every 150 events, flushing every 10 events.
+    try (LogFileOutputStream outputStream = new LogFileOutputStream(location, "", 1024 * 1024, 1L,
+                                                                    System.currentTimeMillis(), () -> { })) {
+      for (int i = 0; i < 1000; i++) {
+        Level level = i % 150 == 0 ? Level.ERROR : Level.DEBUG;
+        LoggingEvent event = new LoggingEvent("io.cdap.Test", logger, level, "message " + i, null, null);
+        event.setTimeStamp(1000L + i * 10);
+        outputStream.append(event);
+        if (i % 10 == 9) {
+          outputStream.flush();
+        }
+      }
+    }
+
+    LogFileIndex index = LogFileIndex.read(location);
+    Assert.assertNotNull(index);
+    Assert.assertEquals(Level.ERROR_INT, index.getMaxLevel(0));
+    Assert.assertEquals(Level.DEBUG_INT, index.getMaxLevel(1));
+    Assert.assertEquals(Level.ERROR_INT, index.getMaxLevel(15));
+
+    LogLocation logLocation = new LogLocation(LogLocation.VERSION_1, 1000L, 0L, location, "default", null);
+    Filter filter = new LogLevelExpression("ERROR");
+    List<Long> next = readNext(logLocation, filter, 2000L, 100);
+    List<Long> prev = readPrev(logLocation, filter, 9000L, 100);
+    Assert.assertEquals(Arrays.asList(2500L, 4000L, 5500L, 7000L, 8500L, 10000L), next);
+    Assert.assertEquals(Arrays.asList(1000L, 2500L, 4000L, 5500L, 7000L, 8500L), prev);
+
+    // Reading without the index should give the same results
+    Assert.assertTrue(LogFileIndex.getIndexLocation(location).delete());
+    Assert.assertEquals(next, readNext(logLocation, filter, 2000L, 100));
+    Assert.assertEquals(prev, readPrev(logLocation, filter, 9000L, 100));
+  }
+
+  @Test
+  public void testStaleIndex() throws Exception {
+    Location location = new LocalLocationFactory(TMP_FOLDER.newFolder()).create("1000.avro");
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+    try (LogFileOutputStream outputStream = new LogFileOutputStream(location, "", 1024 * 1024, 1L,
+                                                                    System.currentTimeMillis(), () -> { })) {
+      LoggingEvent event = new LoggingEvent("io.cdap.Test", logger, Level.INFO, "message", null, null);
+      event.setTimeStamp(1000L);
+      outputStream.append(event);
+    }
+    Assert.assertNotNull(LogFileIndex.read(location));
+
+    // An index written for a different file length is ignored
+    new LogFileIndex.Builder().add(1000L, 0L, Level.INFO_INT).write(location, location.length() + 1, "");
+    Assert.assertNull(LogFileIndex.read(location));
+  }
+
+  private List<List<Long>> readAll(LogLocation logLocation) throws Exception {
+    List<List<Long>> results = new ArrayList<>();
+    results.add(readNext(logLocation, 5000L, 3));
+    results.add(readPrev(logLocation, 5000L, 3));
+    for (long time : new long[] { 0L, 1000L, 1005L, 3333L, 10990L, 11000L, 20000L }) {
+      results.add(readNext(logLocation, time, 15));
+      results.add(readPrev(logLocation, time, 15));
+    }
+    results.add(readNext(logLocation, 1000L, 2000));
+    results.add(readPrev(logLocation, 20000L, 2000));
+    return results;
+  }
+
+  private List<Long> readNext(LogLocation logLocation, long fromTimeMs, int maxEvents) {
+    return readNext(logLocation, Filter.EMPTY_FILTER, fromTimeMs, maxEvents);
+  }
+
+  private List<Long> readNext(LogLocation logLocation, Filter filter, long fromTimeMs, int maxEvents) {
+    List<Long> timestamps = new ArrayList<>();
+    try (CloseableIterator<LogEvent> iterator = logLocation.readLog(filter, fromTimeMs, Long.MAX_VALUE, maxEvents)) {
+      while (iterator.hasNext()) {
+        timestamps.add(iterator.next().getLoggingEvent().getTimeStamp());
+      }
+    }
+    return timestamps;
+  }
+
+  private List<Long> readPrev(LogLocation logLocation, long fromTimeMs, int maxEvents) throws Exception {
+    return readPrev(logLocation, Filter.EMPTY_FILTER, fromTimeMs, maxEvents);
+  }
+
+  private List<Long> readPrev(LogLocation logLocation, Filter filter, long fromTimeMs,
+                              int maxEvents) throws Exception {
+    List<Long> timestamps = new ArrayList<>();
+    for (LogEvent event : logLocation.readLogPrev(filter, fromTimeMs, maxEvents)) {
+      timestamps.add(event.getLoggingEvent().getTimeStamp());
+    }
+    return timestamps;
+  }
+}
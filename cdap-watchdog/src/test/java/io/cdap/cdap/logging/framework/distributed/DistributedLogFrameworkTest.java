@@ -20,6 +20,7 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.LoggingEvent;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
@@ -86,6 +87,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -197,6 +199,35 @@ public class DistributedLogFrameworkTest {
     Assert.assertEquals(msgCount, checkpoint.getOffset().getNextOffset());
   }
 
+  @Test
+  public void testWorkerPartitions() {
+    Set<Integer> partitions = ImmutableSet.of(0, 1, 2, 3, 4);
+    Assert.assertEquals(ImmutableList.of(partitions), DistributedLogFramework.getWorkerPartitions(partitions, 1));
+    Assert.assertEquals(ImmutableList.of(ImmutableSet.of(0, 2, 4), ImmutableSet.of(1, 3)),
+                        DistributedLogFramework.getWorkerPartitions(partitions, 2));
+
+    // No more workers than partitions, but always at least one worker
+    Assert.assertEquals(5, DistributedLogFramework.getWorkerPartitions(partitions, 8).size());
+    Assert.assertEquals(ImmutableList.of(Collections.emptySet()),
+                        DistributedLogFramework.getWorkerPartitions(Collections.emptySet(), 4));
+  }
+
+  @Test
+  public void testBufferSize() {
+    // The configured buffer size is divided among the workers
+    CConfiguration cConf = CConfiguration.create();
+    cConf.setLong(Constants.Logging.PIPELINE_BUFFER_SIZE, 1000L);
+    Assert.assertEquals(1000L, DistributedLogFramework.getBufferSize(cConf, 2, 1, 4));
+    Assert.assertEquals(250L, DistributedLogFramework.getBufferSize(cConf, 2, 4, 4));
+    cConf.setLong(Constants.Logging.PIPELINE_BUFFER_SIZE, 3L);
+    Assert.assertEquals(1L, DistributedLogFramework.getBufferSize(cConf, 2, 4, 4));
+
+    // So is the buffer size derived from the memory size
+    cConf.setLong(Constants.Logging.PIPELINE_BUFFER_SIZE, 0L);
+    long bufferSize = DistributedLogFramework.getBufferSize(cConf, 2, 1, 4);
+    Assert.assertEquals(bufferSize / 4, DistributedLogFramework.getBufferSize(cConf, 2, 4, 4), 1L);
+  }
+
   private CheckpointManager<KafkaOffset> getCheckpointManager(String kafkaTopic) {
     TransactionRunner transactionRunner = injector.getInstance(TransactionRunner.class);
     return new KafkaCheckpointManager(transactionRunner,
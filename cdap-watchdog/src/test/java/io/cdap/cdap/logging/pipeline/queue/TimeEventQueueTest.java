@@ -21,11 +21,15 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Unit-test for {@link TimeEventQueue}.
@@ -159,6 +163,133 @@ public class TimeEventQueueTest {
     iterator.remove();
   }
 
+  @Test
+  public void testDuplicateAndRemove() {
+    TimeEventQueue<String, Integer> eventQueue = new TimeEventQueue<>(ImmutableSet.of(1));
+    eventQueue.add("m3", 3L, 10, 1, 0);
+    eventQueue.add("m1", 1L, 10, 1, 1);
+    eventQueue.add("m2", 2L, 10, 1, 2);
+
+    // Adding the same event again is ignored
+    eventQueue.add("m1", 1L, 10, 1, 1);
+    Assert.assertEquals(3, eventQueue.size());
+    Assert.assertEquals(30, eventQueue.getEventSize());
+
+    // Adding a different event with the same offset fails
+    try {
+      eventQueue.add("m4", 4L, 10, 1, 2);
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    Assert.assertEquals(3, eventQueue.size());
+
+    // Remove only the event in the middle
+    TimeEventQueue.EventIterator<String, Integer> iterator = eventQueue.iterator();
+    Assert.assertEquals("m1", iterator.next());
+    Assert.assertEquals("m2", iterator.next());
+    iterator.remove();
+    Assert.assertEquals("m3", iterator.next());
+    Assert.assertFalse(iterator.hasNext());
+    Assert.assertEquals(20, eventQueue.getEventSize());
+    Assert.assertEquals(0, eventQueue.getSmallestOffset(1).intValue());
+    Assert.assertEquals("m1", eventQueue.first());
+
+    // The removed offset can be added again
+    eventQueue.add("m2", 2L, 10, 1, 2);
+    List<String> events = new ArrayList<>();
+    eventQueue.forEach(events::add);
+    Assert.assertEquals(Arrays.asList("m1", "m2", "m3"), events);
+  }
+
+  @Test
+  public void testRandomOrdering() {
+    // Use a fixed seed so that failures are reproducible
+    Random random = new Random(20190601L);
+    Set<Integer> partitions = ImmutableSet.of(0, 1, 2, 3);
+    TimeEventQueue<String, Integer> eventQueue = new TimeEventQueue<>(partitions);
+    // Expected events sorted by timestamp, partition and offset
+    TreeMap<String, String> expected = new TreeMap<>();
+    int[] nextOffsets = new int[partitions.size()];
+
+    for (int round = 0; round < 20; round++) {
+      // Add events with increasing offsets and roughly increasing timestamps to random partitions
+      for (int i = 0; i < 500; i++) {
+        int partition = random.nextInt(partitions.size());
+        int offset = nextOffsets[partition]++;
+        long timestamp = round * 100 + random.nextInt(200);
+        String event = String.format("%010d-%d-%010d", timestamp, partition, offset);
+        eventQueue.add(event, timestamp, 1, partition, offset);
+        expected.put(event, event);
+      }
+      Assert.assertEquals(expected.size(), eventQueue.size());
+      Assert.assertEquals(expected.size(), eventQueue.getEventSize());
+      Assert.assertEquals(expected.firstKey(), eventQueue.first());
+
+      // Iterate all events and remove some of them, mostly from the front
+      Iterator<String> expectedIterator = expected.keySet().iterator();
+      TimeEventQueue.EventIterator<String, Integer> iterator = eventQueue.iterator();
+      int count = 0;
+      while (iterator.hasNext()) {
+        String event = iterator.next();
+        Assert.assertEquals(expectedIterator.next(), event);
+        Assert.assertEquals(event.substring(11, 12), Integer.toString(iterator.getPartition()));
+        if (count++ < 300 || random.nextInt(10) == 0) {
+          iterator.remove();
+          expectedIterator.remove();
+        }
+      }
+      Assert.assertFalse(expectedIterator.hasNext());
+
+      for (int partition : partitions) {
+        Integer smallestOffset = null;
+        for (String event : expected.keySet()) {
+          if (event.charAt(11) - '0' == partition) {
+            int offset = Integer.parseInt(event.substring(13));
+            smallestOffset = smallestOffset == null ? offset : Math.min(smallestOffset, offset);
+          }
+        }
+        Assert.assertEquals(smallestOffset == null, eventQueue.isEmpty(partition));
+        if (smallestOffset != null) {
+          Assert.assertEquals(smallestOffset, eventQueue.getSmallestOffset(partition));
+        }
+      }
+    }
+
+    // Drain the queue
+    Iterator<String> iterator = eventQueue.iterator();
+    while (iterator.hasNext()) {
+      Assert.assertEquals(expected.pollFirstEntry().getKey(), iterator.next());
+      iterator.remove();
+    }
+    Assert.assertTrue(expected.isEmpty());
+    Assert.assertTrue(eventQueue.isEmpty());
+    Assert.assertEquals(0, eventQueue.getEventSize());
+  }
+
+  @Test
+  public void testHeldOffset() {
+    TimeEventQueue<String, Integer> eventQueue = new TimeEventQueue<>(ImmutableSet.of(0));
+
+    // An event with a timestamp far in the future, which stays in the queue while later offsets come and go
+    eventQueue.add("held", Long.MAX_VALUE, 1, 0, 0);
+
+    for (int i = 1; i <= 100000; i++) {
+      eventQueue.add("e" + i, i, 1, 0, i);
+      Iterator<String> iterator = eventQueue.iterator();
+      Assert.assertEquals("e" + i, iterator.next());
+      iterator.remove();
+    }
+
+    Assert.assertEquals(1, eventQueue.size());
+    Assert.assertEquals(1, eventQueue.getEventSize());
+    Assert.assertEquals(0, eventQueue.getSmallestOffset(0).intValue());
+    Assert.assertEquals("held", eventQueue.first());
+
+    // Offsets removed behind the held offset should be dropped instead of growing the array
+    Assert.assertTrue(eventQueue.getOffsetCapacity(0) <= 16);
+  }
+
   private static final class TimestampedEvent {
     private final long timestamp;
     private final String message;
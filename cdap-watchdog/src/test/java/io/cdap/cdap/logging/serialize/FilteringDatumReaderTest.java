@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.serialize;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.logging.filter.AndFilter;
+import io.cdap.cdap.logging.filter.Filter;
+import io.cdap.cdap.logging.filter.FilterParser;
+import io.cdap.cdap.logging.filter.Filters;
+import io.cdap.cdap.logging.filter.LogLevelExpression;
+import io.cdap.cdap.logging.filter.MdcExpression;
+import io.cdap.cdap.logging.filter.OrFilter;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link FilteringDatumReader} and {@link Filters}.
+ */
+public class FilteringDatumReaderTest {
+
+  @Test
+  public void testFilters() {
+    Filter levelAndMdc = FilterParser.parse("loglevel=WARN AND MDC:key=value");
+    Assert.assertTrue(Filters.isLevelAndMdcOnly(levelAndMdc));
+    Assert.assertEquals(Level.WARN, Filters.getMinimumLevel(levelAndMdc));
+
+    Filter levels = new OrFilter(ImmutableList.of(new LogLevelExpression("ERROR"), new LogLevelExpression("INFO")));
+    Assert.assertEquals(Level.INFO, Filters.getMinimumLevel(levels));
+    Assert.assertEquals(Level.ALL, Filters.getMinimumLevel(new MdcExpression("key", "value")));
+    Assert.assertEquals(Level.ALL, Filters.getMinimumLevel(Filter.EMPTY_FILTER));
+
+    Filter other = event -> event.getMessage() != null;
+    Assert.assertFalse(Filters.isLevelAndMdcOnly(new AndFilter(ImmutableList.of(levelAndMdc, other))));
+  }
+
+  @Test
+  public void testFilteringRead() throws IOException {
+    LoggingEventSerializer serializer = new LoggingEventSerializer();
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    try (DataFileWriter<GenericRecord> writer =
+           new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(serializer.getAvroSchema()))) {
+      writer.create(serializer.getAvroSchema(), os);
+      for (int i = 0; i < 100; i++) {
+        writer.append(serializer.toGenericRecord(createEvent(i)));
+      }
+    }
+    byte[] bytes = os.toByteArray();
+
+    List<GenericRecord> expected = read(bytes, new GenericDatumReader<>(LogSchema.LoggingEvent.SCHEMA));
+
+    for (Filter filter : new Filter[] {
+      Filter.EMPTY_FILTER,
+      new LogLevelExpression("WARN"),
+      FilterParser.parse("loglevel=ERROR OR MDC:key=value3"),
+      new AndFilter(ImmutableList.of(new LogLevelExpression("INFO"), new MdcExpression("key", "value1"))),
+      // filter that cannot be pushed down
+      event -> event.getFormattedMessage().endsWith("5")
+    }) {
+      List<GenericRecord> actual = read(bytes, new FilteringDatumReader(filter));
+      Assert.assertEquals(expected.size(), actual.size());
+
+      int matched = 0;
+      for (int i = 0; i < expected.size(); i++) {
+        LoggingEvent expectedEvent = new LoggingEvent(expected.get(i));
+        LoggingEvent actualEvent = new LoggingEvent(actual.get(i));
+        // Timestamp, level and MDC are always decoded
+        Assert.assertEquals(expectedEvent.getTimeStamp(), actualEvent.getTimeStamp());
+        Assert.assertEquals(expectedEvent.getLevel(), actualEvent.getLevel());
+        Assert.assertEquals(expectedEvent.getMDCPropertyMap(), actualEvent.getMDCPropertyMap());
+
+        Assert.assertEquals(filter.match(expectedEvent), filter.match(actualEvent));
+        if (filter.match(actualEvent)) {
+          Assert.assertEquals(expected.get(i), actual.get(i));
+          matched++;
+        } else if (Filters.isLevelAndMdcOnly(filter)) {
+          Assert.assertNull(actual.get(i).get("formattedMessage"));
+          Assert.assertNull(actual.get(i).get("throwableProxy"));
+        }
+      }
+      Assert.assertTrue(matched > 0);
+    }
+  }
+
+  private List<GenericRecord> read(byte[] bytes, GenericDatumReader<GenericRecord> datumReader) throws IOException {
+    List<GenericRecord> records = new ArrayList<>();
+    try (DataFileStream<GenericRecord> stream = new DataFileStream<>(new ByteArrayInputStream(bytes), datumReader)) {
+      GenericRecord record = null;
+      while (stream.hasNext()) {
+        // Reuse the record as done when reading log files
+        record = stream.next(record);
+        records.add((GenericRecord) GenericData.get().deepCopy(record.getSchema(), record));
+      }
+    }
+    return records;
+  }
+
+  private ch.qos.logback.classic.spi.LoggingEvent createEvent(int i) {
+    ch.qos.logback.classic.spi.LoggingEvent event = new ch.qos.logback.classic.spi.LoggingEvent();
+    event.setTimeStamp(1000L + i);
+    event.setLevel(new Level[] { Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR }[i % 4]);
+    event.setThreadName("thread");
+    event.setLoggerName("logger");
+    event.setMessage("message {}");
+    event.setArgumentArray(new Object[] { i });
+    event.setLoggerContextRemoteView(new LoggerContextVO("context", ImmutableMap.of("p", "v"), 1L));
+    event.setMDCPropertyMap(ImmutableMap.of("key", "value" + (i % 5)));
+    if (i % 3 == 0) {
+      event.setThrowableProxy(new ThrowableProxy(new Exception("failure " + i, new RuntimeException("cause"))));
+      event.setCallerData(new StackTraceElement[] { new StackTraceElement("Class", "method", "File", i) });
+    }
+    return event;
+  }
+}
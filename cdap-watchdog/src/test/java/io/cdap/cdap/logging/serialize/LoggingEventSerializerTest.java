@@ -29,14 +29,22 @@ import io.cdap.cdap.common.logging.ServiceLoggingContext;
 import io.cdap.cdap.common.logging.logback.TestLoggingContext;
 import io.cdap.cdap.logging.appender.LogMessage;
 import io.cdap.cdap.logging.context.LoggingContextHelper;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -182,6 +190,72 @@ public class LoggingEventSerializerTest {
     Assert.assertEquals(timestamp, serializer.decodeEventTimestamp(ByteBuffer.wrap(bytes)));
   }
 
+  @Test
+  public void testGenericRecordCompatibility() throws IOException {
+    ch.qos.logback.classic.spi.LoggingEvent iLoggingEvent = new ch.qos.logback.classic.spi.LoggingEvent();
+    iLoggingEvent.setThreadName("thread");
+    iLoggingEvent.setLevel(Level.WARN);
+    iLoggingEvent.setMessage("message {} {}");
+    iLoggingEvent.setArgumentArray(new Object[] { null, 10 });
+    iLoggingEvent.setLoggerName("logger");
+    iLoggingEvent.setLoggerContextRemoteView(new LoggerContextVO("context", ImmutableMap.of("p", "v"), 123L));
+    Exception suppressed = new IllegalStateException("suppressed");
+    Exception exception = new Exception("failure", new RuntimeException("cause"));
+    exception.addSuppressed(suppressed);
+    iLoggingEvent.setThrowableProxy(new ThrowableProxy(exception));
+    ((ThrowableProxy) iLoggingEvent.getThrowableProxy()).calculatePackagingData();
+    iLoggingEvent.setCallerData(new StackTraceElement[] { new StackTraceElement("Class", "method", null, 1), null });
+    Map<String, String> mdcMap = new HashMap<>();
+    mdcMap.put("mdc1", "value1");
+    mdcMap.put("mdc2", null);
+    mdcMap.put(null, "value3");
+    iLoggingEvent.setMDCPropertyMap(mdcMap);
+    iLoggingEvent.setTimeStamp(1234567890L);
+
+    // The direct encoding should decode to the same record as the one created by toGenericRecord
+    LoggingEventSerializer serializer = new LoggingEventSerializer();
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+    new GenericDatumWriter<GenericRecord>(serializer.getAvroSchema())
+      .write(serializer.toGenericRecord(iLoggingEvent), encoder);
+
+    GenericDatumReader<GenericRecord> reader = new GenericDatumReader<>(serializer.getAvroSchema());
+    GenericRecord expected = reader.read(null, DecoderFactory.get().binaryDecoder(os.toByteArray(), null));
+    byte[] bytes = serializer.toBytes(iLoggingEvent);
+    Assert.assertEquals(expected, reader.read(null, DecoderFactory.get().binaryDecoder(bytes, null)));
+
+    // Encoding reuses the buffer
+    Assert.assertArrayEquals(bytes, serializer.toBytes(iLoggingEvent));
+
+    // The decoded event only decodes the MDC when it is needed, and everything else on demand
+    LoggingEvent event = (LoggingEvent) serializer.fromBytes(ByteBuffer.wrap(bytes));
+    Assert.assertEquals(iLoggingEvent.getMDCPropertyMap(), event.getMDCPropertyMap());
+    Assert.assertEquals(expected, event.getRecord());
+    assertThrowableProxyEquals(iLoggingEvent.getThrowableProxy(), event.getThrowableProxy());
+
+    // An event decoded from bytes is not re-encoded
+    Assert.assertArrayEquals(bytes, serializer.toBytes(event));
+  }
+
+  @Test
+  public void testDecodeInvalid() {
+    LoggingEventSerializer serializer = new LoggingEventSerializer();
+    ch.qos.logback.classic.spi.LoggingEvent iLoggingEvent = new ch.qos.logback.classic.spi.LoggingEvent();
+    iLoggingEvent.setLevel(Level.INFO);
+    iLoggingEvent.setMessage("message");
+    byte[] bytes = serializer.toBytes(iLoggingEvent);
+
+    // Invalid content is detected when decoding, even though the fields are decoded on demand
+    for (byte[] invalid : new byte[][] { Arrays.copyOf(bytes, bytes.length - 2), new byte[] { 2, 2, 8 } }) {
+      try {
+        serializer.fromBytes(ByteBuffer.wrap(invalid));
+        Assert.fail("Expected failure to decode");
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+
   static void assertLoggingEventEquals(ILoggingEvent expected, ILoggingEvent actual) {
     expected.getMDCPropertyMap().putAll(
       ImmutableMap.of(".namespaceId", "TEST_ACCT_ID1", ".applicationId", "TEST_APP_ID1", ".runId", "RUN1",
@@ -75,6 +75,7 @@ public abstract class MetricsTestBase {
     cConf.setInt(Constants.Metrics.QUEUE_SIZE, 1000);
     // Set it to really short delay for faster test
     cConf.setLong(Constants.Metrics.PROCESSOR_MAX_DELAY_MS, 5);
+    cConf.setLong(Constants.Metrics.PROCESSOR_FLUSH_INTERVAL_MS, 50);
 
     injector = Guice.createInjector(getModules());
     messagingService = injector.getInstance(MessagingService.class);
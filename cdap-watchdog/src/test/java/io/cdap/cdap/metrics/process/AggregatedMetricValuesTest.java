@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.process;
+
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.metrics.MetricType;
+import io.cdap.cdap.api.metrics.MetricValue;
+import io.cdap.cdap.api.metrics.MetricValues;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit test for {@link AggregatedMetricValues}.
+ */
+public class AggregatedMetricValuesTest {
+
+  @Test
+  public void testAggregate() {
+    Map<String, String> tags1 = ImmutableMap.of("ns", "ns1", "app", "app1");
+    Map<String, String> tags2 = ImmutableMap.of("ns", "ns1", "app", "app2");
+
+    AggregatedMetricValues aggregated = new AggregatedMetricValues();
+    Assert.assertTrue(aggregated.isEmpty());
+
+    aggregated.add(new MetricValues(tags1, 10L, Arrays.asList(new MetricValue("count", MetricType.COUNTER, 1L),
+                                                              new MetricValue("gauge", MetricType.GAUGE, 5L))));
+    aggregated.add(new MetricValues(new HashMap<>(tags1), 10L,
+                                    Arrays.asList(new MetricValue("count", MetricType.COUNTER, 2L),
+                                                  new MetricValue("gauge", MetricType.GAUGE, 3L))));
+    // Increment after a gauge adds to the gauge value
+    aggregated.add(new MetricValues(tags1, "gauge", 10L, 4L, MetricType.COUNTER));
+    // Different timestamp and different tags are not aggregated
+    aggregated.add(new MetricValues(tags1, "count", 11L, 7L, MetricType.COUNTER));
+    aggregated.add(new MetricValues(tags2, "count", 10L, 8L, MetricType.COUNTER));
+
+    Assert.assertEquals(5L, aggregated.getRawCount());
+    Assert.assertEquals(4, aggregated.size());
+
+    List<MetricValues> metricValues = aggregated.getMetricValues();
+    Assert.assertEquals(3, metricValues.size());
+    Assert.assertEquals(ImmutableMap.of("count", 3L, "gauge", 7L), toMap(metricValues.get(0), tags1, 10L));
+    Assert.assertEquals(MetricType.GAUGE, getMetric(metricValues.get(0), "gauge").getType());
+    Assert.assertEquals(ImmutableMap.of("count", 7L), toMap(metricValues.get(1), tags1, 11L));
+    Assert.assertEquals(ImmutableMap.of("count", 8L), toMap(metricValues.get(2), tags2, 10L));
+
+    aggregated.clear();
+    Assert.assertTrue(aggregated.isEmpty());
+    Assert.assertEquals(0, aggregated.size());
+    Assert.assertTrue(aggregated.getMetricValues().isEmpty());
+  }
+
+  private Map<String, Long> toMap(MetricValues metricValues, Map<String, String> expectedTags, long expectedTime) {
+    Assert.assertEquals(expectedTags, metricValues.getTags());
+    Assert.assertEquals(expectedTime, metricValues.getTimestamp());
+    Map<String, Long> result = new HashMap<>();
+    for (MetricValue value : metricValues.getMetrics()) {
+      result.put(value.getName(), value.getValue());
+    }
+    return result;
+  }
+
+  private MetricValue getMetric(MetricValues metricValues, String name) {
+    return metricValues.getMetrics().stream().filter(v -> v.getName().equals(name)).findFirst().orElse(null);
+  }
+}
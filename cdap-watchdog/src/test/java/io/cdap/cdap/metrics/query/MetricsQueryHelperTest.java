@@ -16,10 +16,33 @@
 
 package io.cdap.cdap.metrics.query;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import io.cdap.cdap.api.metrics.MetricStore;
+import io.cdap.cdap.api.metrics.MetricType;
+import io.cdap.cdap.api.metrics.MetricValues;
 import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
+import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.EntityTable;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.FactTable;
+import io.cdap.cdap.metrics.process.MetricsConsumerMetaTable;
+import io.cdap.cdap.metrics.store.DefaultMetricStore;
+import io.cdap.cdap.metrics.store.MetricDatasetFactory;
+import io.cdap.cdap.proto.MetricQueryResult;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class MetricsQueryHelperTest {
 
   @Test
@@ -96,4 +119,145 @@ public class MetricsQueryHelperTest {
     Assert.assertEquals(1, helper.getResolution(null, 0L, null).intValue());
     Assert.assertEquals(1, helper.getResolution(null, null, 10000000L).intValue());
   }
+
+  @Test
+  public void testGetAggregatedResolution() {
+    MetricsQueryHelper helper = new MetricsQueryHelper(null, CConfiguration.create());
+
+    // the coarsest resolution that the aligned intervals are multiples of is used, with both start and end inclusive
+    Assert.assertEquals(3600, getAggregatedResolution(helper, 0L, 35999L, 10));
+    Assert.assertEquals(60, getAggregatedResolution(helper, 0L, 35999L, 600));
+    Assert.assertEquals(60, getAggregatedResolution(helper, 0L, 599L, 10));
+    Assert.assertEquals(60, getAggregatedResolution(helper, 60L, 3659L, 60));
+    Assert.assertEquals(60, getAggregatedResolution(helper, 3660L, 10859L, 2));
+    Assert.assertEquals(1, getAggregatedResolution(helper, 0L, 599L, 20));
+
+    // if the start time or the intervals are not aligned, the resolution picked by the time range is used
+    Assert.assertEquals(60, getAggregatedResolution(helper, 0L, 36000L, 10));
+    Assert.assertEquals(60, getAggregatedResolution(helper, 0L, 35999L, 11));
+    Assert.assertEquals(60, getAggregatedResolution(helper, 100L, 3700L, 60));
+    Assert.assertEquals(60, getAggregatedResolution(helper, 100L, 3699L, 60));
+    Assert.assertEquals(3600, getAggregatedResolution(helper, 100L, 2592100L, 30));
+    Assert.assertEquals(1, getAggregatedResolution(helper, 10L, 309L, 3));
+
+    // a finer resolution than the one picked by the time range is never used
+    Assert.assertEquals(3600, getAggregatedResolution(helper, 60L, 2592059L, 43200));
+
+    // if the time range has less than count intervals at minimum resolution, minimum resolution is used
+    Assert.assertEquals(1, getAggregatedResolution(helper, 0L, 5L, 10));
+
+    // no alignment check without a positive count
+    Assert.assertEquals(60, getAggregatedResolution(helper, 0L, 35999L, 0));
+    Assert.assertEquals(1, getAggregatedResolution(helper, 0L, 599L, -1));
+  }
+
+  private int getAggregatedResolution(MetricsQueryHelper helper, long start, long end, int count) {
+    return helper.getAggregatedResolution(start, end, count, helper.getResolution(null, start, end));
+  }
+
+  @Test
+  public void testAggregatedQuery() throws Exception {
+    CConfiguration cConf = CConfiguration.create();
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(CConfiguration.class).toInstance(cConf);
+        bind(MetricDatasetFactory.class).toInstance(new InMemoryMetricDatasetFactory());
+        bind(MetricStore.class).to(DefaultMetricStore.class);
+      }
+    });
+    MetricStore metricStore = injector.getInstance(MetricStore.class);
+
+    // write a data point every second for a bit more than two hours, with values that vary within a minute
+    Map<String, String> tags = ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, "ns1",
+                                               Constants.Metrics.Tag.APP, "app1");
+    List<MetricValues> metricValues = new ArrayList<>();
+    for (long ts = 0; ts < 7300; ts++) {
+      metricValues.add(new MetricValues(tags, "reads", ts, ts % 7 + 1, MetricType.COUNTER));
+      metricValues.add(new MetricValues(tags, "size", ts, ts % 11, MetricType.GAUGE));
+    }
+    metricStore.add(metricValues);
+
+    // aligned aggregated query with auto resolution should give the same values as the query with minimum
+    // resolution, no matter which resolution it reads from. Sum is for counters, and latest is for gauges.
+    MetricsQueryHelper helper = new MetricsQueryHelper(metricStore, cConf);
+    Map<String, String> metrics = ImmutableMap.of("sum", "system.reads", "latest", "system.size");
+    long[][] alignedQueries = { {0L, 7199L, 2L}, {0L, 7199L, 120L}, {60L, 3659L, 60L} };
+    for (Map.Entry<String, String> entry : metrics.entrySet()) {
+      for (long[] query : alignedQueries) {
+        assertSameValues(helper, entry.getValue(), entry.getKey(), query, "1s");
+      }
+    }
+
+    // unaligned aggregated query with auto resolution reads from the resolution picked by the time range
+    long[][] unalignedQueries = { {0L, 7200L, 2L}, {100L, 3700L, 60L}, {0L, 7199L, 7L} };
+    for (Map.Entry<String, String> entry : metrics.entrySet()) {
+      for (long[] query : unalignedQueries) {
+        assertSameValues(helper, entry.getValue(), entry.getKey(), query, "1m");
+      }
+    }
+
+    // aggregated query without a positive count is rejected as an invalid request
+    Map<String, List<String>> params = createQueryParams("sum", new long[] { 0L, 7199L, 0L });
+    try {
+      queryValues(helper, "system.reads", params);
+      Assert.fail("Expected query with zero count to fail");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private void assertSameValues(MetricsQueryHelper helper, String metric, String aggregate,
+                                long[] query, String resolution) throws Exception {
+    Map<String, List<String>> params = createQueryParams(aggregate, query);
+    List<Long> autoValues = queryValues(helper, metric, params);
+    params.put("resolution", Collections.singletonList(resolution));
+    List<Long> expectedValues = queryValues(helper, metric, params);
+
+    Assert.assertEquals(aggregate + " " + Arrays.toString(query), expectedValues, autoValues);
+    Assert.assertEquals(query[2], expectedValues.size());
+  }
+
+  private Map<String, List<String>> createQueryParams(String aggregate, long[] query) {
+    Map<String, List<String>> params = new HashMap<>();
+    params.put("start", Collections.singletonList(Long.toString(query[0])));
+    params.put("end", Collections.singletonList(Long.toString(query[1])));
+    params.put("count", Collections.singletonList(Long.toString(query[2])));
+    params.put("aggregate", Collections.singletonList(aggregate));
+    return params;
+  }
+
+  private List<Long> queryValues(MetricsQueryHelper helper, String metric,
+                                 Map<String, List<String>> params) throws Exception {
+    MetricQueryResult result = helper.executeTagQuery(Arrays.asList("namespace:ns1", "app:app1"),
+                                                      Collections.singletonList(metric),
+                                                      Collections.emptyList(), params);
+    Assert.assertEquals(1, result.getSeries().length);
+    List<Long> values = new ArrayList<>();
+    for (MetricQueryResult.TimeValue timeValue : result.getSeries()[0].getData()) {
+      values.add(timeValue.getValue());
+    }
+    return values;
+  }
+
+  /**
+   * A {@link MetricDatasetFactory} that creates {@link FactTable} backed by in-memory tables.
+   */
+  private static final class InMemoryMetricDatasetFactory implements MetricDatasetFactory {
+
+    @Override
+    public FactTable getOrCreateFactTable(int resolution) {
+      String entityTableName = "EntityTable";
+      String dataTableName = "DataTable-" + resolution;
+      InMemoryTableService.create(entityTableName);
+      InMemoryTableService.create(dataTableName);
+      return new FactTable(new InMemoryMetricsTable(dataTableName),
+                           new EntityTable(new InMemoryMetricsTable(entityTableName)), resolution, 3600);
+    }
+
+    @Override
+    public MetricsConsumerMetaTable createConsumerMeta() {
+      throw new UnsupportedOperationException();
+    }
+  }
 }